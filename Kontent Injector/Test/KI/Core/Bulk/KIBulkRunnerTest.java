@@ -0,0 +1,150 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Bulk;
+
+import KI.Models.KIInput.StringInput;
+import KI.Models.KITemplateConfiguration;
+import Mocks.MockMutableContentObject;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Bulk runner and CSV record source unit tests
+ */
+public class KIBulkRunnerTest {
+
+    @Test
+    public void run_CsvRecords_FileGeneratedForEveryRecord() throws Exception {
+        Path outputDirectory = Files.createTempDirectory("kontent-injector-bulk");
+        String pathPattern = outputDirectory.toString() + "/$%$MockMutableContentObject.getTitle$%$.txt";
+        KIBulkRunner bulkRunner = new KIBulkRunner(new KITemplateConfiguration(), new StringInput("Hello $%$MockMutableContentObject.getTitle$%$!"),
+                pathPattern, MockMutableContentObject.class);
+        bulkRunner.setWorkersCount(2);
+        bulkRunner.setMaxInFlight(2);
+        List<KIBulkReport> progressReports = new ArrayList<>();
+        bulkRunner.setProgressListener((progressReport, isFinished) -> progressReports.add(progressReport), 2);
+
+        KIBulkReport report = bulkRunner.run(new KICsvRecordSource(new StringReader("Title\nfirst\nsecond\n\nthird"), MockMutableContentObject.class));
+
+        assertTrue(report.getGeneratedCount() == 3);
+        assertTrue(report.getFailedCount() == 0);
+        assertTrue(progressReports.size() == 2);
+        for (String title : Arrays.asList("first", "second", "third")) {
+            List<String> lines = Files.readAllLines(outputDirectory.resolve(title + ".txt"), Charset.defaultCharset());
+            assertTrue(lines.equals(Arrays.asList("Hello " + title + "!")));
+        }
+    }
+
+    @Test
+    public void run_FailingRecord_ReportedAndOthersGenerated() throws Exception {
+        Path outputDirectory = Files.createTempDirectory("kontent-injector-bulk");
+        KIBulkRunner bulkRunner = new KIBulkRunner(new KITemplateConfiguration(), new StringInput("$%$MockMutableContentObject.getTitle$%$"),
+                outputDirectory.toString() + "/$%$MockMutableContentObject.getTitle$%$", MockMutableContentObject.class);
+        List<Object[]> records = Arrays.asList(new Object[]{new MockMutableContentObject()}, new Object[]{"Not a content object"});
+
+        KIBulkReport report = bulkRunner.run(records.iterator());
+
+        assertTrue(report.getGeneratedCount() == 1);
+        assertTrue(report.getFailedCount() == 1);
+        assertTrue(report.getFailures().get(0).getRecordIndex() == 1);
+    }
+
+    @Test
+    public void run_RenderFails_PartialFileDeleted() throws Exception {
+        Path outputDirectory = Files.createTempDirectory("kontent-injector-bulk");
+        KIBulkRunner bulkRunner = new KIBulkRunner(new KITemplateConfiguration(),
+                new StringInput("Hello $%$MockMutableContentObject.getTitle$%$\n$%$MockMutableContentObject.getFailingValue$%$"),
+                outputDirectory.toString() + "/$%$MockMutableContentObject.getTitle$%$.txt", MockMutableContentObject.class);
+
+        KIBulkReport report = bulkRunner.run(Collections.singletonList(new Object[]{new MockMutableContentObject()}).iterator());
+
+        assertTrue(report.getFailedCount() == 1);
+        assertTrue(!Files.exists(outputDirectory.resolve("Title.txt")));
+        Files.delete(outputDirectory);
+    }
+
+    @Test
+    public void run_RecordsFail_InFlightRecordsGeneratedBeforeReturning() throws Exception {
+        Path outputDirectory = Files.createTempDirectory("kontent-injector-bulk");
+        KIBulkRunner bulkRunner = new KIBulkRunner(new KITemplateConfiguration(),
+                new StringInput("$%$LOOP$%$$%$MockMutableContentObject.getItems$%$\n$%$ENDLOOP$%$"),
+                outputDirectory.toString() + "/$%$MockMutableContentObject.getTitle$%$.txt", MockMutableContentObject.class);
+        MockMutableContentObject contentObject = new MockMutableContentObject();
+        for (int i = 0; i < 200000; i++)
+            contentObject.getItems().add("Item " + i);
+        Iterator<Object[]> records = new Iterator<Object[]>() {
+            private boolean isRecordRead = false;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public Object[] next() {
+                if (isRecordRead)
+                    throw new IllegalStateException("The records could not be read");
+                isRecordRead = true;
+                return new Object[]{contentObject};
+            }
+        };
+
+        boolean isRunFailed = false;
+        try {
+            bulkRunner.run(records);
+        } catch (IllegalStateException e) {
+            isRunFailed = true;
+        }
+
+        assertTrue(isRunFailed);
+        List<String> lines = Files.readAllLines(outputDirectory.resolve("Title.txt"), Charset.defaultCharset());
+        assertTrue(lines.get(199999).equals("Item 199999"));
+    }
+
+    @Test
+    public void next_QuotedFields_FieldsUnquoted() {
+        KICsvRecordSource recordSource = new KICsvRecordSource(new StringReader("name,quote\r\n\"Doe, John\",\"He said \"\"hi\"\"\nthen left\"\r\n"),
+                row -> new Object[]{row});
+
+        assertTrue(recordSource.getColumnsNames().equals(Arrays.asList("name", "quote")));
+        @SuppressWarnings("unchecked")
+        Map<String, String> row = (Map<String, String>) recordSource.next()[0];
+        assertTrue(row.get("name").equals("Doe, John"));
+        assertTrue(row.get("quote").equals("He said \"hi\"\nthen left"));
+        assertTrue(!recordSource.hasNext());
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Cache;
+
+import KI.Core.Compiler.IKITemplateRenderer;
+import KI.Core.KontentInjector;
+import KI.Models.KIInput.StringInput;
+import KI.Models.KIOutput.StringBuilderOutput;
+import Mocks.MockMutableContentObject;
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Render cache unit tests
+ */
+public class KIRenderCacheTest {
+
+    private static final String TEMPLATE = "<h1>$%$MockMutableContentObject.getTitle$%$</h1>\n<p>Body</p>";
+
+    private IKITemplateRenderer compile() throws ReflectiveOperationException {
+        return new KontentInjector().compile(new StringInput(TEMPLATE), MockMutableContentObject.class);
+    }
+
+    private String render(KIRenderCache renderCache, IKITemplateRenderer template, Object fingerprint, Object contentObject) throws ReflectiveOperationException {
+        StringBuilder outputHolder = new StringBuilder();
+        renderCache.render(template, fingerprint, new StringBuilderOutput(outputHolder), contentObject);
+        return outputHolder.toString();
+    }
+
+    @Test
+    public void render_SameFingerprint_KeptOutputWritten() throws Exception {
+        KIRenderCache renderCache = new KIRenderCache(1024);
+        IKITemplateRenderer template = compile();
+        MockMutableContentObject contentObject = new MockMutableContentObject();
+
+        String firstOutput = render(renderCache, template, "title", contentObject);
+        String secondOutput = render(renderCache, template, "title", contentObject);
+
+        assertTrue(firstOutput.equals("<h1>Title</h1>\n<p>Body</p>\n"));
+        assertTrue(secondOutput.equals(firstOutput));
+        assertTrue(contentObject.getTitleReadsCount() == 1);
+        assertTrue(renderCache.getHitsCount() == 1);
+        assertTrue(renderCache.getMissesCount() == 1);
+        assertTrue(renderCache.getHitRate() == 0.5);
+    }
+
+    @Test
+    public void render_Invalidated_TemplateRenderedAgain() throws Exception {
+        KIRenderCache renderCache = new KIRenderCache(1024);
+        IKITemplateRenderer template = compile();
+        MockMutableContentObject contentObject = new MockMutableContentObject();
+
+        render(renderCache, template, "title", contentObject);
+        contentObject.setTitle("Changed");
+        renderCache.invalidate(template, "title");
+        String output = render(renderCache, template, "title", contentObject);
+
+        assertTrue(output.equals("<h1>Changed</h1>\n<p>Body</p>\n"));
+        assertTrue(renderCache.getHitsCount() == 0);
+        assertTrue(renderCache.size() == 1);
+    }
+
+    @Test
+    public void render_BeyondMaxWeight_LeastRecentlyUsedEvicted() throws Exception {
+        KIRenderCache renderCache = new KIRenderCache(60);
+        IKITemplateRenderer template = compile();
+        MockMutableContentObject contentObject = new MockMutableContentObject();
+
+        render(renderCache, template, "first", contentObject);
+        render(renderCache, template, "second", contentObject);
+        render(renderCache, template, "first", contentObject);
+        render(renderCache, template, "third", contentObject);
+        render(renderCache, template, "first", contentObject);
+
+        assertTrue(renderCache.getEvictionsCount() == 1);
+        assertTrue(renderCache.getHitsCount() == 2);
+        assertTrue(renderCache.size() == 2);
+        assertTrue(renderCache.getWeight() <= 60);
+    }
+
+    @Test
+    public void cache_CompiledTemplateMutatedContent_RenderedAgain() throws Exception {
+        KIRenderCache renderCache = new KIRenderCache(1024);
+        IKITemplateRenderer cachedTemplate = renderCache.cache(compile());
+        MockMutableContentObject contentObject = new MockMutableContentObject();
+        StringBuilder firstOutput = new StringBuilder();
+        StringBuilder secondOutput = new StringBuilder();
+        StringBuilder thirdOutput = new StringBuilder();
+
+        cachedTemplate.render(new StringBuilderOutput(firstOutput), contentObject);
+        contentObject.setTitle("Changed");
+        cachedTemplate.render(new StringBuilderOutput(secondOutput), contentObject);
+        cachedTemplate.render(new StringBuilderOutput(thirdOutput), contentObject);
+
+        assertTrue(firstOutput.toString().equals("<h1>Title</h1>\n<p>Body</p>\n"));
+        assertTrue(secondOutput.toString().equals("<h1>Changed</h1>\n<p>Body</p>\n"));
+        assertTrue(thirdOutput.toString().equals(secondOutput.toString()));
+        assertTrue(renderCache.getHitsCount() == 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cache_NotCompiledTemplate_ExceptionThrown() {
+        new KIRenderCache(1024).cache((outputMethod, contentObjects) -> outputMethod.handleOutputEnd());
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Compiler;
+
+import KI.Core.KontentInjector;
+import KI.Models.KIInput.StringInput;
+import KI.Models.KIOutput.StringBuilderOutput;
+import Mocks.MockMutableContentObject;
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Incremental template unit tests
+ */
+public class KIIncrementalTemplateTest {
+
+    private static final String TEMPLATE = "Title: $%$MockMutableContentObject.getTitle$%$\n"
+            + "$%$LOOP$%$- $%$MockMutableContentObject.getItems$%$\n$%$ENDLOOP$%$\n"
+            + "The end";
+
+    private String render(IKITemplateRenderer template, MockMutableContentObject contentObject) throws ReflectiveOperationException {
+        StringBuilder output = new StringBuilder();
+        template.render(new StringBuilderOutput(output), contentObject);
+        return output.toString();
+    }
+
+    @Test
+    public void render_ChangedValues_OnlyChangesReRendered() throws Exception {
+        IKITemplateRenderer template = new KontentInjector().compileIncremental(new StringInput(TEMPLATE), MockMutableContentObject.class);
+        assertTrue(template instanceof KIIncrementalTemplate);
+
+        MockMutableContentObject contentObject = new MockMutableContentObject();
+        contentObject.getItems().add("A");
+        assertTrue(render(template, contentObject).equals("Title: Title\n- A\n\nThe end\n"));
+
+        contentObject.setTitle("New Title");
+        assertTrue(render(template, contentObject).equals("Title: New Title\n- A\n\nThe end\n"));
+
+        contentObject.getItems().add("B");
+        assertTrue(render(template, contentObject).equals("Title: New Title\n- A\n- B\n\nThe end\n"));
+    }
+
+    @Test
+    public void render_SameValues_SameOutputAsCompiledTemplate() throws Exception {
+        KontentInjector injector = new KontentInjector();
+        IKITemplateRenderer incrementalTemplate = injector.compileIncremental(new StringInput(TEMPLATE), MockMutableContentObject.class);
+        IKITemplateRenderer compiledTemplate = injector.compile(new StringInput(TEMPLATE), MockMutableContentObject.class);
+
+        MockMutableContentObject contentObject = new MockMutableContentObject();
+        contentObject.getItems().add("A");
+        String expectedOutput = render(compiledTemplate, contentObject);
+
+        assertTrue(render(incrementalTemplate, contentObject).equals(expectedOutput));
+        assertTrue(render(incrementalTemplate, contentObject).equals(expectedOutput));
+        ((KIIncrementalTemplate) incrementalTemplate).invalidate();
+        assertTrue(render(incrementalTemplate, contentObject).equals(expectedOutput));
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Compiler;
+
+import KI.Core.KontentInjector;
+import KI.Models.KIInput.StringInput;
+import KI.Models.KIOutput.StringBuilderOutput;
+import KI.Models.KITemplateConfiguration;
+import Mocks.MockContentObject;
+import Mocks.MockContentObject2;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Profiled template unit tests
+ */
+public class KIProfiledTemplateTest {
+
+    private static final String TEMPLATE = "Single line: @@MockContentObject.methodReturnsString@@ and @@Mock2.The_S_Method@@\n"
+            + "@@LOOP@@element: @@MockContentObject.methodReturnStringList@@ @@ENDLOOP@@\n"
+            + "Again @@Mock2.The_S_Method@@";
+
+    private IKITemplateRenderer compile() throws Exception {
+        KITemplateConfiguration config = new KITemplateConfiguration();
+        config.setInjectionToken("@@");
+        config.addClassAlias(MockContentObject2.class, "Mock2");
+        config.addMethodAlias(MockContentObject2.class, "methodReturnsString", "The_S_Method");
+        return new KontentInjector(config).compile(new StringInput(TEMPLATE), MockContentObject.class, MockContentObject2.class);
+    }
+
+    @Test
+    public void render_ProfiledTemplate_SameOutputAsTemplate() throws Exception {
+        IKITemplateRenderer template = compile();
+        StringBuilder expectedOutput = new StringBuilder();
+        template.render(new StringBuilderOutput(expectedOutput), new MockContentObject(), new MockContentObject2());
+        StringBuilder profiledOutput = new StringBuilder();
+
+        new KIProfiledTemplate(template).render(new StringBuilderOutput(profiledOutput), new MockContentObject(), new MockContentObject2());
+
+        assertTrue(profiledOutput.toString().equals(expectedOutput.toString()));
+    }
+
+    @Test
+    public void getReport_SeveralRenders_NodesAggregatedAndSorted() throws Exception {
+        KIProfiledTemplate profiledTemplate = new KIProfiledTemplate(compile());
+        for (int i = 0; i < 3; i++)
+            profiledTemplate.render(new StringBuilderOutput(new StringBuilder()), new MockContentObject(), new MockContentObject2());
+
+        KIProfileReport report = profiledTemplate.getReport();
+        Set<String> nodesNames = new HashSet<>();
+        long previousNanos = Long.MAX_VALUE;
+        for (KIProfileReport.NodeProfile nodeProfile : report.getNodesProfiles()) {
+            nodesNames.add(nodeProfile.getNodeName());
+            assertTrue(nodeProfile.getTotalNanos() <= previousNanos);
+            previousNanos = nodeProfile.getTotalNanos();
+            if (nodeProfile.getNodeName().equals("Mock2.The_S_Method"))
+                assertTrue(nodeProfile.getCallsCount() == 6);
+        }
+
+        assertTrue(report.getRendersCount() == 3);
+        assertTrue(nodesNames.contains("MockContentObject.methodReturnsString"));
+        assertTrue(nodesNames.contains("LOOP(MockContentObject.methodReturnStringList)"));
+        assertTrue(nodesNames.contains("output"));
+        assertTrue(report.toString().contains("Mock2.The_S_Method"));
+    }
+}
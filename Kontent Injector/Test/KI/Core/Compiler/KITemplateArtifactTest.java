@@ -0,0 +1,139 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Compiler;
+
+import KI.Core.KontentInjector;
+import KI.Models.KIInput.StringInput;
+import KI.Models.KIOutput.StringBuilderOutput;
+import KI.Models.KITemplateConfiguration;
+import Mocks.MockContentObject;
+import Mocks.MockContentObject2;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Template artifact unit tests
+ */
+public class KITemplateArtifactTest {
+
+    private static final String TEMPLATE = "Single line: @@MockContentObject.methodReturnsString@@ and @@Mock2.The_S_Method@@\n"
+            + "@@LOOP@@element: @@MockContentObject.methodReturnStringList@@ @@ENDLOOP@@\n"
+            + "Caf\u00e9 @@Mock2.The_S_Method@@";
+
+    private KITemplateConfiguration createConfiguration() throws Exception {
+        KITemplateConfiguration config = new KITemplateConfiguration();
+        config.setInjectionToken("@@");
+        config.addClassAlias(MockContentObject2.class, "Mock2");
+        config.addMethodAlias(MockContentObject2.class, "methodReturnsString", "The_S_Method");
+        return config;
+    }
+
+    private String render(IKITemplateRenderer template) throws ReflectiveOperationException {
+        StringBuilder output = new StringBuilder();
+        template.render(new StringBuilderOutput(output), new MockContentObject(), new MockContentObject2());
+        return output.toString();
+    }
+
+    @Test
+    public void loadCompiled_WrittenArtifact_SameOutputAsTemplate() throws Exception {
+        IKITemplateRenderer template = new KontentInjector(createConfiguration())
+                .compile(new StringInput(TEMPLATE), MockContentObject.class, MockContentObject2.class);
+        Path artifactPath = Files.createTempFile("template", KITemplateArtifact.ARTIFACT_EXTENSION);
+        try {
+            KITemplateArtifact.write(template, artifactPath);
+
+            IKITemplateRenderer loadedTemplate = new KontentInjector().loadCompiled(artifactPath, MockContentObject.class, MockContentObject2.class);
+
+            assertTrue(render(loadedTemplate).equals(render(template)));
+        } finally {
+            Files.delete(artifactPath);
+        }
+    }
+
+    @Test
+    public void loadCompiled_CorruptedArtifact_ExceptionThrown() throws Exception {
+        IKITemplateRenderer template = new KontentInjector(createConfiguration())
+                .compile(new StringInput(TEMPLATE), MockContentObject.class, MockContentObject2.class);
+        Path artifactPath = Files.createTempFile("template", KITemplateArtifact.ARTIFACT_EXTENSION);
+        try {
+            KITemplateArtifact.write(template, artifactPath);
+            byte[] artifact = Files.readAllBytes(artifactPath);
+            artifact[artifact.length - 1] ^= 1;
+            Files.write(artifactPath, artifact);
+
+            new KontentInjector().loadCompiled(artifactPath, MockContentObject.class, MockContentObject2.class);
+            assertTrue(false);
+        } catch (IOException ex) {
+            assertTrue(ex.getMessage().contains("checksum"));
+        } finally {
+            Files.delete(artifactPath);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void loadCompiled_OtherContentClasses_ExceptionThrown() throws Exception {
+        IKITemplateRenderer template = new KontentInjector(createConfiguration())
+                .compile(new StringInput(TEMPLATE), MockContentObject.class, MockContentObject2.class);
+        Path artifactPath = Files.createTempFile("template", KITemplateArtifact.ARTIFACT_EXTENSION);
+        try {
+            KITemplateArtifact.write(template, artifactPath);
+
+            new KontentInjector().loadCompiled(artifactPath, MockContentObject2.class, MockContentObject.class);
+        } finally {
+            Files.delete(artifactPath);
+        }
+    }
+
+    @Test
+    public void buildArtifacts_TemplateFile_ArtifactWrittenToOutputDirectory() throws Exception {
+        Path outputDirectory = Files.createTempDirectory("artifacts");
+        Path templateFile = Files.createTempFile("template", ".kit");
+        Files.write(templateFile, TEMPLATE.getBytes(StandardCharsets.UTF_8));
+        try {
+            List<Path> artifactsPaths = KITemplateArtifactTool.buildArtifacts(createConfiguration(), outputDirectory.toFile(),
+                    Collections.singletonList(templateFile.toFile()), MockContentObject.class, MockContentObject2.class);
+
+            assertTrue(artifactsPaths.size() == 1);
+            assertTrue(artifactsPaths.get(0).getFileName().toString().equals(templateFile.getFileName() + KITemplateArtifact.ARTIFACT_EXTENSION));
+            IKITemplateRenderer loadedTemplate = KITemplateArtifact.load(artifactsPaths.get(0), createConfiguration(),
+                    MockContentObject.class, MockContentObject2.class);
+            assertTrue(render(loadedTemplate).startsWith("Single line: " + MockContentObject.EXPECTED_STRING_FROM_STRING));
+        } finally {
+            Files.delete(templateFile);
+            for (File file : outputDirectory.toFile().listFiles())
+                Files.delete(file.toPath());
+            Files.delete(outputDirectory);
+        }
+    }
+}
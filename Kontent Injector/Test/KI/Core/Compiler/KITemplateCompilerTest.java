@@ -0,0 +1,120 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Compiler;
+
+import KI.Core.KontentInjector;
+import KI.Exceptions.UnresolvedReferenceException;
+import KI.Models.KIInput.StringInput;
+import KI.Models.KIOutput.StringBuilderOutput;
+import KI.Models.KITemplateConfiguration;
+import Mocks.MockContentObject;
+import Mocks.MockContentObject2;
+import Mocks.MockNumericContentObject;
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Template compiler unit tests
+ */
+public class KITemplateCompilerTest {
+
+    private String getTestTemplate() {
+        String template;
+        template = "Single line: @@MockContentObject.methodReturnsString@@ and @@Mock2.The_S_Method@@\n";
+        template += "No injection here\n";
+        template += "Single Line: @@LOOP@@element: @@MockContentObject.methodReturnStringList@@ @@ENDLOOP@@\n";
+        template += "AND MULTILINE!! @@LOOP@@here you go... @@Mock2.methodReturnStringList@@ ...\n";
+        template += "repeat!! @@ENDLOOP@@\n";
+        template += "The end";
+        return template;
+    }
+
+    private KITemplateConfiguration getTestTemplateConfig() throws Exception {
+        KITemplateConfiguration config = new KITemplateConfiguration();
+        config.setInjectionToken("@@");
+        config.addClassAlias(MockContentObject2.class, "Mock2");
+        config.addMethodAlias(MockContentObject2.class, "methodReturnsString", "The_S_Method");
+        return config;
+    }
+
+    @Test
+    public void compile_PublicContentClasses_CompiledTemplateMatchesInterpreter() throws Exception {
+        KontentInjector injector = new KontentInjector(getTestTemplateConfig());
+        IKITemplateRenderer template = injector.compile(new StringInput(getTestTemplate()), MockContentObject.class, MockContentObject2.class);
+        assertTrue(template instanceof KICompiledTemplate);
+
+        StringBuilder compiledOutput = new StringBuilder();
+        template.render(new StringBuilderOutput(compiledOutput), new MockContentObject2(), new MockContentObject());
+        StringBuilder interpretedOutput = new StringBuilder();
+        injector.injectValues(new StringInput(getTestTemplate()), new StringBuilderOutput(interpretedOutput), new MockContentObject(), new MockContentObject2());
+
+        assertTrue(interpretedOutput.toString().equals(compiledOutput.toString()));
+    }
+
+    @Test
+    public void compile_RenderTwice_SameOutput() throws Exception {
+        KontentInjector injector = new KontentInjector(getTestTemplateConfig());
+        IKITemplateRenderer template = injector.compile(new StringInput(getTestTemplate()), MockContentObject.class, MockContentObject2.class);
+
+        StringBuilder firstOutput = new StringBuilder();
+        template.render(new StringBuilderOutput(firstOutput), new MockContentObject(), new MockContentObject2());
+        StringBuilder secondOutput = new StringBuilder();
+        template.render(new StringBuilderOutput(secondOutput), new MockContentObject(), new MockContentObject2());
+
+        assertTrue(firstOutput.toString().equals(secondOutput.toString()));
+    }
+
+    @Test
+    public void compile_InaccessibleContentClass_FallsBackToInterpreter() throws Exception {
+        KontentInjector injector = new KontentInjector();
+        IKITemplateRenderer template = injector.compile(new StringInput("Value: $%$HiddenContentObject.getValue$%$"), HiddenContentObject.class);
+        assertTrue(template instanceof KIInterpretedTemplate);
+    }
+
+    @Test
+    public void compile_PrimitiveSequences_ElementsRendered() throws Exception {
+        KontentInjector injector = new KontentInjector();
+        IKITemplateRenderer template = injector.compile(new StringInput("$%$LOOP$%$#$%$MockNumericContentObject.getIds$%$=$%$MockNumericContentObject.getCounts$%$ $%$ENDLOOP$%$"),
+                MockNumericContentObject.class);
+        StringBuilder outputHolder = new StringBuilder();
+
+        template.render(new StringBuilderOutput(outputHolder), new MockNumericContentObject());
+
+        assertTrue(outputHolder.toString().equals("#7=1 #8=22 #9=333 \n"));
+    }
+
+    @Test(expected = UnresolvedReferenceException.class)
+    public void compile_MissingMethod_UnresolvedReferenceException() throws Exception {
+        KontentInjector injector = new KontentInjector();
+        injector.compile(new StringInput("Value: $%$MockContentObject.missingMethod$%$"), MockContentObject.class);
+    }
+
+    private static class HiddenContentObject {
+        public String getValue() {
+            return "Hidden";
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Compiler;
+
+import KI.Core.KontentInjector;
+import KI.Models.KIInput.StringInput;
+import KI.Models.KIOutput.IKIOutput;
+import KI.Models.KIOutput.StringBuilderOutput;
+import Mocks.MockMutableContentObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Template group unit tests
+ */
+public class KITemplateGroupTest {
+
+    private KITemplateGroup compileGroup() throws ReflectiveOperationException {
+        return new KontentInjector().compileGroup(Arrays.asList(
+                new StringInput("<h1>$%$MockMutableContentObject.getTitle$%$</h1>"),
+                new StringInput("Title: $%$MockMutableContentObject.getTitle$%$\n$%$LOOP$%$- $%$MockMutableContentObject.getItems$%$\n$%$ENDLOOP$%$"),
+                new StringInput("{\"title\": \"$%$MockMutableContentObject.getTitle$%$\"}")), MockMutableContentObject.class);
+    }
+
+    private MockMutableContentObject createContentObject() {
+        MockMutableContentObject contentObject = new MockMutableContentObject();
+        contentObject.getItems().add("A");
+        contentObject.getItems().add("B");
+        return contentObject;
+    }
+
+    @Test
+    public void render_SharedGetter_InvokedOnce() throws Exception {
+        KITemplateGroup templateGroup = compileGroup();
+        MockMutableContentObject contentObject = createContentObject();
+        StringBuilder html = new StringBuilder(), text = new StringBuilder(), json = new StringBuilder();
+
+        templateGroup.render(Arrays.asList(new StringBuilderOutput(html), new StringBuilderOutput(text), new StringBuilderOutput(json)), contentObject);
+
+        assertTrue(contentObject.getTitleReadsCount() == 1);
+        assertTrue(html.toString().equals("<h1>Title</h1>\n"));
+        assertTrue(text.toString().equals("Title: Title\n- A\n- B\n\n"));
+        assertTrue(json.toString().equals("{\"title\": \"Title\"}\n"));
+    }
+
+    @Test
+    public void renderParallel_SharedGetter_SameOutputs() throws Exception {
+        KITemplateGroup templateGroup = compileGroup();
+        MockMutableContentObject contentObject = createContentObject();
+        StringBuilder html = new StringBuilder(), text = new StringBuilder(), json = new StringBuilder();
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+
+        try {
+            templateGroup.renderParallel(Arrays.asList(new StringBuilderOutput(html), new StringBuilderOutput(text), new StringBuilderOutput(json)), executor, contentObject);
+        } finally {
+            executor.shutdown();
+        }
+
+        assertTrue(contentObject.getTitleReadsCount() == 1);
+        assertTrue(html.toString().equals("<h1>Title</h1>\n"));
+        assertTrue(text.toString().equals("Title: Title\n- A\n- B\n\n"));
+        assertTrue(json.toString().equals("{\"title\": \"Title\"}\n"));
+    }
+
+    @Test
+    public void renderParallel_SubmitRejected_RunningRendersUnaffected() throws Exception {
+        KITemplateGroup templateGroup = compileGroup();
+        CountDownLatch renderStarted = new CountDownLatch(1);
+        CountDownLatch resumeRender = new CountDownLatch(1);
+        StringBuilder text = new StringBuilder();
+        IKIOutput blockingOutput = new IKIOutput() {
+            @Override
+            public void writeLine(String outputLine) {
+                text.append(outputLine).append('\n');
+                renderStarted.countDown();
+                while (resumeRender.getCount() > 0) {
+                    try {
+                        resumeRender.await();
+                    } catch (InterruptedException ignored) {
+                        // Keep the render running after it's cancelled
+                    }
+                }
+            }
+
+            @Override
+            public void handleOutputEnd() {
+            }
+        };
+        List<Thread> renderThreads = new ArrayList<>();
+        ExecutorService executor = new AbstractExecutorService() {
+            @Override
+            public void execute(Runnable command) {
+                if (renderThreads.size() == 2) {
+                    awaitRenderStart(renderStarted);
+                    throw new RejectedExecutionException();
+                }
+                Thread renderThread = new Thread(command);
+                renderThreads.add(renderThread);
+                renderThread.start();
+            }
+
+            @Override
+            public void shutdown() {
+            }
+
+            @Override
+            public List<Runnable> shutdownNow() {
+                return Collections.emptyList();
+            }
+
+            @Override
+            public boolean isShutdown() {
+                return false;
+            }
+
+            @Override
+            public boolean isTerminated() {
+                return false;
+            }
+
+            @Override
+            public boolean awaitTermination(long timeout, TimeUnit unit) {
+                return true;
+            }
+        };
+
+        try {
+            templateGroup.renderParallel(Arrays.asList(new StringBuilderOutput(new StringBuilder()), blockingOutput,
+                    new StringBuilderOutput(new StringBuilder())), executor, createContentObject());
+            assertTrue(false);
+        } catch (RejectedExecutionException ex) {
+            resumeRender.countDown();
+        }
+        for (Thread renderThread : renderThreads)
+            renderThread.join();
+
+        assertTrue(text.toString().equals("Title: Title\n- A\n- B\n\n"));
+    }
+
+    private static void awaitRenderStart(CountDownLatch renderStarted) {
+        try {
+            renderStarted.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void render_MissingOutput_IllegalArgumentException() throws Exception {
+        compileGroup().render(Arrays.asList(new StringBuilderOutput(new StringBuilder())), createContentObject());
+    }
+}
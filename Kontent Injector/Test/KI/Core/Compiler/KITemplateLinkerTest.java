@@ -0,0 +1,78 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Compiler;
+
+import KI.Core.Template.KIParsedTemplate;
+import KI.Core.Template.KITemplateParser;
+import KI.Exceptions.UnresolvedReferenceException;
+import KI.Models.KIInput.StringInput;
+import KI.Models.KITemplateConfiguration;
+import Mocks.MockContentObject;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Template linker unit tests
+ */
+public class KITemplateLinkerTest {
+
+    private KIParsedTemplate parse(KITemplateConfiguration templateConfig, String template) {
+        return new KITemplateParser(templateConfig).parse(new StringInput(template));
+    }
+
+    @Test
+    public void link_RepeatedReference_SingleSlot() throws Exception {
+        KITemplateConfiguration templateConfig = new KITemplateConfiguration();
+        String template = "$%$MockContentObject.methodReturnsString$%$ and $%$MockContentObject.methodReturnsString$%$\n"
+                + "$%$LOOP$%$$%$MockContentObject.methodReturnStringList$%$ $%$MockContentObject.methodReturnsString$%$$%$ENDLOOP$%$";
+        KILinkedTemplate linkedTemplate = new KITemplateLinker(templateConfig).link(parse(templateConfig, template), MockContentObject.class);
+
+        assertTrue(linkedTemplate.isAccessible());
+        assertTrue(linkedTemplate.getReferences().size() == 2);
+        assertTrue(linkedTemplate.getReferences().get(0).equals("MockContentObject.methodReturnsString"));
+        assertTrue(linkedTemplate.getReferences().get(1).equals("MockContentObject.methodReturnStringList"));
+    }
+
+    @Test
+    public void link_UnresolvedReferences_AllReported() throws Exception {
+        KITemplateConfiguration templateConfig = new KITemplateConfiguration();
+        String template = "$%$MockContentObject.missingMethod$%$ and $%$MissingClass.methodReturnsString$%$\n"
+                + "$%$LOOP$%$$%$MockContentObject.missingList$%$$%$ENDLOOP$%$ $%$MockContentObject.methodReturnsString$%$";
+        boolean exceptionCaught = false;
+        try {
+            new KITemplateLinker(templateConfig).link(parse(templateConfig, template), MockContentObject.class);
+        } catch (UnresolvedReferenceException ex) {
+            exceptionCaught = true;
+            assertTrue(ex.getUnresolvedReferences().size() == 3);
+            assertTrue(ex.getUnresolvedReferences().contains("MockContentObject.missingMethod"));
+            assertTrue(ex.getUnresolvedReferences().contains("MissingClass.methodReturnsString"));
+            assertTrue(ex.getUnresolvedReferences().contains("MockContentObject.missingList"));
+            assertFalse(ex.getUnresolvedReferences().contains("MockContentObject.methodReturnsString"));
+        }
+        assertTrue(exceptionCaught);
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core;
+
+import KI.Core.Compiler.IKITemplateRenderer;
+import KI.Models.KIInput.StringInput;
+import KI.Models.KIOutput.StringBuilderOutput;
+import KI.Models.KITemplateConfiguration;
+import Mocks.MockContentObject;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Flight recorder unit tests. The recording is driven reflectively, like the events are created,
+ * so the tests compile without the flight recorder and the recording test is skipped if it's not available
+ */
+public class KIFlightRecorderTest {
+
+    private static final String TEMPLATE = "Single line: @@MockContentObject.methodReturnsString@@\n"
+            + "@@LOOP@@element: @@MockContentObject.methodReturnStringList@@ @@ENDLOOP@@";
+
+    private IKITemplateRenderer compile() throws Exception {
+        KITemplateConfiguration config = new KITemplateConfiguration();
+        config.setInjectionToken("@@");
+        return new KontentInjector(config).compile(new StringInput(TEMPLATE), MockContentObject.class);
+    }
+
+    @Test
+    public void begin_EventsNotRecorded_NoEventBegun() {
+        assertTrue(KIFlightRecorder.RENDER.begin() == null);
+        assertTrue(KIFlightRecorder.GETTER_INVOCATION.begin() == null);
+    }
+
+    private static Class<?> findFlightRecorderClass(String className) {
+        try {
+            return Class.forName(className);
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    @Test
+    public void render_EventsRecorded_RenderGetterAndLoopEventsCommitted() throws Exception {
+        Class<?> recordingClass = findFlightRecorderClass("jdk.jfr.Recording");
+        Assume.assumeTrue(recordingClass != null);
+        Method enable = recordingClass.getMethod("enable", String.class);
+        Method withoutThreshold = Class.forName("jdk.jfr.EventSettings").getMethod("withoutThreshold");
+        Method readAllEvents = Class.forName("jdk.jfr.consumer.RecordingFile").getMethod("readAllEvents", Path.class);
+        Class<?> recordedEventClass = Class.forName("jdk.jfr.consumer.RecordedEvent");
+        Method getEventType = recordedEventClass.getMethod("getEventType");
+        Method getName = Class.forName("jdk.jfr.EventType").getMethod("getName");
+        Method getLong = recordedEventClass.getMethod("getLong", String.class);
+        Method getString = recordedEventClass.getMethod("getString", String.class);
+
+        IKITemplateRenderer template = compile();
+        StringBuilder output = new StringBuilder();
+        Path recordingFile = Files.createTempFile("ki-recording", ".jfr");
+        try (AutoCloseable recording = (AutoCloseable) recordingClass.newInstance()) {
+            for (String eventName : new String[]{"kontentinjector.Render", "kontentinjector.GetterInvocation", "kontentinjector.LoopExpansion"})
+                withoutThreshold.invoke(enable.invoke(recording, eventName));
+            recordingClass.getMethod("start").invoke(recording);
+            template.render(new StringBuilderOutput(output), new MockContentObject());
+            recordingClass.getMethod("stop").invoke(recording);
+            recordingClass.getMethod("dump", Path.class).invoke(recording, recordingFile);
+        }
+
+        List<?> events = (List<?>) readAllEvents.invoke(null, recordingFile);
+        Files.delete(recordingFile);
+        boolean isRenderRecorded = false;
+        boolean isGetterRecorded = false;
+        boolean isLoopRecorded = false;
+        for (Object event : events) {
+            String eventName = (String) getName.invoke(getEventType.invoke(event));
+            if (eventName.equals("kontentinjector.Render"))
+                isRenderRecorded = (long) getLong.invoke(event, "characters") == output.toString().replace("\n", "").length();
+            else if (eventName.equals("kontentinjector.GetterInvocation") && getString.invoke(event, "methodAlias").equals("methodReturnsString"))
+                isGetterRecorded = getString.invoke(event, "classAlias").equals("MockContentObject");
+            else if (eventName.equals("kontentinjector.LoopExpansion"))
+                isLoopRecorded = (long) getLong.invoke(event, "iterations") == 4;
+        }
+        assertTrue(isRenderRecorded);
+        assertTrue(isGetterRecorded);
+        assertTrue(isLoopRecorded);
+    }
+}
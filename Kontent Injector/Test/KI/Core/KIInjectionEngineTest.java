@@ -24,10 +24,90 @@
 
 package KI.Core;
 
+import KI.Core.KInjectors.AbstractKInjector;
+import KI.Core.KInjectors.IKInjectorFactory;
+import KI.Core.KInjectors.KInjectorsRegistry;
+import KI.Models.KITemplateConfiguration;
+import Mocks.MockContentObject;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertTrue;
+
 /**
  * KI Injection Engine Unit Tests
  * Created by khaled.hamdy on 3/14/17.
  */
 public class KIInjectionEngineTest {
 
+    @Test
+    public void processLine_LineWithoutDirectives_SameLine() throws Exception {
+        KIInjectionEngine injectionEngine = new KIInjectionEngine(new KITemplateConfiguration(), new Object[]{new MockContentObject()});
+        assertTrue(injectionEngine.processLine("Nothing to inject").equals("Nothing to inject"));
+    }
+
+    @Test
+    public void processLine_MultiLineLoopWithInjectionInBody_WholeLoopInjected() throws Exception {
+        KIInjectionEngine injectionEngine = new KIInjectionEngine(new KITemplateConfiguration(), new Object[]{new MockContentObject()});
+
+        assertTrue(injectionEngine.processLine("$%$LOOP$%$#$%$MockContentObject.methodReturnStringList$%$") == null);
+        assertTrue(injectionEngine.processLine("$%$MockContentObject.methodReturnsString$%$") == null);
+        String injectedBlock = injectionEngine.processLine("$%$ENDLOOP$%$");
+
+        String expectedBlock = "#1\nSTRING INJECTION\n#2\nSTRING INJECTION\n#3\nSTRING INJECTION\n#Cool\nSTRING INJECTION\n";
+        assertTrue(expectedBlock.equals(injectedBlock));
+    }
+
+    @Test
+    public void processLine_RegisteredDirective_DispatchedToCustomKInjector() throws Exception {
+        IKInjectorFactory upperCaseFactory = UpperCaseKInjector::new;
+        KInjectorsRegistry.getDefaultRegistry().register(upperCaseFactory);
+        try {
+            KIInjectionEngine injectionEngine = new KIInjectionEngine(new KITemplateConfiguration(), new Object[]{new MockContentObject()});
+            assertTrue(injectionEngine.processLine("$%$UPPER$%$shout $%$MockContentObject.methodReturnsString$%$").equals("SHOUT $%$MOCKCONTENTOBJECT.METHODRETURNSSTRING$%$"));
+            assertTrue(injectionEngine.processLine("say $%$MockContentObject.methodReturnsString$%$").equals("say STRING INJECTION"));
+        } finally {
+            KInjectorsRegistry.getDefaultRegistry().unregister(upperCaseFactory);
+        }
+    }
+
+    /**
+     * A custom KInjector turning lines starting with the UPPER directive to upper case
+     */
+    private static class UpperCaseKInjector extends AbstractKInjector {
+
+        private String lineToProcess;
+
+        UpperCaseKInjector(KITemplateConfiguration templateConfig, Map<String, InjectionEngineCache> injectionCache) {
+            super(templateConfig, injectionCache);
+        }
+
+        @Override
+        public String getDirectiveKeyword() {
+            return templateConfig.getInjectionToken() + "UPPER" + templateConfig.getInjectionToken();
+        }
+
+        @Override
+        public void inspectLine(String templateLine) {
+            lineToProcess = templateLine;
+        }
+
+        @Override
+        public boolean isActive() {
+            return lineToProcess != null;
+        }
+
+        @Override
+        public boolean isReadyForProcessing() {
+            return lineToProcess != null;
+        }
+
+        @Override
+        public String processInjection() {
+            String injectedLine = lineToProcess.replace(getDirectiveKeyword(), "").toUpperCase();
+            lineToProcess = null;
+            return injectedLine;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,112 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core;
+
+import org.junit.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Loop expander unit tests
+ */
+public class KILoopExpanderTest {
+
+    private static final long ITERATION_NANOS = 20_000L;
+
+    private static void renderExpensiveIteration(StringBuilder outputBuffer, int index) {
+        long endNanos = System.nanoTime() + ITERATION_NANOS;
+        while (System.nanoTime() < endNanos) {
+            // Busy iteration
+        }
+        outputBuffer.append(index).append(',');
+    }
+
+    private static String expectedOutput(int iterationsCount) {
+        StringBuilder expectedOutput = new StringBuilder();
+        for (int index = 0; index < iterationsCount; index++)
+            expectedOutput.append(index).append(',');
+        return expectedOutput.toString();
+    }
+
+    @Test
+    public void expand_ExpensiveLoopWithPool_ExpandedInParallelInOrder() throws Exception {
+        ForkJoinPool loopPool = new ForkJoinPool(4);
+        try {
+            KILoopExpander loopExpander = new KILoopExpander(loopPool);
+            loopExpander.expand(new StringBuilder(), 20, KILoopExpanderTest::renderExpensiveIteration, outputBuffer -> {
+            });
+            assertTrue(loopExpander.getParallelThreshold() < 1000);
+
+            Set<Thread> renderingThreads = ConcurrentHashMap.newKeySet();
+            StringBuilder output = new StringBuilder();
+            loopExpander.expand(output, 1000, (outputBuffer, index) -> {
+                renderingThreads.add(Thread.currentThread());
+                renderExpensiveIteration(outputBuffer, index);
+            }, outputBuffer -> {
+            });
+
+            assertTrue(output.toString().equals(expectedOutput(1000)));
+            assertTrue(!renderingThreads.contains(Thread.currentThread()));
+            assertTrue(renderingThreads.size() > 1);
+        } finally {
+            loopPool.shutdown();
+        }
+    }
+
+    @Test
+    public void expand_NoPool_ExpandedOnCallingThread() throws Exception {
+        KILoopExpander loopExpander = new KILoopExpander(null);
+        StringBuilder output = new StringBuilder();
+        loopExpander.expand(output, 100, KILoopExpanderTest::renderExpensiveIteration, outputBuffer -> {
+        });
+
+        assertTrue(output.toString().equals(expectedOutput(100)));
+        assertTrue(loopExpander.getIterationNanos() >= ITERATION_NANOS);
+        assertTrue(loopExpander.getParallelThreshold() == Integer.MAX_VALUE);
+    }
+
+    @Test(expected = NoSuchMethodException.class)
+    public void expand_IterationFailsInParallel_ExceptionRethrown() throws Exception {
+        ForkJoinPool loopPool = new ForkJoinPool(4);
+        try {
+            KILoopExpander loopExpander = new KILoopExpander(loopPool);
+            loopExpander.expand(new StringBuilder(), 20, KILoopExpanderTest::renderExpensiveIteration, outputBuffer -> {
+            });
+
+            loopExpander.expand(new StringBuilder(), 1000, (outputBuffer, index) -> {
+                if (index == 500)
+                    throw new NoSuchMethodException();
+                renderExpensiveIteration(outputBuffer, index);
+            }, outputBuffer -> {
+            });
+        } finally {
+            loopPool.shutdown();
+        }
+    }
+}
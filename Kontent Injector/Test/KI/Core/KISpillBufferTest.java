@@ -0,0 +1,74 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core;
+
+import org.junit.Test;
+
+import java.io.Reader;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Spill buffer unit tests
+ */
+public class KISpillBufferTest {
+
+    private static String readAll(KISpillBuffer spillBuffer) throws Exception {
+        StringBuilder text = new StringBuilder();
+        char[] readBuffer = new char[7];
+        int readCount;
+        try (Reader reader = spillBuffer.openReader()) {
+            while ((readCount = reader.read(readBuffer)) != -1)
+                text.append(readBuffer, 0, readCount);
+        }
+        return text.toString();
+    }
+
+    @Test
+    public void append_SurrogatePairSplitAcrossAppendsAfterSpill_PairRead() throws Exception {
+        KISpillBuffer spillBuffer = new KISpillBuffer(4);
+        try {
+            spillBuffer.append("Spilled text ");
+            assertTrue(spillBuffer.isSpilled());
+            spillBuffer.append('\ud83d');
+            spillBuffer.append(new char[]{'\ude00', '!'}, 0, 2);
+            assertTrue(readAll(spillBuffer).equals("Spilled text \ud83d\ude00!"));
+            assertTrue(spillBuffer.length() == 16);
+        } finally {
+            spillBuffer.clear();
+        }
+    }
+
+    @Test
+    public void clear_SpilledBuffer_BufferReusedInMemory() throws Exception {
+        KISpillBuffer spillBuffer = new KISpillBuffer(4);
+        spillBuffer.append("Spilled text");
+        spillBuffer.clear();
+        assertFalse(spillBuffer.isSpilled());
+        spillBuffer.append("abc");
+        assertTrue(readAll(spillBuffer).equals("abc"));
+    }
+}
@@ -24,8 +24,10 @@
 
 package KI.Core.KInjectors;
 
+import KI.Models.KIOutput.StringBuilderOutput;
 import KI.Models.KITemplateConfiguration;
 import Mocks.MockContentObject;
+import Mocks.MockNumericContentObject;
 import org.junit.Test;
 
 import static org.junit.Assert.assertFalse;
@@ -92,6 +94,65 @@ public class LoopKInjectorTest extends AbstractKInjectorsTest {
         assertTrue(expectedLine.equals(injectedLine));
     }
 
+    @Test
+    public void injectLoop_ExpansionAboveMemoryBudget_WrittenToOverflowOutput() throws Exception {
+        KITemplateConfiguration templateConfig = new KITemplateConfiguration();
+        templateConfig.setInjectionToken("*");
+        templateConfig.setLoopMemoryBudget(16);
+        initializeCache(templateConfig.getClassesConfigurations(), new Object[]{new MockContentObject()});
+        LoopKInjector injectionEngine = new LoopKInjector(templateConfig, injectionCache);
+        StringBuilder overflowHolder = new StringBuilder();
+
+        injectionEngine.inspectLine("This is how *LOOP*loop #*MockContentObject.methodReturnStringList* *ENDLOOP*injection is done!");
+        String injectedRest = injectionEngine.processInjection(new StringBuilderOutput(overflowHolder));
+        assertFalse(overflowHolder.length() == 0);
+        assertTrue((overflowHolder + injectedRest).equals("This is how loop #1 loop #2 loop #3 loop #Cool injection is done!"));
+    }
+
+    @Test
+    public void injectLoop_BlockAboveMemoryBudget_SpilledBlockInjected() throws Exception {
+        KITemplateConfiguration templateConfig = new KITemplateConfiguration();
+        templateConfig.setInjectionToken("*");
+        templateConfig.setLoopMemoryBudget(8);
+        initializeCache(templateConfig.getClassesConfigurations(), new Object[]{new MockContentObject()});
+        LoopKInjector injectionEngine = new LoopKInjector(templateConfig, injectionCache);
+        StringBuilder overflowHolder = new StringBuilder();
+
+        injectionEngine.inspectLine("This is how *LOOP*loop #*MockContentObject.methodReturnStringList*");
+        injectionEngine.inspectLine("*MockContentObject.methodReturnsString* *ENDLOOP*injection is done!");
+        String injectedRest = injectionEngine.processInjection(new StringBuilderOutput(overflowHolder));
+        String expectedLine = "This is how loop #1\nSTRING INJECTION loop #2\nSTRING INJECTION loop #3\nSTRING INJECTION loop #Cool\nSTRING INJECTION injection is done!";
+        assertTrue((overflowHolder + injectedRest).equals(expectedLine));
+        assertFalse(injectionEngine.isActive());
+    }
+
+    @Test
+    public void release_UnterminatedSpilledBlock_NotActive() throws Exception {
+        KITemplateConfiguration templateConfig = new KITemplateConfiguration();
+        templateConfig.setInjectionToken("*");
+        templateConfig.setLoopMemoryBudget(8);
+        initializeCache(templateConfig.getClassesConfigurations(), new Object[]{new MockContentObject()});
+        LoopKInjector injectionEngine = new LoopKInjector(templateConfig, injectionCache);
+
+        injectionEngine.inspectLine("This is how *LOOP*loop #*MockContentObject.methodReturnStringList*");
+        injectionEngine.inspectLine("is never ended");
+        injectionEngine.release();
+        assertFalse(injectionEngine.isActive());
+        assertFalse(injectionEngine.isReadyForProcessing());
+    }
+
+    @Test
+    public void injectLoop_PrimitiveArrays_ElementsInjected() throws Exception {
+        KITemplateConfiguration templateConfig = new KITemplateConfiguration();
+        templateConfig.setInjectionToken("*");
+        initializeCache(templateConfig.getClassesConfigurations(), new Object[]{new MockNumericContentObject()});
+        LoopKInjector injectionEngine = new LoopKInjector(templateConfig, injectionCache);
+
+        injectionEngine.inspectLine("Values:*LOOP* [*MockNumericContentObject.getCounts*|*MockNumericContentObject.getRatios*]*ENDLOOP*");
+        String injectedLine = startInjectionProcess(injectionEngine);
+        assertTrue(injectedLine.equals("Values: [1|0.5] [22|1.25] [333|]"));
+    }
+
     private String startInjectionProcess(LoopKInjector injectionEngine) throws ReflectiveOperationException {
         assertTrue(injectionEngine.isActive());
         assertTrue(injectionEngine.isReadyForProcessing());
@@ -25,7 +25,9 @@
 package KI.Core;
 
 import KI.Exceptions.InvalidInputException;
+import KI.Models.KIInput.StringChunkInput;
 import KI.Models.KIInput.StringInput;
+import KI.Models.KIOutput.IKIOutput;
 import KI.Models.KIOutput.StringBuilderOutput;
 import KI.Models.KITemplateConfiguration;
 import Mocks.MockContentObject;
@@ -95,4 +97,57 @@ public class KontentInjectorTest {
         assertTrue(injectionOutput.equals(getExpectedInjection()));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void injectStream() throws Exception {
+        KontentInjector injector = new KontentInjector(getTestTemplateConfig());
+        StringBuilder injectionHolder = new StringBuilder();
+        StringChunkInput input = new StringChunkInput(getTestTemplate());
+        StringBuilderOutput output = new StringBuilderOutput(injectionHolder);
+        injector.setStreamChunkSize(3);
+        injector.injectStream(input, output, new MockContentObject(), new MockContentObject2());
+        String expectedInjection = getExpectedInjection();
+        assertTrue(injectionHolder.toString().equals(expectedInjection.substring(0, expectedInjection.length() - 1)));
+    }
+
+    @Test
+    public void injectStream_LoopBodyAboveMemoryBudget_SameInjection() throws Exception {
+        KITemplateConfiguration templateConfig = getTestTemplateConfig();
+        templateConfig.setLoopMemoryBudget(4);
+        KontentInjector injector = new KontentInjector(templateConfig);
+        StringBuilder injectionHolder = new StringBuilder();
+        injector.setStreamChunkSize(3);
+        injector.injectStream(new StringChunkInput(getTestTemplate()), new StringBuilderOutput(injectionHolder),
+                new MockContentObject(), new MockContentObject2());
+        String expectedInjection = getExpectedInjection();
+        assertTrue(injectionHolder.toString().equals(expectedInjection.substring(0, expectedInjection.length() - 1)));
+    }
+
+    @Test
+    public void injectValuesPipelined() throws Exception {
+        KontentInjector injector = new KontentInjector(getTestTemplateConfig());
+        StringBuilder injectionHolder = new StringBuilder();
+        StringInput input = new StringInput(getTestTemplate());
+        StringBuilderOutput output = new StringBuilderOutput(injectionHolder);
+        injector.setPipelineBatchLines(2);
+        injector.injectValuesPipelined(input, output, new MockContentObject(), new MockContentObject2());
+        assertTrue(injectionHolder.toString().equals(getExpectedInjection()));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void injectValuesPipelined_OutputFails_ExceptionRethrown() throws Exception {
+        KontentInjector injector = new KontentInjector(getTestTemplateConfig());
+        IKIOutput output = new IKIOutput() {
+            @Override
+            public void writeLine(String outputLine) {
+                throw new IllegalStateException(outputLine);
+            }
+
+            @Override
+            public void handleOutputEnd() {
+            }
+        };
+        injector.setPipelineBatchLines(1);
+        injector.injectValuesPipelined(new StringInput(getTestTemplate()), output, new MockContentObject(), new MockContentObject2());
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Lexer;
+
+import KI.Models.KITemplateConfiguration;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Lexer unit tests
+ */
+public class KILexerTest {
+
+    @Test
+    public void lex_InjectionsAndLiterals_TokensSplit() {
+        KILexer lexer = new KILexer(new KITemplateConfiguration());
+        KILexedLine lexedLine = lexer.lex("Hello $%$Obj.name$%$, $%$Obj.age$%$!");
+
+        assertTrue(lexedLine.getTokensCount() == 5);
+        assertTrue(lexedLine.getTokenType(0) == KITokenType.LITERAL);
+        assertTrue(lexedLine.getTokenText(0).equals("Hello "));
+        assertTrue(lexedLine.getTokenType(1) == KITokenType.INJECTION);
+        assertTrue(lexedLine.getTokenClassAlias(1).equals("Obj"));
+        assertTrue(lexedLine.getTokenMethodAlias(1).equals("name"));
+        assertTrue(lexedLine.getTokenText(2).equals(", "));
+        assertTrue(lexedLine.getTokenText(3).equals("$%$Obj.age$%$"));
+        assertTrue(lexedLine.getTokenText(4).equals("!"));
+    }
+
+    @Test
+    public void lex_MalformedReference_ClosingTokenReopens() {
+        KILexer lexer = new KILexer(new KITemplateConfiguration());
+        KILexedLine lexedLine = lexer.lex("$%$ not a reference $%$Obj.name$%$");
+
+        assertTrue(lexedLine.getTokensCount() == 2);
+        assertTrue(lexedLine.getTokenText(0).equals("$%$ not a reference "));
+        assertTrue(lexedLine.getTokenType(1) == KITokenType.INJECTION);
+        assertTrue(lexedLine.getTokenText(1).equals("$%$Obj.name$%$"));
+    }
+
+    @Test
+    public void lex_LoopWords_LoopTokens() {
+        KILexer lexer = new KILexer(new KITemplateConfiguration());
+        KILexedLine lexedLine = lexer.lex("a$%$LOOP$%$$%$Obj.items$%$$%$ENDLOOP$%$b");
+
+        assertTrue(lexedLine.getTokensCount() == 5);
+        assertTrue(lexedLine.getTokenType(1) == KITokenType.LOOP_START);
+        assertTrue(lexedLine.getTokenType(2) == KITokenType.INJECTION);
+        assertTrue(lexedLine.getTokenType(3) == KITokenType.LOOP_END);
+        assertTrue(lexedLine.containsKeyword(KILexer.LOOP_START_FULL_WORD));
+        assertTrue(lexedLine.containsKeyword(KILexer.LOOP_END_WORD));
+    }
+
+    @Test
+    public void lex_DirectiveKeywords_FoundInSinglePass() {
+        KILexer lexer = new KILexer(new KITemplateConfiguration(), "#include", "#if");
+        KILexedLine lexedLine = lexer.lex("text #if something", new KILexedLine());
+
+        assertTrue(lexedLine.containsKeyword(lexer.getKeywordId("#if")));
+        assertFalse(lexedLine.containsKeyword(lexer.getKeywordId("#include")));
+        assertFalse(lexedLine.containsKeyword(KILexer.INJECTION_TOKEN));
+        assertFalse(lexedLine.containsKeyword(lexer.getKeywordId("#missing")));
+    }
+
+    @Test
+    public void lex_ReusedLexedLine_PreviousTokensCleared() {
+        KILexer lexer = new KILexer(new KITemplateConfiguration());
+        KILexedLine lexedLine = lexer.lex("$%$Obj.name$%$ $%$Obj.age$%$");
+        lexer.lex("plain text", lexedLine);
+
+        assertTrue(lexedLine.getTokensCount() == 1);
+        assertTrue(lexedLine.getTokenText(0).equals("plain text"));
+        assertFalse(lexedLine.containsKeyword(KILexer.INJECTION_TOKEN));
+    }
+}
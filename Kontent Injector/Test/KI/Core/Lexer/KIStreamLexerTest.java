@@ -0,0 +1,100 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Lexer;
+
+import KI.Models.KITemplateConfiguration;
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Stream lexer unit tests
+ */
+public class KIStreamLexerTest {
+
+    /**
+     * A token handler writing every token in a readable form
+     */
+    private static class RecordingTokenHandler implements IKIStreamTokenHandler {
+        private final StringBuilder tokens = new StringBuilder();
+        private int longestLiteral = 0;
+
+        @Override
+        public void handleLiteral(char[] literal, int offset, int length) {
+            tokens.append(literal, offset, length);
+            longestLiteral = Math.max(longestLiteral, length);
+        }
+
+        @Override
+        public void handleInjection(String injectionTemplate, String classAlias, String methodAlias) {
+            tokens.append('[').append(classAlias).append('|').append(methodAlias).append(']');
+        }
+
+        @Override
+        public void handleLoopStart(String loopStartWord) {
+            tokens.append("<");
+        }
+
+        @Override
+        public void handleLoopEnd(String loopEndWord) {
+            tokens.append(">");
+        }
+    }
+
+    private RecordingTokenHandler lexInChunks(String template, int chunkSize, int literalBufferSize) throws Exception {
+        RecordingTokenHandler tokenHandler = new RecordingTokenHandler();
+        KIStreamLexer streamLexer = new KIStreamLexer(new KITemplateConfiguration(), tokenHandler, literalBufferSize, 64);
+        char[] templateChars = template.toCharArray();
+        for (int i = 0; i < templateChars.length; i += chunkSize)
+            streamLexer.lex(templateChars, i, Math.min(chunkSize, templateChars.length - i));
+        streamLexer.finish();
+        return tokenHandler;
+    }
+
+    @Test
+    public void lex_TokensSplitAcrossChunks_TokensFound() throws Exception {
+        String template = "a $%$Obj.name$%$ b $%$LOOP$%$c$%$Obj.items$%$$%$ENDLOOP$%$ d";
+        for (int chunkSize = 1; chunkSize <= template.length(); chunkSize++) {
+            RecordingTokenHandler tokenHandler = lexInChunks(template, chunkSize, 4);
+            assertTrue(tokenHandler.tokens.toString().equals("a [Obj|name] b <c[Obj|items]> d"));
+        }
+    }
+
+    @Test
+    public void lex_MalformedAndUnterminatedReferences_Literals() throws Exception {
+        RecordingTokenHandler tokenHandler = lexInChunks("$%$ x $%$Obj.name$%$ $%$Obj.\nname$%$ end $%$", 5, 8);
+        assertTrue(tokenHandler.tokens.toString().equals("$%$ x [Obj|name] $%$Obj.\nname$%$ end $%$"));
+    }
+
+    @Test
+    public void lex_HugeLine_LiteralRunsBounded() throws Exception {
+        StringBuilder template = new StringBuilder();
+        for (int i = 0; i < 10000; i++)
+            template.append("text $%$Obj.name$%$ ");
+        RecordingTokenHandler tokenHandler = lexInChunks(template.toString(), 1000, 16);
+        assertTrue(tokenHandler.longestLiteral <= 16);
+        assertTrue(tokenHandler.tokens.toString().startsWith("text [Obj|name] text [Obj|name] "));
+    }
+}
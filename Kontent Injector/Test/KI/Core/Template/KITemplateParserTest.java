@@ -0,0 +1,98 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Template;
+
+import KI.Core.KontentInjector;
+import KI.Models.KIInput.StringInput;
+import KI.Models.KIOutput.StringBuilderOutput;
+import KI.Models.KITemplateConfiguration;
+import Mocks.MockContentObject;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Template parser includes unit tests
+ */
+public class KITemplateParserTest {
+
+    private KITemplateConfiguration getTestTemplateConfig(Map<String, String> partials) {
+        KITemplateConfiguration config = new KITemplateConfiguration();
+        config.setTemplateLoader(templateName -> partials.containsKey(templateName) ? new StringInput(partials.get(templateName)) : null);
+        return config;
+    }
+
+    @Test
+    public void compile_IncludedPartials_InlinedAndParsedOnce() throws Exception {
+        Map<String, String> partials = new HashMap<>();
+        partials.put("header", "<h1>$%$MockContentObject.methodReturnsString$%$</h1>\n  $%$INCLUDE:nav$%$");
+        partials.put("nav", "$%$LOOP$%$[$%$MockContentObject.methodReturnStringList$%$]$%$ENDLOOP$%$");
+        KITemplateConfiguration config = getTestTemplateConfig(partials);
+        KontentInjector kontentInjector = new KontentInjector(config);
+        StringBuilder firstOutput = new StringBuilder();
+        StringBuilder secondOutput = new StringBuilder();
+
+        kontentInjector.compile(new StringInput("$%$INCLUDE:header$%$\nbody"), MockContentObject.class)
+                .render(new StringBuilderOutput(firstOutput), new MockContentObject());
+        kontentInjector.compile(new StringInput("$%$INCLUDE:nav$%$"), MockContentObject.class)
+                .render(new StringBuilderOutput(secondOutput), new MockContentObject());
+
+        assertTrue(firstOutput.toString().equals("<h1>" + MockContentObject.EXPECTED_STRING_FROM_STRING + "</h1>\n[1][2][3][Cool]\nbody\n"));
+        assertTrue(secondOutput.toString().equals("[1][2][3][Cool]\n"));
+        assertTrue(config.getPartialsCache().size() == 2);
+    }
+
+    @Test
+    public void parse_CyclicIncludes_ExceptionThrown() {
+        Map<String, String> partials = new HashMap<>();
+        partials.put("a", "A\n$%$INCLUDE:b$%$");
+        partials.put("b", "$%$INCLUDE:a$%$");
+        String errorMessage = null;
+
+        try {
+            new KITemplateParser(getTestTemplateConfig(partials)).parse(new StringInput("$%$INCLUDE:a$%$"));
+        } catch (IllegalArgumentException e) {
+            errorMessage = e.getMessage();
+        }
+
+        assertTrue(errorMessage != null && errorMessage.endsWith("a -> b -> a"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parse_UnknownPartial_ExceptionThrown() {
+        new KITemplateParser(getTestTemplateConfig(new HashMap<>())).parse(new StringInput("$%$INCLUDE:missing$%$"));
+    }
+
+    @Test
+    public void parse_NoTemplateLoader_DirectiveKeptAsLiteral() {
+        KIParsedTemplate parsedTemplate = new KITemplateParser(new KITemplateConfiguration()).parse(new StringInput("$%$INCLUDE:header$%$"));
+
+        assertTrue(parsedTemplate.getSegments().size() == 1);
+        assertTrue(parsedTemplate.getSegments().get(0).getNodes().get(0).getSourceText().equals("$%$INCLUDE:header$%$"));
+    }
+}
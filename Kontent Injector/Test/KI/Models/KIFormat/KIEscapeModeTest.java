@@ -0,0 +1,86 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Models.KIFormat;
+
+import KI.Core.KontentInjector;
+import KI.Models.KIInput.StringInput;
+import KI.Models.KIOutput.StringBuilderOutput;
+import KI.Models.KITemplateConfiguration;
+import Mocks.MockContentObject;
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Escape modes unit tests
+ */
+public class KIEscapeModeTest {
+
+    private String escape(KIEscapeMode escapeMode, String value) {
+        StringBuilder outputBuffer = new StringBuilder();
+        escapeMode.escape(outputBuffer, value, 0, value.length());
+        return outputBuffer.toString();
+    }
+
+    @Test
+    public void escape_SpecialCharacters_Escaped() {
+        assertTrue(escape(KIEscapeMode.HTML, "<a href=\"x\">Tom & Jerry's</a>").equals("&lt;a href=&quot;x&quot;&gt;Tom &amp; Jerry&#39;s&lt;/a&gt;"));
+        assertTrue(escape(KIEscapeMode.XML, "it's").equals("it&apos;s"));
+        assertTrue(escape(KIEscapeMode.JSON, "say \"hi\"\\\n\u0001\u2028").equals("say \\\"hi\\\"\\\\\\n\\u0001\\u2028"));
+        assertTrue(escape(KIEscapeMode.CSV, "a,\"b\"").equals("\"a,\"\"b\"\"\""));
+        assertTrue(escape(KIEscapeMode.NONE, "<&>").equals("<&>"));
+    }
+
+    @Test
+    public void escape_NoSpecialCharacters_WrittenAsIs() {
+        for (KIEscapeMode escapeMode : KIEscapeMode.values())
+            assertTrue(escape(escapeMode, "plain text 123").equals("plain text 123"));
+    }
+
+    @Test
+    public void escapeAppended_FormattedValue_EscapedInPlace() {
+        StringBuilder outputBuffer = new StringBuilder("<td>");
+        outputBuffer.append("1 < 2");
+
+        KIEscapeMode.HTML.escapeAppended(outputBuffer, 4);
+
+        assertTrue(outputBuffer.toString().equals("<td>1 &lt; 2"));
+    }
+
+    @Test
+    public void injectValues_ReferenceEscapeMode_PrecedesTemplateEscapeMode() throws Exception {
+        KITemplateConfiguration templateConfig = new KITemplateConfiguration();
+        templateConfig.setEscapeMode(KIEscapeMode.HTML);
+        templateConfig.addFormatter("MockContentObject", "methodReturnsString", (value, outputBuffer) -> outputBuffer.append("<b>").append(value));
+        templateConfig.addFormatter("MockContentObject", "methodReturnsMockContentObject", (value, outputBuffer) -> outputBuffer.append("<i>").append(value));
+        templateConfig.setEscapeMode("MockContentObject", "methodReturnsMockContentObject", KIEscapeMode.NONE);
+        StringBuilder outputHolder = new StringBuilder();
+
+        new KontentInjector(templateConfig).injectValues(new StringInput("<p>$%$MockContentObject.methodReturnsString$%$</p>\n$%$MockContentObject.methodReturnsMockContentObject$%$"),
+                new StringBuilderOutput(outputHolder), new MockContentObject());
+
+        assertTrue(outputHolder.toString().equals("<p>&lt;b&gt;" + MockContentObject.EXPECTED_STRING_FROM_STRING + "</p>\n<i>" + MockContentObject.EXPECTED_STRING_FROM_OBJECT + "\n"));
+    }
+}
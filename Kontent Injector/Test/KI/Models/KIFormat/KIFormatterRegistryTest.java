@@ -0,0 +1,109 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Models.KIFormat;
+
+import KI.Core.KontentInjector;
+import KI.Models.KIInput.StringInput;
+import KI.Models.KIOutput.StringBuilderOutput;
+import KI.Models.KITemplateConfiguration;
+import Mocks.MockContentObject;
+import Mocks.MockNumericContentObject;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.temporal.Temporal;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Formatter registry and common formatters unit tests
+ */
+public class KIFormatterRegistryTest {
+
+    private String format(IKIValueFormatter<Number> formatter, double value) {
+        StringBuilder outputBuffer = new StringBuilder();
+        formatter.formatDouble(value, outputBuffer);
+        return outputBuffer.toString();
+    }
+
+    @Test
+    public void decimal_Doubles_RoundedToFractionDigits() {
+        IKIValueFormatter<Number> formatter = KIFormatters.decimal(2);
+
+        assertTrue(format(formatter, 1234.5).equals("1234.50"));
+        assertTrue(format(formatter, 0.004).equals("0.00"));
+        assertTrue(format(formatter, -0.004).equals("0.00"));
+        assertTrue(format(formatter, -7.126).equals("-7.13"));
+        assertTrue(format(formatter, 1.05).equals("1.05"));
+        assertTrue(format(KIFormatters.decimal(0), 2.5).equals("3"));
+        assertTrue(format(KIFormatters.decimal(2), 1.005).equals("1.01"));
+        assertTrue(format(KIFormatters.decimal(2), -1.005).equals("-1.01"));
+        assertTrue(format(KIFormatters.decimal(1), 0.15).equals("0.2"));
+        assertTrue(format(KIFormatters.decimal(2), 1.0049).equals("1.00"));
+        assertTrue(format(KIFormatters.decimal(3), 1e20).equals("100000000000000000000.000"));
+    }
+
+    @Test
+    public void appendValue_SupertypeFormatter_ClosestFormatterUsed() {
+        KIFormatterRegistry formatterRegistry = new KIFormatterRegistry();
+        formatterRegistry.addFormatter(Temporal.class, KIFormatters.dateTime("dd/MM/yyyy"));
+        formatterRegistry.addFormatter(Number.class, KIFormatters.decimal(1));
+        formatterRegistry.addFormatter(Integer.class, (value, outputBuffer) -> outputBuffer.append('#').append(value.intValue()));
+        StringBuilder outputBuffer = new StringBuilder();
+
+        formatterRegistry.appendValue(outputBuffer, LocalDate.of(2017, 3, 9), null);
+        formatterRegistry.appendValue(outputBuffer, ' ', null);
+        formatterRegistry.appendValue(outputBuffer, 7, null);
+        formatterRegistry.appendValue(outputBuffer, ' ', null);
+        formatterRegistry.appendLong(outputBuffer, 7L, null);
+
+        assertTrue(outputBuffer.toString().equals("09/03/2017 #7 7.0"));
+    }
+
+    @Test
+    public void injectValues_ReferenceFormatter_PrecedesTypeFormatter() throws Exception {
+        KITemplateConfiguration templateConfig = new KITemplateConfiguration();
+        templateConfig.addFormatter(String.class, (value, outputBuffer) -> outputBuffer.append(value.toLowerCase()));
+        templateConfig.addFormatter("MockContentObject", "methodReturnsString", (value, outputBuffer) -> outputBuffer.append('"').append(value).append('"'));
+        StringBuilder outputHolder = new StringBuilder();
+
+        new KontentInjector(templateConfig).injectValues(new StringInput("$%$MockContentObject.methodReturnsString$%$\n$%$LOOP$%$$%$MockContentObject.methodReturnStringList$%$$%$ENDLOOP$%$"),
+                new StringBuilderOutput(outputHolder), new MockContentObject());
+
+        assertTrue(outputHolder.toString().equals("\"" + MockContentObject.EXPECTED_STRING_FROM_STRING + "\"\n123cool\n"));
+    }
+
+    @Test
+    public void compile_DoubleFormatter_PrimitiveElementsFormatted() throws Exception {
+        KITemplateConfiguration templateConfig = new KITemplateConfiguration();
+        templateConfig.addFormatter(Double.class, KIFormatters.decimal(3));
+        StringBuilder outputHolder = new StringBuilder();
+
+        new KontentInjector(templateConfig).compile(new StringInput("$%$LOOP$%$$%$MockNumericContentObject.getRatios$%$;$%$ENDLOOP$%$"), MockNumericContentObject.class)
+                .render(new StringBuilderOutput(outputHolder), new MockNumericContentObject());
+
+        assertTrue(outputHolder.toString().equals("0.500;1.250;\n"));
+    }
+}
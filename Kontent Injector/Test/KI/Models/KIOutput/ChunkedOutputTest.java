@@ -0,0 +1,115 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Models.KIOutput;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Chunked output unit tests
+ */
+public class ChunkedOutputTest {
+
+    private static final String FIRST_LINE = "First line spanning several chunks";
+    private static final String SECOND_LINE = "Second line \u00e9\u00e8";
+    private static final String EXPECTED_OUTPUT = FIRST_LINE + "\n" + SECOND_LINE + "\n";
+
+    private ChunkedOutput createOutput(CharChunkPool chunkPool) {
+        ChunkedOutput output = new ChunkedOutput(chunkPool);
+        output.writeLine(FIRST_LINE);
+        output.writeLine(SECOND_LINE);
+        output.handleOutputEnd();
+        return output;
+    }
+
+    @Test
+    public void writeLine_SmallChunks_CharSequenceView() {
+        ChunkedOutput output = createOutput(new CharChunkPool(4, 16));
+        assertTrue(output.length() == EXPECTED_OUTPUT.length());
+        assertTrue(output.charAt(5) == EXPECTED_OUTPUT.charAt(5));
+        assertTrue(output.subSequence(3, 17).toString().equals(EXPECTED_OUTPUT.substring(3, 17)));
+        assertTrue(output.toString().equals(EXPECTED_OUTPUT));
+    }
+
+    @Test
+    public void openReader_SmallChunks_ReadsWholeOutput() throws Exception {
+        ChunkedOutput output = createOutput(new CharChunkPool(4, 16));
+        StringBuilder readOutput = new StringBuilder();
+        char[] buffer = new char[7];
+        int readLength;
+        try (Reader reader = output.openReader()) {
+            while ((readLength = reader.read(buffer, 0, buffer.length)) != -1)
+                readOutput.append(buffer, 0, readLength);
+        }
+        assertTrue(readOutput.toString().equals(EXPECTED_OUTPUT));
+    }
+
+    @Test
+    public void writeTo_WriterAndChannel_WholeOutput() throws Exception {
+        ChunkedOutput output = createOutput(new CharChunkPool(4, 16));
+
+        StringWriter writer = new StringWriter();
+        output.writeTo(writer);
+        assertTrue(writer.toString().equals(EXPECTED_OUTPUT));
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        output.writeTo(Channels.newChannel(outputStream), StandardCharsets.UTF_8);
+        assertTrue(new String(outputStream.toByteArray(), StandardCharsets.UTF_8).equals(EXPECTED_OUTPUT));
+    }
+
+    @Test
+    public void writeTo_SurrogatePairSplitBetweenChunks_PairEncoded() throws Exception {
+        String text = "abc\ud83d\ude00z";
+        ChunkedOutput output = new ChunkedOutput(new CharChunkPool(4, 16));
+        output.writeChunk(text.toCharArray(), 0, text.length());
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        output.writeTo(Channels.newChannel(outputStream), StandardCharsets.UTF_8);
+
+        assertTrue(output.toString().equals(text));
+        assertTrue(new String(outputStream.toByteArray(), StandardCharsets.UTF_8).equals(text));
+    }
+
+    @Test
+    public void release_ChunksReturnedToPool_Reused() {
+        CharChunkPool chunkPool = new CharChunkPool(4, 16);
+        char[] chunk = chunkPool.acquire();
+        chunkPool.release(chunk);
+        assertTrue(chunkPool.acquire() == chunk);
+
+        ChunkedOutput output = createOutput(chunkPool);
+        output.release();
+        assertTrue(output.length() == 0);
+        output.writeLine(FIRST_LINE);
+        assertTrue(output.toString().equals(FIRST_LINE + "\n"));
+    }
+}
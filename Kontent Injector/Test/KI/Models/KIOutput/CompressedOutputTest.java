@@ -0,0 +1,137 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Models.KIOutput;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compressed and parallel gzip outputs unit tests
+ */
+public class CompressedOutputTest {
+
+    private String writeLines(IKIChunkOutput output, int linesCount) {
+        StringBuilder expectedOutput = new StringBuilder();
+        for (int i = 0; i < linesCount; i++) {
+            String line = "Line " + i + " \u00e9";
+            output.writeLine(line);
+            expectedOutput.append(line).append(System.lineSeparator());
+        }
+        output.handleOutputEnd();
+        return expectedOutput.toString();
+    }
+
+    private String decompress(InputStream compressedStream) throws IOException {
+        ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int length;
+        while ((length = compressedStream.read(buffer)) != -1)
+            decompressed.write(buffer, 0, length);
+        return new String(decompressed.toByteArray(), UTF_8);
+    }
+
+    @Test
+    public void handleOutputEnd_GzipAndDeflate_Decompressed() throws Exception {
+        ByteArrayOutputStream gzipBytes = new ByteArrayOutputStream();
+        ByteArrayOutputStream deflateBytes = new ByteArrayOutputStream();
+
+        String expectedOutput = writeLines(new CompressedOutput(gzipBytes, KICompressionFormat.GZIP, Deflater.BEST_SPEED, UTF_8), 1000);
+        writeLines(new CompressedOutput(deflateBytes, KICompressionFormat.DEFLATE, Deflater.DEFAULT_COMPRESSION, UTF_8), 1000);
+
+        assertTrue(decompress(new GZIPInputStream(new ByteArrayInputStream(gzipBytes.toByteArray()))).equals(expectedOutput));
+        assertTrue(decompress(new InflaterInputStream(new ByteArrayInputStream(deflateBytes.toByteArray()))).equals(expectedOutput));
+        assertTrue(gzipBytes.size() < expectedOutput.length() / 2);
+    }
+
+    @Test
+    public void handleOutputEnd_ParallelBlocks_MembersDecompressedInOrder() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        ByteArrayOutputStream gzipBytes = new ByteArrayOutputStream();
+        try {
+            String expectedOutput = writeLines(new ParallelGzipOutput(gzipBytes, executor, Deflater.DEFAULT_COMPRESSION, 1000, UTF_8), 5000);
+
+            assertTrue(decompress(new GZIPInputStream(new ByteArrayInputStream(gzipBytes.toByteArray()))).equals(expectedOutput));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void handleOutputEnd_EmptyParallelOutput_ValidGzipStream() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        ByteArrayOutputStream gzipBytes = new ByteArrayOutputStream();
+        try {
+            new ParallelGzipOutput(gzipBytes, executor, Deflater.DEFAULT_COMPRESSION, ParallelGzipOutput.DEFAULT_BLOCK_SIZE, UTF_8).handleOutputEnd();
+
+            assertTrue(decompress(new GZIPInputStream(new ByteArrayInputStream(gzipBytes.toByteArray()))).isEmpty());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void abortOutput_ParallelBlocksPending_NothingWrittenStreamClosed() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CountDownLatch blockedExecutor = new CountDownLatch(1);
+        boolean[] isClosed = new boolean[1];
+        ByteArrayOutputStream gzipBytes = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                isClosed[0] = true;
+            }
+        };
+        try {
+            executor.submit(() -> {
+                blockedExecutor.await();
+                return null;
+            });
+            ParallelGzipOutput output = new ParallelGzipOutput(gzipBytes, executor, Deflater.DEFAULT_COMPRESSION, 1000, UTF_8);
+            for (int i = 0; i < 300; i++)
+                output.writeLine("Line " + i);
+            output.abortOutput();
+        } finally {
+            blockedExecutor.countDown();
+            executor.shutdown();
+        }
+
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertTrue(isClosed[0]);
+        assertTrue(gzipBytes.size() == 0);
+    }
+}
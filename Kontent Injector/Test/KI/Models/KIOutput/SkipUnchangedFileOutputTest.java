@@ -0,0 +1,183 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Models.KIOutput;
+
+import KI.Core.Compiler.IKITemplateRenderer;
+import KI.Core.KontentInjector;
+import KI.Models.KIInput.StringInput;
+import Mocks.MockMutableContentObject;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Skip unchanged file output and hash manifest unit tests
+ */
+public class SkipUnchangedFileOutputTest {
+
+    private static final long OLD_MODIFICATION_TIME = 1000000000000L;
+
+    private boolean writeFile(File outputFile, KIHashManifest hashManifest, String... lines) throws Exception {
+        SkipUnchangedFileOutput output = new SkipUnchangedFileOutput(outputFile, hashManifest);
+        for (String line : lines)
+            output.writeLine(line);
+        output.handleOutputEnd();
+        return output.isFileReplaced();
+    }
+
+    @Test
+    public void handleOutputEnd_SameContent_FileNotModified() throws Exception {
+        File outputFile = Files.createTempDirectory("kontent-injector-output").resolve("output.txt").toFile();
+        FileOutput fileOutput = new FileOutput(outputFile);
+        fileOutput.writeLine("First line");
+        fileOutput.writeLine("Second line");
+        fileOutput.handleOutputEnd();
+        assertTrue(outputFile.setLastModified(OLD_MODIFICATION_TIME));
+
+        boolean isFileReplaced = writeFile(outputFile, null, "First line", "Second line");
+
+        assertTrue(!isFileReplaced);
+        assertTrue(outputFile.lastModified() == OLD_MODIFICATION_TIME);
+        assertTrue(outputFile.getParentFile().list().length == 1);
+    }
+
+    @Test
+    public void handleOutputEnd_LoneSurrogateWrittenByFileOutput_FileNotModified() throws Exception {
+        File outputFile = Files.createTempDirectory("kontent-injector-output").resolve("output.txt").toFile();
+        FileOutput fileOutput = new FileOutput(outputFile);
+        fileOutput.writeLine("Lone \ud83d surrogate");
+        fileOutput.handleOutputEnd();
+        assertTrue(outputFile.setLastModified(OLD_MODIFICATION_TIME));
+
+        assertTrue(!writeFile(outputFile, null, "Lone \ud83d surrogate"));
+        assertTrue(outputFile.lastModified() == OLD_MODIFICATION_TIME);
+    }
+
+    @Test
+    public void handleOutputEnd_LineBreaksInChunksWrittenByFileOutput_FileNotModified() throws Exception {
+        File outputFile = Files.createTempDirectory("kontent-injector-output").resolve("output.txt").toFile();
+        FileOutput fileOutput = new FileOutput(outputFile);
+        fileOutput.writeChunk("First line\nSecond ");
+        fileOutput.writeChunk("line\n".toCharArray(), 0, 5);
+        fileOutput.handleOutputEnd();
+        assertTrue(outputFile.setLastModified(OLD_MODIFICATION_TIME));
+
+        assertTrue(!writeFile(outputFile, null, "First line", "Second line"));
+        assertTrue(outputFile.lastModified() == OLD_MODIFICATION_TIME);
+    }
+
+    @Test
+    public void handleOutputEnd_DifferentContent_FileReplaced() throws Exception {
+        Path outputDirectory = Files.createTempDirectory("kontent-injector-output");
+        File outputFile = outputDirectory.resolve("output.txt").toFile();
+
+        assertTrue(writeFile(outputFile, null, "First line", "Second line"));
+        assertTrue(writeFile(outputFile, null, "First line", "Changed line"));
+        assertTrue(Files.readAllLines(outputFile.toPath(), Charset.defaultCharset()).equals(Arrays.asList("First line", "Changed line")));
+        assertTrue(writeFile(outputFile, null, "First line"));
+        assertTrue(Files.readAllLines(outputFile.toPath(), Charset.defaultCharset()).equals(Arrays.asList("First line")));
+        assertTrue(outputDirectory.toFile().list().length == 1);
+    }
+
+    @Test
+    public void handleOutputEnd_LateDifference_MatchedPrefixKept() throws Exception {
+        File outputFile = Files.createTempDirectory("kontent-injector-output").resolve("output.txt").toFile();
+        String[] lines = new String[5000];
+        Arrays.fill(lines, "Repeated line");
+        assertTrue(writeFile(outputFile, null, lines));
+
+        lines[4000] = "Changed line";
+        assertTrue(writeFile(outputFile, null, lines));
+
+        assertTrue(Files.readAllLines(outputFile.toPath(), Charset.defaultCharset()).equals(Arrays.asList(lines)));
+    }
+
+    @Test
+    public void handleOutputEnd_HashManifest_ComparedWithRecordedDigest() throws Exception {
+        Path outputDirectory = Files.createTempDirectory("kontent-injector-output");
+        Path manifestPath = outputDirectory.resolve("manifest.sha256");
+        File outputFile = outputDirectory.resolve("output.txt").toFile();
+        KIHashManifest hashManifest = new KIHashManifest(manifestPath);
+
+        assertTrue(writeFile(outputFile, hashManifest, "First line"));
+        hashManifest.save();
+        assertTrue(outputFile.setLastModified(OLD_MODIFICATION_TIME));
+        KIHashManifest loadedManifest = new KIHashManifest(manifestPath);
+
+        assertTrue(loadedManifest.size() == 1);
+        assertTrue(!writeFile(outputFile, loadedManifest, "First line"));
+        assertTrue(outputFile.lastModified() == OLD_MODIFICATION_TIME);
+        assertTrue(writeFile(outputFile, loadedManifest, "Changed line"));
+        assertTrue(Files.readAllLines(outputFile.toPath(), Charset.defaultCharset()).equals(Arrays.asList("Changed line")));
+    }
+
+    @Test
+    public void abortOutput_RenderFailsAfterDivergence_TemporaryFileDeleted() throws Exception {
+        Path outputDirectory = Files.createTempDirectory("kontent-injector-output");
+        File outputFile = outputDirectory.resolve("output.txt").toFile();
+        IKITemplateRenderer template = new KontentInjector().compile(new StringInput(String.join("\n",
+                Collections.nCopies(2000, "Repeated line")) + "\n$%$MockMutableContentObject.getFailingValue$%$"), MockMutableContentObject.class);
+        SkipUnchangedFileOutput output = new SkipUnchangedFileOutput(outputFile, null);
+
+        boolean isRenderFailed = false;
+        try {
+            template.render(output, new MockMutableContentObject());
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            isRenderFailed = true;
+        }
+
+        assertTrue(isRenderFailed);
+        assertTrue(outputDirectory.toFile().list().length == 0);
+    }
+
+    @Test
+    public void handleOutputEnd_HashManifestLargeUnchangedFile_NothingWritten() throws Exception {
+        Path outputDirectory = Files.createTempDirectory("kontent-injector-output");
+        File outputFile = outputDirectory.resolve("output.txt").toFile();
+        String[] lines = new String[10000];
+        Arrays.fill(lines, "Repeated line");
+        assertTrue(writeFile(outputFile, null, lines));
+        assertTrue(outputFile.setLastModified(OLD_MODIFICATION_TIME));
+
+        SkipUnchangedFileOutput output = new SkipUnchangedFileOutput(outputFile, new KIHashManifest(outputDirectory.resolve("manifest.sha256")));
+        for (String line : lines)
+            output.writeLine(line);
+        assertTrue(outputDirectory.toFile().list().length == 1);
+        output.handleOutputEnd();
+
+        assertTrue(!output.isFileReplaced());
+        assertTrue(outputFile.lastModified() == OLD_MODIFICATION_TIME);
+        lines[9000] = "Changed line";
+        assertTrue(writeFile(outputFile, new KIHashManifest(outputDirectory.resolve("manifest.sha256")), lines));
+        assertTrue(Files.readAllLines(outputFile.toPath(), Charset.defaultCharset()).equals(Arrays.asList(lines)));
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Models.KIOutput;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Stream output unit tests
+ */
+public class StreamOutputTest {
+
+    @Test
+    public void writeChunk_LineFeedsInChunks_WrittenAsLineSeparator() {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        StreamOutput output = new StreamOutput(outputStream, StandardCharsets.UTF_8, "\r\n");
+        output.writeChunk("First\nSecond\r");
+        output.writeChunk("\nThird\n".toCharArray(), 0, 7);
+        output.writeLine("Fourth");
+        output.writeChunk("\n");
+        output.handleOutputEnd();
+
+        String writtenOutput = new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+        assertTrue(writtenOutput.equals("First\r\nSecond\r\nThird\r\nFourth\r\n\r\n"));
+    }
+
+    @Test
+    public void writeChunk_LineFeedSeparator_ChunksWrittenAsIs() {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        StreamOutput output = new StreamOutput(outputStream, StandardCharsets.UTF_8, "\n");
+        output.writeChunk("First\r\nSecond\n");
+        output.writeLine("Third");
+        output.handleOutputEnd();
+
+        String writtenOutput = new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+        assertTrue(writtenOutput.equals("First\r\nSecond\nThird\n"));
+    }
+}
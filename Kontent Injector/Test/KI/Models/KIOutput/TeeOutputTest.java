@@ -0,0 +1,135 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Models.KIOutput;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tee, digest and async outputs unit tests
+ */
+public class TeeOutputTest {
+
+    private static final String FIRST_LINE = "First line \ud83d\ude00 with a surrogate pair";
+    private static final String EXPECTED_OUTPUT = FIRST_LINE + "\nSecond line\n";
+
+    private void writeOutput(IKIChunkOutput output) {
+        output.writeLine(FIRST_LINE);
+        char[] secondLine = "Second line\n".toCharArray();
+        output.writeChunk(secondLine, 0, 4);
+        output.writeChunk(secondLine, 4, secondLine.length - 4);
+        output.handleOutputEnd();
+    }
+
+    @Test
+    public void writeLine_SeveralOutputs_AllWritten() throws Exception {
+        StringBuilder directHolder = new StringBuilder();
+        StringBuilder asyncHolder = new StringBuilder();
+        DigestOutput digestOutput = new DigestOutput(DigestOutput.DEFAULT_ALGORITHM, UTF_8, "\n");
+        writeOutput(new TeeOutput(new StringBuilderOutput(directHolder), digestOutput, new AsyncOutput(new StringBuilderOutput(asyncHolder), 1)));
+
+        assertTrue(directHolder.toString().equals(EXPECTED_OUTPUT));
+        assertTrue(asyncHolder.toString().equals(EXPECTED_OUTPUT));
+        assertTrue(Arrays.equals(digestOutput.getDigest(), MessageDigest.getInstance("SHA-256").digest(EXPECTED_OUTPUT.getBytes(UTF_8))));
+    }
+
+    @Test
+    public void writeChunk_SurrogatePairSplitAcrossChunks_SameDigest() throws Exception {
+        DigestOutput digestOutput = new DigestOutput();
+        char[] text = FIRST_LINE.toCharArray();
+        int splitIndex = FIRST_LINE.indexOf('\ud83d') + 1;
+        digestOutput.writeChunk(text, 0, splitIndex);
+        digestOutput.writeChunk(text, splitIndex, text.length - splitIndex);
+        digestOutput.handleOutputEnd();
+
+        DigestOutput expectedDigestOutput = new DigestOutput();
+        expectedDigestOutput.writeChunk(FIRST_LINE);
+        expectedDigestOutput.handleOutputEnd();
+        assertTrue(digestOutput.getHexDigest().equals(expectedDigestOutput.getHexDigest()));
+        assertTrue(digestOutput.getHexDigest().length() == 64);
+    }
+
+    @Test
+    public void getDigest_DefaultDigestOutput_SameDigestAsFileOutput() throws Exception {
+        DigestOutput digestOutput = new DigestOutput();
+        writeOutput(digestOutput);
+        File outputFile = Files.createTempDirectory("kontent-injector-output").resolve("output.txt").toFile();
+        writeOutput(new FileOutput(outputFile));
+
+        assertTrue(Arrays.equals(digestOutput.getDigest(), MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(outputFile.toPath()))));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void handleOutputEnd_FailingAsyncOutput_FailureThrown() {
+        IKIOutput failingOutput = new IKIOutput() {
+            @Override
+            public void writeLine(String outputLine) {
+                throw new IllegalStateException();
+            }
+
+            @Override
+            public void handleOutputEnd() {
+            }
+        };
+        AsyncOutput asyncOutput = new AsyncOutput(failingOutput);
+        asyncOutput.writeLine("line");
+        asyncOutput.handleOutputEnd();
+    }
+
+    @Test
+    public void abortOutput_AsyncOutputInTee_WrappedOutputAbortedNotEnded() {
+        boolean[] isAborted = new boolean[1];
+        boolean[] isEnded = new boolean[1];
+        IKIOutput abortableOutput = new IKIOutput() {
+            @Override
+            public void writeLine(String outputLine) {
+            }
+
+            @Override
+            public void handleOutputEnd() {
+                isEnded[0] = true;
+            }
+
+            @Override
+            public void abortOutput() {
+                isAborted[0] = true;
+            }
+        };
+        AsyncOutput asyncOutput = new AsyncOutput(abortableOutput, 1);
+        TeeOutput teeOutput = new TeeOutput(new StringBuilderOutput(new StringBuilder()), asyncOutput);
+        teeOutput.writeLine(FIRST_LINE);
+        teeOutput.abortOutput();
+
+        assertTrue(isAborted[0]);
+        assertTrue(!isEnded[0]);
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Service;
+
+import KI.Core.KontentInjector;
+import KI.Models.KIInput.StringInput;
+import Mocks.MockContentObject;
+import Mocks.MockMutableContentObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.zip.GZIPInputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Render service unit tests, against a service listening to a local port
+ */
+public class KIRenderServiceTest {
+
+    private KIRenderService renderService;
+
+    @Before
+    public void startService() throws Exception {
+        renderService = new KIRenderService(new InetSocketAddress("localhost", 0));
+        renderService.registerTemplate("greeting",
+                new KontentInjector().compile(new StringInput("Hello $%$MockContentObject.methodReturnsString$%$"), MockContentObject.class),
+                "text/plain", exchange -> {
+                    if (KIRenderService.getQueryParameters(exchange).containsKey("invalid"))
+                        throw new IllegalArgumentException("Invalid request");
+                    return new Object[]{new MockContentObject()};
+                });
+        renderService.registerTemplate("failing",
+                new KontentInjector().compile(new StringInput("Hello\n$%$MockMutableContentObject.getFailingValue$%$"), MockMutableContentObject.class),
+                "text/plain", exchange -> new Object[]{new MockMutableContentObject()});
+        renderService.start();
+    }
+
+    @After
+    public void stopService() {
+        renderService.stop(0);
+    }
+
+    private HttpURLConnection request(String path) throws IOException {
+        return (HttpURLConnection) new URL("http://localhost:" + renderService.getPort() + path).openConnection();
+    }
+
+    private String readBody(InputStream bodyStream) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int length;
+        try (InputStream stream = bodyStream) {
+            while ((length = stream.read(buffer)) != -1)
+                body.write(buffer, 0, length);
+        }
+        return new String(body.toByteArray(), UTF_8);
+    }
+
+    private KIRenderServiceStats awaitStats(long requestsCount) throws InterruptedException {
+        KIRenderServiceStats stats = renderService.getStats();
+        for (int i = 0; i < 100 && stats.getRenderedCount() + stats.getFailedCount() + stats.getNotFoundCount() < requestsCount; i++) {
+            Thread.sleep(20);
+            stats = renderService.getStats();
+        }
+        return stats;
+    }
+
+    @Test
+    public void render_RegisteredTemplate_RenderedIntoResponse() throws Exception {
+        HttpURLConnection plainConnection = request("/render/greeting");
+        HttpURLConnection gzipConnection = request("/render/greeting");
+        gzipConnection.setRequestProperty("Accept-Encoding", "gzip");
+
+        assertTrue(readBody(plainConnection.getInputStream()).equals("Hello " + MockContentObject.EXPECTED_STRING_FROM_STRING + "\n"));
+        assertTrue("gzip".equals(gzipConnection.getHeaderField("Content-Encoding")));
+        assertTrue(readBody(new GZIPInputStream(gzipConnection.getInputStream())).equals("Hello " + MockContentObject.EXPECTED_STRING_FROM_STRING + "\n"));
+    }
+
+    @Test
+    public void render_UnknownTemplateOrInvalidRequest_ErrorStatusAndStats() throws Exception {
+        assertTrue(request("/render/missing").getResponseCode() == 404);
+        assertTrue(request("/render/greeting?invalid").getResponseCode() == 400);
+        assertTrue(request("/render/greeting").getResponseCode() == 200);
+
+        KIRenderServiceStats stats = awaitStats(3);
+        assertTrue(stats.getRenderedCount() == 1 && stats.getFailedCount() == 1 && stats.getNotFoundCount() == 1);
+        assertTrue(stats.getLatencyPercentileMillis(99) <= stats.getMaxLatencyMillis());
+        assertTrue(readBody(request("/stats").getInputStream()).startsWith("{\"rendered\":1,\"failed\":1,\"notFound\":1,"));
+    }
+
+    @Test(expected = IOException.class)
+    public void render_RenderFailsAfterHeaders_ResponseBroken() throws Exception {
+        HttpURLConnection connection = request("/render/failing");
+        assertTrue(connection.getResponseCode() == 200);
+        readBody(connection.getInputStream());
+    }
+
+    @Test(expected = IOException.class)
+    public void render_CompressedRenderFailsAfterHeaders_ResponseBroken() throws Exception {
+        HttpURLConnection connection = request("/render/failing");
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+        readBody(new GZIPInputStream(connection.getInputStream()));
+    }
+}
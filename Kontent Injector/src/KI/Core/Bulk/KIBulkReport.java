@@ -0,0 +1,144 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Bulk;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The bulk report is a snapshot of a bulk run's progress: the number of generated, unchanged and failed files,
+ * the elapsed time, and the failures of the records that couldn't be generated
+ */
+public class KIBulkReport {
+
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    /**
+     * The failure of a single record
+     */
+    public static class RecordFailure {
+        private final long recordIndex;
+        private final Throwable cause;
+
+        RecordFailure(long recordIndex, Throwable cause) {
+            this.recordIndex = recordIndex;
+            this.cause = cause;
+        }
+
+        /**
+         * Get the index of the failed record, in the order the records were provided
+         *
+         * @return The record's index
+         */
+        public long getRecordIndex() {
+            return recordIndex;
+        }
+
+        /**
+         * Get the failure's cause
+         *
+         * @return The exception thrown while generating the record's file
+         */
+        public Throwable getCause() {
+            return cause;
+        }
+    }
+
+    private final long generatedCount;
+    private final long unchangedCount;
+    private final long failedCount;
+    private final long elapsedNanos;
+    private final List<RecordFailure> failures;
+
+    KIBulkReport(long generatedCount, long unchangedCount, long failedCount, long elapsedNanos, List<RecordFailure> failures) {
+        this.generatedCount = generatedCount;
+        this.unchangedCount = unchangedCount;
+        this.failedCount = failedCount;
+        this.elapsedNanos = elapsedNanos;
+        this.failures = Collections.unmodifiableList(failures);
+    }
+
+    /**
+     * Get the number of files generated successfully
+     *
+     * @return The number of generated files
+     */
+    public long getGeneratedCount() {
+        return generatedCount;
+    }
+
+    /**
+     * Get the number of generated files that were kept unchanged, as their content didn't change
+     * (only counted if the run skips unchanged files)
+     *
+     * @return The number of unchanged files
+     */
+    public long getUnchangedCount() {
+        return unchangedCount;
+    }
+
+    /**
+     * Get the number of records whose files couldn't be generated
+     *
+     * @return The number of failed records
+     */
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    /**
+     * Get the time elapsed since the run started
+     *
+     * @return The elapsed time in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Get the number of processed records (generated or failed) per second
+     *
+     * @return The throughput in records per second
+     */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : (generatedCount + failedCount) * NANOS_PER_SECOND / elapsedNanos;
+    }
+
+    /**
+     * Get the failures of the records, up to the run's maximum reported failures
+     *
+     * @return The records' failures
+     */
+    public List<RecordFailure> getFailures() {
+        return failures;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "Generated %d files (%d unchanged, %d failed) in %.3f s, %.1f records/s",
+                generatedCount, unchangedCount, failedCount, elapsedNanos / NANOS_PER_SECOND, getThroughput());
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Bulk;
+
+import KI.Core.Compiler.IKITemplateRenderer;
+import KI.Core.KontentInjector;
+import KI.Models.KIInput.IKIInput;
+import KI.Models.KIInput.StringInput;
+import KI.Models.KIOutput.FileOutput;
+import KI.Models.KIOutput.KIHashManifest;
+import KI.Models.KIOutput.SkipUnchangedFileOutput;
+import KI.Models.KIOutput.StringBuilderOutput;
+import KI.Models.KITemplateConfiguration;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The bulk runner generates a file for every record of a data set, using one template.
+ * Every record is a tuple of content objects, and the path of its file is generated from a path pattern
+ * that is a template itself (e.g. "out/$%$Customer.getId$%$.html").
+ * <p>
+ * The template and the path pattern are compiled once, and the records are rendered by a pool of workers.
+ * The number of records read ahead of the workers is bounded, so data sets larger than the memory could be used.
+ * A record that fails doesn't stop the run, it's reported in the run's report.
+ * <p>
+ * Every run keeps its own progress, so a runner could be used by several runs at once
+ */
+public class KIBulkRunner {
+
+    public static final int DEFAULT_MAX_IN_FLIGHT_PER_WORKER = 4;
+    public static final int DEFAULT_PROGRESS_INTERVAL = 1000;
+    public static final int DEFAULT_MAX_REPORTED_FAILURES = 100;
+
+    private static final String WORKER_THREAD_NAME = "kontent-injector-bulk-worker";
+
+    private final IKITemplateRenderer template;
+    private final IKITemplateRenderer pathPattern;
+    private int workersCount = Runtime.getRuntime().availableProcessors();
+    private int maxInFlight = workersCount * DEFAULT_MAX_IN_FLIGHT_PER_WORKER;
+    private int maxReportedFailures = DEFAULT_MAX_REPORTED_FAILURES;
+    private IKIBulkProgressListener progressListener;
+    private int progressInterval = DEFAULT_PROGRESS_INTERVAL;
+    private boolean skipUnchanged = false;
+    private KIHashManifest hashManifest;
+
+    private final Object progressLock = new Object();
+
+    /**
+     * The progress of a single run
+     */
+    private static class RunProgress {
+        private final AtomicLong generatedCount = new AtomicLong();
+        private final AtomicLong unchangedCount = new AtomicLong();
+        private final AtomicLong failedCount = new AtomicLong();
+        private final AtomicLong processedCount = new AtomicLong();
+        private final List<KIBulkReport.RecordFailure> failures = new ArrayList<>();
+        private final long startNanos = System.nanoTime();
+
+        /**
+         * Create a snapshot of the run's progress
+         *
+         * @return The progress report
+         */
+        private KIBulkReport createReport() {
+            synchronized (failures) {
+                return new KIBulkReport(generatedCount.get(), unchangedCount.get(), failedCount.get(), System.nanoTime() - startNanos, new ArrayList<>(failures));
+            }
+        }
+    }
+
+    /**
+     * Construct a bulk runner, compiling the template and the path pattern
+     *
+     * @param templateConfig The configuration of the template and the path pattern
+     * @param inputMethod    Used to provide the template
+     * @param pathPattern    The template of the generated files' paths
+     * @param contentClasses The classes of the content objects of every record
+     * @throws ReflectiveOperationException An UnresolvedReferenceException is thrown holding all the references to classes or methods
+     *                                      that do not exist, before anything is generated
+     */
+    public KIBulkRunner(KITemplateConfiguration templateConfig, IKIInput inputMethod, String pathPattern, Class<?>... contentClasses) throws ReflectiveOperationException {
+        KontentInjector kontentInjector = new KontentInjector(templateConfig);
+        this.template = kontentInjector.compile(inputMethod, contentClasses);
+        this.pathPattern = kontentInjector.compile(new StringInput(pathPattern), contentClasses);
+    }
+
+    /**
+     * Set the number of workers rendering the records
+     *
+     * @param workersCount The number of workers (Default: The number of available processors)
+     */
+    public void setWorkersCount(int workersCount) {
+        this.workersCount = workersCount;
+    }
+
+    /**
+     * Set the maximum number of records read and not yet generated
+     *
+     * @param maxInFlight The maximum number of records in flight (Default: DEFAULT_MAX_IN_FLIGHT_PER_WORKER for every available processor)
+     */
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Set the maximum number of failures kept in the report, the failures beyond it are only counted
+     *
+     * @param maxReportedFailures The maximum number of reported failures (Default: DEFAULT_MAX_REPORTED_FAILURES)
+     */
+    public void setMaxReportedFailures(int maxReportedFailures) {
+        this.maxReportedFailures = maxReportedFailures;
+    }
+
+    /**
+     * Set the listener following the run's progress
+     *
+     * @param progressListener The progress listener
+     * @param progressInterval The number of processed records between two progress reports
+     */
+    public void setProgressListener(IKIBulkProgressListener progressListener, int progressInterval) {
+        this.progressListener = progressListener;
+        this.progressInterval = progressInterval;
+    }
+
+    /**
+     * Keep the files whose content didn't change untouched, comparing every generated file with the existing file
+     *
+     * @param skipUnchanged Skip writing unchanged files (Default: false)
+     */
+    public void setSkipUnchanged(boolean skipUnchanged) {
+        this.skipUnchanged = skipUnchanged;
+    }
+
+    /**
+     * Keep the files whose content didn't change untouched, comparing every generated file's digest with its
+     * digest recorded in a hash manifest instead of reading the file. The manifest is updated with the digests
+     * of the replaced files, and it should be saved once the run ends
+     *
+     * @param hashManifest The hash manifest, or null to stop using a hash manifest
+     */
+    public void setHashManifest(KIHashManifest hashManifest) {
+        this.hashManifest = hashManifest;
+        this.skipUnchanged = hashManifest != null || skipUnchanged;
+    }
+
+    /**
+     * Generate a file for every record, waiting for all the files to be generated.
+     * If the run stops early (the records fail or the current thread is interrupted), the records already in flight
+     * are still awaited, so no file is written once the run returns
+     *
+     * @param records The records, every record holds the content objects of a file
+     * @return The run's report
+     * @throws InterruptedException An exception is thrown if the current thread was interrupted, the remaining records are not generated
+     *                              and the workers are interrupted
+     */
+    public KIBulkReport run(Iterator<Object[]> records) throws InterruptedException {
+        RunProgress runProgress = new RunProgress();
+        ExecutorService workers = Executors.newFixedThreadPool(workersCount, runnable -> {
+            Thread workerThread = new Thread(runnable, WORKER_THREAD_NAME);
+            workerThread.setDaemon(true);
+            return workerThread;
+        });
+        Semaphore inFlightPermits = new Semaphore(maxInFlight);
+        long recordIndex = 0;
+
+        try {
+            while (records.hasNext()) {
+                Object[] contentObjects = records.next();
+                long currentRecordIndex = recordIndex++;
+                inFlightPermits.acquire();
+                workers.execute(() -> {
+                    try {
+                        generateFile(runProgress, currentRecordIndex, contentObjects);
+                    } finally {
+                        inFlightPermits.release();
+                    }
+                });
+            }
+        } finally {
+            workers.shutdown();
+            awaitWorkers(workers);
+        }
+
+        if (Thread.interrupted())
+            throw new InterruptedException();
+        KIBulkReport report = runProgress.createReport();
+        if (progressListener != null) {
+            synchronized (progressLock) {
+                progressListener.onProgress(report, true);
+            }
+        }
+        return report;
+    }
+
+    /**
+     * Wait for the workers to finish the records in flight. If the current thread is interrupted, the workers are
+     * interrupted and still awaited, then the current thread's interrupt status is restored
+     *
+     * @param workers The shut down workers
+     */
+    private static void awaitWorkers(ExecutorService workers) {
+        boolean isInterrupted = false;
+        while (true) {
+            try {
+                if (workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS))
+                    break;
+            } catch (InterruptedException e) {
+                isInterrupted = true;
+                workers.shutdownNow();
+            }
+        }
+        if (isInterrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Render a record's file, recording its failure if any
+     *
+     * @param runProgress    The progress of the record's run
+     * @param recordIndex    The record's index
+     * @param contentObjects The record's content objects
+     */
+    private void generateFile(RunProgress runProgress, long recordIndex, Object[] contentObjects) {
+        try {
+            StringBuilder filePath = new StringBuilder();
+            pathPattern.render(new StringBuilderOutput(filePath), contentObjects);
+            Path outputPath = Paths.get(filePath.toString().trim());
+            if (outputPath.getParent() != null)
+                Files.createDirectories(outputPath.getParent());
+
+            if (skipUnchanged) {
+                SkipUnchangedFileOutput fileOutput = new SkipUnchangedFileOutput(outputPath.toFile(), hashManifest);
+                template.render(fileOutput, contentObjects);
+                if (!fileOutput.isFileReplaced())
+                    runProgress.unchangedCount.incrementAndGet();
+            } else {
+                FileOutput fileOutput = new FileOutput(outputPath.toFile());
+                try {
+                    template.render(fileOutput, contentObjects);
+                } catch (Exception e) {
+                    Files.deleteIfExists(outputPath);
+                    throw e;
+                }
+            }
+            runProgress.generatedCount.incrementAndGet();
+        } catch (Exception e) {
+            runProgress.failedCount.incrementAndGet();
+            synchronized (runProgress.failures) {
+                if (runProgress.failures.size() < maxReportedFailures)
+                    runProgress.failures.add(new KIBulkReport.RecordFailure(recordIndex, e));
+            }
+        }
+        reportProgress(runProgress, runProgress.processedCount.incrementAndGet());
+    }
+
+    /**
+     * Notify the progress listener, every progress interval
+     *
+     * @param runProgress      The progress of the run
+     * @param processedRecords The number of processed records, including the current one
+     */
+    private void reportProgress(RunProgress runProgress, long processedRecords) {
+        if (progressListener == null || processedRecords % progressInterval != 0)
+            return;
+        synchronized (progressLock) {
+            progressListener.onProgress(runProgress.createReport(), false);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Bulk;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * The CSV record source reads a CSV data set as a stream of records for the bulk runner, one row at a time.
+ * The first row holds the columns' names, and every following row is mapped to the content objects of a record,
+ * either by a mapper function or by setting the columns on a new object of a bean class.
+ * <p>
+ * Quoted fields could contain delimiters, line breaks and escaped quotes (""), following RFC 4180
+ */
+public class KICsvRecordSource implements Iterator<Object[]>, Closeable {
+
+    public static final char DEFAULT_DELIMITER = ',';
+
+    private static final String SETTER_PREFIX = "set";
+
+    private final BufferedReader csvReader;
+    private final char delimiter;
+    private final Function<Map<String, String>, Object[]> recordMapper;
+    private final List<String> columnsNames;
+    private final StringBuilder field = new StringBuilder();
+    private List<String> nextRow;
+
+    /**
+     * Construct a CSV record source mapping every row using a function
+     *
+     * @param csvReader    The reader of the CSV data set
+     * @param recordMapper The function mapping a row (columns' names to values) to the content objects of a record
+     */
+    public KICsvRecordSource(Reader csvReader, Function<Map<String, String>, Object[]> recordMapper) {
+        this(csvReader, DEFAULT_DELIMITER, recordMapper);
+    }
+
+    /**
+     * Construct a CSV record source mapping every row to a new object of a bean class. Every column is set using
+     * the bean's public setter whose name matches the column's name (ignoring case, spaces and underscores)
+     * and takes a single String parameter, columns without setters are ignored
+     *
+     * @param csvReader The reader of the CSV data set
+     * @param beanClass The bean class, having a public parameter-less constructor
+     */
+    public KICsvRecordSource(Reader csvReader, Class<?> beanClass) {
+        this(csvReader, DEFAULT_DELIMITER, createBeanMapper(beanClass));
+    }
+
+    /**
+     * Construct a CSV record source
+     *
+     * @param csvReader    The reader of the CSV data set
+     * @param delimiter    The fields delimiter
+     * @param recordMapper The function mapping a row (columns' names to values) to the content objects of a record
+     */
+    public KICsvRecordSource(Reader csvReader, char delimiter, Function<Map<String, String>, Object[]> recordMapper) {
+        this.csvReader = csvReader instanceof BufferedReader ? (BufferedReader) csvReader : new BufferedReader(csvReader);
+        this.delimiter = delimiter;
+        this.recordMapper = recordMapper;
+        List<String> headerRow = readRow();
+        this.columnsNames = headerRow == null ? Collections.emptyList() : headerRow;
+        this.nextRow = headerRow == null ? null : readRow();
+    }
+
+    /**
+     * Get the columns' names, read from the first row
+     *
+     * @return The columns' names
+     */
+    public List<String> getColumnsNames() {
+        return Collections.unmodifiableList(columnsNames);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return nextRow != null;
+    }
+
+    @Override
+    public Object[] next() {
+        if (nextRow == null)
+            throw new NoSuchElementException();
+
+        Map<String, String> row = new LinkedHashMap<>();
+        for (int i = 0; i < columnsNames.size(); i++)
+            row.put(columnsNames.get(i), i < nextRow.size() ? nextRow.get(i) : "");
+        nextRow = readRow();
+        return recordMapper.apply(row);
+    }
+
+    @Override
+    public void close() throws IOException {
+        nextRow = null;
+        csvReader.close();
+    }
+
+    /**
+     * Read the next row, skipping empty lines. The reader is closed at the end of the data set
+     *
+     * @return The row's fields, or null at the end of the data set
+     * @throws UncheckedIOException An exception is thrown if the data set couldn't be read
+     */
+    private List<String> readRow() {
+        try {
+            List<String> row = new ArrayList<>();
+            boolean isQuoted = false;
+            boolean isFieldStarted = false;
+            int character;
+            field.setLength(0);
+
+            while ((character = csvReader.read()) != -1) {
+                if (isQuoted) {
+                    if (character != '"') {
+                        field.append((char) character);
+                        continue;
+                    }
+                    csvReader.mark(1);
+                    if (csvReader.read() == '"') {
+                        field.append('"');
+                        continue;
+                    }
+                    csvReader.reset();
+                    isQuoted = false;
+                } else if (character == '"' && field.length() == 0) {
+                    isQuoted = true;
+                    isFieldStarted = true;
+                } else if (character == delimiter) {
+                    row.add(field.toString());
+                    field.setLength(0);
+                    isFieldStarted = true;
+                } else if (character == '\n' || character == '\r') {
+                    if (character == '\r') {
+                        csvReader.mark(1);
+                        if (csvReader.read() != '\n')
+                            csvReader.reset();
+                    }
+                    if (!isFieldStarted && field.length() == 0 && row.isEmpty())
+                        continue;
+                    row.add(field.toString());
+                    return row;
+                } else {
+                    field.append((char) character);
+                    isFieldStarted = true;
+                }
+            }
+
+            if (!isFieldStarted && field.length() == 0 && row.isEmpty()) {
+                csvReader.close();
+                return null;
+            }
+            row.add(field.toString());
+            return row;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Create a mapper setting the columns of a row on a new object of a bean class
+     *
+     * @param beanClass The bean class
+     * @return The row mapper
+     */
+    private static Function<Map<String, String>, Object[]> createBeanMapper(Class<?> beanClass) {
+        Map<String, Method> settersByName = new HashMap<>();
+        for (Method method : beanClass.getMethods()) {
+            if (method.getName().startsWith(SETTER_PREFIX) && method.getParameterCount() == 1 && method.getParameterTypes()[0] == String.class)
+                settersByName.put(normalizeName(method.getName().substring(SETTER_PREFIX.length())), method);
+        }
+
+        return row -> {
+            try {
+                Object bean = beanClass.getConstructor().newInstance();
+                for (Map.Entry<String, String> column : row.entrySet()) {
+                    Method setter = settersByName.get(normalizeName(column.getKey()));
+                    if (setter != null)
+                        setter.invoke(bean, column.getValue());
+                }
+                return new Object[]{bean};
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+
+    /**
+     * Normalize a column's or a setter's name so they could be matched
+     *
+     * @param name The name
+     * @return The name in lower case, without spaces and underscores
+     */
+    private static String normalizeName(String name) {
+        return name.replace(" ", "").replace("_", "").toLowerCase(Locale.ROOT);
+    }
+}
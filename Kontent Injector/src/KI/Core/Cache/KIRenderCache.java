@@ -0,0 +1,291 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Cache;
+
+import KI.Core.Compiler.IKITemplateRenderer;
+import KI.Core.Compiler.KICompiledTemplate;
+import KI.Models.KIOutput.IKIOutput;
+import KI.Models.KIOutput.TeeOutput;
+
+import java.text.MessageFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The render cache keeps the outputs of previous renders, so rendering a template again with the same content
+ * writes the kept output instead of rendering. A render is identified by its template (the template object itself)
+ * and its content's fingerprint, that is computed from the content objects or supplied with the render.
+ * The fingerprint should capture everything the output depends on, a compiled template's default fingerprint
+ * is the values returned by its getters.
+ * <p>
+ * The cache is bounded by the total weight (approximately the number of characters) of the kept outputs,
+ * and the least recently used outputs are evicted first. The cache could be shared by several threads
+ */
+public class KIRenderCache {
+
+    public static final String MISSING_FINGERPRINT_ERROR_MESSAGE = "A content fingerprint should be provided to cache a template of type {0}";
+
+    private final long maxWeight;
+    private final int maxEntryWeight;
+    private final LinkedHashMap<RenderKey, KIRenderRecording> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight = 0;
+    private final LongAdder hitsCount = new LongAdder();
+    private final LongAdder missesCount = new LongAdder();
+    private final LongAdder evictionsCount = new LongAdder();
+
+    /**
+     * The key of a kept output: the template's identity and the content's fingerprint
+     */
+    private static class RenderKey {
+        private final IKITemplateRenderer template;
+        private final Object fingerprint;
+        private final int hashCode;
+
+        RenderKey(IKITemplateRenderer template, Object fingerprint) {
+            this.template = template;
+            this.fingerprint = fingerprint;
+            this.hashCode = 31 * System.identityHashCode(template) + fingerprint.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof RenderKey))
+                return false;
+            RenderKey otherKey = (RenderKey) other;
+            return template == otherKey.template && fingerprint.equals(otherKey.fingerprint);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * Construct a render cache
+     *
+     * @param maxWeight The maximum total weight of the kept outputs, an output's weight is approximately its number of characters
+     */
+    public KIRenderCache(long maxWeight) {
+        this(maxWeight, (int) Math.min(maxWeight, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Construct a render cache
+     *
+     * @param maxWeight      The maximum total weight of the kept outputs, an output's weight is approximately its number of characters
+     * @param maxEntryWeight The maximum weight of a single output, heavier outputs are rendered every time
+     */
+    public KIRenderCache(long maxWeight, int maxEntryWeight) {
+        this.maxWeight = maxWeight;
+        this.maxEntryWeight = (int) Math.min(maxEntryWeight, maxWeight);
+    }
+
+    /**
+     * Put the cache in front of a compiled template, using the values returned by the template's getters as the fingerprint.
+     * The getters are invoked to compute the fingerprint of every render, and again by the template if the render is not kept
+     *
+     * @param template The compiled template
+     * @return A renderer using the cache to render the template
+     * @throws IllegalArgumentException An exception is thrown if the template is not a compiled template, as other templates
+     *                                  need a content fingerprint
+     */
+    public IKITemplateRenderer cache(IKITemplateRenderer template) {
+        if (!(template instanceof KICompiledTemplate))
+            throw new IllegalArgumentException(MessageFormat.format(MISSING_FINGERPRINT_ERROR_MESSAGE, template.getClass().getSimpleName()));
+        KICompiledTemplate compiledTemplate = (KICompiledTemplate) template;
+        return (outputMethod, contentObjects) -> render(template, compiledTemplate.fetchFingerprint(contentObjects), outputMethod, contentObjects);
+    }
+
+    /**
+     * Put the cache in front of a template
+     *
+     * @param template           The template
+     * @param contentFingerprint Computes the fingerprint of every render's content objects
+     * @return A renderer using the cache to render the template
+     */
+    public IKITemplateRenderer cache(IKITemplateRenderer template, IKIContentFingerprint contentFingerprint) {
+        return (outputMethod, contentObjects) -> render(template, contentFingerprint.fingerprint(contentObjects), outputMethod, contentObjects);
+    }
+
+    /**
+     * Render a template, writing the kept output if the template was rendered before with the same fingerprint
+     *
+     * @param template       The template
+     * @param fingerprint    The content's fingerprint, the template is rendered without the cache if null
+     * @param outputMethod   Used to write the generated output
+     * @param contentObjects The objects containing the content to be injected into the template
+     * @throws ReflectiveOperationException An exception is thrown if an injection failed due to wrong methods/classes provided
+     */
+    public void render(IKITemplateRenderer template, Object fingerprint, IKIOutput outputMethod, Object... contentObjects) throws ReflectiveOperationException {
+        if (fingerprint == null) {
+            template.render(outputMethod, contentObjects);
+            return;
+        }
+
+        RenderKey renderKey = new RenderKey(template, fingerprint);
+        KIRenderRecording recording;
+        synchronized (entries) {
+            recording = entries.get(renderKey);
+        }
+        if (recording != null) {
+            hitsCount.increment();
+            recording.replay(outputMethod);
+            return;
+        }
+
+        missesCount.increment();
+        recording = new KIRenderRecording(maxEntryWeight);
+        template.render(new TeeOutput(outputMethod, recording), contentObjects);
+        if (recording.isComplete())
+            put(renderKey, recording);
+    }
+
+    /**
+     * Discard the kept output of a template's render
+     *
+     * @param template    The template
+     * @param fingerprint The content's fingerprint
+     */
+    public void invalidate(IKITemplateRenderer template, Object fingerprint) {
+        synchronized (entries) {
+            KIRenderRecording recording = entries.remove(new RenderKey(template, fingerprint));
+            if (recording != null)
+                weight -= recording.getWeight();
+        }
+    }
+
+    /**
+     * Discard all the kept outputs of a template
+     *
+     * @param template The template
+     */
+    public void invalidate(IKITemplateRenderer template) {
+        synchronized (entries) {
+            Iterator<Map.Entry<RenderKey, KIRenderRecording>> entriesIterator = entries.entrySet().iterator();
+            while (entriesIterator.hasNext()) {
+                Map.Entry<RenderKey, KIRenderRecording> entry = entriesIterator.next();
+                if (entry.getKey().template == template) {
+                    weight -= entry.getValue().getWeight();
+                    entriesIterator.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Discard all the kept outputs
+     */
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+            weight = 0;
+        }
+    }
+
+    /**
+     * Get the number of renders that wrote a kept output
+     *
+     * @return The number of cache hits
+     */
+    public long getHitsCount() {
+        return hitsCount.sum();
+    }
+
+    /**
+     * Get the number of renders that rendered the template
+     *
+     * @return The number of cache misses
+     */
+    public long getMissesCount() {
+        return missesCount.sum();
+    }
+
+    /**
+     * Get the number of kept outputs evicted to keep the cache within its maximum weight
+     *
+     * @return The number of evictions
+     */
+    public long getEvictionsCount() {
+        return evictionsCount.sum();
+    }
+
+    /**
+     * Get the ratio of the renders that wrote a kept output
+     *
+     * @return The hit rate, between 0 and 1
+     */
+    public double getHitRate() {
+        long hits = hitsCount.sum();
+        long renders = hits + missesCount.sum();
+        return renders == 0 ? 0 : (double) hits / renders;
+    }
+
+    /**
+     * Get the number of kept outputs
+     *
+     * @return The number of kept outputs
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Get the total weight of the kept outputs
+     *
+     * @return The cache's weight
+     */
+    public long getWeight() {
+        synchronized (entries) {
+            return weight;
+        }
+    }
+
+    /**
+     * Keep a render's output, evicting the least recently used outputs beyond the maximum weight
+     *
+     * @param renderKey The render's key
+     * @param recording The render's output
+     */
+    private void put(RenderKey renderKey, KIRenderRecording recording) {
+        synchronized (entries) {
+            KIRenderRecording replacedRecording = entries.put(renderKey, recording);
+            if (replacedRecording != null)
+                weight -= replacedRecording.getWeight();
+            weight += recording.getWeight();
+
+            Iterator<KIRenderRecording> recordingsIterator = entries.values().iterator();
+            while (weight > maxWeight && recordingsIterator.hasNext()) {
+                weight -= recordingsIterator.next().getWeight();
+                recordingsIterator.remove();
+                evictionsCount.increment();
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Cache;
+
+import KI.Models.KIOutput.IKIChunkOutput;
+import KI.Models.KIOutput.IKIOutput;
+
+import java.util.Arrays;
+
+/**
+ * The render recording records a render's output, so it could be replayed to another output exactly as it was written
+ * (the same lines and chunks). The recording is abandoned once it grows beyond its maximum length
+ */
+class KIRenderRecording implements IKIChunkOutput {
+
+    private static final int INITIAL_LINES_CAPACITY = 16;
+    private static final int LINE_WEIGHT = 2;
+
+    private final int maxLength;
+    private StringBuilder textBuilder = new StringBuilder();
+    private int[] linesBounds = new int[INITIAL_LINES_CAPACITY * 2];
+    private int linesCount = 0;
+    private String text;
+
+    /**
+     * Construct a render recording
+     *
+     * @param maxLength The maximum number of recorded characters
+     */
+    KIRenderRecording(int maxLength) {
+        this.maxLength = maxLength;
+    }
+
+    @Override
+    public void writeLine(String outputLine) {
+        if (!canRecord(outputLine.length()))
+            return;
+        if (linesCount * 2 == linesBounds.length)
+            linesBounds = Arrays.copyOf(linesBounds, linesBounds.length * 2);
+        linesBounds[linesCount * 2] = textBuilder.length();
+        textBuilder.append(outputLine);
+        linesBounds[linesCount * 2 + 1] = textBuilder.length();
+        linesCount++;
+    }
+
+    @Override
+    public void writeChunk(char[] chunk, int offset, int length) {
+        if (canRecord(length))
+            textBuilder.append(chunk, offset, length);
+    }
+
+    @Override
+    public void writeChunk(CharSequence chunk) {
+        if (canRecord(chunk.length()))
+            textBuilder.append(chunk);
+    }
+
+    @Override
+    public void handleOutputEnd() {
+        if (textBuilder != null) {
+            text = textBuilder.toString();
+            linesBounds = Arrays.copyOf(linesBounds, linesCount * 2);
+            textBuilder = null;
+        }
+    }
+
+    /**
+     * Check whether the whole output was recorded
+     *
+     * @return True if the output ended within the maximum length
+     */
+    boolean isComplete() {
+        return text != null;
+    }
+
+    /**
+     * Get the recording's weight, its approximate size in characters
+     *
+     * @return The recording's weight
+     */
+    int getWeight() {
+        return text.length() + linesCount * LINE_WEIGHT;
+    }
+
+    /**
+     * Write the recorded output to an output, and end it
+     *
+     * @param outputMethod The output to write to
+     */
+    void replay(IKIOutput outputMethod) {
+        IKIChunkOutput chunkOutput = IKIChunkOutput.of(outputMethod);
+        int position = 0;
+        for (int i = 0; i < linesCount; i++) {
+            int lineStart = linesBounds[i * 2];
+            int lineEnd = linesBounds[i * 2 + 1];
+            if (position < lineStart)
+                chunkOutput.writeChunk(text.subSequence(position, lineStart));
+            chunkOutput.writeLine(text.substring(lineStart, lineEnd));
+            position = lineEnd;
+        }
+        if (position < text.length())
+            chunkOutput.writeChunk(text.subSequence(position, text.length()));
+        chunkOutput.handleOutputEnd();
+    }
+
+    /**
+     * Check whether characters could still be recorded, abandoning the recording if they exceed the maximum length
+     *
+     * @param length The number of characters to be recorded
+     * @return True if the characters should be recorded
+     */
+    private boolean canRecord(int length) {
+        if (textBuilder == null)
+            return false;
+        if (textBuilder.length() + (long) length + (long) linesCount * LINE_WEIGHT > maxLength) {
+            textBuilder = null;
+            linesBounds = null;
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Compiler;
+
+import java.util.BitSet;
+
+/**
+ * The abstract render node is a template node that is already linked to the content classes,
+ * so rendering it doesn't require any inspection of the template's text
+ */
+abstract class AbstractKIRenderNode {
+
+    /**
+     * Append the node's rendered content to the output buffer
+     *
+     * @param outputBuffer  The buffer holding the segment being rendered
+     * @param renderContext The context of the current render
+     * @throws ReflectiveOperationException An exception is thrown if a getter invocation failed
+     */
+    abstract void render(StringBuilder outputBuffer, KIRenderContext renderContext) throws ReflectiveOperationException;
+
+    /**
+     * Collect the accessor slots the node reads its values from
+     *
+     * @param slots The set of slots to add the node's slots to
+     */
+    void collectSlots(BitSet slots) {
+    }
+}
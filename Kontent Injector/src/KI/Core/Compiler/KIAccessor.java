@@ -0,0 +1,119 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Compiler;
+
+import KI.Core.KIFlightRecorder;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * An accessor is a getter resolved by the linker, along with the index of the content object it's invoked on
+ */
+class KIAccessor {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private final int contentIndex;
+    private final MethodHandle getter;
+    private final String methodName;
+    private final String classAlias;
+    private final String methodAlias;
+
+    /**
+     * Construct an accessor
+     *
+     * @param contentIndex The index of the content object the getter is invoked on
+     * @param getter       The getter's method handle, adapted to the (Object)Object type
+     * @param methodName   The getter's name
+     * @param classAlias   The class alias of the getter's reference
+     * @param methodAlias  The method alias of the getter's reference
+     */
+    KIAccessor(int contentIndex, MethodHandle getter, String methodName, String classAlias, String methodAlias) {
+        this.contentIndex = contentIndex;
+        this.getter = getter;
+        this.methodName = methodName;
+        this.classAlias = classAlias;
+        this.methodAlias = methodAlias;
+    }
+
+    /**
+     * Resolve the accessor of a content class' getter
+     *
+     * @param contentClasses The classes of the objects that will hold the injection content
+     * @param contentIndex   The index of the class declaring the getter
+     * @param methodName     The getter's name
+     * @param classAlias     The class alias of the getter's reference
+     * @param methodAlias    The method alias of the getter's reference
+     * @return The getter's accessor
+     * @throws ReflectiveOperationException A NoSuchMethodException is thrown if the getter does not exist,
+     *                                      or an IllegalAccessException if it's not accessible
+     */
+    static KIAccessor resolve(Class<?>[] contentClasses, int contentIndex, String methodName,
+                              String classAlias, String methodAlias) throws ReflectiveOperationException {
+        Method targetMethod = contentClasses[contentIndex].getMethod(methodName);
+        MethodHandle getter = MethodHandles.publicLookup().unreflect(targetMethod).asType(GETTER_TYPE);
+        return new KIAccessor(contentIndex, getter, methodName, classAlias, methodAlias);
+    }
+
+    int getContentIndex() {
+        return contentIndex;
+    }
+
+    String getMethodName() {
+        return methodName;
+    }
+
+    String getClassAlias() {
+        return classAlias;
+    }
+
+    String getMethodAlias() {
+        return methodAlias;
+    }
+
+    /**
+     * Invoke the getter on its content object
+     *
+     * @param contentObjects The content objects ordered as the classes the template was linked to
+     * @return The getter's returned value
+     * @throws ReflectiveOperationException An InvocationTargetException is thrown if the getter threw an exception
+     */
+    Object invoke(Object[] contentObjects) throws ReflectiveOperationException {
+        Object invocationEvent = KIFlightRecorder.GETTER_INVOCATION.begin();
+        try {
+            Object value = (Object) getter.invokeExact(contentObjects[contentIndex]);
+            KIFlightRecorder.GETTER_INVOCATION.commit(invocationEvent, classAlias, methodAlias);
+            return value;
+        } catch (RuntimeException | Error ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new InvocationTargetException(ex);
+        }
+    }
+}
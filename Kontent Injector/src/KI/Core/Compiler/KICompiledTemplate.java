@@ -0,0 +1,259 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Compiler;
+
+import KI.Core.KIFlightRecorder;
+import KI.Core.KILoopSequences;
+import KI.Core.KIScratchBuffers;
+import KI.Models.KIOutput.IKIChunkOutput;
+import KI.Models.KIOutput.IKIOutput;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The compiled template is a linked template turned into render nodes. Rendering it appends constant literals
+ * and invokes the getters through their accessor slots, without inspecting the template's text or looking up
+ * any method by name.
+ * A segment is gathered in memory up to the loop memory budget, larger segments (e.g. loops with many iterations)
+ * are written to the output while rendering
+ */
+public class KICompiledTemplate implements IKITemplateRenderer {
+
+    private static final AtomicLong TEMPLATES_IDS = new AtomicLong();
+
+    /**
+     * The values of a render's injections, compared deeply so copied sequences are compared by their elements
+     */
+    private static final class ContentValues {
+        private final Object[] values;
+        private final int hashCode;
+
+        private ContentValues(Object[] values) {
+            this.values = values;
+            this.hashCode = Arrays.deepHashCode(values);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof ContentValues && Arrays.deepEquals(values, ((ContentValues) other).values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    private final long templateId;
+    private final Class<?>[] contentClasses;
+    private final KIAccessor[] accessors;
+    private final List<String> references;
+    private final AbstractKIRenderNode[][] segments;
+    private final ThreadLocal<KIRenderContext> renderContexts;
+    private final int loopMemoryBudget;
+
+    /**
+     * Construct a compiled template
+     *
+     * @param linkedTemplate   The linked template that was compiled
+     * @param segments         The render nodes of each template segment
+     * @param loopMemoryBudget The segment's length above which it's written to the output while rendering
+     */
+    KICompiledTemplate(KILinkedTemplate linkedTemplate, AbstractKIRenderNode[][] segments, int loopMemoryBudget) {
+        this(linkedTemplate.getContentClasses(), linkedTemplate.getAccessors(), linkedTemplate.getReferences(), segments, loopMemoryBudget);
+    }
+
+    /**
+     * Construct a compiled template from already resolved accessors (e.g. a loaded template artifact)
+     *
+     * @param contentClasses   The content classes the template was linked to
+     * @param accessors        The accessors of the slots
+     * @param references       The distinct references of the template ordered by their slots
+     * @param segments         The render nodes of each template segment
+     * @param loopMemoryBudget The segment's length above which it's written to the output while rendering
+     */
+    KICompiledTemplate(Class<?>[] contentClasses, KIAccessor[] accessors, List<String> references,
+                       AbstractKIRenderNode[][] segments, int loopMemoryBudget) {
+        this.templateId = TEMPLATES_IDS.incrementAndGet();
+        this.contentClasses = contentClasses;
+        this.accessors = accessors;
+        this.references = references;
+        this.segments = segments;
+        this.loopMemoryBudget = loopMemoryBudget;
+        this.renderContexts = ThreadLocal.withInitial(() -> new KIRenderContext(contentClasses, accessors));
+    }
+
+    /**
+     * Construct a compiled template rendering other render nodes for the same linked template (e.g. profiled nodes)
+     *
+     * @param compiledTemplate The compiled template whose linked template is used
+     * @param segments         The render nodes of each template segment
+     */
+    KICompiledTemplate(KICompiledTemplate compiledTemplate, AbstractKIRenderNode[][] segments) {
+        this.templateId = compiledTemplate.templateId;
+        this.contentClasses = compiledTemplate.contentClasses;
+        this.accessors = compiledTemplate.accessors;
+        this.references = compiledTemplate.references;
+        this.segments = segments;
+        this.loopMemoryBudget = compiledTemplate.loopMemoryBudget;
+        this.renderContexts = ThreadLocal.withInitial(() -> new KIRenderContext(contentClasses, accessors));
+    }
+
+    @Override
+    public void render(IKIOutput outputMethod, Object... contentObjects) throws ReflectiveOperationException {
+        KIRenderContext renderContext = acquireRenderContext(contentObjects);
+        try {
+            render(outputMethod, renderContext);
+        } finally {
+            renderContext.reset();
+        }
+    }
+
+    /**
+     * Render the template using a render context that is already bound to the content objects.
+     * The context is not reset, so its fetched values could be used by other renders
+     *
+     * @param outputMethod  Used to write the generated output
+     * @param renderContext The bound render context
+     * @throws ReflectiveOperationException An exception is thrown if a getter invocation failed
+     */
+    void render(IKIOutput outputMethod, KIRenderContext renderContext) throws ReflectiveOperationException {
+        Object renderEvent = KIFlightRecorder.RENDER.begin();
+        long writtenCharacters = 0;
+        KIScratchBuffers scratchBuffers = KIScratchBuffers.get();
+        IKIChunkOutput chunkOutput = IKIChunkOutput.of(outputMethod);
+        StringBuilder segmentBuffer = scratchBuffers.acquireBuilder();
+        renderContext.setOverflowOutput(chunkOutput, loopMemoryBudget);
+
+        try {
+            for (AbstractKIRenderNode[] segment : segments) {
+                segmentBuffer.setLength(0);
+                for (AbstractKIRenderNode renderNode : segment)
+                    renderNode.render(segmentBuffer, renderContext);
+                writeSegment(chunkOutput, segmentBuffer);
+                writtenCharacters += segmentBuffer.length();
+            }
+            writtenCharacters += renderContext.getOverflowCharacters();
+        } catch (ReflectiveOperationException | RuntimeException | Error e) {
+            IKIOutput.abort(chunkOutput, e);
+            throw e;
+        } finally {
+            scratchBuffers.releaseBuilder(segmentBuffer);
+            renderContext.setOverflowOutput(null, loopMemoryBudget);
+        }
+
+        chunkOutput.handleOutputEnd();
+        KIFlightRecorder.RENDER.commit(renderEvent, templateId, writtenCharacters);
+    }
+
+    /**
+     * Fetch the fingerprint of a render's content: the values of all the template's injections read through its getters,
+     * the loops' sequences being copied. Two renders whose fingerprints are equal produce the same output,
+     * as long as the values' formatting depends only on the values
+     *
+     * @param contentObjects The objects containing the content to be injected into the template
+     * @return The fingerprint, compared using its equals and hashCode
+     * @throws ReflectiveOperationException An exception is thrown if a getter invocation failed
+     */
+    public Object fetchFingerprint(Object... contentObjects) throws ReflectiveOperationException {
+        KIRenderContext renderContext = acquireRenderContext(contentObjects);
+        try {
+            Object[] values = new Object[references.size()];
+            for (int slot = 0; slot < values.length; slot++)
+                values[slot] = KILoopSequences.snapshot(renderContext.fetchSequence(slot));
+            return new ContentValues(values);
+        } finally {
+            renderContext.reset();
+        }
+    }
+
+    /**
+     * Get the template's id, which identifies the template's renders in the recorded flight recorder events
+     *
+     * @return The id assigned to the template when it was compiled
+     */
+    public long getTemplateId() {
+        return templateId;
+    }
+
+    /**
+     * Get the render nodes of each template segment
+     *
+     * @return The segments' render nodes
+     */
+    AbstractKIRenderNode[][] getSegments() {
+        return segments;
+    }
+
+    /**
+     * Get the content classes the template was linked to
+     *
+     * @return The content classes
+     */
+    Class<?>[] getContentClasses() {
+        return contentClasses;
+    }
+
+    /**
+     * Get the accessors of the slots
+     *
+     * @return The accessors array indexed by slot
+     */
+    KIAccessor[] getAccessors() {
+        return accessors;
+    }
+
+    /**
+     * Get the distinct references of the template
+     *
+     * @return A list holding the references (ClassAlias.methodAlias), the index of a reference is its slot
+     */
+    List<String> getReferences() {
+        return references;
+    }
+
+    private static void writeSegment(IKIChunkOutput chunkOutput, StringBuilder segmentBuffer) {
+        Object flushEvent = KIFlightRecorder.OUTPUT_FLUSH.begin();
+        chunkOutput.writeLine(segmentBuffer.toString());
+        KIFlightRecorder.OUTPUT_FLUSH.commit(flushEvent, segmentBuffer.length());
+    }
+
+    /**
+     * Acquire the current thread's render context and bind the content objects to it.
+     * The context should be reset once the render is done
+     *
+     * @param contentObjects The objects holding the injection content
+     * @return The render context
+     */
+    KIRenderContext acquireRenderContext(Object[] contentObjects) {
+        KIRenderContext renderContext = renderContexts.get();
+        if (renderContext.isInUse())
+            renderContext = new KIRenderContext(contentClasses, accessors);
+        renderContext.bind(contentObjects);
+        return renderContext;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Compiler;
+
+import KI.Core.KILoopSequences;
+import KI.Core.KIScratchBuffers;
+import KI.Models.KIOutput.IKIOutput;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The incremental template keeps the output of every segment from the previous render, along with a fingerprint
+ * of the values the segment consumed. On the next render, only the segments whose values changed are rendered again,
+ * the rest are written from the previous render's output.
+ * <p>
+ * Values are compared using equals, collections and arrays are compared element by element, so getters returning
+ * mutable objects that do not implement equals are always considered unchanged if the same instance is returned.
+ * Renders of an incremental template are serialized since it holds the previous render's state
+ */
+public class KIIncrementalTemplate implements IKITemplateRenderer {
+
+    private final KICompiledTemplate compiledTemplate;
+    private final int[][] segmentsSlots;
+    private final String[] segmentsOutputs;
+    private final Object[][] segmentsFingerprints;
+
+    /**
+     * Construct an incremental template
+     *
+     * @param compiledTemplate The compiled template to be rendered incrementally
+     */
+    public KIIncrementalTemplate(KICompiledTemplate compiledTemplate) {
+        this.compiledTemplate = compiledTemplate;
+        AbstractKIRenderNode[][] segments = compiledTemplate.getSegments();
+        segmentsSlots = new int[segments.length][];
+        segmentsOutputs = new String[segments.length];
+        segmentsFingerprints = new Object[segments.length][];
+
+        for (int i = 0; i < segments.length; i++) {
+            BitSet slots = new BitSet();
+            for (AbstractKIRenderNode renderNode : segments[i])
+                renderNode.collectSlots(slots);
+            segmentsSlots[i] = slots.stream().toArray();
+        }
+    }
+
+    @Override
+    public synchronized void render(IKIOutput outputMethod, Object... contentObjects) throws ReflectiveOperationException {
+        KIScratchBuffers scratchBuffers = KIScratchBuffers.get();
+        KIRenderContext renderContext = compiledTemplate.acquireRenderContext(contentObjects);
+        AbstractKIRenderNode[][] segments = compiledTemplate.getSegments();
+        StringBuilder segmentBuffer = scratchBuffers.acquireBuilder();
+
+        try {
+            for (int i = 0; i < segments.length; i++) {
+                Object[] fingerprint = fetchFingerprint(segmentsSlots[i], renderContext);
+
+                if (segmentsOutputs[i] == null || !Arrays.deepEquals(fingerprint, segmentsFingerprints[i])) {
+                    segmentBuffer.setLength(0);
+                    for (AbstractKIRenderNode renderNode : segments[i])
+                        renderNode.render(segmentBuffer, renderContext);
+                    segmentsOutputs[i] = segmentBuffer.toString();
+                    segmentsFingerprints[i] = fingerprint;
+                }
+
+                outputMethod.writeLine(segmentsOutputs[i]);
+            }
+        } catch (ReflectiveOperationException | RuntimeException | Error e) {
+            IKIOutput.abort(outputMethod, e);
+            throw e;
+        } finally {
+            scratchBuffers.releaseBuilder(segmentBuffer);
+            renderContext.reset();
+        }
+
+        outputMethod.handleOutputEnd();
+    }
+
+    /**
+     * Drop the previous render's output, so the next render renders all segments
+     */
+    public synchronized void invalidate() {
+        Arrays.fill(segmentsOutputs, null);
+        Arrays.fill(segmentsFingerprints, null);
+    }
+
+    /**
+     * Fetch the values consumed by a segment, taking a snapshot of collections and arrays
+     *
+     * @param slots         The accessor slots read by the segment
+     * @param renderContext The context of the current render
+     * @return The segment's fingerprint
+     * @throws ReflectiveOperationException An exception is thrown if a getter invocation failed
+     */
+    private Object[] fetchFingerprint(int[] slots, KIRenderContext renderContext) throws ReflectiveOperationException {
+        Object[] fingerprint = new Object[slots.length];
+
+        for (int i = 0; i < slots.length; i++)
+            fingerprint[i] = KILoopSequences.snapshot(renderContext.fetchSequence(slots[i]));
+        return fingerprint;
+    }
+}
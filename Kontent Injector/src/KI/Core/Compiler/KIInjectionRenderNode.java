@@ -0,0 +1,86 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Compiler;
+
+import KI.Models.KIFormat.KIReferenceFormat;
+import KI.Models.KIFormat.KIFormatterRegistry;
+
+import java.util.BitSet;
+
+/**
+ * Render node appending the value of an accessor slot
+ */
+class KIInjectionRenderNode extends AbstractKIRenderNode {
+
+    private final String injectionTemplate;
+    private final int slot;
+    private final KIFormatterRegistry formatterRegistry;
+    private final KIReferenceFormat referenceFormat;
+
+    /**
+     * Construct an injection render node
+     *
+     * @param injectionTemplate The injection template, written as is if the getter returned null
+     * @param slot              The accessor slot of the injection's reference
+     * @param formatterRegistry The registry of the values' formatters
+     * @param referenceFormat   The format of the injection's reference, or null
+     */
+    KIInjectionRenderNode(String injectionTemplate, int slot, KIFormatterRegistry formatterRegistry, KIReferenceFormat referenceFormat) {
+        this.injectionTemplate = injectionTemplate;
+        this.slot = slot;
+        this.formatterRegistry = formatterRegistry;
+        this.referenceFormat = referenceFormat;
+    }
+
+    String getInjectionTemplate() {
+        return injectionTemplate;
+    }
+
+    int getSlot() {
+        return slot;
+    }
+
+    KIFormatterRegistry getFormatterRegistry() {
+        return formatterRegistry;
+    }
+
+    KIReferenceFormat getReferenceFormat() {
+        return referenceFormat;
+    }
+
+    @Override
+    void render(StringBuilder outputBuffer, KIRenderContext renderContext) throws ReflectiveOperationException {
+        Object injectionValue = renderContext.fetchValue(slot);
+        if (injectionValue == null)
+            outputBuffer.append(injectionTemplate);
+        else
+            formatterRegistry.appendValue(outputBuffer, injectionValue, referenceFormat);
+    }
+
+    @Override
+    void collectSlots(BitSet slots) {
+        slots.set(slot);
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Compiler;
+
+import KI.Core.KontentInjector;
+import KI.Models.KIInput.IKIInput;
+import KI.Models.KIOutput.IKIOutput;
+import KI.Models.KITemplateConfiguration;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The interpreted template is the fallback used when a template could not be compiled
+ * (e.g. a content class is not accessible). It keeps the template's lines and replays them
+ * through the KInjectors on every render
+ */
+public class KIInterpretedTemplate implements IKITemplateRenderer {
+
+    private final KITemplateConfiguration templateConfig;
+    private final List<String> templateLines;
+
+    /**
+     * Construct an interpreted template
+     *
+     * @param templateConfig The configuration of the template
+     * @param templateLines  The template's lines
+     */
+    public KIInterpretedTemplate(KITemplateConfiguration templateConfig, List<String> templateLines) {
+        this.templateConfig = templateConfig;
+        this.templateLines = templateLines;
+    }
+
+    @Override
+    public void render(IKIOutput outputMethod, Object... contentObjects) throws ReflectiveOperationException {
+        Iterator<String> linesIterator = templateLines.iterator();
+        IKIInput linesInput = () -> linesIterator.hasNext() ? linesIterator.next() : null;
+        new KontentInjector(templateConfig).injectValues(linesInput, outputMethod, contentObjects);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Compiler;
+
+import KI.Core.Template.KIInjectionNode;
+import KI.Core.Template.KIParsedTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The linked template is a parsed template whose references were all resolved against a set of content classes.
+ * Every distinct reference (ClassAlias.methodAlias) is bound to an accessor slot, and every injection node
+ * is mapped to the slot of its reference
+ */
+public class KILinkedTemplate {
+
+    private final KIParsedTemplate parsedTemplate;
+    private final Class<?>[] contentClasses;
+    private final List<String> references;
+    private final KIAccessor[] accessors;
+    private final Map<KIInjectionNode, Integer> injectionsSlots;
+
+    /**
+     * Construct a linked template
+     *
+     * @param parsedTemplate  The parsed template
+     * @param contentClasses  The content classes the template was linked to
+     * @param references      The distinct references of the template ordered by their slots
+     * @param accessors       The accessors of the slots, or null if a getter is not accessible
+     * @param injectionsSlots The injection nodes mapped to their slots
+     */
+    KILinkedTemplate(KIParsedTemplate parsedTemplate, Class<?>[] contentClasses, List<String> references,
+                     KIAccessor[] accessors, Map<KIInjectionNode, Integer> injectionsSlots) {
+        this.parsedTemplate = parsedTemplate;
+        this.contentClasses = contentClasses;
+        this.references = references;
+        this.accessors = accessors;
+        this.injectionsSlots = injectionsSlots;
+    }
+
+    /**
+     * Get the parsed template
+     *
+     * @return The parsed template
+     */
+    public KIParsedTemplate getParsedTemplate() {
+        return parsedTemplate;
+    }
+
+    /**
+     * Get the content classes the template was linked to
+     *
+     * @return The content classes
+     */
+    public Class<?>[] getContentClasses() {
+        return contentClasses;
+    }
+
+    /**
+     * Get the distinct references of the template
+     *
+     * @return A list holding the references (ClassAlias.methodAlias), the index of a reference is its slot
+     */
+    public List<String> getReferences() {
+        return references;
+    }
+
+    /**
+     * Indicates if all the getters are accessible, so the template could be compiled
+     *
+     * @return A boolean indicating if all the getters are accessible
+     */
+    public boolean isAccessible() {
+        return accessors != null;
+    }
+
+    /**
+     * Get the accessor slot of an injection node
+     *
+     * @param injectionNode An injection node of the parsed template
+     * @return The slot index of the node's reference
+     */
+    public int getSlot(KIInjectionNode injectionNode) {
+        return injectionsSlots.get(injectionNode);
+    }
+
+    /**
+     * Get the accessors of the slots
+     *
+     * @return The accessors array indexed by slot
+     */
+    KIAccessor[] getAccessors() {
+        return accessors;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Compiler;
+
+import KI.Core.KIFlightRecorder;
+import KI.Core.KILoopExpander;
+import KI.Core.KILoopSequences;
+
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Render node repeating its body once per element of the largest collection injected in it.
+ * A loop whose body holds only literals and injections could be expanded in parallel, as its sequences are fetched before expanding it
+ */
+class KILoopRenderNode extends AbstractKIRenderNode {
+
+    private final AbstractKIRenderNode[] bodyNodes;
+    private final KIInjectionRenderNode[] injectionNodes;
+    private final KILoopExpander loopExpander;
+
+    /**
+     * Construct a loop render node
+     *
+     * @param bodyNodes      The loop body nodes
+     * @param injectionNodes The injection nodes found in the loop body
+     * @param loopPool       The pool the loop is expanded on in parallel, or null
+     */
+    KILoopRenderNode(AbstractKIRenderNode[] bodyNodes, KIInjectionRenderNode[] injectionNodes, ForkJoinPool loopPool) {
+        this.bodyNodes = bodyNodes;
+        this.injectionNodes = injectionNodes;
+        this.loopExpander = new KILoopExpander(isParallelizable(bodyNodes) ? loopPool : null);
+    }
+
+    AbstractKIRenderNode[] getBodyNodes() {
+        return bodyNodes;
+    }
+
+    KIInjectionRenderNode[] getInjectionNodes() {
+        return injectionNodes;
+    }
+
+    @Override
+    void render(StringBuilder outputBuffer, KIRenderContext renderContext) throws ReflectiveOperationException {
+        Object expansionEvent = KIFlightRecorder.LOOP_EXPANSION.begin();
+        int iterationsCount = fetchIterationsCount(renderContext);
+        Object[] bodySequences = new Object[bodyNodes.length];
+        for (int i = 0; i < bodyNodes.length; i++) {
+            if (bodyNodes[i] instanceof KIInjectionRenderNode)
+                bodySequences[i] = renderContext.fetchSequence(((KIInjectionRenderNode) bodyNodes[i]).getSlot());
+        }
+
+        loopExpander.expand(outputBuffer, iterationsCount,
+                (iterationBuffer, index) -> renderIteration(iterationBuffer, index, bodySequences, renderContext), renderContext::flushOverflow);
+        KIFlightRecorder.LOOP_EXPANSION.commit(expansionEvent, iterationsCount);
+    }
+
+    @Override
+    void collectSlots(BitSet slots) {
+        for (KIInjectionRenderNode injectionNode : injectionNodes)
+            injectionNode.collectSlots(slots);
+    }
+
+    /**
+     * Append an iteration of the loop's body
+     *
+     * @param outputBuffer  The buffer the iteration is appended to
+     * @param index         The iteration index
+     * @param bodySequences The sequences of the body's injection nodes (null for other nodes)
+     * @param renderContext The context of the current render, only used by nodes other than literals and injections
+     * @throws ReflectiveOperationException An exception is thrown if a getter invocation failed
+     */
+    private void renderIteration(StringBuilder outputBuffer, int index, Object[] bodySequences,
+                                 KIRenderContext renderContext) throws ReflectiveOperationException {
+        for (int i = 0; i < bodyNodes.length; i++) {
+            if (bodyNodes[i] instanceof KIInjectionRenderNode)
+                appendIterationValue(outputBuffer, index, bodySequences[i], (KIInjectionRenderNode) bodyNodes[i]);
+            else
+                bodyNodes[i].render(outputBuffer, renderContext);
+        }
+    }
+
+    /**
+     * Indicates if a loop body could be rendered concurrently, which is when it holds only literals and injections
+     *
+     * @param bodyNodes The loop body nodes
+     * @return A boolean indicating if the body could be rendered concurrently
+     */
+    private static boolean isParallelizable(AbstractKIRenderNode[] bodyNodes) {
+        for (AbstractKIRenderNode bodyNode : bodyNodes) {
+            if (!(bodyNode instanceof KILiteralRenderNode) && !(bodyNode instanceof KIInjectionRenderNode))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Get the number of iterations of the loop
+     *
+     * @param renderContext The context of the current render
+     * @return The maximum length among the injected sequences
+     * @throws ReflectiveOperationException An exception is thrown if a getter invocation failed
+     */
+    private int fetchIterationsCount(KIRenderContext renderContext) throws ReflectiveOperationException {
+        int maxCollectionSize = 0;
+
+        for (KIInjectionRenderNode injectionNode : injectionNodes)
+            maxCollectionSize = Math.max(maxCollectionSize, KILoopSequences.length(renderContext.fetchSequence(injectionNode.getSlot())));
+        return maxCollectionSize;
+    }
+
+    /**
+     * Append the value of an injection for the current iteration
+     *
+     * @param outputBuffer   The buffer holding the segment being rendered
+     * @param index          The current iteration index
+     * @param injectionValue The injection's value as a sequence, or the value itself
+     * @param injectionNode  The injection node being rendered
+     */
+    private void appendIterationValue(StringBuilder outputBuffer, int index, Object injectionValue, KIInjectionRenderNode injectionNode) {
+        if (injectionValue == null)
+            outputBuffer.append(injectionNode.getInjectionTemplate());
+        else
+            KILoopSequences.appendElement(outputBuffer, injectionValue, index, injectionNode.getFormatterRegistry(), injectionNode.getReferenceFormat());
+    }
+}
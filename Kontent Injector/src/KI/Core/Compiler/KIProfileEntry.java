@@ -0,0 +1,114 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Compiler;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The profile entry accumulates the wall time and the allocated bytes of a profiled node across renders.
+ * Allocated bytes are measured by the JVM's ThreadMXBean, and are reported as 0 if the JVM doesn't support it
+ */
+class KIProfileEntry {
+
+    private static final com.sun.management.ThreadMXBean ALLOCATION_MX_BEAN = findAllocationMXBean();
+
+    private final String nodeName;
+    private final KIProfileReport.NodeType nodeType;
+    private final LongAdder callsCount = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAdder allocatedBytes = new LongAdder();
+
+    /**
+     * Construct a profile entry
+     *
+     * @param nodeName The name of the profiled node (e.g. its reference)
+     * @param nodeType The type of the profiled node
+     */
+    KIProfileEntry(String nodeName, KIProfileReport.NodeType nodeType) {
+        this.nodeName = nodeName;
+        this.nodeType = nodeType;
+    }
+
+    /**
+     * Get the number of bytes allocated by the current thread so far
+     *
+     * @return The allocated bytes, or 0 if the JVM doesn't measure allocations
+     */
+    static long currentThreadAllocatedBytes() {
+        return ALLOCATION_MX_BEAN == null ? 0 : ALLOCATION_MX_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Record a call of the profiled node
+     *
+     * @param startNanos The System.nanoTime before the call
+     * @param startBytes The currentThreadAllocatedBytes before the call
+     */
+    void record(long startNanos, long startBytes) {
+        long endBytes = currentThreadAllocatedBytes();
+        totalNanos.add(System.nanoTime() - startNanos);
+        allocatedBytes.add(endBytes - startBytes);
+        callsCount.increment();
+    }
+
+    /**
+     * Get a snapshot of the entry
+     *
+     * @return The node's profile
+     */
+    KIProfileReport.NodeProfile snapshot() {
+        return new KIProfileReport.NodeProfile(nodeName, nodeType, callsCount.sum(), totalNanos.sum(), allocatedBytes.sum());
+    }
+
+    /**
+     * Clear the accumulated measures
+     */
+    void reset() {
+        callsCount.reset();
+        totalNanos.reset();
+        allocatedBytes.reset();
+    }
+
+    /**
+     * Get the ThreadMXBean measuring the threads' allocations
+     *
+     * @return The bean, or null if the JVM doesn't measure allocations
+     */
+    private static com.sun.management.ThreadMXBean findAllocationMXBean() {
+        try {
+            java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+            if (!(threadMXBean instanceof com.sun.management.ThreadMXBean))
+                return null;
+            com.sun.management.ThreadMXBean allocationMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+            if (!allocationMXBean.isThreadAllocatedMemorySupported())
+                return null;
+            allocationMXBean.setThreadAllocatedMemoryEnabled(true);
+            return allocationMXBean;
+        } catch (RuntimeException | LinkageError e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Compiler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The profile report is a snapshot of a profiled template's measures, aggregated across its renders:
+ * the wall time and the allocated bytes of every injection reference, loop and output, sorted from the slowest.
+ * <p>
+ * A node's time includes everything it does: an injection's time includes its getter's invocation (the first time
+ * its reference is rendered), and a loop's time includes its getters and writing its overflow to the output
+ */
+public class KIProfileReport {
+
+    private static final double NANOS_PER_MILLISECOND = 1_000_000.0;
+
+    /**
+     * The types of the profiled nodes
+     */
+    public enum NodeType {
+        /**
+         * The injections of a reference (e.g. Mock2.The_S_Method) outside loops
+         */
+        INJECTION,
+        /**
+         * A loop block, named after the references it iterates on
+         */
+        LOOP,
+        /**
+         * All the literal text of the template
+         */
+        LITERALS,
+        /**
+         * The writes to the output (segments, loop overflows and the output's end)
+         */
+        OUTPUT,
+        /**
+         * Whole renders of a template that could not be profiled node by node (e.g. an interpreted template)
+         */
+        TEMPLATE
+    }
+
+    /**
+     * The measures of a profiled node
+     */
+    public static class NodeProfile {
+        private final String nodeName;
+        private final NodeType nodeType;
+        private final long callsCount;
+        private final long totalNanos;
+        private final long allocatedBytes;
+
+        NodeProfile(String nodeName, NodeType nodeType, long callsCount, long totalNanos, long allocatedBytes) {
+            this.nodeName = nodeName;
+            this.nodeType = nodeType;
+            this.callsCount = callsCount;
+            this.totalNanos = totalNanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        /**
+         * Get the node's name: the reference of an injection, the references of a loop, or the type's name
+         *
+         * @return The node's name
+         */
+        public String getNodeName() {
+            return nodeName;
+        }
+
+        /**
+         * Get the node's type
+         *
+         * @return The node's type
+         */
+        public NodeType getNodeType() {
+            return nodeType;
+        }
+
+        /**
+         * Get the number of times the node was rendered
+         *
+         * @return The number of calls
+         */
+        public long getCallsCount() {
+            return callsCount;
+        }
+
+        /**
+         * Get the wall time spent rendering the node
+         *
+         * @return The total time in nanoseconds
+         */
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        /**
+         * Get the bytes allocated while rendering the node
+         *
+         * @return The allocated bytes, 0 if the JVM doesn't measure allocations
+         */
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+    }
+
+    private final long rendersCount;
+    private final long totalNanos;
+    private final List<NodeProfile> nodesProfiles;
+
+    KIProfileReport(long rendersCount, long totalNanos, List<NodeProfile> nodesProfiles) {
+        List<NodeProfile> sortedProfiles = new ArrayList<>(nodesProfiles);
+        sortedProfiles.sort(Comparator.comparingLong(NodeProfile::getTotalNanos).reversed());
+        this.rendersCount = rendersCount;
+        this.totalNanos = totalNanos;
+        this.nodesProfiles = Collections.unmodifiableList(sortedProfiles);
+    }
+
+    /**
+     * Get the number of profiled renders
+     *
+     * @return The number of renders
+     */
+    public long getRendersCount() {
+        return rendersCount;
+    }
+
+    /**
+     * Get the wall time of all the profiled renders
+     *
+     * @return The total time in nanoseconds
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * Get the nodes' measures, the hot spots first
+     *
+     * @return The nodes' profiles sorted by their total time, descending
+     */
+    public List<NodeProfile> getNodesProfiles() {
+        return nodesProfiles;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder(String.format(Locale.ROOT, "%d renders in %.3f ms%n", rendersCount, totalNanos / NANOS_PER_MILLISECOND));
+        for (NodeProfile nodeProfile : nodesProfiles) {
+            report.append(String.format(Locale.ROOT, "%6.1f%% %12.3f ms %10d calls %14d bytes  %-9s %s%n",
+                    totalNanos == 0 ? 0 : nodeProfile.totalNanos * 100.0 / totalNanos, nodeProfile.totalNanos / NANOS_PER_MILLISECOND,
+                    nodeProfile.callsCount, nodeProfile.allocatedBytes, nodeProfile.nodeType, nodeProfile.nodeName));
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Compiler;
+
+import java.util.BitSet;
+
+/**
+ * Render node measuring the wall time and the allocated bytes of another render node
+ */
+class KIProfiledRenderNode extends AbstractKIRenderNode {
+
+    private final AbstractKIRenderNode renderNode;
+    private final KIProfileEntry profileEntry;
+
+    /**
+     * Construct a profiled render node
+     *
+     * @param renderNode   The profiled node
+     * @param profileEntry The entry accumulating the node's measures
+     */
+    KIProfiledRenderNode(AbstractKIRenderNode renderNode, KIProfileEntry profileEntry) {
+        this.renderNode = renderNode;
+        this.profileEntry = profileEntry;
+    }
+
+    @Override
+    void render(StringBuilder outputBuffer, KIRenderContext renderContext) throws ReflectiveOperationException {
+        long startBytes = KIProfileEntry.currentThreadAllocatedBytes();
+        long startNanos = System.nanoTime();
+        try {
+            renderNode.render(outputBuffer, renderContext);
+        } finally {
+            profileEntry.record(startNanos, startBytes);
+        }
+    }
+
+    @Override
+    void collectSlots(BitSet slots) {
+        renderNode.collectSlots(slots);
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Compiler;
+
+import KI.Models.KIOutput.IKIChunkOutput;
+import KI.Models.KIOutput.IKIOutput;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The profiled template renders a template while measuring the wall time and the allocated bytes of each of its nodes,
+ * to find what makes a render slow: a getter, a loop or the output. The measures are aggregated across renders
+ * (and across the injections of the same reference) and reported as a hot spot report.
+ * <p>
+ * Compiled templates are profiled node by node, other templates (e.g. interpreted ones) are profiled as a whole.
+ * Profiling adds a constant cost to every node, so it's meant to find the hot spots rather than to measure exact renders
+ */
+public class KIProfiledTemplate implements IKITemplateRenderer {
+
+    private static final String LITERALS_NODE_NAME = "literals";
+    private static final String OUTPUT_NODE_NAME = "output";
+    private static final String TEMPLATE_NODE_NAME = "template";
+
+    /**
+     * Output measuring the writes to another output
+     */
+    private static final class ProfiledOutput implements IKIChunkOutput {
+        private final IKIChunkOutput outputMethod;
+        private final KIProfileEntry outputEntry;
+
+        private ProfiledOutput(IKIChunkOutput outputMethod, KIProfileEntry outputEntry) {
+            this.outputMethod = outputMethod;
+            this.outputEntry = outputEntry;
+        }
+
+        @Override
+        public void writeLine(String outputLine) {
+            long startBytes = KIProfileEntry.currentThreadAllocatedBytes();
+            long startNanos = System.nanoTime();
+            outputMethod.writeLine(outputLine);
+            outputEntry.record(startNanos, startBytes);
+        }
+
+        @Override
+        public void writeChunk(char[] chunk, int offset, int length) {
+            long startBytes = KIProfileEntry.currentThreadAllocatedBytes();
+            long startNanos = System.nanoTime();
+            outputMethod.writeChunk(chunk, offset, length);
+            outputEntry.record(startNanos, startBytes);
+        }
+
+        @Override
+        public void writeChunk(CharSequence chunk) {
+            long startBytes = KIProfileEntry.currentThreadAllocatedBytes();
+            long startNanos = System.nanoTime();
+            outputMethod.writeChunk(chunk);
+            outputEntry.record(startNanos, startBytes);
+        }
+
+        @Override
+        public void handleOutputEnd() {
+            long startBytes = KIProfileEntry.currentThreadAllocatedBytes();
+            long startNanos = System.nanoTime();
+            outputMethod.handleOutputEnd();
+            outputEntry.record(startNanos, startBytes);
+        }
+
+        @Override
+        public void abortOutput() {
+            outputMethod.abortOutput();
+        }
+    }
+
+    private final IKITemplateRenderer template;
+    private final Map<String, KIProfileEntry> profileEntries = new LinkedHashMap<>();
+    private final KIProfileEntry outputEntry;
+    private final KIProfileEntry templateEntry;
+    private final LongAdder rendersCount = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+
+    /**
+     * Construct a profiled template
+     *
+     * @param template The template to be profiled, rendered by the profiled template
+     */
+    public KIProfiledTemplate(IKITemplateRenderer template) {
+        outputEntry = fetchEntry(OUTPUT_NODE_NAME, KIProfileReport.NodeType.OUTPUT);
+        if (!(template instanceof KICompiledTemplate)) {
+            this.template = template;
+            this.templateEntry = fetchEntry(TEMPLATE_NODE_NAME, KIProfileReport.NodeType.TEMPLATE);
+            return;
+        }
+
+        KICompiledTemplate compiledTemplate = (KICompiledTemplate) template;
+        AbstractKIRenderNode[][] segments = compiledTemplate.getSegments();
+        AbstractKIRenderNode[][] profiledSegments = new AbstractKIRenderNode[segments.length][];
+        for (int i = 0; i < segments.length; i++) {
+            profiledSegments[i] = new AbstractKIRenderNode[segments[i].length];
+            for (int j = 0; j < segments[i].length; j++)
+                profiledSegments[i][j] = new KIProfiledRenderNode(segments[i][j], fetchNodeEntry(segments[i][j], compiledTemplate.getReferences()));
+        }
+        this.template = new KICompiledTemplate(compiledTemplate, profiledSegments);
+        this.templateEntry = null;
+    }
+
+    @Override
+    public void render(IKIOutput outputMethod, Object... contentObjects) throws ReflectiveOperationException {
+        long startBytes = KIProfileEntry.currentThreadAllocatedBytes();
+        long startNanos = System.nanoTime();
+        try {
+            template.render(new ProfiledOutput(IKIChunkOutput.of(outputMethod), outputEntry), contentObjects);
+        } finally {
+            totalNanos.add(System.nanoTime() - startNanos);
+            rendersCount.increment();
+            if (templateEntry != null)
+                templateEntry.record(startNanos, startBytes);
+        }
+    }
+
+    /**
+     * Get the hot spot report of the renders so far
+     *
+     * @return The profile report, the slowest nodes first
+     */
+    public KIProfileReport getReport() {
+        List<KIProfileReport.NodeProfile> nodesProfiles = new ArrayList<>(profileEntries.size());
+        for (KIProfileEntry profileEntry : profileEntries.values())
+            nodesProfiles.add(profileEntry.snapshot());
+        return new KIProfileReport(rendersCount.sum(), totalNanos.sum(), nodesProfiles);
+    }
+
+    /**
+     * Clear the measures of the renders so far
+     */
+    public void reset() {
+        for (KIProfileEntry profileEntry : profileEntries.values())
+            profileEntry.reset();
+        rendersCount.reset();
+        totalNanos.reset();
+    }
+
+    /**
+     * Get the profile entry of a render node, shared by the nodes of the same reference (or by all the literals)
+     *
+     * @param renderNode The render node
+     * @param references The template's references indexed by their slots
+     * @return The node's profile entry
+     */
+    private KIProfileEntry fetchNodeEntry(AbstractKIRenderNode renderNode, List<String> references) {
+        if (renderNode instanceof KIInjectionRenderNode)
+            return fetchEntry(references.get(((KIInjectionRenderNode) renderNode).getSlot()), KIProfileReport.NodeType.INJECTION);
+        if (!(renderNode instanceof KILoopRenderNode))
+            return fetchEntry(LITERALS_NODE_NAME, KIProfileReport.NodeType.LITERALS);
+
+        StringJoiner loopName = new StringJoiner(", ", "LOOP(", ")");
+        for (KIInjectionRenderNode injectionNode : ((KILoopRenderNode) renderNode).getInjectionNodes())
+            loopName.add(references.get(injectionNode.getSlot()));
+        return fetchEntry(loopName.toString(), KIProfileReport.NodeType.LOOP);
+    }
+
+    private KIProfileEntry fetchEntry(String nodeName, KIProfileReport.NodeType nodeType) {
+        return profileEntries.computeIfAbsent(nodeType + ":" + nodeName, key -> new KIProfileEntry(nodeName, nodeType));
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Compiler;
+
+import KI.Core.KIFlightRecorder;
+import KI.Core.KILoopSequences;
+import KI.Models.KIOutput.IKIChunkOutput;
+
+import java.text.MessageFormat;
+import java.util.Arrays;
+
+/**
+ * The render context holds the content objects of a single render, and the values fetched from them
+ * so that every accessor slot is invoked at most once per render.
+ * <p>
+ * A compiled template keeps a render context per thread and resets it after every render,
+ * so steady-state renders don't allocate a new context
+ */
+class KIRenderContext {
+
+    public static final String MISSING_CONTENT_OBJECT_ERROR_MESSAGE = "No content object of class \"{0}\" was provided";
+
+    private final Class<?>[] contentClasses;
+    private final Object[] contentObjects;
+    private final KIAccessor[] accessors;
+    private final Object[] slotsValues;
+    private final Object[] slotsSequences;
+    private final boolean[] isSlotFetched;
+    private boolean isInUse = false;
+    private IKIChunkOutput overflowOutput;
+    private int overflowThreshold;
+    private long overflowCharacters;
+
+    /**
+     * Construct a render context
+     *
+     * @param contentClasses The content classes the template was linked to
+     * @param accessors      The accessors of the linked template's slots
+     */
+    KIRenderContext(Class<?>[] contentClasses, KIAccessor[] accessors) {
+        this.contentClasses = contentClasses;
+        this.contentObjects = new Object[contentClasses.length];
+        this.accessors = accessors;
+        this.slotsValues = new Object[accessors.length];
+        this.slotsSequences = new Object[accessors.length];
+        this.isSlotFetched = new boolean[accessors.length];
+    }
+
+    /**
+     * Construct a render context holding a copy of the bound content objects and the fetched values of another context.
+     * The copied context should have all its slots prefetched, so renders using the copy only read the values.
+     * The copy is independent of the copied context, which could be reset while the copy is still in use
+     *
+     * @param prefetchedContext The context holding the values
+     */
+    KIRenderContext(KIRenderContext prefetchedContext) {
+        this.contentClasses = prefetchedContext.contentClasses;
+        this.contentObjects = prefetchedContext.contentObjects.clone();
+        this.accessors = prefetchedContext.accessors;
+        this.slotsValues = prefetchedContext.slotsValues.clone();
+        this.slotsSequences = prefetchedContext.slotsSequences.clone();
+        this.isSlotFetched = prefetchedContext.isSlotFetched.clone();
+        this.isInUse = true;
+    }
+
+    /**
+     * Indicates if the context is currently used by a render
+     *
+     * @return A boolean indicating if the context is in use
+     */
+    boolean isInUse() {
+        return isInUse;
+    }
+
+    /**
+     * Order the content objects as the classes the template was linked to, and mark the context as in use
+     *
+     * @param boundContentObjects The objects holding the injection content
+     */
+    void bind(Object[] boundContentObjects) {
+        for (Object contentObject : boundContentObjects) {
+            for (int i = 0; i < contentClasses.length; i++) {
+                if (contentClasses[i] != contentObject.getClass())
+                    continue;
+                contentObjects[i] = contentObject;
+                break;
+            }
+        }
+
+        for (int i = 0; i < contentClasses.length; i++) {
+            if (contentObjects[i] != null)
+                continue;
+            reset();
+            throw new IllegalArgumentException(MessageFormat.format(MISSING_CONTENT_OBJECT_ERROR_MESSAGE, contentClasses[i].getName()));
+        }
+        isInUse = true;
+    }
+
+    /**
+     * Clear the context's content objects and fetched values, so it could be used by the next render
+     */
+    void reset() {
+        Arrays.fill(contentObjects, null);
+        Arrays.fill(slotsValues, null);
+        Arrays.fill(slotsSequences, null);
+        Arrays.fill(isSlotFetched, false);
+        isInUse = false;
+        overflowOutput = null;
+    }
+
+    /**
+     * Set the output large render buffers are written to while rendering, instead of being gathered in memory
+     *
+     * @param overflowOutput    The output to write large buffers to
+     * @param overflowThreshold The buffer's length above which it's written to the overflow output
+     */
+    void setOverflowOutput(IKIChunkOutput overflowOutput, int overflowThreshold) {
+        this.overflowOutput = overflowOutput;
+        this.overflowThreshold = overflowThreshold;
+        this.overflowCharacters = 0;
+    }
+
+    /**
+     * Get the number of characters written to the overflow output since it was set
+     *
+     * @return The overflow output's written characters
+     */
+    long getOverflowCharacters() {
+        return overflowCharacters;
+    }
+
+    /**
+     * Write a render buffer to the overflow output and clear it, if it exceeds the overflow threshold
+     *
+     * @param outputBuffer The render buffer
+     */
+    void flushOverflow(StringBuilder outputBuffer) {
+        if (overflowOutput == null || outputBuffer.length() <= overflowThreshold)
+            return;
+        Object flushEvent = KIFlightRecorder.OUTPUT_FLUSH.begin();
+        overflowOutput.writeChunk(outputBuffer);
+        overflowCharacters += outputBuffer.length();
+        KIFlightRecorder.OUTPUT_FLUSH.commit(flushEvent, outputBuffer.length());
+        outputBuffer.setLength(0);
+    }
+
+    /**
+     * Get the value of an accessor slot, invoking its getter on the first call only
+     *
+     * @param slot The accessor slot index
+     * @return The getter's returned value
+     * @throws ReflectiveOperationException An exception is thrown if the getter invocation failed
+     */
+    Object fetchValue(int slot) throws ReflectiveOperationException {
+        if (!isSlotFetched[slot]) {
+            slotsValues[slot] = accessors[slot].invoke(contentObjects);
+            isSlotFetched[slot] = true;
+        }
+        return slotsValues[slot];
+    }
+
+    /**
+     * Get the value of an accessor slot in a form that could be indexed by loops.
+     * Random access lists and arrays are returned as they are, other collections and streams are converted to arrays once per render
+     *
+     * @param slot The accessor slot index
+     * @return The slot's value as an array or a random access list, or the value itself if it's not a sequence
+     * @throws ReflectiveOperationException An exception is thrown if the getter invocation failed
+     */
+    Object fetchSequence(int slot) throws ReflectiveOperationException {
+        if (slotsSequences[slot] != null)
+            return slotsSequences[slot];
+
+        Object slotValue = KILoopSequences.toSequence(fetchValue(slot));
+        slotsSequences[slot] = slotValue;
+        return slotValue;
+    }
+
+    /**
+     * Fetch the value of every slot, and its form that could be indexed by loops
+     *
+     * @throws ReflectiveOperationException An exception is thrown if a getter invocation failed
+     */
+    void prefetchSlots() throws ReflectiveOperationException {
+        for (int slot = 0; slot < accessors.length; slot++)
+            fetchSequence(slot);
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Compiler;
+
+import KI.Models.KIFormat.KIFormatterRegistry;
+import KI.Models.KITemplateConfiguration;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A template artifact is a compiled template written in a compact binary form, so it could be loaded at startup
+ * without parsing the template or resolving its aliases again.
+ * <p>
+ * An artifact holds a header (magic number, format version, CRC32 checksum and length of the payload) followed by the payload:
+ * the names of the content classes, the resolved references table (content class index, getter name and aliases of every slot)
+ * and the render nodes of every segment, literals being stored UTF-8 encoded.
+ * Artifacts are read through a memory-mapped file, and only the getters are looked up by name when loaded
+ */
+public final class KITemplateArtifact {
+
+    public static final String ARTIFACT_EXTENSION = ".kia";
+    public static final int FORMAT_VERSION = 1;
+
+    public static final String NOT_COMPILED_ERROR_MESSAGE = "Only compiled templates could be written as artifacts, found {0}";
+    public static final String INVALID_ARTIFACT_ERROR_MESSAGE = "The template artifact is invalid: {0}";
+    public static final String CONTENT_CLASSES_MISMATCH_ERROR_MESSAGE = "The template artifact was compiled for the content classes {0}";
+
+    private static final int MAGIC_NUMBER = 0x4B494131;
+    private static final int HEADER_LENGTH = 14;
+
+    private static final byte LITERAL_NODE = 0;
+    private static final byte INJECTION_NODE = 1;
+    private static final byte LOOP_NODE = 2;
+
+    private KITemplateArtifact() {
+    }
+
+    /**
+     * Write a compiled template as an artifact file
+     *
+     * @param template     The compiled template
+     * @param artifactPath The path of the artifact file
+     * @throws IOException An exception is thrown if the file could not be written
+     */
+    public static void write(IKITemplateRenderer template, Path artifactPath) throws IOException {
+        try (OutputStream outputStream = Files.newOutputStream(artifactPath)) {
+            write(template, outputStream);
+        }
+    }
+
+    /**
+     * Write a compiled template as an artifact
+     *
+     * @param template     The compiled template
+     * @param outputStream The stream the artifact is written to, it's not closed
+     * @throws IOException An exception is thrown if the artifact could not be written
+     */
+    public static void write(IKITemplateRenderer template, OutputStream outputStream) throws IOException {
+        if (!(template instanceof KICompiledTemplate))
+            throw new IllegalArgumentException(MessageFormat.format(NOT_COMPILED_ERROR_MESSAGE, template.getClass().getSimpleName()));
+        KICompiledTemplate compiledTemplate = (KICompiledTemplate) template;
+
+        ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(payloadBytes);
+
+        Class<?>[] contentClasses = compiledTemplate.getContentClasses();
+        payload.writeInt(contentClasses.length);
+        for (Class<?> contentClass : contentClasses)
+            writeString(payload, contentClass.getName());
+
+        KIAccessor[] accessors = compiledTemplate.getAccessors();
+        payload.writeInt(accessors.length);
+        for (KIAccessor accessor : accessors) {
+            payload.writeInt(accessor.getContentIndex());
+            writeString(payload, accessor.getMethodName());
+            writeString(payload, accessor.getClassAlias());
+            writeString(payload, accessor.getMethodAlias());
+        }
+
+        AbstractKIRenderNode[][] segments = compiledTemplate.getSegments();
+        payload.writeInt(segments.length);
+        for (AbstractKIRenderNode[] segment : segments)
+            writeNodes(payload, segment);
+        payload.flush();
+
+        CRC32 checksum = new CRC32();
+        checksum.update(payloadBytes.toByteArray());
+        DataOutputStream artifact = new DataOutputStream(outputStream);
+        artifact.writeInt(MAGIC_NUMBER);
+        artifact.writeShort(FORMAT_VERSION);
+        artifact.writeInt((int) checksum.getValue());
+        artifact.writeInt(payloadBytes.size());
+        payloadBytes.writeTo(artifact);
+        artifact.flush();
+    }
+
+    /**
+     * Load a template artifact file through a memory-mapped read
+     *
+     * @param artifactPath   The path of the artifact file
+     * @param templateConfig The configuration the template is rendered with (formatters, loop memory budget and pool)
+     * @param contentClasses The classes of the objects that will hold the injection content, as the template was compiled for
+     * @return The compiled template
+     * @throws IOException                  An exception is thrown if the file could not be read, or is not a valid artifact
+     * @throws ReflectiveOperationException An exception is thrown if a getter does not exist anymore or is not accessible
+     */
+    public static IKITemplateRenderer load(Path artifactPath, KITemplateConfiguration templateConfig,
+                                           Class<?>... contentClasses) throws IOException, ReflectiveOperationException {
+        ByteBuffer artifact;
+        try (FileChannel channel = FileChannel.open(artifactPath, StandardOpenOption.READ)) {
+            artifact = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        return read(artifact, templateConfig, contentClasses);
+    }
+
+    /**
+     * Read a template artifact from a buffer, starting at the buffer's position
+     *
+     * @param artifact       The buffer holding the artifact
+     * @param templateConfig The configuration the template is rendered with (formatters, loop memory budget and pool)
+     * @param contentClasses The classes of the objects that will hold the injection content, as the template was compiled for
+     * @return The compiled template
+     * @throws IOException                  An exception is thrown if the buffer does not hold a valid artifact
+     * @throws ReflectiveOperationException An exception is thrown if a getter does not exist anymore or is not accessible
+     */
+    public static IKITemplateRenderer read(ByteBuffer artifact, KITemplateConfiguration templateConfig,
+                                           Class<?>... contentClasses) throws IOException, ReflectiveOperationException {
+        if (artifact.remaining() < HEADER_LENGTH || artifact.getInt() != MAGIC_NUMBER)
+            throw invalidArtifact("not a template artifact");
+        int version = artifact.getShort();
+        if (version != FORMAT_VERSION)
+            throw invalidArtifact("unsupported format version " + version);
+        int expectedChecksum = artifact.getInt();
+        int payloadLength = artifact.getInt();
+        if (payloadLength < 0 || payloadLength > artifact.remaining())
+            throw invalidArtifact("truncated payload");
+
+        ByteBuffer payload = artifact.slice();
+        payload.limit(payloadLength);
+        CRC32 checksum = new CRC32();
+        checksum.update(payload.duplicate());
+        if ((int) checksum.getValue() != expectedChecksum)
+            throw invalidArtifact("checksum mismatch");
+
+        try {
+            return readPayload(payload, templateConfig, contentClasses);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException ex) {
+            throw invalidArtifact("malformed payload");
+        }
+    }
+
+    private static IKITemplateRenderer readPayload(ByteBuffer payload, KITemplateConfiguration templateConfig,
+                                                   Class<?>[] contentClasses) throws IOException, ReflectiveOperationException {
+        String[] classesNames = new String[payload.getInt()];
+        for (int i = 0; i < classesNames.length; i++)
+            classesNames[i] = readString(payload);
+        if (classesNames.length != contentClasses.length)
+            throw new IllegalArgumentException(MessageFormat.format(CONTENT_CLASSES_MISMATCH_ERROR_MESSAGE, Arrays.toString(classesNames)));
+        for (int i = 0; i < classesNames.length; i++) {
+            if (!classesNames[i].equals(contentClasses[i].getName()))
+                throw new IllegalArgumentException(MessageFormat.format(CONTENT_CLASSES_MISMATCH_ERROR_MESSAGE, Arrays.toString(classesNames)));
+        }
+
+        KIAccessor[] accessors = new KIAccessor[payload.getInt()];
+        List<String> references = new ArrayList<>(accessors.length);
+        for (int slot = 0; slot < accessors.length; slot++) {
+            int contentIndex = payload.getInt();
+            String methodName = readString(payload);
+            String classAlias = readString(payload);
+            String methodAlias = readString(payload);
+            if (contentIndex < 0 || contentIndex >= contentClasses.length)
+                throw invalidArtifact("content class index out of range");
+            accessors[slot] = KIAccessor.resolve(contentClasses, contentIndex, methodName, classAlias, methodAlias);
+            references.add(classAlias + "." + methodAlias);
+        }
+
+        AbstractKIRenderNode[][] segments = new AbstractKIRenderNode[payload.getInt()][];
+        for (int i = 0; i < segments.length; i++)
+            segments[i] = readNodes(payload, accessors, templateConfig, null);
+        if (payload.hasRemaining())
+            throw invalidArtifact("unexpected trailing bytes");
+
+        return new KICompiledTemplate(contentClasses, accessors, references, segments, templateConfig.getLoopMemoryBudget());
+    }
+
+    private static void writeNodes(DataOutputStream payload, AbstractKIRenderNode[] renderNodes) throws IOException {
+        payload.writeInt(renderNodes.length);
+        for (AbstractKIRenderNode renderNode : renderNodes) {
+            if (renderNode instanceof KILiteralRenderNode) {
+                payload.writeByte(LITERAL_NODE);
+                writeString(payload, ((KILiteralRenderNode) renderNode).getText());
+            } else if (renderNode instanceof KIInjectionRenderNode) {
+                KIInjectionRenderNode injectionNode = (KIInjectionRenderNode) renderNode;
+                payload.writeByte(INJECTION_NODE);
+                payload.writeInt(injectionNode.getSlot());
+                writeString(payload, injectionNode.getInjectionTemplate());
+            } else if (renderNode instanceof KILoopRenderNode) {
+                payload.writeByte(LOOP_NODE);
+                writeNodes(payload, ((KILoopRenderNode) renderNode).getBodyNodes());
+            } else {
+                throw new IllegalArgumentException(MessageFormat.format(NOT_COMPILED_ERROR_MESSAGE, renderNode.getClass().getSimpleName()));
+            }
+        }
+    }
+
+    private static AbstractKIRenderNode[] readNodes(ByteBuffer payload, KIAccessor[] accessors, KITemplateConfiguration templateConfig,
+                                                    List<KIInjectionRenderNode> injectionNodes) throws IOException {
+        KIFormatterRegistry formatterRegistry = templateConfig.getFormatterRegistry();
+        AbstractKIRenderNode[] renderNodes = new AbstractKIRenderNode[payload.getInt()];
+        for (int i = 0; i < renderNodes.length; i++) {
+            byte nodeType = payload.get();
+            if (nodeType == LITERAL_NODE) {
+                renderNodes[i] = new KILiteralRenderNode(readString(payload));
+            } else if (nodeType == INJECTION_NODE) {
+                int slot = payload.getInt();
+                String injectionTemplate = readString(payload);
+                if (slot < 0 || slot >= accessors.length)
+                    throw invalidArtifact("slot out of range");
+                KIInjectionRenderNode injectionNode = new KIInjectionRenderNode(injectionTemplate, slot, formatterRegistry,
+                        formatterRegistry.getReferenceFormat(accessors[slot].getClassAlias(), accessors[slot].getMethodAlias()));
+                if (injectionNodes != null)
+                    injectionNodes.add(injectionNode);
+                renderNodes[i] = injectionNode;
+            } else if (nodeType == LOOP_NODE) {
+                List<KIInjectionRenderNode> loopInjectionNodes = new ArrayList<>();
+                AbstractKIRenderNode[] bodyNodes = readNodes(payload, accessors, templateConfig, loopInjectionNodes);
+                renderNodes[i] = new KILoopRenderNode(bodyNodes, loopInjectionNodes.toArray(new KIInjectionRenderNode[0]), templateConfig.getLoopPool());
+            } else {
+                throw invalidArtifact("unknown node type " + nodeType);
+            }
+        }
+        return renderNodes;
+    }
+
+    private static void writeString(DataOutputStream payload, String value) throws IOException {
+        byte[] encodedValue = value.getBytes(StandardCharsets.UTF_8);
+        payload.writeInt(encodedValue.length);
+        payload.write(encodedValue);
+    }
+
+    private static String readString(ByteBuffer payload) {
+        byte[] encodedValue = new byte[payload.getInt()];
+        payload.get(encodedValue);
+        return new String(encodedValue, StandardCharsets.UTF_8);
+    }
+
+    private static IOException invalidArtifact(String reason) {
+        return new IOException(MessageFormat.format(INVALID_ARTIFACT_ERROR_MESSAGE, reason));
+    }
+}
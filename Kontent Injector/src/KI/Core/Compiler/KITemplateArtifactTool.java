@@ -0,0 +1,117 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Compiler;
+
+import KI.Core.KontentInjector;
+import KI.Models.KIInput.FileInput;
+import KI.Models.KITemplateConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Build-time tool compiling template files into template artifacts, to be loaded by KontentInjector.loadCompiled
+ * <pre>
+ * java KI.Core.Compiler.KITemplateArtifactTool [-config configurationSupplierClass] outputDirectory contentClass[,contentClass...] templateFile...
+ * </pre>
+ * The configuration supplier is a class with a public no-arg constructor implementing Supplier&lt;KITemplateConfiguration&gt;,
+ * providing the aliases the templates are compiled with. Every template file is written to the output directory
+ * with its name followed by the artifact extension
+ */
+public final class KITemplateArtifactTool {
+
+    public static final String USAGE = "Usage: KITemplateArtifactTool [-config configurationSupplierClass] outputDirectory "
+            + "contentClass[,contentClass...] templateFile...";
+
+    private KITemplateArtifactTool() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int argIndex = 0;
+        KITemplateConfiguration templateConfig = new KITemplateConfiguration();
+        if (args.length > 1 && args[0].equals("-config")) {
+            templateConfig = createConfiguration(args[1]);
+            argIndex = 2;
+        }
+        if (args.length - argIndex < 3) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        File outputDirectory = new File(args[argIndex]);
+        Class<?>[] contentClasses = loadClasses(args[argIndex + 1]);
+        List<File> templateFiles = new ArrayList<>();
+        for (int i = argIndex + 2; i < args.length; i++)
+            templateFiles.add(new File(args[i]));
+
+        for (Path artifactPath : buildArtifacts(templateConfig, outputDirectory, templateFiles, contentClasses))
+            System.out.println(artifactPath);
+    }
+
+    /**
+     * Compile template files and write them as artifacts
+     *
+     * @param templateConfig  The configuration the templates are compiled with
+     * @param outputDirectory The directory the artifacts are written to
+     * @param templateFiles   The template files
+     * @param contentClasses  The classes of the objects that will hold the injection content
+     * @return The paths of the written artifacts
+     * @throws IOException                  An exception is thrown if a template could not be read or an artifact could not be written
+     * @throws ReflectiveOperationException An UnresolvedReferenceException is thrown holding all the references to classes or methods that do not exist
+     */
+    public static List<Path> buildArtifacts(KITemplateConfiguration templateConfig, File outputDirectory, List<File> templateFiles,
+                                            Class<?>... contentClasses) throws IOException, ReflectiveOperationException {
+        if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs())
+            throw new IOException(outputDirectory.getPath());
+
+        KontentInjector injector = new KontentInjector(templateConfig);
+        List<Path> artifactsPaths = new ArrayList<>(templateFiles.size());
+        for (File templateFile : templateFiles) {
+            IKITemplateRenderer template = injector.compile(new FileInput(templateFile), contentClasses);
+            Path artifactPath = new File(outputDirectory, templateFile.getName() + KITemplateArtifact.ARTIFACT_EXTENSION).toPath();
+            KITemplateArtifact.write(template, artifactPath);
+            artifactsPaths.add(artifactPath);
+        }
+        return artifactsPaths;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static KITemplateConfiguration createConfiguration(String supplierClassName) throws ReflectiveOperationException {
+        Object supplier = Class.forName(supplierClassName).getConstructor().newInstance();
+        return ((Supplier<KITemplateConfiguration>) supplier).get();
+    }
+
+    private static Class<?>[] loadClasses(String classesNames) throws ClassNotFoundException {
+        String[] names = classesNames.split(",");
+        Class<?>[] classes = new Class<?>[names.length];
+        for (int i = 0; i < names.length; i++)
+            classes[i] = Class.forName(names[i].trim());
+        return classes;
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Compiler;
+
+import KI.Core.Template.*;
+import KI.Models.KIFormat.KIFormatterRegistry;
+import KI.Models.KITemplateConfiguration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The template compiler turns a linked template into render nodes. Every injection becomes a read of its
+ * accessor slot, and literals become constant strings, so the compiled template renders with direct getter
+ * calls only.
+ * <p>
+ * If any getter is not accessible to the linker, the template falls back to the interpreted template
+ */
+public class KITemplateCompiler {
+
+    private final KITemplateConfiguration templateConfig;
+
+    /**
+     * Construct a template compiler
+     *
+     * @param templateConfig The configuration of the templates to be compiled
+     */
+    public KITemplateCompiler(KITemplateConfiguration templateConfig) {
+        this.templateConfig = templateConfig;
+    }
+
+    /**
+     * Link and compile a parsed template for the provided content classes
+     *
+     * @param parsedTemplate The parsed template
+     * @param contentClasses The classes of the objects that will hold the injection content
+     * @return A compiled template, or an interpreted template if a getter is not accessible
+     * @throws ReflectiveOperationException An UnresolvedReferenceException is thrown holding all the references to classes or methods that do not exist
+     */
+    public IKITemplateRenderer compile(KIParsedTemplate parsedTemplate, Class<?>... contentClasses) throws ReflectiveOperationException {
+        return compile(new KITemplateLinker(templateConfig).link(parsedTemplate, contentClasses));
+    }
+
+    /**
+     * Compile a linked template
+     *
+     * @param linkedTemplate The linked template
+     * @return A compiled template, or an interpreted template if a getter is not accessible
+     */
+    public IKITemplateRenderer compile(KILinkedTemplate linkedTemplate) {
+        KIParsedTemplate parsedTemplate = linkedTemplate.getParsedTemplate();
+        if (!linkedTemplate.isAccessible())
+            return new KIInterpretedTemplate(templateConfig, parsedTemplate.getSourceLines());
+
+        List<KITemplateSegment> templateSegments = parsedTemplate.getSegments();
+        AbstractKIRenderNode[][] segments = new AbstractKIRenderNode[templateSegments.size()][];
+        for (int i = 0; i < segments.length; i++)
+            segments[i] = compileNodes(templateSegments.get(i).getNodes(), linkedTemplate, null);
+
+        return new KICompiledTemplate(linkedTemplate, segments, templateConfig.getLoopMemoryBudget());
+    }
+
+    /**
+     * Link several parsed templates together and compile them into a group, so the getters referenced by many templates
+     * are evaluated once for all of them
+     *
+     * @param parsedTemplates The parsed templates
+     * @param contentClasses  The classes of the objects that will hold the injection content
+     * @return The template group
+     * @throws ReflectiveOperationException An UnresolvedReferenceException is thrown holding all the references to classes or methods that do not exist
+     */
+    public KITemplateGroup compileGroup(List<KIParsedTemplate> parsedTemplates, Class<?>... contentClasses) throws ReflectiveOperationException {
+        List<String> sourceLines = new ArrayList<>();
+        List<KITemplateSegment> templatesSegments = new ArrayList<>();
+        for (KIParsedTemplate parsedTemplate : parsedTemplates) {
+            sourceLines.addAll(parsedTemplate.getSourceLines());
+            templatesSegments.addAll(parsedTemplate.getSegments());
+        }
+        KILinkedTemplate sharedLinkedTemplate = new KITemplateLinker(templateConfig).link(new KIParsedTemplate(sourceLines, templatesSegments), contentClasses);
+
+        IKITemplateRenderer[] templates = new IKITemplateRenderer[parsedTemplates.size()];
+        for (int i = 0; i < templates.length; i++) {
+            KIParsedTemplate parsedTemplate = parsedTemplates.get(i);
+            if (!sharedLinkedTemplate.isAccessible()) {
+                templates[i] = new KIInterpretedTemplate(templateConfig, parsedTemplate.getSourceLines());
+                continue;
+            }
+
+            List<KITemplateSegment> templateSegments = parsedTemplate.getSegments();
+            AbstractKIRenderNode[][] segments = new AbstractKIRenderNode[templateSegments.size()][];
+            for (int j = 0; j < segments.length; j++)
+                segments[j] = compileNodes(templateSegments.get(j).getNodes(), sharedLinkedTemplate, null);
+            templates[i] = new KICompiledTemplate(sharedLinkedTemplate, segments, templateConfig.getLoopMemoryBudget());
+        }
+
+        return new KITemplateGroup(templates, sharedLinkedTemplate.isAccessible() ? sharedLinkedTemplate : null);
+    }
+
+    /**
+     * Compile a linked template to be rendered incrementally, re-rendering only the segments whose values changed
+     *
+     * @param linkedTemplate The linked template
+     * @return An incremental template, or an interpreted template if a getter is not accessible
+     */
+    public IKITemplateRenderer compileIncremental(KILinkedTemplate linkedTemplate) {
+        IKITemplateRenderer template = compile(linkedTemplate);
+        if (!(template instanceof KICompiledTemplate))
+            return template;
+        return new KIIncrementalTemplate((KICompiledTemplate) template);
+    }
+
+    /**
+     * Compile template nodes into render nodes
+     *
+     * @param nodes          The template nodes
+     * @param linkedTemplate The linked template holding the nodes' slots
+     * @param injectionNodes A list to collect the compiled injection nodes in, or null if not needed
+     * @return The render nodes
+     */
+    private AbstractKIRenderNode[] compileNodes(List<IKITemplateNode> nodes, KILinkedTemplate linkedTemplate,
+                                                List<KIInjectionRenderNode> injectionNodes) {
+        AbstractKIRenderNode[] renderNodes = new AbstractKIRenderNode[nodes.size()];
+        KIFormatterRegistry formatterRegistry = templateConfig.getFormatterRegistry();
+
+        for (int i = 0; i < renderNodes.length; i++) {
+            IKITemplateNode node = nodes.get(i);
+
+            if (node instanceof KIInjectionNode) {
+                KIInjectionNode templateInjectionNode = (KIInjectionNode) node;
+                KIInjectionRenderNode injectionNode = new KIInjectionRenderNode(node.getSourceText(), linkedTemplate.getSlot(templateInjectionNode),
+                        formatterRegistry, formatterRegistry.getReferenceFormat(templateInjectionNode.getClassAlias(), templateInjectionNode.getMethodAlias()));
+                if (injectionNodes != null)
+                    injectionNodes.add(injectionNode);
+                renderNodes[i] = injectionNode;
+            } else if (node instanceof KILoopNode) {
+                List<KIInjectionRenderNode> loopInjectionNodes = new ArrayList<>();
+                AbstractKIRenderNode[] bodyNodes = compileNodes(((KILoopNode) node).getBodyNodes(), linkedTemplate, loopInjectionNodes);
+                renderNodes[i] = new KILoopRenderNode(bodyNodes, loopInjectionNodes.toArray(new KIInjectionRenderNode[0]), templateConfig.getLoopPool());
+            } else {
+                renderNodes[i] = new KILiteralRenderNode(node.getSourceText());
+            }
+        }
+        return renderNodes;
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Compiler;
+
+import KI.Models.KIOutput.IKIOutput;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * The template group renders several templates against the same content objects, each into its own output.
+ * The templates are linked together, so a getter referenced by many templates is invoked once per render of the group
+ * and its value is shared by all the templates.
+ * <p>
+ * If any getter is not accessible, the templates fall back to interpreted templates rendered one after the other
+ */
+public class KITemplateGroup {
+
+    public static final String OUTPUTS_COUNT_ERROR_MESSAGE = "Expected {0} outputs, one for each template of the group, but got {1}";
+
+    private final IKITemplateRenderer[] templates;
+    private final Class<?>[] contentClasses;
+    private final KIAccessor[] accessors;
+
+    /**
+     * Construct a template group
+     *
+     * @param templates            The templates of the group
+     * @param sharedLinkedTemplate The linked template holding the slots shared by the compiled templates, or null if the templates are interpreted
+     */
+    KITemplateGroup(IKITemplateRenderer[] templates, KILinkedTemplate sharedLinkedTemplate) {
+        this.templates = templates;
+        this.contentClasses = sharedLinkedTemplate == null ? null : sharedLinkedTemplate.getContentClasses();
+        this.accessors = sharedLinkedTemplate == null ? null : sharedLinkedTemplate.getAccessors();
+    }
+
+    /**
+     * Get the number of templates in the group
+     *
+     * @return The number of templates
+     */
+    public int getTemplatesCount() {
+        return templates.length;
+    }
+
+    /**
+     * Get a template of the group, to be rendered on its own
+     *
+     * @param templateIndex The template's index, in the order the templates were compiled
+     * @return The template
+     */
+    public IKITemplateRenderer getTemplate(int templateIndex) {
+        return templates[templateIndex];
+    }
+
+    /**
+     * Render all the templates one after the other, evaluating every getter once
+     *
+     * @param outputMethods  The outputs of the templates, in the order the templates were compiled
+     * @param contentObjects The objects holding the injection content
+     * @throws ReflectiveOperationException An exception is thrown if a getter invocation failed
+     */
+    public void render(List<? extends IKIOutput> outputMethods, Object... contentObjects) throws ReflectiveOperationException {
+        validateOutputsCount(outputMethods);
+        if (accessors == null) {
+            for (int i = 0; i < templates.length; i++)
+                templates[i].render(outputMethods.get(i), contentObjects);
+            return;
+        }
+
+        KIRenderContext renderContext = bindRenderContext(contentObjects);
+        try {
+            for (int i = 0; i < templates.length; i++)
+                ((KICompiledTemplate) templates[i]).render(outputMethods.get(i), renderContext);
+        } finally {
+            renderContext.reset();
+        }
+    }
+
+    /**
+     * Render all the templates in parallel, evaluating every getter once before rendering
+     *
+     * @param outputMethods  The outputs of the templates, in the order the templates were compiled
+     * @param executor       The executor the templates are rendered on
+     * @param contentObjects The objects holding the injection content
+     * @throws ReflectiveOperationException An exception is thrown if a getter invocation failed
+     * @throws InterruptedException         An exception is thrown if the current thread was interrupted while waiting for the renders
+     */
+    public void renderParallel(List<? extends IKIOutput> outputMethods, ExecutorService executor, Object... contentObjects)
+            throws ReflectiveOperationException, InterruptedException {
+        validateOutputsCount(outputMethods);
+        KIRenderContext renderContext = accessors == null ? null : bindRenderContext(contentObjects);
+        List<Future<Void>> renders = new ArrayList<>(templates.length);
+        boolean isAwaited = false;
+
+        try {
+            if (renderContext != null)
+                renderContext.prefetchSlots();
+
+            for (int i = 0; i < templates.length; i++) {
+                IKITemplateRenderer template = templates[i];
+                IKIOutput outputMethod = outputMethods.get(i);
+                KIRenderContext templateContext = renderContext == null ? null : new KIRenderContext(renderContext);
+                renders.add(executor.submit(() -> {
+                    if (templateContext == null)
+                        template.render(outputMethod, contentObjects);
+                    else
+                        ((KICompiledTemplate) template).render(outputMethod, templateContext);
+                    return null;
+                }));
+            }
+
+            awaitRenders(renders);
+            isAwaited = true;
+        } finally {
+            if (!isAwaited) {
+                for (Future<Void> render : renders)
+                    render.cancel(true);
+            }
+            if (renderContext != null)
+                renderContext.reset();
+        }
+    }
+
+    /**
+     * Create a render context shared by all the templates and bind the content objects to it
+     *
+     * @param contentObjects The objects holding the injection content
+     * @return The bound render context
+     */
+    private KIRenderContext bindRenderContext(Object[] contentObjects) {
+        KIRenderContext renderContext = new KIRenderContext(contentClasses, accessors);
+        renderContext.bind(contentObjects);
+        return renderContext;
+    }
+
+    /**
+     * Wait for all the renders to finish, rethrowing the first failure once they're all done
+     *
+     * @param renders The submitted renders
+     * @throws ReflectiveOperationException An exception is thrown if a getter invocation failed
+     * @throws InterruptedException         An exception is thrown if the current thread was interrupted while waiting
+     */
+    private void awaitRenders(List<Future<Void>> renders) throws ReflectiveOperationException, InterruptedException {
+        Throwable failure = null;
+        for (Future<Void> render : renders) {
+            try {
+                render.get();
+            } catch (ExecutionException e) {
+                if (failure == null)
+                    failure = e.getCause();
+            }
+        }
+
+        if (failure == null)
+            return;
+        if (failure instanceof ReflectiveOperationException)
+            throw (ReflectiveOperationException) failure;
+        if (failure instanceof RuntimeException)
+            throw (RuntimeException) failure;
+        if (failure instanceof Error)
+            throw (Error) failure;
+        throw new IllegalStateException(failure);
+    }
+
+    /**
+     * Validate that there is an output for every template
+     *
+     * @param outputMethods The outputs of the templates
+     */
+    private void validateOutputsCount(List<? extends IKIOutput> outputMethods) {
+        if (outputMethods.size() != templates.length)
+            throw new IllegalArgumentException(MessageFormat.format(OUTPUTS_COUNT_ERROR_MESSAGE, templates.length, outputMethods.size()));
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Compiler;
+
+import KI.Core.Template.*;
+import KI.Exceptions.UnresolvedReferenceException;
+import KI.Models.KIClassConfiguration;
+import KI.Models.KITemplateConfiguration;
+
+import java.util.*;
+
+/**
+ * The template linker binds a parsed template to its content classes. Every reference is resolved once to
+ * an accessor slot, and all the references that could not be resolved are reported together before anything
+ * is rendered
+ */
+public class KITemplateLinker {
+
+    private final KITemplateConfiguration templateConfig;
+
+    /**
+     * Construct a template linker
+     *
+     * @param templateConfig The configuration of the templates to be linked
+     */
+    public KITemplateLinker(KITemplateConfiguration templateConfig) {
+        this.templateConfig = templateConfig;
+    }
+
+    /**
+     * Link a parsed template to the provided content classes
+     *
+     * @param parsedTemplate The parsed template
+     * @param contentClasses The classes of the objects that will hold the injection content
+     * @return The linked template
+     * @throws UnresolvedReferenceException An exception holding all the references to classes or methods that do not exist
+     */
+    public KILinkedTemplate link(KIParsedTemplate parsedTemplate, Class<?>... contentClasses) throws UnresolvedReferenceException {
+        List<KIInjectionNode> injectionNodes = new ArrayList<>();
+        for (KITemplateSegment segment : parsedTemplate.getSegments())
+            collectInjectionNodes(segment.getNodes(), injectionNodes);
+
+        Map<String, Integer> classesIndices = mapClassesAliases(contentClasses);
+        Map<String, Integer> referencesSlots = new HashMap<>();
+        Map<KIInjectionNode, Integer> injectionsSlots = new IdentityHashMap<>();
+        List<String> references = new ArrayList<>();
+        List<KIAccessor> accessors = new ArrayList<>();
+        List<String> unresolvedReferences = new ArrayList<>();
+        boolean isAccessible = true;
+
+        for (KIInjectionNode injectionNode : injectionNodes) {
+            String reference = injectionNode.getClassAlias() + "." + injectionNode.getMethodAlias();
+            Integer slot = referencesSlots.get(reference);
+
+            if (slot == null) {
+                slot = references.size();
+                referencesSlots.put(reference, slot);
+                references.add(reference);
+
+                try {
+                    accessors.add(resolveAccessor(injectionNode, classesIndices, contentClasses));
+                } catch (IllegalAccessException ex) {
+                    isAccessible = false;
+                    accessors.add(null);
+                } catch (ReflectiveOperationException ex) {
+                    unresolvedReferences.add(reference);
+                    accessors.add(null);
+                }
+            }
+            injectionsSlots.put(injectionNode, slot);
+        }
+
+        if (!unresolvedReferences.isEmpty())
+            throw new UnresolvedReferenceException(unresolvedReferences);
+
+        KIAccessor[] accessorsArray = isAccessible ? accessors.toArray(new KIAccessor[0]) : null;
+        return new KILinkedTemplate(parsedTemplate, contentClasses, references, accessorsArray, injectionsSlots);
+    }
+
+    /**
+     * Collect the injection nodes found in a list of nodes, including the ones in loop bodies
+     *
+     * @param nodes          The template nodes
+     * @param injectionNodes The list to add the injection nodes to
+     */
+    private void collectInjectionNodes(List<IKITemplateNode> nodes, List<KIInjectionNode> injectionNodes) {
+        for (IKITemplateNode node : nodes) {
+            if (node instanceof KIInjectionNode)
+                injectionNodes.add((KIInjectionNode) node);
+            else if (node instanceof KILoopNode)
+                collectInjectionNodes(((KILoopNode) node).getBodyNodes(), injectionNodes);
+        }
+    }
+
+    /**
+     * Map the content classes' aliases to their indices
+     *
+     * @param contentClasses The classes of the objects that will hold the injection content
+     * @return A map holding the class aliases (keys) and the classes' indices (values)
+     */
+    private Map<String, Integer> mapClassesAliases(Class<?>[] contentClasses) {
+        Map<Class<?>, KIClassConfiguration> classesConfigurations = templateConfig.getClassesConfigurations();
+        Map<String, Integer> classesIndices = new HashMap<>(contentClasses.length);
+
+        for (int i = 0; i < contentClasses.length; i++) {
+            KIClassConfiguration classConfig = classesConfigurations.getOrDefault(contentClasses[i], new KIClassConfiguration(contentClasses[i]));
+            classesIndices.put(classConfig.getTargetClassAlias(), i);
+        }
+        return classesIndices;
+    }
+
+    /**
+     * Resolve an injection node to its content class' getter
+     *
+     * @param injectionNode  The injection node
+     * @param classesIndices The content classes' aliases mapped to their indices
+     * @param contentClasses The classes of the objects that will hold the injection content
+     * @return The accessor of the injection's getter
+     * @throws ReflectiveOperationException An exception is thrown if the injection references a class or a method that does not exist,
+     *                                      or an IllegalAccessException if the getter is not accessible
+     */
+    private KIAccessor resolveAccessor(KIInjectionNode injectionNode, Map<String, Integer> classesIndices,
+                                       Class<?>[] contentClasses) throws ReflectiveOperationException {
+        Integer contentIndex = classesIndices.get(injectionNode.getClassAlias());
+        if (contentIndex == null)
+            throw new ClassNotFoundException(injectionNode.getClassAlias());
+
+        Class<?> contentClass = contentClasses[contentIndex];
+        KIClassConfiguration classConfig = templateConfig.getClassesConfigurations().getOrDefault(contentClass, new KIClassConfiguration(contentClass));
+        return KIAccessor.resolve(contentClasses, contentIndex, classConfig.getMethodName(injectionNode.getMethodAlias()),
+                injectionNode.getClassAlias(), injectionNode.getMethodAlias());
+    }
+}
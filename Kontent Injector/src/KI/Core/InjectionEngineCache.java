@@ -27,6 +27,8 @@ package KI.Core;
 import KI.Models.KIClassConfiguration;
 
 import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * The Injection Cache is meant to link a content object with it's corresponding
@@ -36,6 +38,7 @@ public class InjectionEngineCache {
 
     private final KIClassConfiguration classConfig;
     private final Object contentObject;
+    private final Map<String, Method> methodsCache = new HashMap<>();
 
     /**
      * Construct an injection cache object
@@ -58,8 +61,11 @@ public class InjectionEngineCache {
      * @throws ReflectiveOperationException An Exception is thrown if the method's invocation failed
      */
     public Object fetchInjection(String methodName) throws ReflectiveOperationException {
-        methodName = classConfig.getMethodName(methodName);
-        Method targetMethod = classConfig.getTargetClass().getMethod(methodName);
+        Method targetMethod = methodsCache.get(methodName);
+        if (targetMethod == null) {
+            targetMethod = classConfig.getTargetClass().getMethod(classConfig.getMethodName(methodName));
+            methodsCache.put(methodName, targetMethod);
+        }
         return targetMethod.invoke(contentObject);
     }
 }
@@ -0,0 +1,281 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The flight recorder emits the injector's Java Flight Recorder events (renders, getter invocations, loop expansions
+ * and output flushes), so they show up next to the GC and I/O events of the same recording.
+ * <p>
+ * The events are defined through jdk.jfr.EventFactory, looked up by reflection so the injector still runs on runtimes
+ * without JFR, where no event is ever emitted. An event is only created while its type is enabled in a running
+ * recording, and its fields are only set if its duration reaches its threshold (configurable in the recording's settings),
+ * so disabled events cost a single check
+ */
+public final class KIFlightRecorder {
+
+    public static final String EVENTS_CATEGORY = "Kontent Injector";
+
+    private static final MethodHandle CREATE_FACTORY;
+    private static final MethodHandle GET_EVENT_TYPE;
+    private static final MethodHandle IS_ENABLED;
+    private static final MethodHandle NEW_EVENT;
+    private static final MethodHandle BEGIN;
+    private static final MethodHandle END;
+    private static final MethodHandle SHOULD_COMMIT;
+    private static final MethodHandle SET;
+    private static final MethodHandle COMMIT;
+    private static final MethodHandle NEW_ANNOTATION;
+    private static final MethodHandle NEW_FIELD;
+
+    static {
+        MethodHandle[] handles = new MethodHandle[11];
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory");
+            Class<?> eventClass = Class.forName("jdk.jfr.Event");
+            Class<?> eventTypeClass = Class.forName("jdk.jfr.EventType");
+            Class<?> valueDescriptorClass = Class.forName("jdk.jfr.ValueDescriptor");
+            Class<?> annotationElementClass = Class.forName("jdk.jfr.AnnotationElement");
+
+            handles[0] = lookup.findStatic(factoryClass, "create", MethodType.methodType(factoryClass, List.class, List.class));
+            handles[1] = lookup.findVirtual(factoryClass, "getEventType", MethodType.methodType(eventTypeClass));
+            handles[2] = lookup.findVirtual(eventTypeClass, "isEnabled", MethodType.methodType(boolean.class));
+            handles[3] = lookup.findVirtual(factoryClass, "newEvent", MethodType.methodType(eventClass));
+            handles[4] = lookup.findVirtual(eventClass, "begin", MethodType.methodType(void.class));
+            handles[5] = lookup.findVirtual(eventClass, "end", MethodType.methodType(void.class));
+            handles[6] = lookup.findVirtual(eventClass, "shouldCommit", MethodType.methodType(boolean.class));
+            handles[7] = lookup.findVirtual(eventClass, "set", MethodType.methodType(void.class, int.class, Object.class));
+            handles[8] = lookup.findVirtual(eventClass, "commit", MethodType.methodType(void.class));
+            handles[9] = lookup.findConstructor(annotationElementClass, MethodType.methodType(void.class, Class.class, Object.class));
+            handles[10] = lookup.findConstructor(valueDescriptorClass, MethodType.methodType(void.class, Class.class, String.class));
+            for (int i = 0; i < handles.length; i++)
+                handles[i] = handles[i].asType(handles[i].type().generic());
+        } catch (ReflectiveOperationException | LinkageError | SecurityException e) {
+            Arrays.fill(handles, null);
+        }
+
+        CREATE_FACTORY = handles[0];
+        GET_EVENT_TYPE = handles[1];
+        IS_ENABLED = handles[2];
+        NEW_EVENT = handles[3];
+        BEGIN = handles[4];
+        END = handles[5];
+        SHOULD_COMMIT = handles[6];
+        SET = handles[7];
+        COMMIT = handles[8];
+        NEW_ANNOTATION = handles[9];
+        NEW_FIELD = handles[10];
+    }
+
+    /**
+     * A render of a compiled template, with the template's id and the number of rendered characters
+     * (the line separators added by the output are not counted)
+     */
+    public static final KIFlightRecorder RENDER = new KIFlightRecorder("kontentinjector.Render", "Template Render",
+            "The render of a compiled template", "0 ms", true, "templateId", long.class, "characters", long.class);
+
+    /**
+     * A getter invoked to fetch an injection's value, with the reference's class alias and method alias
+     */
+    public static final KIFlightRecorder GETTER_INVOCATION = new KIFlightRecorder("kontentinjector.GetterInvocation", "Getter Invocation",
+            "A content object's getter invoked to fetch an injection's value", "1 ms", false, "classAlias", String.class, "methodAlias", String.class);
+
+    /**
+     * The expansion of a loop, with its number of iterations
+     */
+    public static final KIFlightRecorder LOOP_EXPANSION = new KIFlightRecorder("kontentinjector.LoopExpansion", "Loop Expansion",
+            "The expansion of a loop block of a compiled template", "1 ms", false, "iterations", long.class);
+
+    /**
+     * A write of rendered characters to the output, with the number of characters
+     */
+    public static final KIFlightRecorder OUTPUT_FLUSH = new KIFlightRecorder("kontentinjector.OutputFlush", "Output Flush",
+            "Rendered characters written to the output", "1 ms", false, "characters", long.class);
+
+    private final Object eventFactory;
+    private final Object eventType;
+
+    /**
+     * Define an event type
+     *
+     * @param name         The event's name
+     * @param label        The event's label
+     * @param description  The event's description
+     * @param threshold    The event's default threshold (e.g. "1 ms")
+     * @param hasStackTrace Indicates if the event's stack trace is recorded by default
+     * @param fields       The event's fields: the name then the type of every field
+     */
+    private KIFlightRecorder(String name, String label, String description, String threshold, boolean hasStackTrace, Object... fields) {
+        Object factory = null;
+        Object type = null;
+        if (CREATE_FACTORY != null) {
+            try {
+                List<Object> annotations = new ArrayList<>();
+                annotations.add(createAnnotation("jdk.jfr.Name", name));
+                annotations.add(createAnnotation("jdk.jfr.Label", label));
+                annotations.add(createAnnotation("jdk.jfr.Description", description));
+                annotations.add(createAnnotation("jdk.jfr.Category", new String[]{EVENTS_CATEGORY}));
+                annotations.add(createAnnotation("jdk.jfr.Threshold", threshold));
+                annotations.add(createAnnotation("jdk.jfr.StackTrace", hasStackTrace));
+
+                List<Object> fieldsDescriptors = new ArrayList<>();
+                for (int i = 0; i < fields.length; i += 2)
+                    fieldsDescriptors.add(NEW_FIELD.invoke(fields[i + 1], fields[i]));
+
+                factory = CREATE_FACTORY.invoke(annotations, fieldsDescriptors);
+                type = GET_EVENT_TYPE.invoke(factory);
+            } catch (Throwable e) {
+                factory = null;
+                type = null;
+            }
+        }
+        this.eventFactory = factory;
+        this.eventType = type;
+    }
+
+    /**
+     * Begin an event if its type is enabled, the event should be committed once the measured operation is done
+     *
+     * @return The begun event, or null if the event's type is disabled (or JFR is not available)
+     */
+    public Object begin() {
+        if (eventType == null)
+            return null;
+        try {
+            if (!(boolean) IS_ENABLED.invoke(eventType))
+                return null;
+            Object event = NEW_EVENT.invoke(eventFactory);
+            BEGIN.invoke(event);
+            return event;
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+
+    /**
+     * End an event with a single numeric field, and commit it if its duration reaches its threshold.
+     * The value is only boxed if the event is committed
+     *
+     * @param event      The begun event, or null
+     * @param firstValue The value of the event's first field
+     */
+    public void commit(Object event, long firstValue) {
+        if (event == null)
+            return;
+        try {
+            if (!endEvent(event))
+                return;
+            SET.invoke(event, 0, (Object) firstValue);
+            COMMIT.invoke(event);
+        } catch (Throwable ignored) {
+            // Recording failures never fail a render
+        }
+    }
+
+    /**
+     * End an event with two numeric fields, and commit it if its duration reaches its threshold.
+     * The values are only boxed if the event is committed
+     *
+     * @param event       The begun event, or null
+     * @param firstValue  The value of the event's first field
+     * @param secondValue The value of the event's second field
+     */
+    public void commit(Object event, long firstValue, long secondValue) {
+        if (event == null)
+            return;
+        try {
+            if (!endEvent(event))
+                return;
+            SET.invoke(event, 0, (Object) firstValue);
+            SET.invoke(event, 1, (Object) secondValue);
+            COMMIT.invoke(event);
+        } catch (Throwable ignored) {
+            // Recording failures never fail a render
+        }
+    }
+
+    /**
+     * End an event with a single field, and commit it if its duration reaches its threshold
+     *
+     * @param event      The begun event, or null
+     * @param firstValue The value of the event's first field
+     */
+    public void commit(Object event, Object firstValue) {
+        if (event == null)
+            return;
+        try {
+            if (!endEvent(event))
+                return;
+            SET.invoke(event, 0, firstValue);
+            COMMIT.invoke(event);
+        } catch (Throwable ignored) {
+            // Recording failures never fail a render
+        }
+    }
+
+    /**
+     * End an event with two fields, and commit it if its duration reaches its threshold
+     *
+     * @param event       The begun event, or null
+     * @param firstValue  The value of the event's first field
+     * @param secondValue The value of the event's second field
+     */
+    public void commit(Object event, Object firstValue, Object secondValue) {
+        if (event == null)
+            return;
+        try {
+            if (!endEvent(event))
+                return;
+            SET.invoke(event, 0, firstValue);
+            SET.invoke(event, 1, secondValue);
+            COMMIT.invoke(event);
+        } catch (Throwable ignored) {
+            // Recording failures never fail a render
+        }
+    }
+
+    private static Object createAnnotation(String annotationClassName, Object value) throws Throwable {
+        return NEW_ANNOTATION.invoke(Class.forName(annotationClassName), value);
+    }
+
+    /**
+     * End an event
+     *
+     * @param event The begun event
+     * @return True if the event's duration reaches its threshold, so it should be committed
+     * @throws Throwable An exception is thrown if the event couldn't be ended
+     */
+    private static boolean endEvent(Object event) throws Throwable {
+        END.invoke(event);
+        return (boolean) SHOULD_COMMIT.invoke(event);
+    }
+}
@@ -25,9 +25,11 @@
 package KI.Core;
 
 import KI.Core.KInjectors.AbstractKInjector;
-import KI.Core.KInjectors.LoopKInjector;
-import KI.Core.KInjectors.SingleLineKInjector;
+import KI.Core.KInjectors.KInjectorsRegistry;
+import KI.Core.Lexer.KILexedLine;
+import KI.Core.Lexer.KILexer;
 import KI.Models.KIClassConfiguration;
+import KI.Models.KIOutput.IKIChunkOutput;
 import KI.Models.KITemplateConfiguration;
 
 import java.util.*;
@@ -37,13 +39,22 @@ import java.util.*;
  * It does not know anything about templates, reading or writing. Simply getting some
  * string, searching for injection templates, injecting the content and returning back
  * a string
+ * <p>
+ * The engine is a state machine: while idle, a line is dispatched to the first KInjector (by priority)
+ * whose directive keyword appears in the line. The engine stays active with that KInjector, feeding it
+ * the following lines, until it's ready for processing or it declines the line.
+ * Every line is lexed once, and the lexed line is shared by the dispatching and the KInjectors
  * Created by khaled.hamdy on 3/9/17.
  */
 class KIInjectionEngine {
 
     private final KITemplateConfiguration templateConfig;
     private final Map<String, InjectionEngineCache> injectionCache;
-    private List<AbstractKInjector> availableKInjectors;
+    private AbstractKInjector[] availableKInjectors;
+    private int[] directivesKeywordsIds;
+    private KILexer lexer;
+    private final KILexedLine lexedLine = new KILexedLine();
+    private AbstractKInjector activeKInjector;
 
     /**
      * Construct an object from the KIInjectionEngine to handle core injection processes
@@ -53,8 +64,8 @@ class KIInjectionEngine {
      */
     KIInjectionEngine(KITemplateConfiguration templateConfig, Object[] contentObjects) {
         this.templateConfig = templateConfig;
-        injectionCache = new HashMap<>(contentObjects.length);
-        initializeCache(templateConfig.getClassesConfigurations(), contentObjects);
+        injectionCache = KIScratchBuffers.get().acquireMap();
+        initializeCache(templateConfig.getClassesConfigurations(), contentObjects, injectionCache);
         initializeKInjectors();
     }
 
@@ -63,24 +74,41 @@ class KIInjectionEngine {
      *
      * @param classesConfigurations Classes configurations provided by the developer
      * @param contentObjects        The objects holding the injection content
+     * @param injectionCache        The map to add the cache of every content object to, using the class alias as the key
      */
-    private void initializeCache(Map<Class<?>, KIClassConfiguration> classesConfigurations, Object[] contentObjects) {
+    static void initializeCache(Map<Class<?>, KIClassConfiguration> classesConfigurations, Object[] contentObjects, Map<String, InjectionEngineCache> injectionCache) {
         for (Object contentObject : contentObjects) {
             Class<?> objectClass = contentObject.getClass();
             KIClassConfiguration classConfig = classesConfigurations.getOrDefault(objectClass, new KIClassConfiguration(objectClass));
-            InjectionEngineCache injectionCache = new InjectionEngineCache(contentObject, classConfig);
-
-            this.injectionCache.put(classConfig.getTargetClassAlias(), injectionCache);
+            injectionCache.put(classConfig.getTargetClassAlias(), new InjectionEngineCache(contentObject, classConfig));
         }
     }
 
     /**
-     * Initialize the KInjector list with all the available KInjectors
+     * Initialize the KInjectors of all the registered directives, along with the lexer matching their keywords
      */
     private void initializeKInjectors() {
-        availableKInjectors = new ArrayList<>();
-        availableKInjectors.add(new SingleLineKInjector(templateConfig, injectionCache));
-        availableKInjectors.add(new LoopKInjector(templateConfig, injectionCache));
+        List<AbstractKInjector> kinjectors = KInjectorsRegistry.getDefaultRegistry().createKInjectors(templateConfig, injectionCache);
+        availableKInjectors = kinjectors.toArray(new AbstractKInjector[0]);
+        String[] directivesKeywords = new String[availableKInjectors.length];
+        for (int i = 0; i < availableKInjectors.length; i++)
+            directivesKeywords[i] = availableKInjectors[i].getDirectiveKeyword();
+
+        lexer = new KILexer(templateConfig, directivesKeywords);
+        directivesKeywordsIds = new int[availableKInjectors.length];
+        for (int i = 0; i < availableKInjectors.length; i++) {
+            directivesKeywordsIds[i] = lexer.getKeywordId(directivesKeywords[i]);
+            availableKInjectors[i].setLexer(lexer);
+        }
+    }
+
+    /**
+     * Release the engine's buffers and the resources held by its KInjectors, the engine should not be used afterwards
+     */
+    void release() {
+        KIScratchBuffers.get().releaseMap(injectionCache);
+        for (AbstractKInjector kInjector : availableKInjectors)
+            kInjector.release();
     }
 
     /**
@@ -91,22 +119,51 @@ class KIInjectionEngine {
      * @throws ReflectiveOperationException An exception is thrown if an injection failed due to wrong methods/classes provided
      */
     public String processLine(String templateLine) throws ReflectiveOperationException {
-        Collections.sort(availableKInjectors);
-        boolean hasActive = false;
-
-        for (AbstractKInjector kinjector : availableKInjectors) {
-            if (hasActive && !kinjector.isActive())
-                return null;
+        return processLine(templateLine, null);
+    }
 
-            kinjector.inspectLine(templateLine);
+    /**
+     * Process template line using the available KInjectors, a KInjector producing a large output could write
+     * its beginning to the overflow output
+     *
+     * @param templateLine   Template line to process
+     * @param overflowOutput The output to write the beginning of large injected strings to, or null to get the whole strings
+     * @return The injected line (or its rest), or null if processing is not currently possible (If more lines are required for processing)
+     * @throws ReflectiveOperationException An exception is thrown if an injection failed due to wrong methods/classes provided
+     */
+    public String processLine(String templateLine, IKIChunkOutput overflowOutput) throws ReflectiveOperationException {
+        lexer.lex(templateLine, lexedLine);
+        if (activeKInjector == null) {
+            activeKInjector = dispatchLine();
+            if (activeKInjector == null)
+                return templateLine;
+        }
 
-            hasActive = kinjector.isActive();
+        AbstractKInjector kinjector = activeKInjector;
+        kinjector.inspectLine(templateLine, lexedLine);
 
-            if (kinjector.isReadyForProcessing()) {
-                return kinjector.processInjection();
-            }
+        if (kinjector.isReadyForProcessing()) {
+            activeKInjector = null;
+            return kinjector.processInjection(overflowOutput);
         }
 
-        return hasActive ? null : templateLine;
+        if (kinjector.isActive())
+            return null;
+
+        activeKInjector = null;
+        return templateLine;
+    }
+
+    /**
+     * Find the KInjector that should handle the lexed line, using the keywords found by the lexer
+     *
+     * @return The KInjector with the highest priority whose keyword is found in the line, or null if none is found
+     */
+    private AbstractKInjector dispatchLine() {
+        for (int i = 0; i < directivesKeywordsIds.length; i++) {
+            if (lexedLine.containsKeyword(directivesKeywordsIds[i]))
+                return availableKInjectors[i];
+        }
+        return null;
     }
 }
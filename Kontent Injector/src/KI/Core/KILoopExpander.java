@@ -0,0 +1,189 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+/**
+ * The loop expander repeats a loop's body once per iteration, either on the calling thread or, for loops expensive
+ * enough to be worth it, split into chunks of iterations rendered in parallel on a fork-join pool.
+ * Every chunk is rendered into its own buffer, and the chunks are appended to the output in order.
+ * <p>
+ * A loop expander belongs to a single loop (of a template or an injector), and measures the cost of an iteration
+ * of its loop on every expansion. A loop is expanded in parallel once its estimated cost reaches PARALLEL_MIN_NANOS,
+ * so the iterations threshold adapts to how expensive the loop's iterations are. A chunk holds about CHUNK_TARGET_NANOS
+ * of work, and at most two chunks per worker are buffered at a time
+ */
+public final class KILoopExpander {
+
+    public static final long PARALLEL_MIN_NANOS = 1_000_000L;
+    public static final long CHUNK_TARGET_NANOS = 200_000L;
+    public static final int MIN_CHUNK_ITERATIONS = 16;
+
+    private static final double COST_SMOOTHING = 0.25;
+
+    private final ForkJoinPool loopPool;
+    private volatile double iterationNanos;
+
+    /**
+     * Render a single iteration of a loop's body
+     */
+    @FunctionalInterface
+    public interface IKIIterationRenderer {
+
+        /**
+         * Append an iteration of the loop's body to a buffer. Iterations could be rendered concurrently
+         *
+         * @param outputBuffer The buffer the iteration is appended to
+         * @param index        The iteration's index
+         * @throws ReflectiveOperationException An exception is thrown if an injection failed
+         */
+        void renderIteration(StringBuilder outputBuffer, int index) throws ReflectiveOperationException;
+    }
+
+    /**
+     * Construct a loop expander
+     *
+     * @param loopPool The pool loops are expanded on in parallel, or null to always expand them on the calling thread
+     */
+    public KILoopExpander(ForkJoinPool loopPool) {
+        this.loopPool = loopPool;
+    }
+
+    /**
+     * Expand a loop, appending its iterations in order to the output buffer
+     *
+     * @param outputBuffer      The buffer the iterations are appended to
+     * @param iterationsCount   The number of iterations
+     * @param iterationRenderer Renders an iteration, it should only read shared state if the loop could be expanded in parallel
+     * @param bufferFlusher     Called with the output buffer after every appended iteration (or chunk), to write it out if it grew too large
+     * @throws ReflectiveOperationException An exception is thrown if an injection failed
+     */
+    public void expand(StringBuilder outputBuffer, int iterationsCount, IKIIterationRenderer iterationRenderer,
+                       Consumer<StringBuilder> bufferFlusher) throws ReflectiveOperationException {
+        if (iterationsCount <= 0)
+            return;
+        if (iterationsCount >= getParallelThreshold()) {
+            expandInParallel(outputBuffer, iterationsCount, iterationRenderer, bufferFlusher);
+            return;
+        }
+
+        long startNanos = System.nanoTime();
+        for (int index = 0; index < iterationsCount; index++) {
+            iterationRenderer.renderIteration(outputBuffer, index);
+            bufferFlusher.accept(outputBuffer);
+        }
+        recordCost(System.nanoTime() - startNanos, iterationsCount);
+    }
+
+    /**
+     * Get the number of iterations from which the loop is expanded in parallel, based on the measured cost of its iterations
+     *
+     * @return The iterations threshold, or Integer.MAX_VALUE if the loop is never expanded in parallel (no pool, or not measured yet)
+     */
+    public int getParallelThreshold() {
+        double nanos = iterationNanos;
+        if (loopPool == null || loopPool.getParallelism() < 2 || nanos <= 0)
+            return Integer.MAX_VALUE;
+        return (int) Math.max(2L * MIN_CHUNK_ITERATIONS, Math.min(Integer.MAX_VALUE, (long) Math.ceil(PARALLEL_MIN_NANOS / nanos)));
+    }
+
+    /**
+     * Get the measured cost of an iteration
+     *
+     * @return The smoothed wall time of an iteration in nanoseconds, or 0 if the loop was not expanded yet
+     */
+    public double getIterationNanos() {
+        return iterationNanos;
+    }
+
+    private void expandInParallel(StringBuilder outputBuffer, int iterationsCount, IKIIterationRenderer iterationRenderer,
+                                  Consumer<StringBuilder> bufferFlusher) throws ReflectiveOperationException {
+        int parallelism = loopPool.getParallelism();
+        int chunkIterations = (int) Math.max(MIN_CHUNK_ITERATIONS, Math.min(CHUNK_TARGET_NANOS / iterationNanos,
+                Math.ceil((double) iterationsCount / parallelism)));
+        int maxChunksInFlight = 2 * parallelism;
+        Deque<ForkJoinTask<StringBuilder>> chunks = new ArrayDeque<>(maxChunksInFlight);
+        long[] chunksNanos = new long[(iterationsCount + chunkIterations - 1) / chunkIterations];
+        int nextChunk = 0;
+        int chunkStart = 0;
+
+        try {
+            while (chunkStart < iterationsCount || !chunks.isEmpty()) {
+                while (chunkStart < iterationsCount && chunks.size() < maxChunksInFlight) {
+                    int start = chunkStart;
+                    int end = Math.min(iterationsCount, start + chunkIterations);
+                    int chunkIndex = nextChunk++;
+                    chunks.addLast(loopPool.submit(() -> renderChunk(iterationRenderer, start, end, chunksNanos, chunkIndex)));
+                    chunkStart = end;
+                }
+                outputBuffer.append(chunks.peekFirst().get());
+                chunks.pollFirst();
+                bufferFlusher.accept(outputBuffer);
+            }
+        } catch (ExecutionException ex) {
+            // The pool wraps the chunks' checked exceptions, rethrow the injection's exception itself
+            for (Throwable cause = ex.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof ReflectiveOperationException)
+                    throw (ReflectiveOperationException) cause;
+            }
+            if (ex.getCause() instanceof Error)
+                throw (Error) ex.getCause();
+            throw (RuntimeException) ex.getCause();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        } finally {
+            for (ForkJoinTask<StringBuilder> chunk : chunks)
+                chunk.cancel(false);
+        }
+
+        long totalNanos = 0;
+        for (long chunkNanos : chunksNanos)
+            totalNanos += chunkNanos;
+        recordCost(totalNanos, iterationsCount);
+    }
+
+    private static StringBuilder renderChunk(IKIIterationRenderer iterationRenderer, int start, int end,
+                                             long[] chunksNanos, int chunkIndex) throws ReflectiveOperationException {
+        long startNanos = System.nanoTime();
+        StringBuilder chunkBuffer = new StringBuilder();
+        for (int index = start; index < end; index++)
+            iterationRenderer.renderIteration(chunkBuffer, index);
+        chunksNanos[chunkIndex] = System.nanoTime() - startNanos;
+        return chunkBuffer;
+    }
+
+    private void recordCost(long nanos, int iterationsCount) {
+        double sampleNanos = (double) nanos / iterationsCount;
+        double previousNanos = iterationNanos;
+        iterationNanos = previousNanos <= 0 ? sampleNanos : previousNanos + COST_SMOOTHING * (sampleNanos - previousNanos);
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core;
+
+import KI.Models.KIFormat.KIReferenceFormat;
+import KI.Models.KIFormat.KIFormatterRegistry;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Loop Sequences holds the operations on the values injected in loops. A loop iterates over sequences:
+ * arrays (including primitive arrays), random access lists, and collections or streams converted to arrays.
+ * Primitive arrays and primitive streams are iterated without boxing, and their elements are appended
+ * to the output as numbers (unless they have a formatter that boxes them)
+ */
+public final class KILoopSequences {
+
+    private KILoopSequences() {
+    }
+
+    /**
+     * Convert an injection's value to a sequence that could be indexed by loops. Arrays and random access lists
+     * are returned as they are, other collections and streams are converted to arrays (primitive streams
+     * to primitive arrays)
+     *
+     * @param injectionValue The injection's value
+     * @return The value as a sequence, or the value itself if it's not a sequence
+     */
+    public static Object toSequence(Object injectionValue) {
+        if (injectionValue instanceof Collection && !(injectionValue instanceof List && injectionValue instanceof RandomAccess))
+            return ((Collection<?>) injectionValue).toArray();
+        if (injectionValue instanceof IntStream)
+            return ((IntStream) injectionValue).toArray();
+        if (injectionValue instanceof LongStream)
+            return ((LongStream) injectionValue).toArray();
+        if (injectionValue instanceof DoubleStream)
+            return ((DoubleStream) injectionValue).toArray();
+        if (injectionValue instanceof Stream)
+            return ((Stream<?>) injectionValue).toArray();
+        return injectionValue;
+    }
+
+    /**
+     * Get the length of a sequence
+     *
+     * @param sequence The sequence, as returned by toSequence
+     * @return The sequence's length, or -1 if it's not a sequence
+     */
+    public static int length(Object sequence) {
+        if (sequence instanceof Object[])
+            return ((Object[]) sequence).length;
+        if (sequence instanceof List)
+            return ((List<?>) sequence).size();
+        if (sequence instanceof int[])
+            return ((int[]) sequence).length;
+        if (sequence instanceof long[])
+            return ((long[]) sequence).length;
+        if (sequence instanceof double[])
+            return ((double[]) sequence).length;
+        if (sequence instanceof float[])
+            return ((float[]) sequence).length;
+        if (sequence instanceof short[])
+            return ((short[]) sequence).length;
+        if (sequence instanceof byte[])
+            return ((byte[]) sequence).length;
+        if (sequence instanceof char[])
+            return ((char[]) sequence).length;
+        if (sequence instanceof boolean[])
+            return ((boolean[]) sequence).length;
+        return -1;
+    }
+
+    /**
+     * Append the value of an injection for a loop's iteration: the sequence's element at the iteration's index
+     * (nothing if the sequence is shorter), or the value itself if it's not a sequence
+     *
+     * @param outputBuffer      The buffer to append the value to
+     * @param sequence          The injection's value, as returned by toSequence
+     * @param index             The iteration's index
+     * @param formatterRegistry The registry of the values' formatters
+     * @param referenceFormat   The format of the injection's reference, or null
+     */
+    public static void appendElement(StringBuilder outputBuffer, Object sequence, int index, KIFormatterRegistry formatterRegistry,
+                                     KIReferenceFormat referenceFormat) {
+        if (sequence instanceof Object[]) {
+            Object[] objectsArray = (Object[]) sequence;
+            if (index < objectsArray.length)
+                appendObject(outputBuffer, objectsArray[index], formatterRegistry, referenceFormat);
+        } else if (sequence instanceof List) {
+            List<?> objectsList = (List<?>) sequence;
+            if (index < objectsList.size())
+                appendObject(outputBuffer, objectsList.get(index), formatterRegistry, referenceFormat);
+        } else if (sequence instanceof int[]) {
+            int[] intArray = (int[]) sequence;
+            if (index < intArray.length)
+                formatterRegistry.appendInt(outputBuffer, intArray[index], referenceFormat);
+        } else if (sequence instanceof long[]) {
+            long[] longArray = (long[]) sequence;
+            if (index < longArray.length)
+                formatterRegistry.appendLong(outputBuffer, longArray[index], referenceFormat);
+        } else if (sequence instanceof double[]) {
+            double[] doubleArray = (double[]) sequence;
+            if (index < doubleArray.length)
+                formatterRegistry.appendDouble(outputBuffer, doubleArray[index], referenceFormat);
+        } else if (length(sequence) >= 0) {
+            appendSmallPrimitiveElement(outputBuffer, sequence, index, formatterRegistry, referenceFormat);
+        } else {
+            appendObject(outputBuffer, sequence, formatterRegistry, referenceFormat);
+        }
+    }
+
+    /**
+     * Take a snapshot of a sequence, so it could be compared with the sequence after it's modified
+     *
+     * @param sequence The sequence, as returned by toSequence
+     * @return A copy of the sequence's elements, or the value itself if it's not a sequence
+     */
+    public static Object snapshot(Object sequence) {
+        if (sequence instanceof List)
+            return ((List<?>) sequence).toArray();
+        if (sequence instanceof Object[])
+            return ((Object[]) sequence).clone();
+        if (sequence instanceof int[])
+            return ((int[]) sequence).clone();
+        if (sequence instanceof long[])
+            return ((long[]) sequence).clone();
+        if (sequence instanceof double[])
+            return ((double[]) sequence).clone();
+        if (sequence instanceof float[])
+            return ((float[]) sequence).clone();
+        if (sequence instanceof short[])
+            return ((short[]) sequence).clone();
+        if (sequence instanceof byte[])
+            return ((byte[]) sequence).clone();
+        if (sequence instanceof char[])
+            return ((char[]) sequence).clone();
+        if (sequence instanceof boolean[])
+            return ((boolean[]) sequence).clone();
+        return sequence;
+    }
+
+    /**
+     * Append an element of the less common primitive arrays, boxed if it has a formatter
+     *
+     * @param outputBuffer      The buffer to append the element to
+     * @param sequence          The primitive array
+     * @param index             The element's index
+     * @param formatterRegistry The registry of the values' formatters
+     * @param referenceFormat   The format of the injection's reference, or null
+     */
+    private static void appendSmallPrimitiveElement(StringBuilder outputBuffer, Object sequence, int index, KIFormatterRegistry formatterRegistry,
+                                                    KIReferenceFormat referenceFormat) {
+        if (index >= length(sequence))
+            return;
+        if (sequence instanceof float[])
+            formatterRegistry.appendValue(outputBuffer, ((float[]) sequence)[index], referenceFormat);
+        else if (sequence instanceof short[])
+            formatterRegistry.appendValue(outputBuffer, ((short[]) sequence)[index], referenceFormat);
+        else if (sequence instanceof byte[])
+            formatterRegistry.appendValue(outputBuffer, ((byte[]) sequence)[index], referenceFormat);
+        else if (sequence instanceof char[])
+            formatterRegistry.appendValue(outputBuffer, ((char[]) sequence)[index], referenceFormat);
+        else if (sequence instanceof boolean[])
+            formatterRegistry.appendValue(outputBuffer, ((boolean[]) sequence)[index], referenceFormat);
+    }
+
+    /**
+     * Append an object using its formatter, or "null" for null elements
+     *
+     * @param outputBuffer      The buffer to append the object to
+     * @param value             The object
+     * @param formatterRegistry The registry of the values' formatters
+     * @param referenceFormat   The format of the injection's reference, or null
+     */
+    private static void appendObject(StringBuilder outputBuffer, Object value, KIFormatterRegistry formatterRegistry, KIReferenceFormat referenceFormat) {
+        if (value == null)
+            outputBuffer.append((Object) null);
+        else
+            formatterRegistry.appendValue(outputBuffer, value, referenceFormat);
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core;
+
+import KI.Models.KIInput.IKIInput;
+import KI.Models.KIOutput.IKIChunkOutput;
+import KI.Models.KITemplateConfiguration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * The pipelined injector runs the line by line injection as three stages on three threads: a reader thread reading
+ * (and decoding) the template's lines, the calling thread injecting them, and a writer thread writing (and encoding)
+ * the output. The stages pass batches of lines through bounded queues, so a large render keeps three cores busy
+ * while the output is written in the template's order, and a slow stage holds back the others instead of
+ * having its input gathered in memory.
+ * <p>
+ * Injection stays on the calling thread, so getters are invoked as in a sequential injection.
+ * An exception thrown by any stage stops the render and is rethrown to the caller, the output is only ended
+ * if the whole template was injected
+ */
+class KIPipelinedInjector {
+
+    static final int QUEUE_BATCHES = 4;
+    static final int MAX_BATCH_CHARACTERS = 64 * 1024;
+
+    private static final List<String> INPUT_END = new ArrayList<>(0);
+    private static final List<Object> OUTPUT_END = new ArrayList<>(0);
+    private static final List<Object> OUTPUT_ABORTED = new ArrayList<>(0);
+
+    private final KITemplateConfiguration templateConfig;
+    private final IKIChunkOutput outputMethod;
+    private final int batchLines;
+    private final Object[] contentObjects;
+    private final BlockingQueue<List<String>> inputQueue = new ArrayBlockingQueue<>(QUEUE_BATCHES);
+    private final BlockingQueue<List<Object>> outputQueue = new ArrayBlockingQueue<>(QUEUE_BATCHES);
+    private volatile Throwable readFailure;
+    private volatile Throwable writeFailure;
+
+    /**
+     * Construct a pipelined injector
+     *
+     * @param templateConfig The configuration of the template in use
+     * @param outputMethod   Used to write the output after injection, only called from the writer thread
+     * @param batchLines     The number of template lines passed from the reader to the injection at once
+     * @param contentObjects The objects holding the injection content
+     */
+    KIPipelinedInjector(KITemplateConfiguration templateConfig, IKIChunkOutput outputMethod, int batchLines, Object[] contentObjects) {
+        this.templateConfig = templateConfig;
+        this.outputMethod = outputMethod;
+        this.batchLines = batchLines;
+        this.contentObjects = contentObjects;
+    }
+
+    /**
+     * Inject the whole template, returning once the output is written and ended
+     *
+     * @param inputMethod Used to provide the template, only called from the reader thread
+     * @throws ReflectiveOperationException An exception is thrown if an injection failed due to wrong methods/classes provided
+     */
+    void injectValues(IKIInput inputMethod) throws ReflectiveOperationException {
+        Thread readerThread = startStage("KI-pipeline-reader", () -> readBatches(inputMethod));
+        Thread writerThread = startStage("KI-pipeline-writer", this::writeBatches);
+        BatchOutput batchOutput = new BatchOutput();
+        KIInjectionEngine injectionEngine = new KIInjectionEngine(templateConfig, contentObjects);
+        boolean isInjected = false;
+
+        try {
+            List<String> linesBatch;
+            while ((linesBatch = takeBatch()) != INPUT_END && writeFailure == null) {
+                for (String templateLine : linesBatch) {
+                    String processedOutput = injectionEngine.processLine(templateLine, batchOutput);
+                    if (processedOutput != null)
+                        batchOutput.writeLine(processedOutput);
+                }
+                batchOutput.sendBatch();
+            }
+            rethrow(readFailure);
+            isInjected = writeFailure == null;
+        } finally {
+            injectionEngine.release();
+            readerThread.interrupt();
+            finishWriter(writerThread, isInjected ? OUTPUT_END : OUTPUT_ABORTED);
+        }
+        rethrow(writeFailure);
+    }
+
+    private static Thread startStage(String stageName, Runnable stage) {
+        Thread stageThread = new Thread(stage, stageName);
+        stageThread.setDaemon(true);
+        stageThread.start();
+        return stageThread;
+    }
+
+    /**
+     * The reader stage, reading the template's lines in batches until the template's end
+     *
+     * @param inputMethod Used to provide the template
+     */
+    private void readBatches(IKIInput inputMethod) {
+        try {
+            try {
+                List<String> linesBatch = new ArrayList<>(batchLines);
+                String templateLine;
+                while ((templateLine = inputMethod.readTemplateLine()) != null) {
+                    linesBatch.add(templateLine);
+                    if (linesBatch.size() < batchLines)
+                        continue;
+                    inputQueue.put(linesBatch);
+                    linesBatch = new ArrayList<>(batchLines);
+                }
+                if (!linesBatch.isEmpty())
+                    inputQueue.put(linesBatch);
+            } catch (RuntimeException | Error ex) {
+                readFailure = ex;
+            }
+            inputQueue.put(INPUT_END);
+        } catch (InterruptedException ex) {
+            // The injection stopped before the template's end
+        }
+    }
+
+    /**
+     * The writer stage, writing the batches of output in order until the injection's end.
+     * After a failed write, the remaining batches are discarded so the injection never waits for the writer,
+     * and the output is aborted instead of ended
+     */
+    private void writeBatches() {
+        try {
+            while (true) {
+                List<Object> outputBatch = outputQueue.take();
+                if (outputBatch == OUTPUT_ABORTED || (outputBatch == OUTPUT_END && writeFailure != null)) {
+                    abortOutput();
+                    return;
+                }
+                if (writeFailure != null)
+                    continue;
+
+                try {
+                    if (outputBatch == OUTPUT_END) {
+                        outputMethod.handleOutputEnd();
+                        return;
+                    }
+                    writeBatch(outputBatch);
+                } catch (RuntimeException | Error ex) {
+                    writeFailure = ex;
+                }
+            }
+        } catch (InterruptedException ex) {
+            abortOutput();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Abort the output after the injection or a write failed, so it's released without being ended
+     */
+    private void abortOutput() {
+        try {
+            outputMethod.abortOutput();
+        } catch (RuntimeException | Error ex) {
+            if (writeFailure == null)
+                writeFailure = ex;
+        }
+    }
+
+    /**
+     * Write a batch of output, whose entries are either lines (strings) or chunks (char arrays)
+     *
+     * @param outputBatch The batch of output
+     */
+    private void writeBatch(List<Object> outputBatch) {
+        for (Object outputEntry : outputBatch) {
+            if (outputEntry instanceof String) {
+                outputMethod.writeLine((String) outputEntry);
+            } else {
+                char[] chunk = (char[]) outputEntry;
+                outputMethod.writeChunk(chunk, 0, chunk.length);
+            }
+        }
+    }
+
+    private List<String> takeBatch() {
+        try {
+            return inputQueue.take();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private void sendOutputBatch(List<Object> outputBatch) {
+        try {
+            outputQueue.put(outputBatch);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private void finishWriter(Thread writerThread, List<Object> lastBatch) {
+        boolean isInterrupted = Thread.interrupted();
+        try {
+            outputQueue.put(lastBatch);
+            writerThread.join();
+        } catch (InterruptedException ex) {
+            isInterrupted = true;
+            writerThread.interrupt();
+        }
+        if (isInterrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    private static void rethrow(Throwable stageFailure) {
+        if (stageFailure instanceof Error)
+            throw (Error) stageFailure;
+        if (stageFailure != null)
+            throw (RuntimeException) stageFailure;
+    }
+
+    /**
+     * The output of the injection stage, gathering the lines and chunks written by the injection into batches
+     * for the writer stage
+     */
+    private class BatchOutput implements IKIChunkOutput {
+
+        private List<Object> outputBatch = new ArrayList<>();
+        private int batchCharacters;
+
+        @Override
+        public void writeLine(String outputLine) {
+            outputBatch.add(outputLine);
+            addCharacters(outputLine.length());
+        }
+
+        @Override
+        public void writeChunk(char[] chunk, int offset, int length) {
+            char[] chunkCopy = new char[length];
+            System.arraycopy(chunk, offset, chunkCopy, 0, length);
+            outputBatch.add(chunkCopy);
+            addCharacters(length);
+        }
+
+        @Override
+        public void writeChunk(CharSequence chunk) {
+            int length = chunk.length();
+            char[] chunkCopy = new char[length];
+            if (chunk instanceof StringBuilder)
+                ((StringBuilder) chunk).getChars(0, length, chunkCopy, 0);
+            else
+                chunk.toString().getChars(0, length, chunkCopy, 0);
+            outputBatch.add(chunkCopy);
+            addCharacters(length);
+        }
+
+        @Override
+        public void handleOutputEnd() {
+            // The output is ended by the writer stage
+        }
+
+        /**
+         * Pass the gathered output to the writer stage
+         */
+        void sendBatch() {
+            if (outputBatch.isEmpty())
+                return;
+            sendOutputBatch(outputBatch);
+            outputBatch = new ArrayList<>();
+            batchCharacters = 0;
+        }
+
+        private void addCharacters(int length) {
+            batchCharacters += length;
+            if (batchCharacters >= MAX_BATCH_CHARACTERS)
+                sendBatch();
+        }
+    }
+}
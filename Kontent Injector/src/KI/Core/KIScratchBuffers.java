@@ -0,0 +1,131 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The scratch buffers are per-thread pools of string builders, sets and maps reused by the render path,
+ * so a steady-state render doesn't allocate new buffers and collections on every line.
+ * <p>
+ * Every acquired buffer should be released by the same thread once it's no longer used. Buffers that grew
+ * beyond the retention limits are dropped on release instead of being pooled, so a single huge render doesn't
+ * keep its memory for the thread's lifetime
+ */
+public final class KIScratchBuffers {
+
+    public static final int MAX_RETAINED_BUILDER_CAPACITY = 64 * 1024;
+    public static final int MAX_RETAINED_COLLECTION_SIZE = 256;
+    public static final int MAX_POOLED_BUFFERS = 8;
+
+    private static final ThreadLocal<KIScratchBuffers> THREAD_SCRATCH_BUFFERS = ThreadLocal.withInitial(KIScratchBuffers::new);
+
+    private final ArrayDeque<StringBuilder> builders = new ArrayDeque<>(MAX_POOLED_BUFFERS);
+    private final ArrayDeque<Set<String>> sets = new ArrayDeque<>(MAX_POOLED_BUFFERS);
+    private final ArrayDeque<Map<String, ?>> maps = new ArrayDeque<>(MAX_POOLED_BUFFERS);
+
+    private KIScratchBuffers() {
+    }
+
+    /**
+     * Get the scratch buffers of the current thread
+     *
+     * @return The current thread's scratch buffers
+     */
+    public static KIScratchBuffers get() {
+        return THREAD_SCRATCH_BUFFERS.get();
+    }
+
+    /**
+     * Acquire an empty string builder
+     *
+     * @return An empty string builder
+     */
+    public StringBuilder acquireBuilder() {
+        StringBuilder builder = builders.poll();
+        return builder == null ? new StringBuilder() : builder;
+    }
+
+    /**
+     * Release a string builder back to the pool
+     *
+     * @param builder The string builder acquired from the pool
+     */
+    public void releaseBuilder(StringBuilder builder) {
+        if (builder.capacity() > MAX_RETAINED_BUILDER_CAPACITY || builders.size() >= MAX_POOLED_BUFFERS)
+            return;
+        builder.setLength(0);
+        builders.push(builder);
+    }
+
+    /**
+     * Acquire an empty set
+     *
+     * @return An empty set
+     */
+    public Set<String> acquireSet() {
+        Set<String> set = sets.poll();
+        return set == null ? new HashSet<>() : set;
+    }
+
+    /**
+     * Release a set back to the pool
+     *
+     * @param set The set acquired from the pool
+     */
+    public void releaseSet(Set<String> set) {
+        if (set.size() > MAX_RETAINED_COLLECTION_SIZE || sets.size() >= MAX_POOLED_BUFFERS)
+            return;
+        set.clear();
+        sets.push(set);
+    }
+
+    /**
+     * Acquire an empty map
+     *
+     * @return An empty map
+     */
+    @SuppressWarnings("unchecked")
+    public <V> Map<String, V> acquireMap() {
+        Map<String, V> map = (Map<String, V>) maps.poll();
+        return map == null ? new HashMap<>() : map;
+    }
+
+    /**
+     * Release a map back to the pool
+     *
+     * @param map The map acquired from the pool
+     */
+    public void releaseMap(Map<String, ?> map) {
+        if (map.size() > MAX_RETAINED_COLLECTION_SIZE || maps.size() >= MAX_POOLED_BUFFERS)
+            return;
+        map.clear();
+        maps.push(map);
+    }
+}
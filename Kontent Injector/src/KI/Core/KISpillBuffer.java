@@ -0,0 +1,326 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The spill buffer gathers text in memory up to a memory budget, once the budget is exceeded the gathered text is moved
+ * to a temporary file and the following text is appended to the file, so buffering a large block never holds it in memory.
+ * The buffered text could be read many times until the buffer is cleared, which deletes the temporary file.
+ * A spilled buffer holds the temporary file open until it's cleared, so it should always be cleared after use
+ */
+public final class KISpillBuffer {
+
+    private static final String SPILL_FILE_PREFIX = "kontent-injector-";
+    private static final String SPILL_FILE_SUFFIX = ".spill";
+    private static final int SPILL_BYTE_BUFFER_SIZE = 64 * 1024;
+    private static final int SPILL_CHAR_BUFFER_SIZE = 8192;
+
+    private final int memoryBudget;
+    private final StringBuilder memoryBuffer = new StringBuilder();
+    private Path spillFile;
+    private FileChannel spillChannel;
+    private CharsetEncoder spillEncoder;
+    private CharBuffer spillCharBuffer;
+    private ByteBuffer spillByteBuffer;
+    private long length = 0;
+
+    /**
+     * Construct a spill buffer
+     *
+     * @param memoryBudget The number of characters kept in memory before spilling to a temporary file
+     */
+    public KISpillBuffer(int memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Append text to the buffer
+     *
+     * @param text The text to be appended
+     * @return The spill buffer
+     * @throws UncheckedIOException An exception is thrown if the text couldn't be written to the temporary file
+     */
+    public KISpillBuffer append(CharSequence text) {
+        length += text.length();
+        if (spillChannel == null) {
+            memoryBuffer.append(text);
+            if (memoryBuffer.length() > memoryBudget)
+                spill();
+            return this;
+        }
+
+        writeToSpillFile(text, 0, text.length());
+        return this;
+    }
+
+    /**
+     * Append characters to the buffer
+     *
+     * @param text   The buffer holding the characters
+     * @param offset The index of the first character to be appended
+     * @param count  The number of characters to be appended
+     * @return The spill buffer
+     * @throws UncheckedIOException An exception is thrown if the text couldn't be written to the temporary file
+     */
+    public KISpillBuffer append(char[] text, int offset, int count) {
+        length += count;
+        if (spillChannel == null) {
+            memoryBuffer.append(text, offset, count);
+            if (memoryBuffer.length() > memoryBudget)
+                spill();
+            return this;
+        }
+
+        int textEnd = offset + count;
+        while (offset < textEnd) {
+            int copyCount = Math.min(spillCharBuffer.remaining(), textEnd - offset);
+            spillCharBuffer.put(text, offset, copyCount);
+            offset += copyCount;
+            encodeSpillCharBuffer();
+        }
+        return this;
+    }
+
+    /**
+     * Append a character to the buffer
+     *
+     * @param character The character to be appended
+     * @return The spill buffer
+     */
+    public KISpillBuffer append(char character) {
+        length++;
+        if (spillChannel == null) {
+            memoryBuffer.append(character);
+            return this;
+        }
+
+        spillCharBuffer.put(character);
+        if (!spillCharBuffer.hasRemaining())
+            encodeSpillCharBuffer();
+        return this;
+    }
+
+    /**
+     * Indicates if the buffered text was moved to a temporary file
+     *
+     * @return A boolean indicating if the buffer was spilled
+     */
+    public boolean isSpilled() {
+        return spillChannel != null;
+    }
+
+    /**
+     * Get the number of buffered characters
+     *
+     * @return The buffer's length
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Open a reader over the buffered text, the reader should be closed after reading.
+     * If the text ends with the high surrogate of a pair split across appends, the surrogate is read once its pair is appended
+     *
+     * @return A reader over the buffered text
+     * @throws UncheckedIOException An exception is thrown if the temporary file couldn't be opened
+     */
+    public Reader openReader() {
+        if (spillChannel == null)
+            return new StringReader(memoryBuffer.toString());
+
+        try {
+            encodeSpillCharBuffer();
+            drainSpillBuffer();
+            return Channels.newReader(FileChannel.open(spillFile, StandardOpenOption.READ), StandardCharsets.UTF_8.newDecoder(), -1);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Clear the buffer, closing and deleting the temporary file if the buffer was spilled.
+     * The buffer is cleared even if the temporary file couldn't be closed or deleted
+     *
+     * @throws UncheckedIOException An exception is thrown if the temporary file couldn't be closed or deleted
+     */
+    public void clear() {
+        length = 0;
+        memoryBuffer.setLength(0);
+        if (memoryBuffer.capacity() > memoryBudget)
+            memoryBuffer.trimToSize();
+        if (spillChannel == null)
+            return;
+
+        FileChannel closedChannel = spillChannel;
+        Path deletedFile = spillFile;
+        spillChannel = null;
+        spillFile = null;
+
+        IOException failure = null;
+        try {
+            closedChannel.close();
+        } catch (IOException e) {
+            failure = e;
+        }
+        try {
+            Files.deleteIfExists(deletedFile);
+        } catch (IOException e) {
+            if (failure == null)
+                failure = e;
+            else
+                failure.addSuppressed(e);
+        }
+        if (failure != null)
+            throw new UncheckedIOException(failure);
+    }
+
+    /**
+     * Get the buffered text, the buffer should not be spilled
+     *
+     * @return The buffered text
+     * @throws IllegalStateException An exception is thrown if the buffer was spilled
+     */
+    @Override
+    public String toString() {
+        if (spillChannel != null)
+            throw new IllegalStateException();
+        return memoryBuffer.toString();
+    }
+
+    /**
+     * Move the text gathered in memory to a new temporary file
+     */
+    private void spill() {
+        try {
+            spillFile = Files.createTempFile(SPILL_FILE_PREFIX, SPILL_FILE_SUFFIX);
+            spillChannel = FileChannel.open(spillFile, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            if (spillFile != null)
+                deleteSpillFile(e);
+            spillFile = null;
+            throw new UncheckedIOException(e);
+        }
+
+        if (spillEncoder == null) {
+            spillEncoder = StandardCharsets.UTF_8.newEncoder();
+            spillCharBuffer = CharBuffer.allocate(SPILL_CHAR_BUFFER_SIZE);
+            spillByteBuffer = ByteBuffer.allocateDirect(SPILL_BYTE_BUFFER_SIZE);
+        }
+        spillEncoder.reset();
+        spillCharBuffer.clear();
+        spillByteBuffer.clear();
+        writeToSpillFile(memoryBuffer, 0, memoryBuffer.length());
+        memoryBuffer.setLength(0);
+        memoryBuffer.trimToSize();
+    }
+
+    /**
+     * Delete the temporary file after it couldn't be opened
+     *
+     * @param failure The failure of opening the file, a failure while deleting is added to it as suppressed
+     */
+    private void deleteSpillFile(IOException failure) {
+        try {
+            Files.deleteIfExists(spillFile);
+        } catch (IOException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Encode text to the temporary file, through the reused char buffer
+     *
+     * @param text  The text to be written
+     * @param start The index of the first character to be written
+     * @param end   The index after the last character to be written
+     */
+    private void writeToSpillFile(CharSequence text, int start, int end) {
+        while (start < end) {
+            int copyEnd = start + Math.min(spillCharBuffer.remaining(), end - start);
+            if (text instanceof String) {
+                ((String) text).getChars(start, copyEnd, spillCharBuffer.array(), spillCharBuffer.arrayOffset() + spillCharBuffer.position());
+                spillCharBuffer.position(spillCharBuffer.position() + copyEnd - start);
+            } else if (text instanceof StringBuilder) {
+                ((StringBuilder) text).getChars(start, copyEnd, spillCharBuffer.array(), spillCharBuffer.arrayOffset() + spillCharBuffer.position());
+                spillCharBuffer.position(spillCharBuffer.position() + copyEnd - start);
+            } else {
+                for (int i = start; i < copyEnd; i++)
+                    spillCharBuffer.put(text.charAt(i));
+            }
+            start = copyEnd;
+            encodeSpillCharBuffer();
+        }
+    }
+
+    /**
+     * Encode the characters of the char buffer to the temporary file. A trailing high surrogate is kept in the char buffer,
+     * so a surrogate pair split across appends is encoded once its low surrogate is appended
+     */
+    private void encodeSpillCharBuffer() {
+        spillCharBuffer.flip();
+        try {
+            while (true) {
+                CoderResult coderResult = spillEncoder.encode(spillCharBuffer, spillByteBuffer, false);
+                if (coderResult.isError())
+                    coderResult.throwException();
+                if (!coderResult.isOverflow())
+                    break;
+                drainSpillBuffer();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            spillCharBuffer.compact();
+        }
+    }
+
+    /**
+     * Write the encoded bytes to the temporary file and clear the byte buffer
+     *
+     * @throws IOException An exception is thrown if the bytes couldn't be written
+     */
+    private void drainSpillBuffer() throws IOException {
+        spillByteBuffer.flip();
+        while (spillByteBuffer.hasRemaining())
+            spillChannel.write(spillByteBuffer);
+        spillByteBuffer.clear();
+    }
+}
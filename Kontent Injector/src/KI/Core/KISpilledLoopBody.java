@@ -0,0 +1,280 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core;
+
+import KI.Core.Template.KIInjectionNode;
+import KI.Models.KIFormat.KIFormatterRegistry;
+import KI.Models.KIFormat.KIReferenceFormat;
+import KI.Models.KIOutput.IKIChunkOutput;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The spilled loop body holds the body of a loop lexed once, so it could be written once per iteration without
+ * lexing it again. The body's literals are gathered in a spill buffer, so a large body is kept in a temporary file
+ * instead of memory, while its injections are kept in memory between the literals.
+ * The body should be cleared after use, to release its temporary file
+ */
+public final class KISpilledLoopBody {
+
+    public static final String UNEXPECTED_END_ERROR_MESSAGE = "Unexpected end of the spilled loop body";
+
+    private static final int READ_BUFFER_SIZE = 8192;
+    private static final int SOURCE_ITERATION = -1;
+
+    /**
+     * Fetch the value of an injection of the body, once per loop
+     */
+    @FunctionalInterface
+    public interface IKIInjectionFetcher {
+
+        /**
+         * Fetch the value of an injection
+         *
+         * @param injectionNode The injection
+         * @return The injection's value, a sequence holding a value for every iteration
+         * @throws ReflectiveOperationException An exception is thrown if the injection failed due to wrong methods/classes provided
+         */
+        Object fetchInjectionValue(KIInjectionNode injectionNode) throws ReflectiveOperationException;
+    }
+
+    /**
+     * The values of an injection of the body, and the format they're written with
+     */
+    private static final class LoopInjection {
+        private final Object sequence;
+        private final KIReferenceFormat referenceFormat;
+
+        private LoopInjection(Object sequence, KIReferenceFormat referenceFormat) {
+            this.sequence = sequence;
+            this.referenceFormat = referenceFormat;
+        }
+    }
+
+    /**
+     * A part of the body, either a run of literal characters or a token
+     */
+    private static final class BodySegment {
+        private final long literalLength;
+        private final KIInjectionNode injectionNode;
+        private final String sourceText;
+
+        private BodySegment(long literalLength, KIInjectionNode injectionNode, String sourceText) {
+            this.literalLength = literalLength;
+            this.injectionNode = injectionNode;
+            this.sourceText = sourceText;
+        }
+    }
+
+    private final KISpillBuffer literals;
+    private final KIFormatterRegistry formatterRegistry;
+    private final List<BodySegment> segments = new ArrayList<>();
+    private final List<KIInjectionNode> injectionNodes = new ArrayList<>();
+    private final Map<String, LoopInjection> loopInjections = new HashMap<>();
+    private final StringBuilder valueBuffer = new StringBuilder();
+    private final char[] readBuffer = new char[READ_BUFFER_SIZE];
+    private long pendingLiteralLength = 0;
+    private char[] memoryLiterals;
+
+    /**
+     * Construct a spilled loop body
+     *
+     * @param memoryBudget      The number of literal characters kept in memory before spilling to a temporary file
+     * @param formatterRegistry The registry formatting the injected values
+     */
+    public KISpilledLoopBody(int memoryBudget, KIFormatterRegistry formatterRegistry) {
+        this.literals = new KISpillBuffer(memoryBudget);
+        this.formatterRegistry = formatterRegistry;
+    }
+
+    /**
+     * Append a run of literal characters to the body
+     *
+     * @param literal The buffer holding the characters
+     * @param offset  The index of the first character
+     * @param length  The number of characters
+     */
+    public void appendLiteral(char[] literal, int offset, int length) {
+        literals.append(literal, offset, length);
+        pendingLiteralLength += length;
+        memoryLiterals = null;
+    }
+
+    /**
+     * Append an injection to the body
+     *
+     * @param injectionNode The injection
+     */
+    public void appendInjection(KIInjectionNode injectionNode) {
+        appendSegment(new BodySegment(0, injectionNode, injectionNode.getSourceText()));
+        injectionNodes.add(injectionNode);
+    }
+
+    /**
+     * Append a token that is dropped from the iterations, but kept in the body's source (e.g. a nested loop start word)
+     *
+     * @param sourceText The token's source text
+     */
+    public void appendDroppedToken(String sourceText) {
+        appendSegment(new BodySegment(0, null, sourceText));
+    }
+
+    /**
+     * Write every iteration of the body. The value of every injection is fetched once and converted to a sequence,
+     * the loop has as many iterations as its longest sequence
+     *
+     * @param outputMethod     The output the iterations are written to
+     * @param injectionFetcher Fetches the values of the body's injections
+     * @throws ReflectiveOperationException An exception is thrown if an injection failed due to wrong methods/classes provided
+     * @throws UncheckedIOException         An exception is thrown if the body's temporary file couldn't be read
+     */
+    public void writeIterations(IKIChunkOutput outputMethod, IKIInjectionFetcher injectionFetcher) throws ReflectiveOperationException {
+        int iterationsCount = 0;
+        for (KIInjectionNode injectionNode : injectionNodes) {
+            if (loopInjections.containsKey(injectionNode.getSourceText()))
+                continue;
+
+            Object sequence = KILoopSequences.toSequence(injectionFetcher.fetchInjectionValue(injectionNode));
+            iterationsCount = Math.max(iterationsCount, KILoopSequences.length(sequence));
+            loopInjections.put(injectionNode.getSourceText(),
+                    new LoopInjection(sequence, formatterRegistry.getReferenceFormat(injectionNode.getClassAlias(), injectionNode.getMethodAlias())));
+        }
+
+        for (int iterationIndex = 0; iterationIndex < iterationsCount; iterationIndex++)
+            writeSegments(outputMethod, iterationIndex);
+    }
+
+    /**
+     * Write the body as it appeared in the template, for a loop that is never ended
+     *
+     * @param outputMethod The output the body is written to
+     * @throws UncheckedIOException An exception is thrown if the body's temporary file couldn't be read
+     */
+    public void writeSource(IKIChunkOutput outputMethod) {
+        writeSegments(outputMethod, SOURCE_ITERATION);
+    }
+
+    /**
+     * Clear the body, deleting its temporary file if it was spilled
+     *
+     * @throws UncheckedIOException An exception is thrown if the temporary file couldn't be closed or deleted
+     */
+    public void clear() {
+        segments.clear();
+        injectionNodes.clear();
+        loopInjections.clear();
+        pendingLiteralLength = 0;
+        memoryLiterals = null;
+        literals.clear();
+    }
+
+    private void appendSegment(BodySegment bodySegment) {
+        endPendingLiteral();
+        segments.add(bodySegment);
+    }
+
+    /**
+     * End the run of literal characters appended since the last token, making it a segment
+     */
+    private void endPendingLiteral() {
+        if (pendingLiteralLength > 0)
+            segments.add(new BodySegment(pendingLiteralLength, null, null));
+        pendingLiteralLength = 0;
+    }
+
+    /**
+     * Write the body's segments, the literals are read back from the spill buffer
+     *
+     * @param outputMethod   The output the body is written to
+     * @param iterationIndex The index of the written iteration, or SOURCE_ITERATION to write the body's source
+     */
+    private void writeSegments(IKIChunkOutput outputMethod, int iterationIndex) {
+        endPendingLiteral();
+        if (!literals.isSpilled() && memoryLiterals == null)
+            memoryLiterals = literals.toString().toCharArray();
+
+        try (Reader literalsReader = literals.isSpilled() ? literals.openReader() : null) {
+            int memoryPosition = 0;
+            for (BodySegment bodySegment : segments) {
+                if (bodySegment.literalLength > 0) {
+                    if (literalsReader == null) {
+                        outputMethod.writeChunk(memoryLiterals, memoryPosition, (int) bodySegment.literalLength);
+                        memoryPosition += (int) bodySegment.literalLength;
+                    } else {
+                        copyLiteral(literalsReader, outputMethod, bodySegment.literalLength);
+                    }
+                } else if (iterationIndex == SOURCE_ITERATION) {
+                    outputMethod.writeChunk(bodySegment.sourceText);
+                } else if (bodySegment.injectionNode != null) {
+                    writeInjectionValue(outputMethod, bodySegment.injectionNode, iterationIndex);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Write the value of an injection for an iteration, or the injection's source text if it has no value
+     *
+     * @param outputMethod   The output the iteration is written to
+     * @param injectionNode  The injection
+     * @param iterationIndex The index of the iteration
+     */
+    private void writeInjectionValue(IKIChunkOutput outputMethod, KIInjectionNode injectionNode, int iterationIndex) {
+        LoopInjection loopInjection = loopInjections.get(injectionNode.getSourceText());
+        if (loopInjection.sequence == null) {
+            outputMethod.writeChunk(injectionNode.getSourceText());
+            return;
+        }
+        valueBuffer.setLength(0);
+        KILoopSequences.appendElement(valueBuffer, loopInjection.sequence, iterationIndex, formatterRegistry, loopInjection.referenceFormat);
+        outputMethod.writeChunk(valueBuffer);
+    }
+
+    /**
+     * Copy a run of literal characters from the spilled literals to the output
+     *
+     * @param literalsReader The reader over the spilled literals
+     * @param outputMethod   The output
+     * @param literalLength  The number of characters to be copied
+     * @throws IOException An exception is thrown if the literals couldn't be read
+     */
+    private void copyLiteral(Reader literalsReader, IKIChunkOutput outputMethod, long literalLength) throws IOException {
+        while (literalLength > 0) {
+            int readCount = literalsReader.read(readBuffer, 0, (int) Math.min(readBuffer.length, literalLength));
+            if (readCount == -1)
+                throw new IOException(UNEXPECTED_END_ERROR_MESSAGE);
+            outputMethod.writeChunk(readBuffer, 0, readCount);
+            literalLength -= readCount;
+        }
+    }
+}
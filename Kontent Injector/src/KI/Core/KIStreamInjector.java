@@ -0,0 +1,160 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core;
+
+import KI.Core.Lexer.IKIStreamTokenHandler;
+import KI.Core.Lexer.KIStreamLexer;
+import KI.Core.Template.KIInjectionNode;
+import KI.Exceptions.UnresolvedReferenceException;
+import KI.Models.KIFormat.KIFormatterRegistry;
+import KI.Models.KIInput.IKIChunkInput;
+import KI.Models.KIOutput.IKIChunkOutput;
+import KI.Models.KITemplateConfiguration;
+
+import java.util.*;
+
+/**
+ * The stream injector injects content into a template read as a stream of characters. Literals and injected values are
+ * written to the output as soon as they are lexed, so templates made of a few huge lines are processed
+ * using a bounded amount of memory. Only the body of a loop is kept until the loop's end is reached, its literals are
+ * kept in memory up to the loop memory budget and spilled to a temporary file beyond it.
+ * <p>
+ * Unlike the line by line injection, loops could span any number of lines and start or end anywhere in a line
+ */
+class KIStreamInjector implements IKIStreamTokenHandler {
+
+    private final KIStreamLexer streamLexer;
+    private final Map<String, InjectionEngineCache> injectionCache = new HashMap<>();
+    private final IKIChunkOutput outputMethod;
+    private final KIFormatterRegistry formatterRegistry;
+    private final StringBuilder valueBuffer = new StringBuilder();
+    private final char[] chunkBuffer;
+    private final KISpilledLoopBody loopBody;
+    private final KISpilledLoopBody.IKIInjectionFetcher loopInjectionFetcher =
+            injectionNode -> fetchInjectionValue(injectionNode.getClassAlias(), injectionNode.getMethodAlias());
+    private String loopStartWord;
+
+    /**
+     * Construct a stream injector
+     *
+     * @param templateConfig The configuration of the template in use
+     * @param outputMethod   Used to write the output after injection
+     * @param chunkSize      The number of characters read from the template at once
+     * @param contentObjects The objects holding the injection content
+     */
+    KIStreamInjector(KITemplateConfiguration templateConfig, IKIChunkOutput outputMethod, int chunkSize, Object[] contentObjects) {
+        this.outputMethod = outputMethod;
+        this.formatterRegistry = templateConfig.getFormatterRegistry();
+        this.chunkBuffer = new char[chunkSize];
+        this.loopBody = new KISpilledLoopBody(templateConfig.getLoopMemoryBudget(), formatterRegistry);
+        this.streamLexer = new KIStreamLexer(templateConfig, this, chunkSize, KIStreamLexer.DEFAULT_MAX_REFERENCE_LENGTH);
+        KIInjectionEngine.initializeCache(templateConfig.getClassesConfigurations(), contentObjects, injectionCache);
+    }
+
+    /**
+     * Read the whole template, writing the output while reading
+     *
+     * @param inputMethod Used to provide the template as a stream of characters
+     * @throws ReflectiveOperationException An exception is thrown if an injection failed due to wrong methods/classes provided
+     */
+    void injectValues(IKIChunkInput inputMethod) throws ReflectiveOperationException {
+        try {
+            int readCount;
+            while ((readCount = inputMethod.readTemplateChunk(chunkBuffer)) != -1)
+                streamLexer.lex(chunkBuffer, 0, readCount);
+            streamLexer.finish();
+
+            if (loopStartWord != null) {
+                outputMethod.writeChunk(loopStartWord);
+                loopBody.writeSource(outputMethod);
+                loopStartWord = null;
+            }
+        } finally {
+            loopBody.clear();
+        }
+    }
+
+    @Override
+    public void handleLiteral(char[] literal, int offset, int length) {
+        if (loopStartWord != null)
+            loopBody.appendLiteral(literal, offset, length);
+        else
+            outputMethod.writeChunk(literal, offset, length);
+    }
+
+    @Override
+    public void handleInjection(String injectionTemplate, String classAlias, String methodAlias) throws ReflectiveOperationException {
+        if (loopStartWord != null) {
+            loopBody.appendInjection(new KIInjectionNode(injectionTemplate, classAlias, methodAlias));
+            return;
+        }
+
+        Object injectionValue = fetchInjectionValue(classAlias, methodAlias);
+        if (injectionValue == null) {
+            outputMethod.writeChunk(injectionTemplate);
+            return;
+        }
+        valueBuffer.setLength(0);
+        formatterRegistry.appendValue(valueBuffer, injectionValue, formatterRegistry.getReferenceFormat(classAlias, methodAlias));
+        outputMethod.writeChunk(valueBuffer);
+    }
+
+    @Override
+    public void handleLoopStart(String loopStartWord) {
+        if (this.loopStartWord == null)
+            this.loopStartWord = loopStartWord;
+    }
+
+    @Override
+    public void handleLoopEnd(String loopEndWord) throws ReflectiveOperationException {
+        if (loopStartWord == null) {
+            outputMethod.writeChunk(loopEndWord);
+            return;
+        }
+
+        loopStartWord = null;
+        try {
+            loopBody.writeIterations(outputMethod, loopInjectionFetcher);
+        } finally {
+            loopBody.clear();
+        }
+    }
+
+    /**
+     * Resolve an injection's reference and get the appropriate content
+     *
+     * @param classAlias  The class alias referenced by the injection
+     * @param methodAlias The method alias referenced by the injection
+     * @return The corresponding content after invoking the method
+     * @throws ReflectiveOperationException An exception is thrown if an injection failed due to wrong methods/classes provided,
+     *                                      or an UnresolvedReferenceException if no content object matches the class alias
+     */
+    private Object fetchInjectionValue(String classAlias, String methodAlias) throws ReflectiveOperationException {
+        InjectionEngineCache targetClassInjection = injectionCache.get(classAlias);
+        if (targetClassInjection == null)
+            throw new UnresolvedReferenceException(Collections.singletonList(classAlias + "." + methodAlias));
+        return targetClassInjection.fetchInjection(methodAlias);
+    }
+}
@@ -25,28 +25,54 @@
 package KI.Core.KInjectors;
 
 import KI.Core.InjectionEngineCache;
+import KI.Core.Lexer.KILexedLine;
+import KI.Core.Lexer.KILexer;
+import KI.Core.Lexer.KITokenType;
+import KI.Exceptions.UnresolvedReferenceException;
+import KI.Models.KIFormat.KIReferenceFormat;
+import KI.Models.KIFormat.KIFormatterRegistry;
+import KI.Models.KIOutput.IKIChunkOutput;
 import KI.Models.KITemplateConfiguration;
 
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
-import java.util.regex.Pattern;
 
 /**
  * The abstract KInjector is the abstract class defining the common methods expected from KInjectors to be used for injection
  * Created by khaled.hamdy on 3/16/17.
  */
-public abstract class AbstractKInjector implements Comparable<AbstractKInjector> {
+public abstract class AbstractKInjector {
+
+    public static final int DEFAULT_PRIORITY = 500;
 
     protected final KITemplateConfiguration templateConfig;
     private final Map<String, InjectionEngineCache> injectionCache;
+    private KILexer lexer;
 
 
-    AbstractKInjector(KITemplateConfiguration templateConfig, Map<String, InjectionEngineCache> injectionCache) {
+    protected AbstractKInjector(KITemplateConfiguration templateConfig, Map<String, InjectionEngineCache> injectionCache) {
         this.templateConfig = templateConfig;
         this.injectionCache = injectionCache;
     }
 
+    /**
+     * Get the keyword indicating that a template line should be dispatched to this KInjector
+     *
+     * @return The directive's keyword as it appears in templates
+     */
+    public abstract String getDirectiveKeyword();
+
+    /**
+     * Get the KInjector's priority. When a line contains the keywords of several KInjectors,
+     * the line is dispatched to the KInjector with the lowest priority value
+     *
+     * @return The KInjector's priority (Default: DEFAULT_PRIORITY)
+     */
+    public int getPriority() {
+        return DEFAULT_PRIORITY;
+    }
+
     /**
      * Every KInjector should be able to examine a single template line to determine if it
      * can process it or if it will be active but still need more lines to process.
@@ -55,6 +81,37 @@ public abstract class AbstractKInjector implements Comparable<AbstractKInjector>
      */
     public abstract void inspectLine(String templateLine);
 
+    /**
+     * Examine a single template line that was already lexed by the injection engine,
+     * KInjectors that work on tokens should override this method to avoid scanning the line again
+     *
+     * @param templateLine Single template line
+     * @param lexedLine    The lexed template line
+     */
+    public void inspectLine(String templateLine, KILexedLine lexedLine) {
+        inspectLine(templateLine);
+    }
+
+    /**
+     * Share a lexer with the KInjector, so all the KInjectors of an engine use the same one
+     *
+     * @param lexer The lexer to be used by the KInjector
+     */
+    public void setLexer(KILexer lexer) {
+        this.lexer = lexer;
+    }
+
+    /**
+     * Get the lexer used by the KInjector, a new one is created if none was shared with the KInjector
+     *
+     * @return The KInjector's lexer
+     */
+    protected KILexer getLexer() {
+        if (lexer == null)
+            lexer = new KILexer(templateConfig);
+        return lexer;
+    }
+
     /**
      * Indicates if the KInjector is active or not
      *
@@ -78,36 +135,37 @@ public abstract class AbstractKInjector implements Comparable<AbstractKInjector>
     public abstract String processInjection() throws ReflectiveOperationException;
 
     /**
-     * Fetch distinct injection templates from the template string
+     * Process the collected input after examination, KInjectors producing large outputs could write the beginning
+     * of the injected string to the overflow output and return only the rest of it, to avoid holding it all in memory
      *
-     * @param templateString The raw string fetched from the template being parsed
-     * @return A set containing all the distinct injection templates
+     * @param overflowOutput The output to write the beginning of the injected string to, or null if the whole string should be returned
+     * @return The injected string, or its rest if its beginning was written to the overflow output
+     * @throws ReflectiveOperationException An exception is thrown if an injection failed due to wrong methods/classes provided
      */
-    protected Set<String> fetchInjectionTemplates(String templateString) {
-        Set<String> injectionTemplates = new HashSet<>();
-        String token = templateConfig.getInjectionToken();
-
-        if (!templateString.contains(token))
-            return injectionTemplates;
-
-        int indexOfFirstToken;
-        int indexOfSecondToken = 0;
-        int tokenSize = templateConfig.getInjectionToken().length();
-
-        while ((indexOfFirstToken = templateString.indexOf(token, indexOfSecondToken)) != -1) {
-            indexOfSecondToken = templateString.indexOf(token, indexOfFirstToken + tokenSize);
+    public String processInjection(IKIChunkOutput overflowOutput) throws ReflectiveOperationException {
+        return processInjection();
+    }
 
-            if (indexOfSecondToken <= indexOfFirstToken)
-                break;
+    /**
+     * Release the resources held by the KInjector at the end of the injection, including the input collected
+     * for a block that was never processed (e.g. a loop that is not ended before the template's end)
+     */
+    public void release() {
+    }
 
-            String injectionTemplate = templateString.substring(indexOfFirstToken, indexOfSecondToken + tokenSize);
-            if (!injectionTemplate.contains("."))
-                continue;
-            injectionTemplates.add(injectionTemplate);
+    /**
+     * Fetch distinct injection templates from the template string
+     *
+     * @param templateString     The raw string fetched from the template being parsed
+     * @param injectionTemplates The set to add all the distinct injection templates to
+     */
+    protected void fetchInjectionTemplates(String templateString, Set<String> injectionTemplates) {
+        KILexedLine lexedLine = getLexer().lex(templateString);
 
+        for (int i = 0; i < lexedLine.getTokensCount(); i++) {
+            if (lexedLine.getTokenType(i) == KITokenType.INJECTION)
+                injectionTemplates.add(lexedLine.getTokenText(i));
         }
-
-        return injectionTemplates;
     }
 
     /**
@@ -115,11 +173,13 @@ public abstract class AbstractKInjector implements Comparable<AbstractKInjector>
      *
      * @param injectionTemplate The string holding the injection template
      * @return The corresponding content after invoking the method in the injection template or null if the injection template is malformed
-     * @throws ReflectiveOperationException An exception is thrown if an injection failed due to wrong methods/classes provided
+     * @throws ReflectiveOperationException An exception is thrown if an injection failed due to wrong methods/classes provided,
+     *                                      or an UnresolvedReferenceException if no content object matches the class alias
      */
     protected Object fetchInjectionValue(String injectionTemplate) throws ReflectiveOperationException {
 
-        injectionTemplate = injectionTemplate.replaceAll(Pattern.quote(templateConfig.getInjectionToken()), "");
+        int tokenSize = templateConfig.getInjectionToken().length();
+        injectionTemplate = injectionTemplate.substring(tokenSize, injectionTemplate.length() - tokenSize);
 
         String[] injectionTemplateParts = injectionTemplate.split("\\.");
 
@@ -130,12 +190,43 @@ public abstract class AbstractKInjector implements Comparable<AbstractKInjector>
         String injectionMethod = injectionTemplateParts[1];
 
         InjectionEngineCache targetClassInjection = injectionCache.get(injectionClass);
+        if (targetClassInjection == null)
+            throw new UnresolvedReferenceException(Collections.singletonList(injectionClass + "." + injectionMethod));
+
+        return targetClassInjection.fetchInjection(injectionMethod);
+    }
+
+    /**
+     * Resolving an injection token of a lexed line and getting the appropriate content
+     *
+     * @param lexedLine  The lexed line holding the injection token
+     * @param tokenIndex The index of the injection token
+     * @return The corresponding content after invoking the method in the injection template
+     * @throws ReflectiveOperationException An exception is thrown if an injection failed due to wrong methods/classes provided,
+     *                                      or an UnresolvedReferenceException if no content object matches the class alias
+     */
+    protected Object fetchInjectionValue(KILexedLine lexedLine, int tokenIndex) throws ReflectiveOperationException {
+        String injectionClass = lexedLine.getTokenClassAlias(tokenIndex);
+        String injectionMethod = lexedLine.getTokenMethodAlias(tokenIndex);
+
+        InjectionEngineCache targetClassInjection = injectionCache.get(injectionClass);
+        if (targetClassInjection == null)
+            throw new UnresolvedReferenceException(Collections.singletonList(injectionClass + "." + injectionMethod));
 
         return targetClassInjection.fetchInjection(injectionMethod);
     }
 
-    @Override
-    public int compareTo(AbstractKInjector kinjector) {
-        return isActive() && !kinjector.isActive() ? 1 : -1;
+    /**
+     * Get the format of the reference of an injection token of a lexed line
+     *
+     * @param lexedLine  The lexed line holding the injection token
+     * @param tokenIndex The index of the injection token
+     * @return The reference's format, or null if the reference doesn't have its own format
+     */
+    protected KIReferenceFormat fetchReferenceFormat(KILexedLine lexedLine, int tokenIndex) {
+        KIFormatterRegistry formatterRegistry = templateConfig.getFormatterRegistry();
+        if (!formatterRegistry.hasReferencesFormats())
+            return null;
+        return formatterRegistry.getReferenceFormat(lexedLine.getTokenClassAlias(tokenIndex), lexedLine.getTokenMethodAlias(tokenIndex));
     }
 }
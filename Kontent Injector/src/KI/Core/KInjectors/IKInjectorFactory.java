@@ -0,0 +1,47 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.KInjectors;
+
+import KI.Core.InjectionEngineCache;
+import KI.Models.KITemplateConfiguration;
+
+import java.util.Map;
+
+/**
+ * IKInjectorFactory is an interface allowing the user to add directives to the Kontent-Injector
+ * by implementing a KInjector and registering its factory in the KInjectors registry, either directly
+ * or through a ServiceLoader provider configuration file
+ * (META-INF/services/KI.Core.KInjectors.IKInjectorFactory)
+ */
+public interface IKInjectorFactory {
+    /**
+     * Create a KInjector for a single injection process
+     *
+     * @param templateConfig The configuration of the template in use
+     * @param injectionCache The content objects' caches mapped to their class aliases
+     * @return A new KInjector
+     */
+    AbstractKInjector createKInjector(KITemplateConfiguration templateConfig, Map<String, InjectionEngineCache> injectionCache);
+}
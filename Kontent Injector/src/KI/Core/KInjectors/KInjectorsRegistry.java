@@ -0,0 +1,103 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.KInjectors;
+
+import KI.Core.InjectionEngineCache;
+import KI.Models.KITemplateConfiguration;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The KInjectors registry holds the factories of all the directives the injection engine could dispatch
+ * template lines to. The default registry contains the built-in KInjectors (loops and single line injections),
+ * along with any factory found through the ServiceLoader
+ */
+public class KInjectorsRegistry {
+
+    private static final KInjectorsRegistry DEFAULT_REGISTRY = createDefaultRegistry();
+
+    private final List<IKInjectorFactory> kinjectorsFactories = new CopyOnWriteArrayList<>();
+
+    /**
+     * Get the registry used by the injection engine
+     *
+     * @return The default registry
+     */
+    public static KInjectorsRegistry getDefaultRegistry() {
+        return DEFAULT_REGISTRY;
+    }
+
+    /**
+     * Create the default registry holding the built-in KInjectors and the ones provided through the ServiceLoader
+     *
+     * @return The default registry
+     */
+    private static KInjectorsRegistry createDefaultRegistry() {
+        KInjectorsRegistry registry = new KInjectorsRegistry();
+        registry.register(LoopKInjector::new);
+        registry.register(SingleLineKInjector::new);
+        for (IKInjectorFactory kinjectorFactory : ServiceLoader.load(IKInjectorFactory.class))
+            registry.register(kinjectorFactory);
+        return registry;
+    }
+
+    /**
+     * Register a KInjector factory
+     *
+     * @param kinjectorFactory The factory creating the directive's KInjector
+     */
+    public void register(IKInjectorFactory kinjectorFactory) {
+        kinjectorsFactories.add(kinjectorFactory);
+    }
+
+    /**
+     * Unregister a KInjector factory
+     *
+     * @param kinjectorFactory The factory to be removed
+     */
+    public void unregister(IKInjectorFactory kinjectorFactory) {
+        kinjectorsFactories.remove(kinjectorFactory);
+    }
+
+    /**
+     * Create the KInjectors of all the registered directives for a single injection process
+     *
+     * @param templateConfig The configuration of the template in use
+     * @param injectionCache The content objects' caches mapped to their class aliases
+     * @return The KInjectors ordered by their priorities
+     */
+    public List<AbstractKInjector> createKInjectors(KITemplateConfiguration templateConfig, Map<String, InjectionEngineCache> injectionCache) {
+        List<AbstractKInjector> kinjectors = new ArrayList<>(kinjectorsFactories.size());
+        for (IKInjectorFactory kinjectorFactory : kinjectorsFactories)
+            kinjectors.add(kinjectorFactory.createKInjector(templateConfig, injectionCache));
+        kinjectors.sort(Comparator.comparingInt(AbstractKInjector::getPriority));
+        return kinjectors;
+    }
+}
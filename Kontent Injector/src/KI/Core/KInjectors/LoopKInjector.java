@@ -25,38 +25,76 @@
 package KI.Core.KInjectors;
 
 import KI.Core.InjectionEngineCache;
+import KI.Core.KILoopExpander;
+import KI.Core.KILoopSequences;
+import KI.Core.KIScratchBuffers;
+import KI.Core.KISpillBuffer;
+import KI.Core.Lexer.KILexedLine;
+import KI.Core.Lexer.KILexer;
+import KI.Core.Lexer.KITokenType;
+import KI.Models.KIFormat.KIReferenceFormat;
+import KI.Models.KIOutput.IKIChunkOutput;
 import KI.Models.KITemplateConfiguration;
 
-import java.util.Collection;
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.util.Map;
-import java.util.Set;
-import java.util.regex.Pattern;
 
 /**
  * The KInjector responsible for handling loop injections
+ * <p>
+ * The loop block and its expansion are kept in memory up to the configured loop memory budget. A larger block is spilled
+ * to a temporary file and expanded by replaying its body, lexed once, for every iteration, and a larger expansion is written to the
+ * overflow output while expanding. Loops expensive enough are expanded in parallel on the configuration's loop pool
  * Created by khaled.hamdy on 3/16/17.
  */
 public class LoopKInjector extends AbstractKInjector {
 
-    private String loopBlock = "";
+    public static final int LOOP_PRIORITY = 100;
+    static final int SPILL_READ_BUFFER_SIZE = 8192;
+
+    private final KISpillBuffer loopBlock;
+    private final KILexedLine lexedBlock = new KILexedLine();
+    private final KILoopExpander loopExpander;
     private boolean isActive = false;
+    private boolean isLoopEndFound = false;
 
     public LoopKInjector(KITemplateConfiguration templateConfig, Map<String, InjectionEngineCache> injectionCache) {
         super(templateConfig, injectionCache);
+        loopBlock = new KISpillBuffer(templateConfig.getLoopMemoryBudget());
+        loopExpander = new KILoopExpander(templateConfig.getLoopPool());
+    }
+
+    @Override
+    public String getDirectiveKeyword() {
+        return templateConfig.getLoopStartFullWord();
+    }
+
+    @Override
+    public int getPriority() {
+        return LOOP_PRIORITY;
     }
 
     @Override
     public void inspectLine(String templateLine) {
+        inspectLine(templateLine, getLexer().lex(templateLine, lexedBlock));
+    }
+
+    @Override
+    public void inspectLine(String templateLine, KILexedLine lexedLine) {
         if (isActive()) {
-            loopBlock += "\n" + templateLine;
+            loopBlock.append('\n').append(templateLine);
+            isLoopEndFound |= lexedLine.containsKeyword(KILexer.LOOP_END_FULL_WORD);
             return;
         }
 
-        if (!templateLine.contains(templateConfig.getLoopStartFullWord()))
+        if (!lexedLine.containsKeyword(KILexer.LOOP_START_FULL_WORD))
             return;
 
-        loopBlock = templateLine;
+        loopBlock.clear();
+        loopBlock.append(templateLine);
+        isLoopEndFound = lexedLine.containsKeyword(KILexer.LOOP_END_FULL_WORD);
         isActive = true;
     }
 
@@ -67,7 +105,7 @@ public class LoopKInjector extends AbstractKInjector {
 
     @Override
     public boolean isReadyForProcessing() {
-        return loopBlock.contains(templateConfig.getLoopEndFullWord());
+        return isLoopEndFound;
     }
 
     /**
@@ -78,113 +116,183 @@ public class LoopKInjector extends AbstractKInjector {
      */
     @Override
     public String processInjection() throws ReflectiveOperationException {
-        String loopExtraction = extractLoopTemplate(loopBlock);
-        if (loopExtraction == null)
-            return loopBlock;
+        return processInjection(null);
+    }
 
-        String injectedBlock = loopExtraction.replace(templateConfig.getLoopStartFullWord(), "");
-        injectedBlock = injectedBlock.replace(templateConfig.getLoopEndFullWord(), "");
+    /**
+     * Handle loop injections, writing the expansion to the overflow output whenever it exceeds the loop memory budget
+     *
+     * @param overflowOutput The output to write the beginning of the processed block to, or null to return the whole block
+     * @return The rest of the processed block after injection
+     * @throws ReflectiveOperationException An exception is thrown if an injection failed due to wrong methods/classes provided
+     */
+    @Override
+    public String processInjection(IKIChunkOutput overflowOutput) throws ReflectiveOperationException {
+        try {
+            if (loopBlock.isSpilled() && overflowOutput != null) {
+                new SpilledLoopBlockInjector(this, overflowOutput).inject(loopBlock);
+                return "";
+            }
+
+            String loopBlockString = loopBlock.isSpilled() ? readSpilledLoopBlock() : loopBlock.toString();
+            KILexedLine lexedLoopBlock = getLexer().lex(loopBlockString, lexedBlock);
+            int loopStartToken = findToken(lexedLoopBlock, KITokenType.LOOP_START, 0);
+            int loopEndToken = findToken(lexedLoopBlock, KITokenType.LOOP_END, loopStartToken + 1);
+            if (loopStartToken == -1 || loopEndToken == -1)
+                return loopBlockString;
 
-        injectedBlock = handleLoopInjection(injectedBlock);
-        injectedBlock = loopBlock.replace(loopExtraction, injectedBlock);
-        loopBlock = "";
+            return handleLoopInjection(lexedLoopBlock, loopStartToken, loopEndToken, overflowOutput);
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Clear the loop block, deleting its temporary file if the block was spilled
+     */
+    @Override
+    public void release() {
         isActive = false;
-        return injectedBlock;
+        isLoopEndFound = false;
+        loopBlock.clear();
     }
 
     /**
      * Start loop injection process
      *
-     * @param loopExtraction The exact loop block after removing extra strings that should not be included in the loop, and the start/end loop words
-     * @return The loop block after injection
+     * @param lexedLoopBlock The lexed loop block
+     * @param loopStartToken The index of the loop start token
+     * @param loopEndToken   The index of the loop end token
+     * @param overflowOutput The output to write the processed block to while it exceeds the loop memory budget, or null
+     * @return The loop block after injection (or its rest, if a part was written to the overflow output)
      * @throws ReflectiveOperationException An exception is thrown if an injection failed due to wrong methods/classes provided
      */
-    private String handleLoopInjection(String loopExtraction) throws ReflectiveOperationException {
-        StringBuilder injectedBlock = new StringBuilder();
+    private String handleLoopInjection(KILexedLine lexedLoopBlock, int loopStartToken, int loopEndToken, IKIChunkOutput overflowOutput) throws ReflectiveOperationException {
+        KIScratchBuffers scratchBuffers = KIScratchBuffers.get();
+        StringBuilder injectedBlock = scratchBuffers.acquireBuilder();
+        Map<String, Object> injectionCollections = scratchBuffers.acquireMap();
+        String loopBlockString = lexedLoopBlock.getLine();
+        int bodyStart = loopStartToken + 1;
+        Object[] tokensValues = new Object[loopEndToken - bodyStart];
+        KIReferenceFormat[] tokensFormats = new KIReferenceFormat[tokensValues.length];
 
-        boolean isMultilineLoop = loopExtraction.contains("\n");
-        Set<String> injectionTemplates = fetchInjectionTemplates(loopExtraction);
-        Map<String, Object> injectionCollections = new HashMap<>();
-        int maxCollectionSize = fetchInjectionCollections(injectionTemplates, injectionCollections);
+        try {
+            int maxCollectionSize = fetchInjectionCollections(lexedLoopBlock, bodyStart, loopEndToken, injectionCollections, tokensValues, tokensFormats);
+            injectedBlock.append(loopBlockString, 0, lexedLoopBlock.getTokenStart(loopStartToken));
 
+            loopExpander.expand(injectedBlock, maxCollectionSize,
+                    (iterationBuffer, index) -> handleInjectionIteration(iterationBuffer, index, lexedLoopBlock, bodyStart, loopEndToken, tokensValues, tokensFormats),
+                    outputBuffer -> {
+                        if (overflowOutput != null && outputBuffer.length() > templateConfig.getLoopMemoryBudget()) {
+                            overflowOutput.writeChunk(outputBuffer);
+                            outputBuffer.setLength(0);
+                        }
+                    });
 
-        for (int i = 0; i < maxCollectionSize; i++) {
-            injectedBlock.append(handleInjectionIteration(i, loopExtraction, injectionCollections));
-            //injectedBlock.append(isMultilineLoop ? "\n" : "");
+            return injectedBlock.append(loopBlockString, lexedLoopBlock.getTokenEnd(loopEndToken), loopBlockString.length()).toString();
+        } finally {
+            scratchBuffers.releaseBuilder(injectedBlock);
+            scratchBuffers.releaseMap(injectionCollections);
         }
+    }
+
+    /**
+     * Read a spilled loop block back into memory, when there is no output to stream its expansion to
+     *
+     * @return The loop block
+     */
+    private String readSpilledLoopBlock() {
+        StringBuilder loopBlockString = new StringBuilder();
+        char[] readBuffer = new char[SPILL_READ_BUFFER_SIZE];
+        int readCount;
 
-        return injectedBlock.toString();
+        try (Reader loopBlockReader = loopBlock.openReader()) {
+            while ((readCount = loopBlockReader.read(readBuffer)) != -1)
+                loopBlockString.append(readBuffer, 0, readCount);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return loopBlockString.toString();
     }
 
     /**
      * Handle a single iteration's injection of a loop
      *
-     * @param index                The current iteration index
-     * @param loopExtraction       The loop template
-     * @param injectionCollections The map holding the injection template as the key, and the object holding the injection content as the value
-     * @return The injected string for a single iteration
+     * @param injectedBlock  The buffer to append the injected iteration to
+     * @param index          The current iteration index
+     * @param lexedLoopBlock The lexed loop block
+     * @param bodyStart      The index of the first token of the loop's body
+     * @param bodyEnd        The index of the loop end token
+     * @param tokensValues     The injection content of every token of the loop's body (null for literals)
+     * @param tokensFormats    The reference format of every token of the loop's body (null if none)
      */
-    private String handleInjectionIteration(int index, String loopExtraction, Map<String, Object> injectionCollections) {
-        String injectedIteration = loopExtraction;
-        for (Map.Entry<String, Object> injectionEntry : injectionCollections.entrySet()) {
-            String injectionTemplate = injectionEntry.getKey();
-            Object injectionObject = injectionEntry.getValue();
-            if (!(injectionObject instanceof Collection) && !(injectionObject instanceof Object[])) {
-                injectedIteration = injectedIteration.replaceAll(Pattern.quote(injectionTemplate), injectionObject.toString());
-                continue;
-            }
+    private void handleInjectionIteration(StringBuilder injectedBlock, int index, KILexedLine lexedLoopBlock, int bodyStart, int bodyEnd,
+                                          Object[] tokensValues, KIReferenceFormat[] tokensFormats) {
+        String loopBlockString = lexedLoopBlock.getLine();
 
-            if (injectionObject instanceof Collection)
-                injectionCollections.put(injectionTemplate, injectionObject = ((Collection<?>) injectionObject).toArray());
-
-            Object[] injectionObjectsArray = (Object[]) injectionObject;
-            String injectionValue = index < injectionObjectsArray.length ? injectionObjectsArray[index].toString() : "";
+        for (int i = bodyStart; i < bodyEnd; i++) {
+            KITokenType tokenType = lexedLoopBlock.getTokenType(i);
+            if (tokenType == KITokenType.LOOP_START)
+                continue;
 
-            injectedIteration = injectedIteration.replaceAll(Pattern.quote(injectionTemplate), injectionValue);
+            Object tokenValue = tokensValues[i - bodyStart];
+            if (tokenType == KITokenType.INJECTION && tokenValue != null)
+                KILoopSequences.appendElement(injectedBlock, tokenValue, index, templateConfig.getFormatterRegistry(), tokensFormats[i - bodyStart]);
+            else
+                injectedBlock.append(loopBlockString, lexedLoopBlock.getTokenStart(i), lexedLoopBlock.getTokenEnd(i));
         }
-        return injectedIteration;
     }
 
     /**
-     * Map the injection templates in a loop to the corresponding injection content
+     * Map the injection tokens in a loop to the corresponding injection content, converting it to sequences.
+     * Every distinct injection template is resolved only once
      *
-     * @param injectionTemplates   A set holding the injection templates in a loop
+     * @param lexedLoopBlock       The lexed loop block
+     * @param bodyStart            The index of the first token of the loop's body
+     * @param bodyEnd              The index of the loop end token
      * @param injectionCollections The map to be updated with the mapping between injection templates and their content
-     * @return The maximum collection size between injection contents that are of type collection
+     * @param tokensValues         The array to be filled with the injection content of every token of the loop's body
+     * @param tokensFormats        The array to be filled with the reference format of every token of the loop's body
+     * @return The maximum length between injection contents that are sequences
      * @throws ReflectiveOperationException An exception is thrown if an injection failed due to wrong methods/classes provided
      */
-    private int fetchInjectionCollections(Set<String> injectionTemplates, Map<String, Object> injectionCollections) throws ReflectiveOperationException {
+    private int fetchInjectionCollections(KILexedLine lexedLoopBlock, int bodyStart, int bodyEnd, Map<String, Object> injectionCollections, Object[] tokensValues,
+                                          KIReferenceFormat[] tokensFormats) throws ReflectiveOperationException {
         int maxCollectionSize = 0;
 
-        for (String injectionTemplate : injectionTemplates) {
-            Object injectionObject = fetchInjectionValue(injectionTemplate);
-            injectionCollections.put(injectionTemplate, injectionObject);
-            if (!(injectionObject instanceof Collection<?>))
+        for (int i = bodyStart; i < bodyEnd; i++) {
+            if (lexedLoopBlock.getTokenType(i) != KITokenType.INJECTION)
+                continue;
+
+            tokensFormats[i - bodyStart] = fetchReferenceFormat(lexedLoopBlock, i);
+            String injectionTemplate = lexedLoopBlock.getTokenText(i);
+            if (injectionCollections.containsKey(injectionTemplate)) {
+                tokensValues[i - bodyStart] = injectionCollections.get(injectionTemplate);
                 continue;
-            int collectionSize = ((Collection<?>) injectionObject).size();
-            maxCollectionSize = maxCollectionSize < collectionSize ? collectionSize : maxCollectionSize;
+            }
+
+            Object injectionObject = KILoopSequences.toSequence(fetchInjectionValue(lexedLoopBlock, i));
+            maxCollectionSize = Math.max(maxCollectionSize, KILoopSequences.length(injectionObject));
+            injectionCollections.put(injectionTemplate, injectionObject);
+            tokensValues[i - bodyStart] = injectionObject;
         }
         return maxCollectionSize;
     }
 
     /**
-     * Extract the loop part from the loop block excluding any string outside the block enclosed by the start/end loop words
+     * Find the first token of a type in a lexed block
      *
-     * @param loopBlock The block where a loop is detected
-     * @return The exact block enclosed by the start/end loop words (including the start/end loop words)
+     * @param lexedLoopBlock The lexed block where a loop is detected
+     * @param tokenType      The type of the token to search for
+     * @param fromToken      The index of the token to start searching from
+     * @return The token's index, or -1 if not found
      */
-    private String extractLoopTemplate(String loopBlock) {
-        int loopStartIndex = loopBlock.indexOf(templateConfig.getLoopStartFullWord());
-
-        if (loopStartIndex == -1)
-            return null;
-
-        int loopEndIndex = loopBlock.indexOf(templateConfig.getLoopEndFullWord(), loopStartIndex);
-
-        if (loopEndIndex <= loopStartIndex)
-            return null;
-
-        return loopBlock.substring(loopStartIndex, loopEndIndex + templateConfig.getLoopEndFullWord().length());
+    private int findToken(KILexedLine lexedLoopBlock, KITokenType tokenType, int fromToken) {
+        for (int i = fromToken; i < lexedLoopBlock.getTokensCount(); i++) {
+            if (lexedLoopBlock.getTokenType(i) == tokenType)
+                return i;
+        }
+        return -1;
     }
 
 }
@@ -25,11 +25,14 @@
 package KI.Core.KInjectors;
 
 import KI.Core.InjectionEngineCache;
+import KI.Core.KIScratchBuffers;
+import KI.Core.Lexer.KILexedLine;
+import KI.Core.Lexer.KILexer;
+import KI.Core.Lexer.KITokenType;
+import KI.Models.KIFormat.KIFormatterRegistry;
 import KI.Models.KITemplateConfiguration;
 
 import java.util.Map;
-import java.util.Set;
-import java.util.regex.Matcher;
 
 /**
  * The KInjector responsible for handling the single line injections
@@ -37,26 +40,46 @@ import java.util.regex.Matcher;
  */
 public class SingleLineKInjector extends AbstractKInjector {
 
+    public static final int SINGLE_LINE_PRIORITY = 1000;
+
+    private final KILexedLine ownLexedLine = new KILexedLine();
     private String lineToProcess = "";
+    private KILexedLine lexedLine;
     private boolean isActive = false;
 
     public SingleLineKInjector(KITemplateConfiguration templateConfig, Map<String, InjectionEngineCache> injectionCache) {
         super(templateConfig, injectionCache);
     }
 
+    @Override
+    public String getDirectiveKeyword() {
+        return templateConfig.getInjectionToken();
+    }
+
+    @Override
+    public int getPriority() {
+        return SINGLE_LINE_PRIORITY;
+    }
+
     @Override
     public void inspectLine(String templateLine) {
-        if (!isLineProcessable(templateLine))
+        inspectLine(templateLine, getLexer().lex(templateLine, ownLexedLine));
+    }
+
+    @Override
+    public void inspectLine(String templateLine, KILexedLine lexedLine) {
+        if (!isLineProcessable(lexedLine))
             return;
 
         lineToProcess = templateLine;
+        this.lexedLine = lexedLine;
         isActive = true;
     }
 
-    private boolean isLineProcessable(String templateLine) {
-        boolean doesContainInjectionToken = templateLine.contains(templateConfig.getInjectionToken());
-        boolean doesContainLoopStartWord = templateLine.contains(templateConfig.getLoopStartWord());
-        boolean doesContainLoopEndWord = templateLine.contains(templateConfig.getLoopEndWord());
+    private boolean isLineProcessable(KILexedLine lexedLine) {
+        boolean doesContainInjectionToken = lexedLine.containsKeyword(KILexer.INJECTION_TOKEN);
+        boolean doesContainLoopStartWord = lexedLine.containsKeyword(KILexer.LOOP_START_WORD);
+        boolean doesContainLoopEndWord = lexedLine.containsKeyword(KILexer.LOOP_END_WORD);
 
         return doesContainInjectionToken && !doesContainLoopStartWord && !doesContainLoopEndWord;
     }
@@ -82,27 +105,57 @@ public class SingleLineKInjector extends AbstractKInjector {
         if (!isActive)
             return null;
 
-        String injectedLine = lineToProcess;
-
-        Set<String> injectionTemplates = fetchInjectionTemplates(lineToProcess);
-
-        if (injectionTemplates.size() == 0)
-            return injectedLine;
-
-        for (String injectionTemplate : injectionTemplates) {
-
-            Object injectionValue = fetchInjectionValue(injectionTemplate);
-
-            if (injectionValue == null)
-                continue;
-
-            injectedLine = injectedLine.replaceAll(Matcher.quoteReplacement(injectionTemplate), injectionValue.toString());
+        KIScratchBuffers scratchBuffers = KIScratchBuffers.get();
+        Map<String, Object> injectionValues = scratchBuffers.acquireMap();
+
+        try {
+            for (int i = 0; i < lexedLine.getTokensCount(); i++) {
+                if (lexedLine.getTokenType(i) != KITokenType.INJECTION)
+                    continue;
+
+                String injectionTemplate = lexedLine.getTokenText(i);
+                if (injectionValues.containsKey(injectionTemplate))
+                    continue;
+
+                Object injectionValue = fetchInjectionValue(lexedLine, i);
+                if (injectionValue != null)
+                    injectionValues.put(injectionTemplate, injectionValue);
+            }
+
+            return injectionValues.isEmpty() ? lineToProcess : injectLine(injectionValues);
+        } finally {
+            scratchBuffers.releaseMap(injectionValues);
+            isActive = false;
+            lineToProcess = "";
+            lexedLine = null;
         }
+    }
 
-        isActive = false;
-        lineToProcess = "";
-
-        return injectedLine;
+    /**
+     * Replace the injection tokens of the line being processed with their values
+     *
+     * @param injectionValues The map holding the injection templates (keys) and their values (values)
+     * @return The injected line
+     */
+    private String injectLine(Map<String, Object> injectionValues) {
+        KIScratchBuffers scratchBuffers = KIScratchBuffers.get();
+        StringBuilder injectedLine = scratchBuffers.acquireBuilder();
+        KIFormatterRegistry formatterRegistry = templateConfig.getFormatterRegistry();
+
+        try {
+            for (int i = 0; i < lexedLine.getTokensCount(); i++) {
+                Object injectionValue = lexedLine.getTokenType(i) == KITokenType.INJECTION ? injectionValues.get(lexedLine.getTokenText(i)) : null;
+
+                if (injectionValue == null)
+                    injectedLine.append(lineToProcess, lexedLine.getTokenStart(i), lexedLine.getTokenEnd(i));
+                else
+                    formatterRegistry.appendValue(injectedLine, injectionValue, fetchReferenceFormat(lexedLine, i));
+            }
+
+            return injectedLine.toString();
+        } finally {
+            scratchBuffers.releaseBuilder(injectedLine);
+        }
     }
 
 }
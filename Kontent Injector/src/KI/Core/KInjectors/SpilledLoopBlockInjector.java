@@ -0,0 +1,145 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.KInjectors;
+
+import KI.Core.KISpillBuffer;
+import KI.Core.KISpilledLoopBody;
+import KI.Core.Lexer.IKIStreamTokenHandler;
+import KI.Core.Lexer.KIStreamLexer;
+import KI.Core.Template.KIInjectionNode;
+import KI.Models.KIOutput.IKIChunkOutput;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+
+/**
+ * The spilled loop block injector expands a loop block that was spilled to a temporary file, without reading
+ * the block into memory. The block is lexed as a stream once: the string before the loop is written while lexing,
+ * the loop's body is gathered in a spilled loop body which is written once for every iteration when the loop's end
+ * is reached, then the string after the loop is written
+ */
+class SpilledLoopBlockInjector implements IKIStreamTokenHandler {
+
+    /**
+     * The position of the current token relative to the loop
+     */
+    private enum Position {
+        PREFIX,
+        BODY,
+        SUFFIX
+    }
+
+    private final LoopKInjector loopKInjector;
+    private final IKIChunkOutput outputMethod;
+    private final KISpilledLoopBody loopBody;
+    private final KISpilledLoopBody.IKIInjectionFetcher loopInjectionFetcher;
+    private final char[] readBuffer = new char[LoopKInjector.SPILL_READ_BUFFER_SIZE];
+    private String loopStartWord;
+    private Position position = Position.PREFIX;
+
+    /**
+     * Construct a spilled loop block injector
+     *
+     * @param loopKInjector The loop KInjector resolving the injections
+     * @param outputMethod  The output to write the processed block to
+     */
+    SpilledLoopBlockInjector(LoopKInjector loopKInjector, IKIChunkOutput outputMethod) {
+        this.loopKInjector = loopKInjector;
+        this.outputMethod = outputMethod;
+        this.loopBody = new KISpilledLoopBody(loopKInjector.templateConfig.getLoopMemoryBudget(), loopKInjector.templateConfig.getFormatterRegistry());
+        this.loopInjectionFetcher = injectionNode -> loopKInjector.fetchInjectionValue(injectionNode.getSourceText());
+    }
+
+    /**
+     * Process the loop block and write it to the output
+     *
+     * @param loopBlock The spilled loop block
+     * @throws ReflectiveOperationException An exception is thrown if an injection failed due to wrong methods/classes provided
+     */
+    void inject(KISpillBuffer loopBlock) throws ReflectiveOperationException {
+        KIStreamLexer streamLexer = new KIStreamLexer(loopKInjector.templateConfig, this);
+        int readCount;
+
+        try {
+            try (Reader loopBlockReader = loopBlock.openReader()) {
+                while ((readCount = loopBlockReader.read(readBuffer)) != -1)
+                    streamLexer.lex(readBuffer, 0, readCount);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            streamLexer.finish();
+
+            if (position == Position.BODY) {
+                outputMethod.writeChunk(loopStartWord);
+                loopBody.writeSource(outputMethod);
+            }
+        } finally {
+            loopBody.clear();
+        }
+    }
+
+    @Override
+    public void handleLiteral(char[] literal, int offset, int length) {
+        if (position == Position.BODY)
+            loopBody.appendLiteral(literal, offset, length);
+        else
+            outputMethod.writeChunk(literal, offset, length);
+    }
+
+    @Override
+    public void handleInjection(String injectionTemplate, String classAlias, String methodAlias) {
+        if (position != Position.BODY) {
+            outputMethod.writeChunk(injectionTemplate);
+            return;
+        }
+
+        loopBody.appendInjection(new KIInjectionNode(injectionTemplate, classAlias, methodAlias));
+    }
+
+    @Override
+    public void handleLoopStart(String loopStartWord) {
+        if (position == Position.PREFIX) {
+            position = Position.BODY;
+            this.loopStartWord = loopStartWord;
+        } else if (position == Position.BODY) {
+            loopBody.appendDroppedToken(loopStartWord);
+        } else {
+            outputMethod.writeChunk(loopStartWord);
+        }
+    }
+
+    @Override
+    public void handleLoopEnd(String loopEndWord) throws ReflectiveOperationException {
+        if (position != Position.BODY) {
+            outputMethod.writeChunk(loopEndWord);
+            return;
+        }
+
+        position = Position.SUFFIX;
+        loopBody.writeIterations(outputMethod, loopInjectionFetcher);
+        loopBody.clear();
+    }
+}
@@ -24,10 +24,24 @@
 
 package KI.Core;
 
+import KI.Core.Compiler.IKITemplateRenderer;
+import KI.Core.Compiler.KITemplateCompiler;
+import KI.Core.Compiler.KITemplateArtifact;
+import KI.Core.Compiler.KITemplateGroup;
+import KI.Core.Compiler.KITemplateLinker;
+import KI.Core.Template.KIParsedTemplate;
+import KI.Core.Template.KITemplateParser;
+import KI.Models.KIInput.IKIChunkInput;
 import KI.Models.KIInput.IKIInput;
+import KI.Models.KIOutput.IKIChunkOutput;
 import KI.Models.KIOutput.IKIOutput;
 import KI.Models.KITemplateConfiguration;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * The KontentInjector class is the class responsible for initiating the injection process
  * and generating the output files after injection.
@@ -36,7 +50,12 @@ import KI.Models.KITemplateConfiguration;
  */
 public class KontentInjector {
 
+    public static final int DEFAULT_STREAM_CHUNK_SIZE = 8192;
+    public static final int DEFAULT_PIPELINE_BATCH_LINES = 256;
+
     private KITemplateConfiguration currentKIConfig;
+    private int streamChunkSize = DEFAULT_STREAM_CHUNK_SIZE;
+    private int pipelineBatchLines = DEFAULT_PIPELINE_BATCH_LINES;
 
     public KontentInjector() {
         currentKIConfig = new KITemplateConfiguration();
@@ -66,16 +85,148 @@ public class KontentInjector {
         if (contentObjects.length == 0)
             return;
         String templateLine;
+        IKIChunkOutput chunkOutput = IKIChunkOutput.of(outputMethod);
         KIInjectionEngine injectionEngine = new KIInjectionEngine(currentKIConfig, contentObjects);
 
-        while ((templateLine = inputMethod.readTemplateLine()) != null) {
-            String processedOutput = injectionEngine.processLine(templateLine);
-            if (processedOutput == null)
-                continue;
-            outputMethod.writeLine(processedOutput);
+        try {
+            while ((templateLine = inputMethod.readTemplateLine()) != null) {
+                String processedOutput = injectionEngine.processLine(templateLine, chunkOutput);
+                if (processedOutput == null)
+                    continue;
+                chunkOutput.writeLine(processedOutput);
+            }
+        } catch (ReflectiveOperationException | RuntimeException | Error e) {
+            IKIOutput.abort(chunkOutput, e);
+            throw e;
+        } finally {
+            injectionEngine.release();
+        }
+
+        chunkOutput.handleOutputEnd();
+    }
+
+    /**
+     * Start the content injection process as a pipeline: the template is read on a reader thread and the output is written
+     * on a writer thread, while the lines are injected on the calling thread. The threads pass batches of lines through
+     * bounded queues, so reading, injecting and writing a large template overlap, and the output is written in order.
+     * The input and the output should not rely on being used from the calling thread
+     *
+     * @param inputMethod    Used to provide a template as an input to the KI
+     * @param outputMethod   Used by the KI to write the generated output after injection
+     * @param contentObjects The objects containing the content to be injected into a template
+     * @throws ReflectiveOperationException An exception is thrown if an injection failed due to wrong methods/classes provided
+     */
+    public void injectValuesPipelined(IKIInput inputMethod, IKIOutput outputMethod, Object... contentObjects) throws ReflectiveOperationException {
+        if (contentObjects.length == 0)
+            return;
+        new KIPipelinedInjector(currentKIConfig, IKIChunkOutput.of(outputMethod), pipelineBatchLines, contentObjects).injectValues(inputMethod);
+    }
+
+    /**
+     * Set the number of template lines passed between the threads of a pipelined injection at once
+     *
+     * @param pipelineBatchLines The batch size in lines (Default: DEFAULT_PIPELINE_BATCH_LINES)
+     */
+    public void setPipelineBatchLines(int pipelineBatchLines) {
+        this.pipelineBatchLines = pipelineBatchLines;
+    }
+
+    /**
+     * Set the number of characters read from a template at once when it's read as a stream of characters
+     *
+     * @param streamChunkSize The chunk size (Default: DEFAULT_STREAM_CHUNK_SIZE)
+     */
+    public void setStreamChunkSize(int streamChunkSize) {
+        this.streamChunkSize = streamChunkSize;
+    }
+
+    /**
+     * Start the content injection process, reading the template as a stream of characters.
+     * The memory used is bounded by the chunk size no matter how long the template's lines are, if the output
+     * is not an IKIChunkOutput it's written line by line so it's bounded by the longest output line instead
+     *
+     * @param inputMethod    Used to provide a template as a stream of characters to the KI
+     * @param outputMethod   Used by the KI to write the generated output after injection
+     * @param contentObjects The objects containing the content to be injected into a template
+     * @throws ReflectiveOperationException An exception is thrown if an injection failed due to wrong methods/classes provided
+     */
+    public void injectStream(IKIChunkInput inputMethod, IKIOutput outputMethod, Object... contentObjects) throws ReflectiveOperationException {
+        if (contentObjects.length == 0)
+            return;
+        IKIChunkOutput chunkOutput = IKIChunkOutput.of(outputMethod);
+        try {
+            new KIStreamInjector(currentKIConfig, chunkOutput, streamChunkSize, contentObjects).injectValues(inputMethod);
+        } catch (ReflectiveOperationException | RuntimeException | Error e) {
+            IKIOutput.abort(chunkOutput, e);
+            throw e;
         }
+        chunkOutput.handleOutputEnd();
+    }
 
-        outputMethod.handleOutputEnd();
+    /**
+     * Read and compile a template once, so it could be rendered many times without parsing it again.
+     * The template's injections are bound to the getters of the provided content classes
+     *
+     * @param inputMethod    Used to provide a template as an input to the KI
+     * @param contentClasses The classes of the objects that will hold the content to be injected
+     * @return The compiled template, or an interpreted template if a getter is not accessible
+     * @throws ReflectiveOperationException An UnresolvedReferenceException is thrown holding all the references to classes or methods
+     *                                      that do not exist, before anything is rendered
+     */
+    public IKITemplateRenderer compile(IKIInput inputMethod, Class<?>... contentClasses) throws ReflectiveOperationException {
+        KITemplateParser templateParser = new KITemplateParser(currentKIConfig);
+        KITemplateCompiler templateCompiler = new KITemplateCompiler(currentKIConfig);
+        return templateCompiler.compile(templateParser.parse(inputMethod), contentClasses);
+    }
+
+    /**
+     * Read and compile a template to be rendered incrementally. The output of every segment is kept between renders,
+     * and only the segments whose injected values changed since the previous render are rendered again
+     *
+     * @param inputMethod    Used to provide a template as an input to the KI
+     * @param contentClasses The classes of the objects that will hold the content to be injected
+     * @return The incremental template, or an interpreted template if a getter is not accessible
+     * @throws ReflectiveOperationException An UnresolvedReferenceException is thrown holding all the references to classes or methods
+     *                                      that do not exist, before anything is rendered
+     */
+    public IKITemplateRenderer compileIncremental(IKIInput inputMethod, Class<?>... contentClasses) throws ReflectiveOperationException {
+        KITemplateParser templateParser = new KITemplateParser(currentKIConfig);
+        KITemplateLinker templateLinker = new KITemplateLinker(currentKIConfig);
+        KITemplateCompiler templateCompiler = new KITemplateCompiler(currentKIConfig);
+        return templateCompiler.compileIncremental(templateLinker.link(templateParser.parse(inputMethod), contentClasses));
+    }
+
+    /**
+     * Read and compile several templates that are rendered from the same content objects, each into its own output.
+     * A getter referenced by many templates is invoked once per render of the group, and the templates
+     * could be rendered in parallel
+     *
+     * @param inputMethods   Used to provide the templates as inputs to the KI
+     * @param contentClasses The classes of the objects that will hold the content to be injected
+     * @return The template group
+     * @throws ReflectiveOperationException An UnresolvedReferenceException is thrown holding all the references to classes or methods
+     *                                      that do not exist, before anything is rendered
+     */
+    public KITemplateGroup compileGroup(List<? extends IKIInput> inputMethods, Class<?>... contentClasses) throws ReflectiveOperationException {
+        KITemplateParser templateParser = new KITemplateParser(currentKIConfig);
+        List<KIParsedTemplate> parsedTemplates = new ArrayList<>(inputMethods.size());
+        for (IKIInput inputMethod : inputMethods)
+            parsedTemplates.add(templateParser.parse(inputMethod));
+        return new KITemplateCompiler(currentKIConfig).compileGroup(parsedTemplates, contentClasses);
+    }
+
+    /**
+     * Load a template artifact written by KITemplateArtifact (or the KITemplateArtifactTool at build time).
+     * The template is neither parsed nor are its aliases resolved again, it's rendered with this injector's formatters
+     *
+     * @param artifactPath   The path of the artifact file
+     * @param contentClasses The classes of the objects that will hold the content to be injected, as the template was compiled for
+     * @return The compiled template
+     * @throws IOException                  An exception is thrown if the file could not be read, or is not a valid artifact
+     * @throws ReflectiveOperationException An exception is thrown if a getter does not exist anymore or is not accessible
+     */
+    public IKITemplateRenderer loadCompiled(Path artifactPath, Class<?>... contentClasses) throws IOException, ReflectiveOperationException {
+        return KITemplateArtifact.load(artifactPath, currentKIConfig, contentClasses);
     }
 
 }
@@ -0,0 +1,66 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Lexer;
+
+/**
+ * IKIStreamTokenHandler receives the tokens found by the stream lexer, in the same order they appear in the template
+ */
+public interface IKIStreamTokenHandler {
+    /**
+     * Handle a run of literal characters, a literal could be split into several runs at any character
+     *
+     * @param literal The buffer holding the characters, it's reused by the lexer after the call returns
+     * @param offset  The index of the first character
+     * @param length  The number of characters
+     * @throws ReflectiveOperationException An exception is thrown if handling the token failed
+     */
+    void handleLiteral(char[] literal, int offset, int length) throws ReflectiveOperationException;
+
+    /**
+     * Handle an injection token
+     *
+     * @param injectionTemplate The injection template, including the injection tokens
+     * @param classAlias        The class alias referenced by the injection
+     * @param methodAlias       The method alias referenced by the injection
+     * @throws ReflectiveOperationException An exception is thrown if handling the token failed
+     */
+    void handleInjection(String injectionTemplate, String classAlias, String methodAlias) throws ReflectiveOperationException;
+
+    /**
+     * Handle a loop start word
+     *
+     * @param loopStartWord The loop start word, including the injection tokens
+     * @throws ReflectiveOperationException An exception is thrown if handling the token failed
+     */
+    void handleLoopStart(String loopStartWord) throws ReflectiveOperationException;
+
+    /**
+     * Handle a loop end word
+     *
+     * @param loopEndWord The loop end word, including the injection tokens
+     * @throws ReflectiveOperationException An exception is thrown if handling the token failed
+     */
+    void handleLoopEnd(String loopEndWord) throws ReflectiveOperationException;
+}
@@ -0,0 +1,225 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Lexer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * The keyword matcher is an Aho-Corasick automaton finding all the occurrences of a set of keywords
+ * in a single pass over a string, whatever the number of keywords is.
+ * <p>
+ * The automaton is precomputed as a full transition table over the keywords' characters, so matching a character
+ * is a single table lookup. The caller drives the scan by feeding characters to nextState and reading the keywords
+ * matched at every state
+ */
+public class KIKeywordMatcher {
+
+    private static final int[] NO_MATCHES = new int[0];
+    private static final int ASCII_SIZE = 128;
+
+    private final int[] keywordsLengths;
+    private final int[] asciiClasses = new int[ASCII_SIZE];
+    private final Map<Character, Integer> nonAsciiClasses = new HashMap<>();
+    private final int alphabetSize;
+    private final int[] transitions;
+    private final int[][] matchedKeywords;
+
+    /**
+     * Construct a keyword matcher
+     *
+     * @param keywords The keywords to be matched, the index of a keyword is its id in the matches
+     */
+    public KIKeywordMatcher(String... keywords) {
+        keywordsLengths = new int[keywords.length];
+        alphabetSize = mapCharactersClasses(keywords);
+
+        List<int[]> gotoTable = new ArrayList<>();
+        List<List<Integer>> outputs = new ArrayList<>();
+        addState(gotoTable, outputs);
+
+        for (int keywordIndex = 0; keywordIndex < keywords.length; keywordIndex++) {
+            String keyword = keywords[keywordIndex];
+            keywordsLengths[keywordIndex] = keyword.length();
+            int state = 0;
+            for (int i = 0; i < keyword.length(); i++) {
+                int characterClass = getCharacterClass(keyword.charAt(i));
+                if (gotoTable.get(state)[characterClass] == -1)
+                    gotoTable.get(state)[characterClass] = addState(gotoTable, outputs);
+                state = gotoTable.get(state)[characterClass];
+            }
+            if (!keyword.isEmpty())
+                outputs.get(state).add(keywordIndex);
+        }
+
+        transitions = new int[gotoTable.size() * alphabetSize];
+        matchedKeywords = new int[gotoTable.size()][];
+        buildTransitions(gotoTable, outputs);
+    }
+
+    /**
+     * Get the state the scan starts from
+     *
+     * @return The initial state
+     */
+    public int getInitialState() {
+        return 0;
+    }
+
+    /**
+     * Move the automaton by a single character
+     *
+     * @param state     The current state
+     * @param character The next character of the scanned string
+     * @return The next state
+     */
+    public int nextState(int state, char character) {
+        int characterClass;
+        if (character < ASCII_SIZE) {
+            characterClass = asciiClasses[character];
+        } else {
+            Integer nonAsciiClass = nonAsciiClasses.get(character);
+            characterClass = nonAsciiClass == null ? -1 : nonAsciiClass;
+        }
+        return characterClass == -1 ? 0 : transitions[state * alphabetSize + characterClass];
+    }
+
+    /**
+     * Get the keywords ending at the last character fed to the automaton
+     *
+     * @param state The current state
+     * @return The ids of the keywords matched at the state (An empty array if none)
+     */
+    public int[] getMatchedKeywords(int state) {
+        return matchedKeywords[state];
+    }
+
+    /**
+     * Get the length of a keyword
+     *
+     * @param keywordId The keyword's id
+     * @return The keyword's length
+     */
+    public int getKeywordLength(int keywordId) {
+        return keywordsLengths[keywordId];
+    }
+
+    /**
+     * Map every distinct character of the keywords to a class index
+     *
+     * @param keywords The keywords to be matched
+     * @return The number of character classes
+     */
+    private int mapCharactersClasses(String[] keywords) {
+        Arrays.fill(asciiClasses, -1);
+        int classesCount = 0;
+        for (String keyword : keywords) {
+            for (int i = 0; i < keyword.length(); i++) {
+                char character = keyword.charAt(i);
+                if (getCharacterClass(character) != -1)
+                    continue;
+                if (character < ASCII_SIZE)
+                    asciiClasses[character] = classesCount++;
+                else
+                    nonAsciiClasses.put(character, classesCount++);
+            }
+        }
+        return Math.max(classesCount, 1);
+    }
+
+    /**
+     * Get the class index of a character
+     *
+     * @param character The character
+     * @return The character's class index, or -1 if the character is not part of any keyword
+     */
+    private int getCharacterClass(char character) {
+        if (character < ASCII_SIZE)
+            return asciiClasses[character];
+        return nonAsciiClasses.getOrDefault(character, -1);
+    }
+
+    /**
+     * Add a new state to the trie
+     *
+     * @param gotoTable The trie's transitions
+     * @param outputs   The keywords ending at every state
+     * @return The new state
+     */
+    private int addState(List<int[]> gotoTable, List<List<Integer>> outputs) {
+        int[] stateTransitions = new int[alphabetSize];
+        Arrays.fill(stateTransitions, -1);
+        gotoTable.add(stateTransitions);
+        outputs.add(new ArrayList<>());
+        return gotoTable.size() - 1;
+    }
+
+    /**
+     * Compute the failure links breadth first, and merge them into a full transition table
+     *
+     * @param gotoTable The trie's transitions
+     * @param outputs   The keywords ending at every state
+     */
+    private void buildTransitions(List<int[]> gotoTable, List<List<Integer>> outputs) {
+        int[] failureLinks = new int[gotoTable.size()];
+        Queue<Integer> statesQueue = new ArrayDeque<>();
+
+        for (int characterClass = 0; characterClass < alphabetSize; characterClass++) {
+            int nextState = gotoTable.get(0)[characterClass];
+            if (nextState == -1) {
+                gotoTable.get(0)[characterClass] = 0;
+                continue;
+            }
+            failureLinks[nextState] = 0;
+            statesQueue.add(nextState);
+        }
+
+        while (!statesQueue.isEmpty()) {
+            int state = statesQueue.poll();
+            for (int characterClass = 0; characterClass < alphabetSize; characterClass++) {
+                int nextState = gotoTable.get(state)[characterClass];
+                int failureState = gotoTable.get(failureLinks[state])[characterClass];
+                if (nextState == -1) {
+                    gotoTable.get(state)[characterClass] = failureState;
+                    continue;
+                }
+                failureLinks[nextState] = failureState;
+                outputs.get(nextState).addAll(outputs.get(failureState));
+                statesQueue.add(nextState);
+            }
+        }
+
+        for (int state = 0; state < gotoTable.size(); state++) {
+            System.arraycopy(gotoTable.get(state), 0, transitions, state * alphabetSize, alphabetSize);
+            List<Integer> stateOutputs = outputs.get(state);
+            matchedKeywords[state] = stateOutputs.isEmpty() ? NO_MATCHES : stateOutputs.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+}
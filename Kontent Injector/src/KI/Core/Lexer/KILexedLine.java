@@ -0,0 +1,248 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Lexer;
+
+import java.util.Arrays;
+
+/**
+ * The lexed line holds the result of lexing a single template string: the keywords found in it, and the tokens
+ * (literals, injection references and loop start/end words) it's split into.
+ * <p>
+ * A lexed line could be reused for lexing other strings, so the lexer doesn't allocate new arrays for every line
+ */
+public class KILexedLine {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private String line = "";
+    private int tokenSize = 0;
+    private boolean[] foundKeywords = new boolean[0];
+
+    private int matchesCount = 0;
+    private int[] matchesKeywords = new int[INITIAL_CAPACITY];
+    private int[] matchesStarts = new int[INITIAL_CAPACITY];
+    private int[] matchesEnds = new int[INITIAL_CAPACITY];
+
+    private int tokensCount = 0;
+    private KITokenType[] tokensTypes = new KITokenType[INITIAL_CAPACITY];
+    private int[] tokensStarts = new int[INITIAL_CAPACITY];
+    private int[] tokensEnds = new int[INITIAL_CAPACITY];
+    private int[] tokensDots = new int[INITIAL_CAPACITY];
+
+    /**
+     * Get the lexed string
+     *
+     * @return The lexed string
+     */
+    public String getLine() {
+        return line;
+    }
+
+    /**
+     * Indicates if a keyword was found in the lexed string
+     *
+     * @param keywordId The keyword's id in the lexer
+     * @return A boolean indicating if the keyword was found
+     */
+    public boolean containsKeyword(int keywordId) {
+        return keywordId >= 0 && foundKeywords[keywordId];
+    }
+
+    /**
+     * Get the number of tokens the string was split into
+     *
+     * @return The number of tokens
+     */
+    public int getTokensCount() {
+        return tokensCount;
+    }
+
+    /**
+     * Get a token's type
+     *
+     * @param tokenIndex The token's index
+     * @return The token's type
+     */
+    public KITokenType getTokenType(int tokenIndex) {
+        return tokensTypes[tokenIndex];
+    }
+
+    /**
+     * Get a token's start index in the lexed string
+     *
+     * @param tokenIndex The token's index
+     * @return The token's start index
+     */
+    public int getTokenStart(int tokenIndex) {
+        return tokensStarts[tokenIndex];
+    }
+
+    /**
+     * Get a token's end index in the lexed string (exclusive)
+     *
+     * @param tokenIndex The token's index
+     * @return The token's end index
+     */
+    public int getTokenEnd(int tokenIndex) {
+        return tokensEnds[tokenIndex];
+    }
+
+    /**
+     * Get the index of the dot separating the class alias from the method alias in an injection token
+     *
+     * @param tokenIndex The index of an injection token
+     * @return The dot's index in the lexed string
+     */
+    public int getTokenDot(int tokenIndex) {
+        return tokensDots[tokenIndex];
+    }
+
+    /**
+     * Get the class alias of an injection token
+     *
+     * @param tokenIndex The index of an injection token
+     * @return The class alias referenced by the injection
+     */
+    public String getTokenClassAlias(int tokenIndex) {
+        return line.substring(tokensStarts[tokenIndex] + tokenSize, tokensDots[tokenIndex]);
+    }
+
+    /**
+     * Get the method alias of an injection token
+     *
+     * @param tokenIndex The index of an injection token
+     * @return The method alias referenced by the injection (without any trailing dots)
+     */
+    public String getTokenMethodAlias(int tokenIndex) {
+        int methodAliasEnd = tokensEnds[tokenIndex] - tokenSize;
+        while (line.charAt(methodAliasEnd - 1) == '.')
+            methodAliasEnd--;
+        return line.substring(tokensDots[tokenIndex] + 1, methodAliasEnd);
+    }
+
+    /**
+     * Get a token's text
+     *
+     * @param tokenIndex The token's index
+     * @return The token's text, including the injection tokens for injections
+     */
+    public String getTokenText(int tokenIndex) {
+        return line.substring(tokensStarts[tokenIndex], tokensEnds[tokenIndex]);
+    }
+
+    /**
+     * Clear the lexed line to lex a new string
+     *
+     * @param line          The string to be lexed
+     * @param tokenSize     The length of the injection token
+     * @param keywordsCount The number of keywords of the lexer
+     */
+    void reset(String line, int tokenSize, int keywordsCount) {
+        this.line = line;
+        this.tokenSize = tokenSize;
+        if (foundKeywords.length != keywordsCount)
+            foundKeywords = new boolean[keywordsCount];
+        else
+            Arrays.fill(foundKeywords, false);
+        matchesCount = 0;
+        tokensCount = 0;
+    }
+
+    /**
+     * Mark a keyword as found in the lexed string
+     *
+     * @param keywordId The keyword's id in the lexer
+     */
+    void markKeyword(int keywordId) {
+        foundKeywords[keywordId] = true;
+    }
+
+    /**
+     * Add a keyword match, keeping the matches ordered by their start index (longer matches first)
+     *
+     * @param keywordId The keyword's id in the lexer
+     * @param start     The match's start index
+     * @param end       The match's end index (exclusive)
+     */
+    void addMatch(int keywordId, int start, int end) {
+        if (matchesCount == matchesKeywords.length) {
+            matchesKeywords = Arrays.copyOf(matchesKeywords, matchesCount * 2);
+            matchesStarts = Arrays.copyOf(matchesStarts, matchesCount * 2);
+            matchesEnds = Arrays.copyOf(matchesEnds, matchesCount * 2);
+        }
+
+        int index = matchesCount++;
+        while (index > 0 && (matchesStarts[index - 1] > start || (matchesStarts[index - 1] == start && matchesEnds[index - 1] < end))) {
+            matchesKeywords[index] = matchesKeywords[index - 1];
+            matchesStarts[index] = matchesStarts[index - 1];
+            matchesEnds[index] = matchesEnds[index - 1];
+            index--;
+        }
+        matchesKeywords[index] = keywordId;
+        matchesStarts[index] = start;
+        matchesEnds[index] = end;
+    }
+
+    int getMatchesCount() {
+        return matchesCount;
+    }
+
+    int getMatchKeyword(int matchIndex) {
+        return matchesKeywords[matchIndex];
+    }
+
+    int getMatchStart(int matchIndex) {
+        return matchesStarts[matchIndex];
+    }
+
+    int getMatchEnd(int matchIndex) {
+        return matchesEnds[matchIndex];
+    }
+
+    /**
+     * Add a token, skipping empty literals
+     *
+     * @param tokenType The token's type
+     * @param start     The token's start index
+     * @param end       The token's end index (exclusive)
+     * @param dot       The dot's index for injection tokens, -1 otherwise
+     */
+    void addToken(KITokenType tokenType, int start, int end, int dot) {
+        if (tokenType == KITokenType.LITERAL && start == end)
+            return;
+
+        if (tokensCount == tokensTypes.length) {
+            tokensTypes = Arrays.copyOf(tokensTypes, tokensCount * 2);
+            tokensStarts = Arrays.copyOf(tokensStarts, tokensCount * 2);
+            tokensEnds = Arrays.copyOf(tokensEnds, tokensCount * 2);
+            tokensDots = Arrays.copyOf(tokensDots, tokensCount * 2);
+        }
+        tokensTypes[tokensCount] = tokenType;
+        tokensStarts[tokensCount] = start;
+        tokensEnds[tokensCount] = end;
+        tokensDots[tokensCount] = dot;
+        tokensCount++;
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Lexer;
+
+import KI.Models.KITemplateConfiguration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The lexer scans a template string once, matching the injection token, the loop words and any directive keyword
+ * at the same time, and splits the string into literal, injection and loop start/end tokens.
+ * Lexing cost depends only on the string's length, not on the number of keywords
+ */
+public class KILexer {
+
+    public static final int INJECTION_TOKEN = 0;
+    public static final int LOOP_START_FULL_WORD = 1;
+    public static final int LOOP_END_FULL_WORD = 2;
+    public static final int LOOP_START_WORD = 3;
+    public static final int LOOP_END_WORD = 4;
+
+    private final List<String> keywords = new ArrayList<>();
+    private final KIKeywordMatcher keywordMatcher;
+    private final int tokenSize;
+
+    /**
+     * Construct a lexer
+     *
+     * @param templateConfig     The configuration of the template to be lexed
+     * @param directivesKeywords Additional keywords to be found in lexed strings
+     */
+    public KILexer(KITemplateConfiguration templateConfig, String... directivesKeywords) {
+        keywords.add(templateConfig.getInjectionToken());
+        keywords.add(templateConfig.getLoopStartFullWord());
+        keywords.add(templateConfig.getLoopEndFullWord());
+        keywords.add(templateConfig.getLoopStartWord());
+        keywords.add(templateConfig.getLoopEndWord());
+        for (String directiveKeyword : directivesKeywords) {
+            if (!keywords.contains(directiveKeyword))
+                keywords.add(directiveKeyword);
+        }
+
+        keywordMatcher = new KIKeywordMatcher(keywords.toArray(new String[0]));
+        tokenSize = templateConfig.getInjectionToken().length();
+    }
+
+    /**
+     * Get the id of a keyword
+     *
+     * @param keyword The keyword
+     * @return The keyword's id, or -1 if the lexer doesn't match this keyword
+     */
+    public int getKeywordId(String keyword) {
+        return keywords.indexOf(keyword);
+    }
+
+    /**
+     * Lex a template string into a new lexed line
+     *
+     * @param line The template string
+     * @return The lexed line
+     */
+    public KILexedLine lex(String line) {
+        return lex(line, new KILexedLine());
+    }
+
+    /**
+     * Lex a template string, reusing a lexed line
+     *
+     * @param line      The template string
+     * @param lexedLine The lexed line to be filled
+     * @return The filled lexed line
+     */
+    public KILexedLine lex(String line, KILexedLine lexedLine) {
+        lexedLine.reset(line, tokenSize, keywords.size());
+        int state = keywordMatcher.getInitialState();
+
+        for (int i = 0; i < line.length(); i++) {
+            state = keywordMatcher.nextState(state, line.charAt(i));
+            for (int keywordId : keywordMatcher.getMatchedKeywords(state)) {
+                lexedLine.markKeyword(keywordId);
+                if (keywordId <= LOOP_END_FULL_WORD)
+                    lexedLine.addMatch(keywordId, i + 1 - keywordMatcher.getKeywordLength(keywordId), i + 1);
+            }
+        }
+
+        splitTokens(lexedLine);
+        return lexedLine;
+    }
+
+    /**
+     * Split the lexed string into tokens using the injection token and loop words matches.
+     * Two consecutive injection tokens enclosing a ClassAlias.methodAlias reference form an injection, otherwise
+     * the second injection token could open the next injection
+     *
+     * @param lexedLine The lexed line holding the matches
+     */
+    private void splitTokens(KILexedLine lexedLine) {
+        String line = lexedLine.getLine();
+        int literalStart = 0;
+        int matchesCursor = 0;
+        int openingToken = -1;
+
+        for (int i = 0; i < lexedLine.getMatchesCount(); i++) {
+            int matchStart = lexedLine.getMatchStart(i);
+            int matchEnd = lexedLine.getMatchEnd(i);
+            if (matchStart < matchesCursor)
+                continue;
+            matchesCursor = matchEnd;
+
+            int keywordId = lexedLine.getMatchKeyword(i);
+            if (keywordId != INJECTION_TOKEN) {
+                lexedLine.addToken(KITokenType.LITERAL, literalStart, matchStart, -1);
+                lexedLine.addToken(keywordId == LOOP_START_FULL_WORD ? KITokenType.LOOP_START : KITokenType.LOOP_END, matchStart, matchEnd, -1);
+                literalStart = matchEnd;
+                openingToken = -1;
+                continue;
+            }
+
+            int dot = openingToken == -1 ? -1 : findReferenceDot(line, openingToken + tokenSize, matchStart);
+            if (dot == -1) {
+                openingToken = matchStart;
+                continue;
+            }
+
+            lexedLine.addToken(KITokenType.LITERAL, literalStart, openingToken, -1);
+            lexedLine.addToken(KITokenType.INJECTION, openingToken, matchEnd, dot);
+            literalStart = matchEnd;
+            openingToken = -1;
+        }
+
+        lexedLine.addToken(KITokenType.LITERAL, literalStart, line.length(), -1);
+    }
+
+    /**
+     * Find the dot of a ClassAlias.methodAlias reference, following the same rules as splitting the reference by dots
+     * (trailing dots are ignored, and exactly two parts are expected)
+     *
+     * @param line  The lexed characters
+     * @param start The reference's start index
+     * @param end   The reference's end index (exclusive)
+     * @return The index of the dot separating the class alias from the method alias, or -1 if the reference is malformed
+     */
+    static int findReferenceDot(CharSequence line, int start, int end) {
+        while (end > start && line.charAt(end - 1) == '.')
+            end--;
+
+        int dot = -1;
+        for (int i = start; i < end; i++) {
+            if (line.charAt(i) != '.')
+                continue;
+            if (dot != -1)
+                return -1;
+            dot = i;
+        }
+        return dot;
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Lexer;
+
+import KI.Models.KITemplateConfiguration;
+
+/**
+ * The stream lexer splits a template read as a stream of characters into tokens, following the same rules as the lexer.
+ * Characters are fed in chunks of any size and split at any boundary, literals are handed over as soon as they can't be
+ * part of a token, so the memory used is bounded by the chunk size and the maximum reference length, no matter how long
+ * the template's lines are.
+ * <p>
+ * A reference (the text between two injection tokens) is limited to a single line and to the maximum reference length,
+ * longer references are handed over as literals
+ */
+public class KIStreamLexer {
+
+    public static final int DEFAULT_LITERAL_BUFFER_SIZE = 8192;
+    public static final int DEFAULT_MAX_REFERENCE_LENGTH = 1024;
+
+    private final KITemplateConfiguration templateConfig;
+    private final IKIStreamTokenHandler tokenHandler;
+    private final KIKeywordMatcher tokenMatcher;
+    private final char[] injectionToken;
+    private final int maxReferenceLength;
+
+    private final char[] literalBuffer;
+    private int literalLength = 0;
+    private final StringBuilder reference = new StringBuilder();
+    private boolean isReferenceOpen = false;
+    private int matcherState;
+
+    /**
+     * Construct a stream lexer using the default buffer sizes
+     *
+     * @param templateConfig The configuration of the template to be lexed
+     * @param tokenHandler   The handler receiving the tokens
+     */
+    public KIStreamLexer(KITemplateConfiguration templateConfig, IKIStreamTokenHandler tokenHandler) {
+        this(templateConfig, tokenHandler, DEFAULT_LITERAL_BUFFER_SIZE, DEFAULT_MAX_REFERENCE_LENGTH);
+    }
+
+    /**
+     * Construct a stream lexer
+     *
+     * @param templateConfig     The configuration of the template to be lexed
+     * @param tokenHandler       The handler receiving the tokens
+     * @param literalBufferSize  The number of literal characters gathered before being handed over to the handler
+     * @param maxReferenceLength The maximum length of the text between two injection tokens
+     */
+    public KIStreamLexer(KITemplateConfiguration templateConfig, IKIStreamTokenHandler tokenHandler, int literalBufferSize, int maxReferenceLength) {
+        this.templateConfig = templateConfig;
+        this.tokenHandler = tokenHandler;
+        this.injectionToken = templateConfig.getInjectionToken().toCharArray();
+        this.tokenMatcher = new KIKeywordMatcher(templateConfig.getInjectionToken());
+        this.matcherState = tokenMatcher.getInitialState();
+        this.literalBuffer = new char[Math.max(literalBufferSize, injectionToken.length)];
+        this.maxReferenceLength = maxReferenceLength;
+    }
+
+    /**
+     * Lex a chunk of the template
+     *
+     * @param chunk  The buffer holding the characters
+     * @param offset The index of the first character
+     * @param length The number of characters
+     * @throws ReflectiveOperationException An exception is thrown if the token handler failed
+     */
+    public void lex(char[] chunk, int offset, int length) throws ReflectiveOperationException {
+        for (int i = offset; i < offset + length; i++) {
+            char character = chunk[i];
+            matcherState = tokenMatcher.nextState(matcherState, character);
+            boolean isTokenMatched = tokenMatcher.getMatchedKeywords(matcherState).length != 0;
+
+            if (!isReferenceOpen) {
+                appendLiteral(character);
+                if (isTokenMatched)
+                    openReference();
+                continue;
+            }
+
+            reference.append(character);
+            if (isTokenMatched)
+                closeReference();
+            else if (character == '\n' || reference.length() > maxReferenceLength + injectionToken.length)
+                abandonReference();
+        }
+    }
+
+    /**
+     * Hand over the remaining characters at the end of the template, the lexer could be reused afterwards
+     *
+     * @throws ReflectiveOperationException An exception is thrown if the token handler failed
+     */
+    public void finish() throws ReflectiveOperationException {
+        if (isReferenceOpen)
+            abandonReference();
+        flushLiteral(literalLength);
+        matcherState = tokenMatcher.getInitialState();
+    }
+
+    /**
+     * Append a literal character, handing over the gathered literal if the buffer is full.
+     * The last characters are kept in the buffer, since they could be the start of an injection token
+     *
+     * @param character The literal character
+     * @throws ReflectiveOperationException An exception is thrown if the token handler failed
+     */
+    private void appendLiteral(char character) throws ReflectiveOperationException {
+        if (literalLength == literalBuffer.length) {
+            int keptLength = injectionToken.length - 1;
+            flushLiteral(literalLength - keptLength);
+            System.arraycopy(literalBuffer, literalBuffer.length - keptLength, literalBuffer, 0, keptLength);
+            literalLength = keptLength;
+        }
+        literalBuffer[literalLength++] = character;
+    }
+
+    /**
+     * Hand over the first characters of the gathered literal
+     *
+     * @param length The number of characters to be handed over
+     * @throws ReflectiveOperationException An exception is thrown if the token handler failed
+     */
+    private void flushLiteral(int length) throws ReflectiveOperationException {
+        if (length > 0)
+            tokenHandler.handleLiteral(literalBuffer, 0, length);
+        literalLength = 0;
+    }
+
+    /**
+     * Open a reference after an injection token was found in a literal
+     *
+     * @throws ReflectiveOperationException An exception is thrown if the token handler failed
+     */
+    private void openReference() throws ReflectiveOperationException {
+        flushLiteral(literalLength - injectionToken.length);
+        reference.setLength(0);
+        isReferenceOpen = true;
+        matcherState = tokenMatcher.getInitialState();
+    }
+
+    /**
+     * Close a reference after the second injection token was found. A malformed reference is handed over as a literal
+     * and the second injection token opens the next reference
+     *
+     * @throws ReflectiveOperationException An exception is thrown if the token handler failed
+     */
+    private void closeReference() throws ReflectiveOperationException {
+        int referenceEnd = reference.length() - injectionToken.length;
+        String token = templateConfig.getInjectionToken();
+        String referenceText = reference.substring(0, referenceEnd);
+        matcherState = tokenMatcher.getInitialState();
+        reference.setLength(0);
+
+        if (referenceText.equals(templateConfig.getLoopStartWord())) {
+            isReferenceOpen = false;
+            tokenHandler.handleLoopStart(templateConfig.getLoopStartFullWord());
+            return;
+        }
+
+        if (referenceText.equals(templateConfig.getLoopEndWord())) {
+            isReferenceOpen = false;
+            tokenHandler.handleLoopEnd(templateConfig.getLoopEndFullWord());
+            return;
+        }
+
+        int dot = KILexer.findReferenceDot(referenceText, 0, referenceText.length());
+        if (dot == -1) {
+            String literal = token + referenceText;
+            tokenHandler.handleLiteral(literal.toCharArray(), 0, literal.length());
+            return;
+        }
+
+        int methodAliasEnd = referenceText.length();
+        while (referenceText.charAt(methodAliasEnd - 1) == '.')
+            methodAliasEnd--;
+
+        isReferenceOpen = false;
+        tokenHandler.handleInjection(token + referenceText + token, referenceText.substring(0, dot), referenceText.substring(dot + 1, methodAliasEnd));
+    }
+
+    /**
+     * Hand over an open reference as a literal, when it's too long or reaches the end of the line or the template
+     *
+     * @throws ReflectiveOperationException An exception is thrown if the token handler failed
+     */
+    private void abandonReference() throws ReflectiveOperationException {
+        isReferenceOpen = false;
+        tokenHandler.handleLiteral(injectionToken, 0, injectionToken.length);
+        for (int i = 0; i < reference.length(); i++)
+            appendLiteral(reference.charAt(i));
+        reference.setLength(0);
+    }
+}
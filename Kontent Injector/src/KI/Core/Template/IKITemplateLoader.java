@@ -0,0 +1,67 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Template;
+
+import KI.Models.KIInput.FileInput;
+import KI.Models.KIInput.IKIInput;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.UncheckedIOException;
+
+/**
+ * A template loader provides the partials included by templates (e.g. $%$INCLUDE:header.kit$%$) by their names
+ */
+@FunctionalInterface
+public interface IKITemplateLoader {
+
+    /**
+     * Create a loader reading the partials from the files of a directory, the partial's name being its file's path
+     * relative to the directory
+     *
+     * @param templatesDirectory The directory holding the partials
+     * @return The loader
+     */
+    static IKITemplateLoader fromDirectory(File templatesDirectory) {
+        return templateName -> {
+            File templateFile = new File(templatesDirectory, templateName);
+            if (!templateFile.isFile())
+                return null;
+            try {
+                return new FileInput(templateFile);
+            } catch (FileNotFoundException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    /**
+     * Load a partial
+     *
+     * @param templateName The partial's name, as written in the include directive
+     * @return The input providing the partial's lines, or null if there is no partial with this name
+     */
+    IKIInput loadTemplate(String templateName);
+}
@@ -0,0 +1,71 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Template;
+
+/**
+ * A template node holding a single injection template (e.g. $%$ClassAlias.methodAlias$%$)
+ */
+public class KIInjectionNode implements IKITemplateNode {
+
+    private final String injectionTemplate;
+    private final String classAlias;
+    private final String methodAlias;
+
+    /**
+     * Construct an injection node
+     *
+     * @param injectionTemplate The injection template including the injection tokens
+     * @param classAlias        The class alias referenced by the injection template
+     * @param methodAlias       The method alias referenced by the injection template
+     */
+    public KIInjectionNode(String injectionTemplate, String classAlias, String methodAlias) {
+        this.injectionTemplate = injectionTemplate;
+        this.classAlias = classAlias;
+        this.methodAlias = methodAlias;
+    }
+
+    /**
+     * Get the class alias referenced by the injection template
+     *
+     * @return The class alias
+     */
+    public String getClassAlias() {
+        return classAlias;
+    }
+
+    /**
+     * Get the method alias referenced by the injection template
+     *
+     * @return The method alias
+     */
+    public String getMethodAlias() {
+        return methodAlias;
+    }
+
+    @Override
+    public String getSourceText() {
+        return injectionTemplate;
+    }
+}
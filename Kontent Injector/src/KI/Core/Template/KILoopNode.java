@@ -0,0 +1,61 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Template;
+
+import java.util.List;
+
+/**
+ * A template node holding the body of a loop (The block enclosed by the loop start/end words)
+ */
+public class KILoopNode implements IKITemplateNode {
+
+    private final String loopTemplate;
+    private final List<IKITemplateNode> bodyNodes;
+
+    /**
+     * Construct a loop node
+     *
+     * @param loopTemplate The loop block including the loop start/end words
+     * @param bodyNodes    The nodes the loop body is parsed into
+     */
+    public KILoopNode(String loopTemplate, List<IKITemplateNode> bodyNodes) {
+        this.loopTemplate = loopTemplate;
+        this.bodyNodes = bodyNodes;
+    }
+
+    /**
+     * Get the nodes of the loop body, repeated once per iteration
+     *
+     * @return The loop body nodes
+     */
+    public List<IKITemplateNode> getBodyNodes() {
+        return bodyNodes;
+    }
+
+    @Override
+    public String getSourceText() {
+        return loopTemplate;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Template;
+
+import java.util.List;
+
+/**
+ * The parsed template holds the segments a template was parsed into,
+ * along with the template's source lines
+ */
+public class KIParsedTemplate {
+
+    private final List<String> sourceLines;
+    private final List<KITemplateSegment> segments;
+
+    /**
+     * Construct a parsed template
+     *
+     * @param sourceLines The template lines as read from the input
+     * @param segments    The segments the template was parsed into
+     */
+    public KIParsedTemplate(List<String> sourceLines, List<KITemplateSegment> segments) {
+        this.sourceLines = sourceLines;
+        this.segments = segments;
+    }
+
+    /**
+     * Get the template lines as read from the input
+     *
+     * @return The template's source lines
+     */
+    public List<String> getSourceLines() {
+        return sourceLines;
+    }
+
+    /**
+     * Get the segments the template was parsed into
+     *
+     * @return The template's segments
+     */
+    public List<KITemplateSegment> getSegments() {
+        return segments;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Template;
+
+import KI.Models.KIInput.IKIInput;
+
+import java.text.MessageFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The partials cache holds the partials included by templates, each loaded and parsed once then shared by
+ * every template including it. The included partials' nodes are inlined in the including templates when they're parsed,
+ * so compiled templates render their partials without any lookup.
+ * <p>
+ * The cache could be used by several threads, a partial parsed concurrently by two threads is kept once
+ */
+public class KIPartialsCache {
+
+    public static final String UNKNOWN_PARTIAL_ERROR_MESSAGE = "The template loader could not find the partial {0}";
+
+    private final IKITemplateLoader templateLoader;
+    private final Map<String, KIParsedTemplate> partials = new ConcurrentHashMap<>();
+
+    /**
+     * Construct a partials cache
+     *
+     * @param templateLoader The loader providing the partials by their names
+     */
+    public KIPartialsCache(IKITemplateLoader templateLoader) {
+        this.templateLoader = templateLoader;
+    }
+
+    /**
+     * Get the loader providing the partials
+     *
+     * @return The template loader
+     */
+    public IKITemplateLoader getTemplateLoader() {
+        return templateLoader;
+    }
+
+    /**
+     * Get the number of cached partials
+     *
+     * @return The number of partials parsed so far
+     */
+    public int size() {
+        return partials.size();
+    }
+
+    /**
+     * Remove a partial from the cache so it's loaded again by the next template including it.
+     * The templates already compiled keep the partial they were compiled with
+     *
+     * @param templateName The partial's name
+     */
+    public void invalidate(String templateName) {
+        partials.remove(templateName);
+    }
+
+    /**
+     * Remove all the partials from the cache
+     */
+    public void invalidateAll() {
+        partials.clear();
+    }
+
+    /**
+     * Get a parsed partial, loading and parsing it if it's not cached
+     *
+     * @param templateName   The partial's name
+     * @param templateParser The parser of the including template, used to parse the partial and its own includes
+     * @return The parsed partial
+     * @throws IllegalArgumentException An exception is thrown if the loader could not find the partial
+     */
+    KIParsedTemplate getPartial(String templateName, KITemplateParser templateParser) {
+        KIParsedTemplate partial = partials.get(templateName);
+        if (partial != null)
+            return partial;
+
+        IKIInput partialInput = templateLoader.loadTemplate(templateName);
+        if (partialInput == null)
+            throw new IllegalArgumentException(MessageFormat.format(UNKNOWN_PARTIAL_ERROR_MESSAGE, templateName));
+
+        partial = templateParser.parsePartial(templateName, partialInput);
+        KIParsedTemplate cachedPartial = partials.putIfAbsent(templateName, partial);
+        return cachedPartial != null ? cachedPartial : partial;
+    }
+}
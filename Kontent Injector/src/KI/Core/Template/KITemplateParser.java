@@ -0,0 +1,259 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Template;
+
+import KI.Core.Lexer.KILexedLine;
+import KI.Core.Lexer.KILexer;
+import KI.Core.Lexer.KITokenType;
+import KI.Models.KIInput.IKIInput;
+import KI.Models.KITemplateConfiguration;
+
+import java.text.MessageFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * The template parser reads a whole template once and splits it into segments of literal, injection
+ * and loop nodes, following the same rules the KInjectors apply line by line, so a parsed template can
+ * be rendered many times without inspecting its text again.
+ * The template's text is split into tokens by the same lexer used by the KInjectors
+ * <p>
+ * A line holding only an include directive (e.g. $%$INCLUDE:header.kit$%$) is replaced by the segments of the included
+ * partial, provided by the configuration's partials cache. Includes are not resolved inside loop blocks
+ */
+public class KITemplateParser {
+
+    public static final String INCLUDE_CYCLE_ERROR_MESSAGE = "The partial {0} includes itself: {1}";
+
+    private final KITemplateConfiguration templateConfig;
+    private final KILexer lexer;
+    private final KILexedLine lexedLine = new KILexedLine();
+    private final Deque<String> includeChain = new ArrayDeque<>();
+
+    /**
+     * Construct a template parser
+     *
+     * @param templateConfig The configuration of the template to be parsed
+     */
+    public KITemplateParser(KITemplateConfiguration templateConfig) {
+        this.templateConfig = templateConfig;
+        this.lexer = new KILexer(templateConfig);
+    }
+
+    /**
+     * Read and parse a template
+     *
+     * @param inputMethod Used to provide the template to be parsed
+     * @return The parsed template
+     */
+    public KIParsedTemplate parse(IKIInput inputMethod) {
+        List<String> sourceLines = new ArrayList<>();
+        List<KITemplateSegment> segments = new ArrayList<>();
+        String loopBlock = null;
+        String templateLine;
+
+        while ((templateLine = inputMethod.readTemplateLine()) != null) {
+            String partialName = loopBlock == null ? findIncludedPartial(templateLine) : null;
+            if (partialName != null) {
+                KIParsedTemplate partial = includePartial(partialName);
+                sourceLines.addAll(partial.getSourceLines());
+                segments.addAll(partial.getSegments());
+                continue;
+            }
+
+            sourceLines.add(templateLine);
+            lexer.lex(templateLine, lexedLine);
+
+            if (loopBlock != null) {
+                loopBlock += "\n" + templateLine;
+                if (findToken(KITokenType.LOOP_END, 0) == -1)
+                    continue;
+            } else if (lexedLine.containsKeyword(KILexer.LOOP_START_FULL_WORD)) {
+                loopBlock = templateLine;
+                if (findToken(KITokenType.LOOP_END, findToken(KITokenType.LOOP_START, 0) + 1) == -1)
+                    continue;
+            } else {
+                segments.add(parseLine(templateLine));
+                continue;
+            }
+
+            segments.add(parseLoopBlock(loopBlock));
+            loopBlock = null;
+        }
+
+        if (loopBlock != null)
+            segments.add(new KITemplateSegment(Collections.singletonList(new KILiteralNode(loopBlock))));
+
+        return new KIParsedTemplate(sourceLines, segments);
+    }
+
+    /**
+     * Parse a partial included by the template being parsed, along with its own includes
+     *
+     * @param partialName  The partial's name
+     * @param partialInput Used to provide the partial to be parsed
+     * @return The parsed partial
+     */
+    KIParsedTemplate parsePartial(String partialName, IKIInput partialInput) {
+        includeChain.push(partialName);
+        try {
+            return parse(partialInput);
+        } finally {
+            includeChain.pop();
+        }
+    }
+
+    /**
+     * Get the partial included by a template line if it's an include directive
+     *
+     * @param templateLine Single template line
+     * @return The included partial's name, or null if the line is not an include directive or no template loader is set
+     */
+    private String findIncludedPartial(String templateLine) {
+        if (templateConfig.getPartialsCache() == null)
+            return null;
+
+        String directive = templateLine.trim();
+        String includePrefix = templateConfig.getIncludePrefix();
+        String injectionToken = templateConfig.getInjectionToken();
+        if (directive.length() <= includePrefix.length() + injectionToken.length()
+                || !directive.startsWith(includePrefix) || !directive.endsWith(injectionToken))
+            return null;
+
+        String partialName = directive.substring(includePrefix.length(), directive.length() - injectionToken.length()).trim();
+        return partialName.isEmpty() || partialName.contains(injectionToken) ? null : partialName;
+    }
+
+    /**
+     * Get an included partial from the configuration's partials cache, detecting partials that include themselves
+     *
+     * @param partialName The partial's name
+     * @return The parsed partial
+     * @throws IllegalArgumentException An exception is thrown if the partial includes itself (directly or not),
+     *                                  or if the template loader could not find it
+     */
+    private KIParsedTemplate includePartial(String partialName) {
+        if (includeChain.contains(partialName)) {
+            List<String> cycle = new ArrayList<>(includeChain);
+            Collections.reverse(cycle);
+            cycle.add(partialName);
+            throw new IllegalArgumentException(MessageFormat.format(INCLUDE_CYCLE_ERROR_MESSAGE, partialName, String.join(" -> ", cycle)));
+        }
+        return templateConfig.getPartialsCache().getPartial(partialName, this);
+    }
+
+    /**
+     * Parse a single template line that is not part of a loop, the line should be already lexed
+     *
+     * @param templateLine Single template line
+     * @return The segment holding the line's nodes
+     */
+    private KITemplateSegment parseLine(String templateLine) {
+        List<IKITemplateNode> nodes = new ArrayList<>();
+        boolean doesContainLoopWord = lexedLine.containsKeyword(KILexer.LOOP_START_WORD)
+                || lexedLine.containsKeyword(KILexer.LOOP_END_WORD);
+
+        if (doesContainLoopWord)
+            addLiteral(nodes, templateLine);
+        else
+            addTokens(0, lexedLine.getTokensCount(), nodes);
+
+        return new KITemplateSegment(nodes);
+    }
+
+    /**
+     * Parse a complete loop block into the string before the loop, the loop itself and the string after the loop
+     *
+     * @param loopBlock The block where a loop is detected
+     * @return The segment holding the loop block's nodes
+     */
+    private KITemplateSegment parseLoopBlock(String loopBlock) {
+        lexer.lex(loopBlock, lexedLine);
+        int loopStartToken = findToken(KITokenType.LOOP_START, 0);
+        int loopEndToken = findToken(KITokenType.LOOP_END, loopStartToken + 1);
+
+        String loopTemplate = loopBlock.substring(lexedLine.getTokenStart(loopStartToken), lexedLine.getTokenEnd(loopEndToken));
+        List<IKITemplateNode> bodyNodes = new ArrayList<>();
+        addTokens(loopStartToken + 1, loopEndToken, bodyNodes);
+
+        List<IKITemplateNode> nodes = new ArrayList<>();
+        addLiteral(nodes, loopBlock.substring(0, lexedLine.getTokenStart(loopStartToken)));
+        nodes.add(new KILoopNode(loopTemplate, bodyNodes));
+        addLiteral(nodes, loopBlock.substring(lexedLine.getTokenEnd(loopEndToken)));
+        return new KITemplateSegment(nodes);
+    }
+
+    /**
+     * Convert a range of the lexed tokens into literal and injection nodes, skipping loop words
+     *
+     * @param fromToken The index of the first token
+     * @param toToken   The index after the last token
+     * @param nodes     The list to add the parsed nodes to
+     */
+    private void addTokens(int fromToken, int toToken, List<IKITemplateNode> nodes) {
+        for (int i = fromToken; i < toToken; i++) {
+            switch (lexedLine.getTokenType(i)) {
+                case LITERAL:
+                    addLiteral(nodes, lexedLine.getTokenText(i));
+                    break;
+                case INJECTION:
+                    nodes.add(new KIInjectionNode(lexedLine.getTokenText(i), lexedLine.getTokenClassAlias(i), lexedLine.getTokenMethodAlias(i)));
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Find the first lexed token of a type
+     *
+     * @param tokenType The type of the token to search for
+     * @param fromToken The index of the token to start searching from
+     * @return The token's index, or -1 if not found
+     */
+    private int findToken(KITokenType tokenType, int fromToken) {
+        for (int i = fromToken; i < lexedLine.getTokensCount(); i++) {
+            if (lexedLine.getTokenType(i) == tokenType)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Add a literal node to the nodes list, skipping empty strings
+     *
+     * @param nodes The list to add the literal node to
+     * @param text  The literal text
+     */
+    private void addLiteral(List<IKITemplateNode> nodes, String text) {
+        if (text.isEmpty())
+            return;
+        nodes.add(new KILiteralNode(text));
+    }
+}
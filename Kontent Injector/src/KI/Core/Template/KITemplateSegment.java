@@ -0,0 +1,55 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Core.Template;
+
+import java.util.List;
+
+/**
+ * A template segment is the unit the injection engine writes to the output in a single
+ * IKIOutput.writeLine call. It's either a single template line or a whole loop block
+ * (which could span several template lines)
+ */
+public class KITemplateSegment {
+
+    private final List<IKITemplateNode> nodes;
+
+    /**
+     * Construct a template segment
+     *
+     * @param nodes The nodes forming the segment
+     */
+    public KITemplateSegment(List<IKITemplateNode> nodes) {
+        this.nodes = nodes;
+    }
+
+    /**
+     * Get the nodes forming the segment
+     *
+     * @return The segment's nodes
+     */
+    public List<IKITemplateNode> getNodes() {
+        return nodes;
+    }
+}
@@ -38,7 +38,8 @@ public enum InvalidityType {
     METHOD_SHOULD_NOT_HAVE_PARAMETERS("The method provided is expecting parameters, please use a parameter-less method for injection"),
     DUPLICATE_ALIAS("There are duplicate aliases among classes and methods aliases"),
     DUPLICATE_INJECTION_KEYWORD("Duplicate injection keywords, please use a different string"),
-    EMPTY_COLLECTION("The collection sent is empty");
+    EMPTY_COLLECTION("The collection sent is empty"),
+    NON_POSITIVE_MEMORY_BUDGET("The memory budget should be a positive number");
 
     private final String errorMessage;
 
@@ -0,0 +1,61 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Exceptions;
+
+import java.text.MessageFormat;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Indicates that a template references classes or methods that could not be resolved
+ * against the content classes provided
+ */
+public class UnresolvedReferenceException extends ReflectiveOperationException {
+
+    public static final String UNRESOLVED_REFERENCES_ERROR_MESSAGE = "The template has unresolved references {0}";
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<String> unresolvedReferences;
+
+    /**
+     * Construct an unresolved reference exception
+     *
+     * @param unresolvedReferences The references (ClassAlias.methodAlias) that could not be resolved
+     */
+    public UnresolvedReferenceException(List<String> unresolvedReferences) {
+        super(MessageFormat.format(UNRESOLVED_REFERENCES_ERROR_MESSAGE, unresolvedReferences));
+        this.unresolvedReferences = Collections.unmodifiableList(unresolvedReferences);
+    }
+
+    /**
+     * Get the references that could not be resolved
+     *
+     * @return A list holding the unresolved references (ClassAlias.methodAlias)
+     */
+    public List<String> getUnresolvedReferences() {
+        return unresolvedReferences;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Models.KIFormat;
+
+/**
+ * IKIValueFormatter writes an injected value to the output, instead of the value's toString.
+ * A formatter is shared by all the renders, so it should be thread-safe
+ *
+ * @param <T> The type of the formatted values
+ */
+@FunctionalInterface
+public interface IKIValueFormatter<T> {
+    /**
+     * Write a value to the output
+     *
+     * @param value        The injected value, never null
+     * @param outputBuffer The buffer to append the formatted value to
+     */
+    void format(T value, StringBuilder outputBuffer);
+
+    /**
+     * Write a long value to the output (e.g. an element of a long array injected in a loop).
+     * The value is boxed unless the formatter overrides this method
+     *
+     * @param value        The injected value
+     * @param outputBuffer The buffer to append the formatted value to
+     */
+    @SuppressWarnings("unchecked")
+    default void formatLong(long value, StringBuilder outputBuffer) {
+        format((T) (Object) value, outputBuffer);
+    }
+
+    /**
+     * Write a double value to the output (e.g. an element of a double array injected in a loop).
+     * The value is boxed unless the formatter overrides this method
+     *
+     * @param value        The injected value
+     * @param outputBuffer The buffer to append the formatted value to
+     */
+    @SuppressWarnings("unchecked")
+    default void formatDouble(double value, StringBuilder outputBuffer) {
+        format((T) (Object) value, outputBuffer);
+    }
+}
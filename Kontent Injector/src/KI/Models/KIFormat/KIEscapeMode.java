@@ -0,0 +1,274 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Models.KIFormat;
+
+/**
+ * The escape modes of the injected values, applied while the values are written to the output
+ * (the template's literals are written as they are).
+ * <p>
+ * A value is scanned using a lookup table, and the spans that don't need escaping are copied in bulk.
+ * A value that doesn't need escaping at all is written without any copy
+ */
+public enum KIEscapeMode {
+    /**
+     * Values are written as they are
+     */
+    NONE {
+        @Override
+        boolean isEscaped(char character) {
+            return false;
+        }
+
+        @Override
+        void appendEscaped(StringBuilder outputBuffer, char character) {
+            outputBuffer.append(character);
+        }
+
+        @Override
+        void escape(StringBuilder outputBuffer, CharSequence value, int start, int end) {
+            outputBuffer.append(value, start, end);
+        }
+    },
+
+    /**
+     * HTML text and attribute values: &amp; &lt; &gt; &quot; and &#39;
+     */
+    HTML {
+        @Override
+        boolean isEscaped(char character) {
+            return character < ASCII_SIZE && HTML_ESCAPED[character];
+        }
+
+        @Override
+        void appendEscaped(StringBuilder outputBuffer, char character) {
+            appendMarkupEntity(outputBuffer, character, "&#39;");
+        }
+    },
+
+    /**
+     * XML text and attribute values: &amp; &lt; &gt; &quot; and &apos;
+     */
+    XML {
+        @Override
+        boolean isEscaped(char character) {
+            return character < ASCII_SIZE && HTML_ESCAPED[character];
+        }
+
+        @Override
+        void appendEscaped(StringBuilder outputBuffer, char character) {
+            appendMarkupEntity(outputBuffer, character, "&apos;");
+        }
+    },
+
+    /**
+     * JSON string contents (the template holds the quotes): quotes, backslashes, control characters,
+     * and the line and paragraph separators so the output could be embedded in JavaScript
+     */
+    JSON {
+        @Override
+        boolean isEscaped(char character) {
+            return character < ASCII_SIZE ? JSON_ESCAPED[character] : character == '\u2028' || character == '\u2029';
+        }
+
+        @Override
+        void appendEscaped(StringBuilder outputBuffer, char character) {
+            switch (character) {
+                case '"':
+                    outputBuffer.append("\\\"");
+                    break;
+                case '\\':
+                    outputBuffer.append("\\\\");
+                    break;
+                case '\n':
+                    outputBuffer.append("\\n");
+                    break;
+                case '\r':
+                    outputBuffer.append("\\r");
+                    break;
+                case '\t':
+                    outputBuffer.append("\\t");
+                    break;
+                default:
+                    outputBuffer.append("\\u")
+                            .append(HEX_DIGITS[(character >> 12) & 0xF]).append(HEX_DIGITS[(character >> 8) & 0xF])
+                            .append(HEX_DIGITS[(character >> 4) & 0xF]).append(HEX_DIGITS[character & 0xF]);
+            }
+        }
+    },
+
+    /**
+     * CSV fields (RFC 4180): a value holding a delimiter (comma, semicolon or tab), a quote or a line break is quoted, doubling its quotes
+     */
+    CSV {
+        @Override
+        boolean isEscaped(char character) {
+            return character == ',' || character == '"' || character == '\n' || character == '\r' || character == ';' || character == '\t';
+        }
+
+        @Override
+        void appendEscaped(StringBuilder outputBuffer, char character) {
+            if (character == '"')
+                outputBuffer.append('"');
+            outputBuffer.append(character);
+        }
+
+        @Override
+        void escape(StringBuilder outputBuffer, CharSequence value, int start, int end) {
+            if (indexOfEscaped(value, start, end) < 0) {
+                outputBuffer.append(value, start, end);
+                return;
+            }
+            outputBuffer.append('"');
+            appendSpans(outputBuffer, value, start, end);
+            outputBuffer.append('"');
+        }
+    };
+
+    private static final int ASCII_SIZE = 128;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final boolean[] HTML_ESCAPED = new boolean[ASCII_SIZE];
+    private static final boolean[] JSON_ESCAPED = new boolean[ASCII_SIZE];
+    private static final ThreadLocal<StringBuilder> ESCAPE_BUFFERS = ThreadLocal.withInitial(StringBuilder::new);
+
+    static {
+        for (char character : "&<>\"'".toCharArray())
+            HTML_ESCAPED[character] = true;
+        for (char character = 0; character < ' '; character++)
+            JSON_ESCAPED[character] = true;
+        JSON_ESCAPED['"'] = true;
+        JSON_ESCAPED['\\'] = true;
+    }
+
+    /**
+     * Check whether a character should be escaped
+     *
+     * @param character The character
+     * @return True if the character should be escaped
+     */
+    abstract boolean isEscaped(char character);
+
+    /**
+     * Append the escaped form of a character that should be escaped
+     *
+     * @param outputBuffer The buffer to append the escaped character to
+     * @param character    The character
+     */
+    abstract void appendEscaped(StringBuilder outputBuffer, char character);
+
+    /**
+     * Append a value, escaped
+     *
+     * @param outputBuffer The buffer to append the escaped value to
+     * @param value        The value
+     * @param start        The index of the value's first character
+     * @param end          The index after the value's last character
+     */
+    void escape(StringBuilder outputBuffer, CharSequence value, int start, int end) {
+        appendSpans(outputBuffer, value, start, end);
+    }
+
+    /**
+     * Escape the characters appended to a buffer since an index, in place.
+     * The buffer is not modified if none of the characters should be escaped
+     *
+     * @param outputBuffer The buffer holding the appended characters
+     * @param start        The index of the first appended character
+     */
+    void escapeAppended(StringBuilder outputBuffer, int start) {
+        if (this == NONE || indexOfEscaped(outputBuffer, start, outputBuffer.length()) < 0)
+            return;
+
+        StringBuilder escapeBuffer = ESCAPE_BUFFERS.get();
+        escapeBuffer.setLength(0);
+        escapeBuffer.append(outputBuffer, start, outputBuffer.length());
+        outputBuffer.setLength(start);
+        escape(outputBuffer, escapeBuffer, 0, escapeBuffer.length());
+    }
+
+    /**
+     * Find the first character that should be escaped
+     *
+     * @param value The scanned characters
+     * @param start The index of the first scanned character
+     * @param end   The index after the last scanned character
+     * @return The character's index, or -1 if no character should be escaped
+     */
+    int indexOfEscaped(CharSequence value, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (isEscaped(value.charAt(i)))
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Append the spans that don't need escaping in bulk, and escape the characters between them
+     *
+     * @param outputBuffer The buffer to append the escaped value to
+     * @param value        The value
+     * @param start        The index of the value's first character
+     * @param end          The index after the value's last character
+     */
+    void appendSpans(StringBuilder outputBuffer, CharSequence value, int start, int end) {
+        int spanStart = start;
+        for (int i = start; i < end; i++) {
+            char character = value.charAt(i);
+            if (!isEscaped(character))
+                continue;
+            if (spanStart < i)
+                outputBuffer.append(value, spanStart, i);
+            appendEscaped(outputBuffer, character);
+            spanStart = i + 1;
+        }
+        if (spanStart < end)
+            outputBuffer.append(value, spanStart, end);
+    }
+
+    /**
+     * Append the entity of a markup special character
+     *
+     * @param outputBuffer   The buffer to append the entity to
+     * @param character      The character
+     * @param apostropheForm The entity of the apostrophe
+     */
+    private static void appendMarkupEntity(StringBuilder outputBuffer, char character, String apostropheForm) {
+        switch (character) {
+            case '&':
+                outputBuffer.append("&amp;");
+                break;
+            case '<':
+                outputBuffer.append("&lt;");
+                break;
+            case '>':
+                outputBuffer.append("&gt;");
+                break;
+            case '"':
+                outputBuffer.append("&quot;");
+                break;
+            default:
+                outputBuffer.append(apostropheForm);
+        }
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Models.KIFormat;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The formatter registry holds how injected values are written: the formatters by value type, the template's
+ * escape mode, and the formatters and escape modes of injection references (class alias and method alias).
+ * A reference's format takes precedence, and a value type's formatter applies to its subclasses and implementations
+ * unless they have their own formatter.
+ * <p>
+ * Values without a formatter are written using toString, except for strings, primitive wrappers and characters
+ * that are appended directly to the output buffer, so numbers are written without allocating a temporary string.
+ * Strings are escaped while they're appended, and numbers without a formatter are never escaped.
+ * The formatter resolved for every value type is cached, and the registry could be used by several threads
+ */
+public class KIFormatterRegistry {
+
+    private static final IKIValueFormatter<Object> NO_FORMATTER = (value, outputBuffer) -> outputBuffer.append(value);
+
+    private final Map<Class<?>, IKIValueFormatter<?>> typesFormatters = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, KIReferenceFormat>> referencesFormats = new ConcurrentHashMap<>();
+    private final Map<Class<?>, IKIValueFormatter<?>> resolvedFormatters = new ConcurrentHashMap<>();
+    private volatile KIEscapeMode escapeMode = KIEscapeMode.NONE;
+
+    /**
+     * Set the formatter of a value type
+     *
+     * @param valueType The type of the formatted values
+     * @param formatter The formatter
+     * @param <T>       The type of the formatted values
+     */
+    public <T> void addFormatter(Class<T> valueType, IKIValueFormatter<? super T> formatter) {
+        typesFormatters.put(valueType, formatter);
+        resolvedFormatters.clear();
+    }
+
+    /**
+     * Set the formatter of an injection reference, used whatever the value's type is
+     *
+     * @param classAlias  The class alias (or name) used in templates
+     * @param methodAlias The method alias (or name) used in templates
+     * @param formatter   The formatter
+     */
+    public void addFormatter(String classAlias, String methodAlias, IKIValueFormatter<?> formatter) {
+        KIReferenceFormat referenceFormat = getReferenceFormat(classAlias, methodAlias);
+        putReferenceFormat(classAlias, methodAlias, new KIReferenceFormat(formatter, referenceFormat == null ? null : referenceFormat.getEscapeMode()));
+    }
+
+    /**
+     * Remove the formatter of a value type
+     *
+     * @param valueType The type of the formatted values
+     */
+    public void removeFormatter(Class<?> valueType) {
+        typesFormatters.remove(valueType);
+        resolvedFormatters.clear();
+    }
+
+    /**
+     * Remove the formatter of an injection reference
+     *
+     * @param classAlias  The class alias (or name) used in templates
+     * @param methodAlias The method alias (or name) used in templates
+     */
+    public void removeFormatter(String classAlias, String methodAlias) {
+        KIReferenceFormat referenceFormat = getReferenceFormat(classAlias, methodAlias);
+        if (referenceFormat != null)
+            putReferenceFormat(classAlias, methodAlias, new KIReferenceFormat(null, referenceFormat.getEscapeMode()));
+    }
+
+    /**
+     * Get the escape mode of the injected values
+     *
+     * @return The escape mode (Default: NONE)
+     */
+    public KIEscapeMode getEscapeMode() {
+        return escapeMode;
+    }
+
+    /**
+     * Set the escape mode of the injected values
+     *
+     * @param escapeMode The escape mode
+     */
+    public void setEscapeMode(KIEscapeMode escapeMode) {
+        this.escapeMode = escapeMode;
+    }
+
+    /**
+     * Set the escape mode of an injection reference, used instead of the template's escape mode
+     *
+     * @param classAlias  The class alias (or name) used in templates
+     * @param methodAlias The method alias (or name) used in templates
+     * @param escapeMode  The reference's escape mode, or null to use the template's escape mode
+     */
+    public void setEscapeMode(String classAlias, String methodAlias, KIEscapeMode escapeMode) {
+        KIReferenceFormat referenceFormat = getReferenceFormat(classAlias, methodAlias);
+        putReferenceFormat(classAlias, methodAlias, new KIReferenceFormat(referenceFormat == null ? null : referenceFormat.getFormatter(), escapeMode));
+    }
+
+    /**
+     * Check whether any injection reference has its own format, so references don't have to be resolved otherwise
+     *
+     * @return True if a reference's formatter or escape mode was set
+     */
+    public boolean hasReferencesFormats() {
+        return !referencesFormats.isEmpty();
+    }
+
+    /**
+     * Get the format of an injection reference
+     *
+     * @param classAlias  The class alias used in the template
+     * @param methodAlias The method alias used in the template
+     * @return The reference's format, or null if the reference doesn't have its own format
+     */
+    public KIReferenceFormat getReferenceFormat(String classAlias, String methodAlias) {
+        Map<String, KIReferenceFormat> methodsFormats = referencesFormats.get(classAlias);
+        return methodsFormats == null ? null : methodsFormats.get(methodAlias);
+    }
+
+    /**
+     * Append a value to the output buffer, using its formatter if any, and escape it
+     *
+     * @param outputBuffer    The buffer to append the value to
+     * @param value           The value, not null
+     * @param referenceFormat The format of the value's injection reference, or null
+     */
+    @SuppressWarnings("unchecked")
+    public void appendValue(StringBuilder outputBuffer, Object value, KIReferenceFormat referenceFormat) {
+        KIEscapeMode valueEscapeMode = getEscapeMode(referenceFormat);
+        IKIValueFormatter<?> formatter = getFormatter(referenceFormat, value.getClass());
+        if (formatter != null) {
+            int valueStart = outputBuffer.length();
+            ((IKIValueFormatter<Object>) formatter).format(value, outputBuffer);
+            valueEscapeMode.escapeAppended(outputBuffer, valueStart);
+            return;
+        }
+
+        if (value instanceof String)
+            valueEscapeMode.escape(outputBuffer, (String) value, 0, ((String) value).length());
+        else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte)
+            outputBuffer.append(((Number) value).longValue());
+        else if (value instanceof Double)
+            outputBuffer.append(((Double) value).doubleValue());
+        else if (value instanceof Float)
+            outputBuffer.append(((Float) value).floatValue());
+        else if (value instanceof Character)
+            appendChar(outputBuffer, (Character) value, valueEscapeMode);
+        else if (value instanceof Boolean)
+            outputBuffer.append(((Boolean) value).booleanValue());
+        else if (value instanceof CharSequence)
+            valueEscapeMode.escape(outputBuffer, (CharSequence) value, 0, ((CharSequence) value).length());
+        else {
+            String valueString = value.toString();
+            valueEscapeMode.escape(outputBuffer, valueString, 0, valueString.length());
+        }
+    }
+
+    /**
+     * Append an int value (e.g. an element of an int array), without boxing unless it has a formatter
+     *
+     * @param outputBuffer    The buffer to append the value to
+     * @param value           The value
+     * @param referenceFormat The format of the value's injection reference, or null
+     */
+    public void appendInt(StringBuilder outputBuffer, int value, KIReferenceFormat referenceFormat) {
+        if (getFormatter(referenceFormat, Integer.class) == null)
+            outputBuffer.append(value);
+        else
+            appendValue(outputBuffer, value, referenceFormat);
+    }
+
+    /**
+     * Append a long value (e.g. an element of a long array), without boxing unless it has a formatter
+     * that doesn't format primitive longs
+     *
+     * @param outputBuffer    The buffer to append the value to
+     * @param value           The value
+     * @param referenceFormat The format of the value's injection reference, or null
+     */
+    public void appendLong(StringBuilder outputBuffer, long value, KIReferenceFormat referenceFormat) {
+        IKIValueFormatter<?> formatter = getFormatter(referenceFormat, Long.class);
+        if (formatter == null) {
+            outputBuffer.append(value);
+            return;
+        }
+        int valueStart = outputBuffer.length();
+        formatter.formatLong(value, outputBuffer);
+        getEscapeMode(referenceFormat).escapeAppended(outputBuffer, valueStart);
+    }
+
+    /**
+     * Append a double value (e.g. an element of a double array), without boxing unless it has a formatter
+     * that doesn't format primitive doubles
+     *
+     * @param outputBuffer    The buffer to append the value to
+     * @param value           The value
+     * @param referenceFormat The format of the value's injection reference, or null
+     */
+    public void appendDouble(StringBuilder outputBuffer, double value, KIReferenceFormat referenceFormat) {
+        IKIValueFormatter<?> formatter = getFormatter(referenceFormat, Double.class);
+        if (formatter == null) {
+            outputBuffer.append(value);
+            return;
+        }
+        int valueStart = outputBuffer.length();
+        formatter.formatDouble(value, outputBuffer);
+        getEscapeMode(referenceFormat).escapeAppended(outputBuffer, valueStart);
+    }
+
+    /**
+     * Append a character, escaped
+     *
+     * @param outputBuffer    The buffer to append the character to
+     * @param value           The character
+     * @param valueEscapeMode The value's escape mode
+     */
+    private void appendChar(StringBuilder outputBuffer, char value, KIEscapeMode valueEscapeMode) {
+        int valueStart = outputBuffer.length();
+        outputBuffer.append(value);
+        valueEscapeMode.escapeAppended(outputBuffer, valueStart);
+    }
+
+    /**
+     * Get the escape mode of a value
+     *
+     * @param referenceFormat The format of the value's injection reference, or null
+     * @return The reference's escape mode if any, the template's escape mode otherwise
+     */
+    private KIEscapeMode getEscapeMode(KIReferenceFormat referenceFormat) {
+        return referenceFormat == null || referenceFormat.getEscapeMode() == null ? escapeMode : referenceFormat.getEscapeMode();
+    }
+
+    /**
+     * Get the formatter of a value
+     *
+     * @param referenceFormat The format of the value's injection reference, or null
+     * @param valueType       The value's type
+     * @return The reference's formatter if any, the value type's formatter otherwise, or null if neither exists
+     */
+    private IKIValueFormatter<?> getFormatter(KIReferenceFormat referenceFormat, Class<?> valueType) {
+        if (referenceFormat != null && referenceFormat.getFormatter() != null)
+            return referenceFormat.getFormatter();
+        return resolveFormatter(valueType);
+    }
+
+    /**
+     * Set the format of an injection reference
+     *
+     * @param classAlias      The class alias (or name) used in templates
+     * @param methodAlias     The method alias (or name) used in templates
+     * @param referenceFormat The reference's format
+     */
+    private void putReferenceFormat(String classAlias, String methodAlias, KIReferenceFormat referenceFormat) {
+        referencesFormats.computeIfAbsent(classAlias, alias -> new ConcurrentHashMap<>()).put(methodAlias, referenceFormat);
+    }
+
+    /**
+     * Get the formatter of a value type, the formatter of its closest superclass or interface if it doesn't have one
+     *
+     * @param valueType The value's type
+     * @return The formatter, or null if neither the type nor its supertypes have a formatter
+     */
+    private IKIValueFormatter<?> resolveFormatter(Class<?> valueType) {
+        if (typesFormatters.isEmpty())
+            return null;
+
+        IKIValueFormatter<?> formatter = resolvedFormatters.get(valueType);
+        if (formatter == null) {
+            formatter = findFormatter(valueType);
+            resolvedFormatters.put(valueType, formatter);
+        }
+        return formatter == NO_FORMATTER ? null : formatter;
+    }
+
+    /**
+     * Search the type hierarchy for a formatter, breadth first: the type, then its superclass and interfaces
+     *
+     * @param valueType The value's type
+     * @return The closest formatter, or NO_FORMATTER if none was found
+     */
+    private IKIValueFormatter<?> findFormatter(Class<?> valueType) {
+        Deque<Class<?>> pendingTypes = new ArrayDeque<>();
+        pendingTypes.add(valueType);
+
+        while (!pendingTypes.isEmpty()) {
+            Class<?> type = pendingTypes.poll();
+            IKIValueFormatter<?> formatter = typesFormatters.get(type);
+            if (formatter != null)
+                return formatter;
+            if (type.getSuperclass() != null)
+                pendingTypes.add(type.getSuperclass());
+            for (Class<?> implementedInterface : type.getInterfaces())
+                pendingTypes.add(implementedInterface);
+        }
+        return NO_FORMATTER;
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Models.KIFormat;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+
+/**
+ * Common value formatters, writing the formatted values directly to the output buffer
+ */
+public final class KIFormatters {
+
+    public static final int MAX_FRACTION_DIGITS = 9;
+
+    private static final long[] POWERS_OF_TEN = {1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L};
+    private static final double MAX_SCALED_VALUE = 1e17;
+    private static final double HALF_TIE_ULPS = 4;
+
+    private KIFormatters() {
+    }
+
+    /**
+     * Create a formatter writing numbers with a fixed number of fraction digits (rounded half up), e.g. "1234.50".
+     * Primitive values are written without allocating
+     *
+     * @param fractionDigits The number of fraction digits, between 0 and MAX_FRACTION_DIGITS
+     * @return The decimal formatter
+     * @throws IllegalArgumentException An exception is thrown if the number of fraction digits is out of range
+     */
+    public static IKIValueFormatter<Number> decimal(int fractionDigits) {
+        if (fractionDigits < 0 || fractionDigits > MAX_FRACTION_DIGITS)
+            throw new IllegalArgumentException("Fraction digits should be between 0 and " + MAX_FRACTION_DIGITS);
+
+        return new IKIValueFormatter<Number>() {
+            @Override
+            public void format(Number value, StringBuilder outputBuffer) {
+                if (value instanceof BigDecimal || value instanceof BigInteger)
+                    outputBuffer.append(new BigDecimal(value.toString()).setScale(fractionDigits, RoundingMode.HALF_UP).toPlainString());
+                else if (value instanceof Double || value instanceof Float)
+                    formatDouble(value.doubleValue(), outputBuffer);
+                else
+                    formatLong(value.longValue(), outputBuffer);
+            }
+
+            @Override
+            public void formatLong(long value, StringBuilder outputBuffer) {
+                outputBuffer.append(value);
+                appendFraction(outputBuffer, 0, fractionDigits);
+            }
+
+            @Override
+            public void formatDouble(double value, StringBuilder outputBuffer) {
+                appendDecimal(outputBuffer, value, fractionDigits);
+            }
+        };
+    }
+
+    /**
+     * Create a formatter writing dates and times (e.g. LocalDate, ZonedDateTime) using a date time formatter
+     *
+     * @param dateTimeFormatter The date time formatter, that is thread-safe
+     * @return The date time formatter
+     */
+    public static IKIValueFormatter<TemporalAccessor> dateTime(DateTimeFormatter dateTimeFormatter) {
+        return dateTimeFormatter::formatTo;
+    }
+
+    /**
+     * Create a formatter writing dates and times using a pattern
+     *
+     * @param pattern The date time pattern (e.g. "yyyy-MM-dd")
+     * @return The date time formatter
+     * @throws IllegalArgumentException An exception is thrown if the pattern is invalid
+     */
+    public static IKIValueFormatter<TemporalAccessor> dateTime(String pattern) {
+        return dateTime(DateTimeFormatter.ofPattern(pattern));
+    }
+
+    /**
+     * Append a double with a fixed number of fraction digits, rounded half up as written in decimal (as BigDecimal.valueOf),
+     * so 1.005 is rounded to 1.01 although its binary value is slightly below it.
+     * Values whose scaled fraction is close enough to a half for the binary error to matter are rounded by BigDecimal
+     *
+     * @param outputBuffer   The buffer to append the number to
+     * @param value          The number
+     * @param fractionDigits The number of fraction digits
+     */
+    static void appendDecimal(StringBuilder outputBuffer, double value, int fractionDigits) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            outputBuffer.append(value);
+            return;
+        }
+
+        long scale = POWERS_OF_TEN[fractionDigits];
+        double scaledValue = Math.abs(value) * scale;
+        double scaledFraction = scaledValue - Math.floor(scaledValue);
+        if (scaledValue >= MAX_SCALED_VALUE || Math.abs(scaledFraction - 0.5) <= Math.ulp(scaledValue) * HALF_TIE_ULPS) {
+            outputBuffer.append(BigDecimal.valueOf(value).setScale(fractionDigits, RoundingMode.HALF_UP).toPlainString());
+            return;
+        }
+
+        long roundedValue = Math.round(scaledValue);
+        if (value < 0 && roundedValue != 0)
+            outputBuffer.append('-');
+        outputBuffer.append(roundedValue / scale);
+        appendFraction(outputBuffer, roundedValue % scale, fractionDigits);
+    }
+
+    /**
+     * Append the fraction part of a number, padded with leading zeros
+     *
+     * @param outputBuffer   The buffer to append the fraction to
+     * @param fraction       The fraction digits as a number
+     * @param fractionDigits The number of fraction digits
+     */
+    private static void appendFraction(StringBuilder outputBuffer, long fraction, int fractionDigits) {
+        if (fractionDigits == 0)
+            return;
+        outputBuffer.append('.');
+        for (long power = POWERS_OF_TEN[fractionDigits - 1]; power > 1 && fraction < power; power /= 10)
+            outputBuffer.append('0');
+        outputBuffer.append(fraction);
+    }
+}
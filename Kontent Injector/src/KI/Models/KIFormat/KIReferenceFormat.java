@@ -0,0 +1,64 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Models.KIFormat;
+
+/**
+ * The reference format holds how the values of an injection reference are written: the reference's formatter
+ * and escape mode, used instead of the value type's formatter and the template's escape mode
+ */
+public class KIReferenceFormat {
+
+    private final IKIValueFormatter<?> formatter;
+    private final KIEscapeMode escapeMode;
+
+    /**
+     * Construct a reference format
+     *
+     * @param formatter  The reference's formatter, or null to use the value type's formatter
+     * @param escapeMode The reference's escape mode, or null to use the template's escape mode
+     */
+    KIReferenceFormat(IKIValueFormatter<?> formatter, KIEscapeMode escapeMode) {
+        this.formatter = formatter;
+        this.escapeMode = escapeMode;
+    }
+
+    /**
+     * Get the reference's formatter
+     *
+     * @return The formatter, or null if the value type's formatter is used
+     */
+    public IKIValueFormatter<?> getFormatter() {
+        return formatter;
+    }
+
+    /**
+     * Get the reference's escape mode
+     *
+     * @return The escape mode, or null if the template's escape mode is used
+     */
+    public KIEscapeMode getEscapeMode() {
+        return escapeMode;
+    }
+}
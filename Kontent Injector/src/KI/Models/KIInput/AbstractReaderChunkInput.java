@@ -0,0 +1,62 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Models.KIInput;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * An abstract class handling reader chunk inputs
+ */
+public abstract class AbstractReaderChunkInput implements IKIChunkInput {
+
+    private final Reader templateReader;
+
+    /**
+     * The reader to be used to read the template
+     *
+     * @param templateReader Reader to be used when readTemplateChunk is called
+     */
+    AbstractReaderChunkInput(Reader templateReader) {
+        this.templateReader = templateReader;
+    }
+
+    @Override
+    public int readTemplateChunk(char[] chunkBuffer) {
+        try {
+            int readCount;
+            do {
+                readCount = templateReader.read(chunkBuffer, 0, chunkBuffer.length);
+            } while (readCount == 0);
+
+            if (readCount == -1)
+                templateReader.close();
+            return readCount;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Models.KIOutput;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * The base of the outputs consuming the output as bytes. The characters are encoded using a charset
+ * while they're written, and every line is followed by a line separator. The line feeds inside the chunks are written
+ * as the line separator as well.
+ * Characters that can't be encoded (e.g. lone surrogates) are replaced by the charset's replacement ('?'), as a PrintWriter does
+ */
+abstract class AbstractEncodingOutput implements IKIChunkOutput {
+
+    private static final int BYTE_BUFFER_SIZE = 8192;
+
+    private final CharsetEncoder encoder;
+    private final String lineSeparator;
+    private final LineBreakTranslator lineBreakTranslator;
+    private final ByteBuffer byteBuffer = ByteBuffer.allocate(BYTE_BUFFER_SIZE);
+    private final char[] surrogatePair = new char[2];
+    private boolean hasPendingSurrogate = false;
+
+    /**
+     * Construct an encoding output
+     *
+     * @param charset       The charset used to encode the output
+     * @param lineSeparator The separator written after every line
+     */
+    AbstractEncodingOutput(Charset charset, String lineSeparator) {
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.lineSeparator = lineSeparator;
+        this.lineBreakTranslator = LineBreakTranslator.isTranslationNeeded(lineSeparator)
+                ? new LineBreakTranslator(lineSeparator, (run, start, end) -> encode(CharBuffer.wrap(run, start, end), false))
+                : null;
+    }
+
+    @Override
+    public void writeLine(String outputLine) {
+        writeChunk(outputLine);
+        if (lineBreakTranslator != null)
+            lineBreakTranslator.writeLineSeparator();
+        else
+            writeChunk(lineSeparator);
+    }
+
+    @Override
+    public void writeChunk(char[] chunk, int offset, int length) {
+        if (lineBreakTranslator != null)
+            lineBreakTranslator.writeChunk(CharBuffer.wrap(chunk), offset, offset + length);
+        else
+            encode(CharBuffer.wrap(chunk, offset, length), false);
+    }
+
+    @Override
+    public void writeChunk(CharSequence chunk) {
+        if (lineBreakTranslator != null)
+            lineBreakTranslator.writeChunk(chunk, 0, chunk.length());
+        else
+            encode(CharBuffer.wrap(chunk), false);
+    }
+
+    /**
+     * Consume encoded bytes
+     *
+     * @param bytes The encoded bytes, all the remaining bytes should be consumed
+     */
+    protected abstract void consumeBytes(ByteBuffer bytes);
+
+    /**
+     * Encode the characters kept until the end of the output and consume all the remaining bytes,
+     * called once when the output ends
+     */
+    protected void finishEncoding() {
+        encode(CharBuffer.allocate(0), true);
+        while (encoder.flush(byteBuffer).isOverflow())
+            consumeByteBuffer();
+        consumeByteBuffer();
+    }
+
+    /**
+     * Encode characters and consume them. A high surrogate ending a chunk is kept until the next chunk
+     *
+     * @param charBuffer The characters to be encoded
+     * @param endOfInput Indicates that no more characters will be written
+     */
+    private void encode(CharBuffer charBuffer, boolean endOfInput) {
+        if (hasPendingSurrogate && (charBuffer.hasRemaining() || endOfInput)) {
+            hasPendingSurrogate = false;
+            int pairLength = charBuffer.hasRemaining() ? 2 : 1;
+            if (pairLength == 2)
+                surrogatePair[1] = charBuffer.get();
+            encodeBuffer(CharBuffer.wrap(surrogatePair, 0, pairLength), endOfInput && !charBuffer.hasRemaining());
+        }
+
+        encodeBuffer(charBuffer, endOfInput);
+        if (charBuffer.hasRemaining()) {
+            surrogatePair[0] = charBuffer.get();
+            hasPendingSurrogate = true;
+        }
+    }
+
+    /**
+     * Encode all the characters of a buffer that could be encoded and consume them
+     *
+     * @param charBuffer The characters to be encoded
+     * @param endOfInput Indicates that no more characters will be written
+     */
+    private void encodeBuffer(CharBuffer charBuffer, boolean endOfInput) {
+        while (true) {
+            CoderResult coderResult = encoder.encode(charBuffer, byteBuffer, endOfInput);
+            if (!coderResult.isOverflow())
+                return;
+            consumeByteBuffer();
+        }
+    }
+
+    /**
+     * Consume the encoded bytes and clear the byte buffer
+     */
+    private void consumeByteBuffer() {
+        byteBuffer.flip();
+        if (byteBuffer.hasRemaining())
+            consumeBytes(byteBuffer);
+        byteBuffer.clear();
+    }
+}
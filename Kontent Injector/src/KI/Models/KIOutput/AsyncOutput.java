@@ -0,0 +1,205 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Models.KIOutput;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * The Async Output writes to another output on a dedicated thread, through a bounded queue of writes.
+ * It's meant to be used with a TeeOutput, so a slow output (e.g. a remote one) doesn't stall the other outputs
+ * until its queue is full. Failures of the wrapped output are thrown by the following writes, or by handleOutputEnd.
+ * The thread is started by the first write, and stopped by either handleOutputEnd or abortOutput
+ */
+public class AsyncOutput implements IKIChunkOutput {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    private static final String WRITER_THREAD_NAME = "kontent-injector-async-output";
+
+    /**
+     * A queued write
+     */
+    private static final class QueuedWrite {
+        private static final QueuedWrite OUTPUT_END = new QueuedWrite(null, false);
+        private static final QueuedWrite OUTPUT_ABORTED = new QueuedWrite(null, false);
+
+        private final String text;
+        private final boolean isLine;
+
+        private QueuedWrite(String text, boolean isLine) {
+            this.text = text;
+            this.isLine = isLine;
+        }
+    }
+
+    private final IKIChunkOutput outputMethod;
+    private final BlockingQueue<QueuedWrite> queuedWrites;
+    private Thread writerThread;
+    private volatile RuntimeException failure;
+
+    /**
+     * Construct an async output using the default queue capacity
+     *
+     * @param outputMethod The output to be written to asynchronously
+     */
+    public AsyncOutput(IKIOutput outputMethod) {
+        this(outputMethod, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Construct an async output
+     *
+     * @param outputMethod  The output to be written to asynchronously
+     * @param queueCapacity The number of writes that could be queued before a write waits for the output
+     */
+    public AsyncOutput(IKIOutput outputMethod, int queueCapacity) {
+        this.outputMethod = IKIChunkOutput.of(outputMethod);
+        this.queuedWrites = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    @Override
+    public void writeLine(String outputLine) {
+        enqueue(new QueuedWrite(outputLine, true));
+    }
+
+    @Override
+    public void writeChunk(char[] chunk, int offset, int length) {
+        enqueue(new QueuedWrite(new String(chunk, offset, length), false));
+    }
+
+    @Override
+    public void writeChunk(CharSequence chunk) {
+        enqueue(new QueuedWrite(chunk.toString(), false));
+    }
+
+    /**
+     * Wait for all the queued writes to be written, then end the wrapped output
+     */
+    @Override
+    public void handleOutputEnd() {
+        if (writerThread == null) {
+            outputMethod.handleOutputEnd();
+            return;
+        }
+        enqueue(QueuedWrite.OUTPUT_END);
+        joinWriter();
+        throwFailure();
+    }
+
+    /**
+     * Drop the queued writes, then abort the wrapped output and wait for the writer thread to stop.
+     * A failure of an earlier write is not thrown, as the injection already failed
+     */
+    @Override
+    public void abortOutput() {
+        if (writerThread == null) {
+            outputMethod.abortOutput();
+            return;
+        }
+        queuedWrites.clear();
+        try {
+            queuedWrites.put(QueuedWrite.OUTPUT_ABORTED);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writerThread.interrupt();
+        }
+        joinWriter();
+    }
+
+    /**
+     * Queue a write, waiting if the queue is full, the writer thread is started by the first write
+     *
+     * @param queuedWrite The write
+     */
+    private void enqueue(QueuedWrite queuedWrite) {
+        throwFailure();
+        if (writerThread == null) {
+            writerThread = new Thread(this::writeQueuedWrites, WRITER_THREAD_NAME);
+            writerThread.setDaemon(true);
+            writerThread.start();
+        }
+        try {
+            queuedWrites.put(queuedWrite);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void joinWriter() {
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Rethrow the failure of the wrapped output, if any
+     */
+    private void throwFailure() {
+        if (failure != null)
+            throw failure;
+    }
+
+    /**
+     * Write the queued writes to the wrapped output until the output ends or is aborted, the writes
+     * queued after a failure are dropped
+     */
+    private void writeQueuedWrites() {
+        try {
+            QueuedWrite queuedWrite;
+            while ((queuedWrite = queuedWrites.take()) != QueuedWrite.OUTPUT_END) {
+                if (queuedWrite == QueuedWrite.OUTPUT_ABORTED) {
+                    outputMethod.abortOutput();
+                    return;
+                }
+                if (failure != null)
+                    continue;
+                try {
+                    if (queuedWrite.isLine)
+                        outputMethod.writeLine(queuedWrite.text);
+                    else
+                        outputMethod.writeChunk(queuedWrite.text);
+                } catch (RuntimeException e) {
+                    failure = e;
+                }
+            }
+
+            if (failure == null)
+                outputMethod.handleOutputEnd();
+            else
+                outputMethod.abortOutput();
+        } catch (InterruptedException e) {
+            failure = new IllegalStateException(e);
+            outputMethod.abortOutput();
+        } catch (RuntimeException e) {
+            if (failure == null)
+                failure = e;
+        }
+    }
+}
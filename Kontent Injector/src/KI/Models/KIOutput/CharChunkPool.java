@@ -0,0 +1,105 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Models.KIOutput;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The char chunk pool holds fixed-size char arrays released by chunked outputs, so they can be reused
+ * by later outputs instead of allocating new arrays. The pool keeps up to a maximum number of chunks,
+ * released chunks beyond that are left to the garbage collector
+ */
+public class CharChunkPool {
+
+    public static final int DEFAULT_CHUNK_SIZE = 8192;
+    public static final int DEFAULT_MAX_POOLED_CHUNKS = 1024;
+
+    private static final CharChunkPool DEFAULT_POOL = new CharChunkPool(DEFAULT_CHUNK_SIZE, DEFAULT_MAX_POOLED_CHUNKS);
+
+    private final int chunkSize;
+    private final int maxPooledChunks;
+    private final ConcurrentLinkedQueue<char[]> pooledChunks = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooledChunksCount = new AtomicInteger();
+
+    /**
+     * Construct a char chunk pool
+     *
+     * @param chunkSize       The size of the pooled chunks
+     * @param maxPooledChunks The maximum number of chunks kept in the pool
+     */
+    public CharChunkPool(int chunkSize, int maxPooledChunks) {
+        if (chunkSize <= 0)
+            throw new IllegalArgumentException("The chunk size should be greater than zero");
+        this.chunkSize = chunkSize;
+        this.maxPooledChunks = maxPooledChunks;
+    }
+
+    /**
+     * Get the pool shared by chunked outputs that are not given a pool
+     *
+     * @return The default chunk pool
+     */
+    public static CharChunkPool getDefaultPool() {
+        return DEFAULT_POOL;
+    }
+
+    /**
+     * Get the size of the pooled chunks
+     *
+     * @return The chunk size
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Take a chunk from the pool, or allocate a new chunk if the pool is empty
+     *
+     * @return A chunk of the pool's chunk size
+     */
+    public char[] acquire() {
+        char[] chunk = pooledChunks.poll();
+        if (chunk == null)
+            return new char[chunkSize];
+        pooledChunksCount.decrementAndGet();
+        return chunk;
+    }
+
+    /**
+     * Return a chunk to the pool
+     *
+     * @param chunk A chunk acquired from the pool
+     */
+    public void release(char[] chunk) {
+        if (chunk.length != chunkSize)
+            return;
+        if (pooledChunksCount.incrementAndGet() > maxPooledChunks) {
+            pooledChunksCount.decrementAndGet();
+            return;
+        }
+        pooledChunks.offer(chunk);
+    }
+}
@@ -0,0 +1,336 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Models.KIOutput;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The Chunked Output keeps the output in memory as a list of fixed-size chunks taken from a chunk pool,
+ * so large outputs never need a single contiguous array, and growing the output never copies what was already written.
+ * <p>
+ * The output could be read as a CharSequence, through a Reader, or written to a Writer or a channel.
+ * Once the output is no longer needed, release it to return its chunks to the pool
+ */
+public class ChunkedOutput implements IKIChunkOutput, CharSequence {
+
+    private final CharChunkPool chunkPool;
+    private final int chunkSize;
+    private final List<char[]> chunks = new ArrayList<>();
+    private long length = 0;
+
+    /**
+     * Construct a chunked output using the default chunk pool
+     */
+    public ChunkedOutput() {
+        this(CharChunkPool.getDefaultPool());
+    }
+
+    /**
+     * Construct a chunked output
+     *
+     * @param chunkPool The pool to take the chunks from
+     */
+    public ChunkedOutput(CharChunkPool chunkPool) {
+        this.chunkPool = chunkPool;
+        this.chunkSize = chunkPool.getChunkSize();
+    }
+
+    @Override
+    public void writeLine(String outputLine) {
+        append(outputLine);
+        append("\n");
+    }
+
+    @Override
+    public void writeChunk(char[] chunk, int offset, int length) {
+        int chunkEnd = offset + length;
+        while (offset < chunkEnd) {
+            char[] lastChunk = acquireLastChunk();
+            int chunkOffset = (int) (this.length % chunkSize);
+            int copyLength = Math.min(chunkSize - chunkOffset, chunkEnd - offset);
+            System.arraycopy(chunk, offset, lastChunk, chunkOffset, copyLength);
+            offset += copyLength;
+            this.length += copyLength;
+        }
+    }
+
+    @Override
+    public void writeChunk(CharSequence chunk) {
+        append(chunk);
+    }
+
+    @Override
+    public void handleOutputEnd() {
+    }
+
+    /**
+     * Append a string to the output
+     *
+     * @param text The string to be appended
+     */
+    public void append(CharSequence text) {
+        int textIndex = 0;
+        int textLength = text.length();
+
+        while (textIndex < textLength) {
+            char[] chunk = acquireLastChunk();
+            int chunkOffset = (int) (length % chunkSize);
+            int copyLength = Math.min(chunkSize - chunkOffset, textLength - textIndex);
+            copyChars(text, textIndex, textIndex + copyLength, chunk, chunkOffset);
+            textIndex += copyLength;
+            length += copyLength;
+        }
+    }
+
+    /**
+     * Get the chunk the next characters are written to, taking a new chunk from the pool if the last one is full
+     *
+     * @return The last chunk
+     */
+    private char[] acquireLastChunk() {
+        if (length % chunkSize == 0 && length / chunkSize == chunks.size())
+            chunks.add(chunkPool.acquire());
+        return chunks.get(chunks.size() - 1);
+    }
+
+    /**
+     * Get the output's length
+     *
+     * @return The number of characters written to the output
+     */
+    public long getLength() {
+        return length;
+    }
+
+    @Override
+    public int length() {
+        if (length > Integer.MAX_VALUE)
+            throw new IllegalStateException("The output is too large to be viewed as a CharSequence, use getLength instead");
+        return (int) length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length)
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        return chunks.get(index / chunkSize)[index % chunkSize];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end)
+            throw new IndexOutOfBoundsException("start " + start + ", end " + end);
+        StringBuilder subSequence = new StringBuilder(end - start);
+        for (int index = start; index < end; ) {
+            char[] chunk = chunks.get(index / chunkSize);
+            int chunkOffset = index % chunkSize;
+            int copyLength = Math.min(chunkSize - chunkOffset, end - index);
+            subSequence.append(chunk, chunkOffset, copyLength);
+            index += copyLength;
+        }
+        return subSequence.toString();
+    }
+
+    @Override
+    public String toString() {
+        return subSequence(0, length()).toString();
+    }
+
+    /**
+     * Open a reader over the output
+     *
+     * @return A reader reading the output from its start
+     */
+    public Reader openReader() {
+        return new Reader() {
+            private long position = 0;
+
+            @Override
+            public int read(char[] buffer, int offset, int readLength) {
+                if (position >= length)
+                    return -1;
+                char[] chunk = chunks.get((int) (position / chunkSize));
+                int chunkOffset = (int) (position % chunkSize);
+                int copyLength = (int) Math.min(Math.min(chunkSize - chunkOffset, readLength), length - position);
+                System.arraycopy(chunk, chunkOffset, buffer, offset, copyLength);
+                position += copyLength;
+                return copyLength;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * Write the output to a writer, chunk by chunk
+     *
+     * @param writer The writer to write the output to
+     * @throws IOException An IOException is thrown if writing failed
+     */
+    public void writeTo(Writer writer) throws IOException {
+        for (int i = 0; i < chunks.size(); i++)
+            writer.write(chunks.get(i), 0, getChunkLength(i));
+        writer.flush();
+    }
+
+    /**
+     * Encode the output and write it to a channel, chunk by chunk. A surrogate pair split between two chunks
+     * is encoded as a whole
+     *
+     * @param channel The channel to write the output to
+     * @param charset The charset used to encode the output
+     * @throws IOException An IOException is thrown if encoding or writing failed
+     */
+    public void writeTo(WritableByteChannel channel, Charset charset) throws IOException {
+        CharsetEncoder encoder = charset.newEncoder();
+        ByteBuffer byteBuffer = ByteBuffer.allocate((int) Math.ceil(chunkSize * encoder.maxBytesPerChar()));
+
+        char[] surrogatePair = new char[2];
+        boolean hasPendingSurrogate = false;
+
+        for (int i = 0; i < chunks.size(); i++) {
+            CharBuffer charBuffer = CharBuffer.wrap(chunks.get(i), 0, getChunkLength(i));
+            boolean isLastChunk = i == chunks.size() - 1;
+            if (hasPendingSurrogate) {
+                surrogatePair[1] = charBuffer.get();
+                hasPendingSurrogate = false;
+                encode(encoder, CharBuffer.wrap(surrogatePair), byteBuffer, channel, isLastChunk && !charBuffer.hasRemaining());
+            }
+
+            encode(encoder, charBuffer, byteBuffer, channel, isLastChunk);
+            if (charBuffer.hasRemaining()) {
+                surrogatePair[0] = charBuffer.get();
+                hasPendingSurrogate = true;
+            }
+        }
+
+        if (chunks.isEmpty())
+            encode(encoder, CharBuffer.allocate(0), byteBuffer, channel, true);
+        flushEncoder(encoder, byteBuffer, channel);
+    }
+
+    /**
+     * Return the output's chunks to the chunk pool and clear the output
+     */
+    public void release() {
+        for (char[] chunk : chunks)
+            chunkPool.release(chunk);
+        chunks.clear();
+        length = 0;
+    }
+
+    /**
+     * Get the number of characters written to a chunk
+     *
+     * @param chunkIndex The chunk index
+     * @return The number of characters written to the chunk
+     */
+    private int getChunkLength(int chunkIndex) {
+        if (chunkIndex < chunks.size() - 1)
+            return chunkSize;
+        return (int) (length - (long) chunkIndex * chunkSize);
+    }
+
+    /**
+     * Encode a char buffer and write the encoded bytes to a channel
+     *
+     * @param encoder    The charset encoder
+     * @param charBuffer The chars to be encoded
+     * @param byteBuffer The buffer holding the encoded bytes
+     * @param channel    The channel to write the encoded bytes to
+     * @param endOfInput Indicates if the char buffer is the last one
+     * @throws IOException An IOException is thrown if encoding or writing failed
+     */
+    private void encode(CharsetEncoder encoder, CharBuffer charBuffer, ByteBuffer byteBuffer,
+                        WritableByteChannel channel, boolean endOfInput) throws IOException {
+        CoderResult coderResult;
+        do {
+            coderResult = encoder.encode(charBuffer, byteBuffer, endOfInput);
+            if (coderResult.isError())
+                coderResult.throwException();
+            drain(byteBuffer, channel);
+        } while (coderResult.isOverflow());
+    }
+
+    /**
+     * Flush the encoder and write the remaining bytes to a channel
+     *
+     * @param encoder    The charset encoder
+     * @param byteBuffer The buffer holding the encoded bytes
+     * @param channel    The channel to write the encoded bytes to
+     * @throws IOException An IOException is thrown if encoding or writing failed
+     */
+    private void flushEncoder(CharsetEncoder encoder, ByteBuffer byteBuffer, WritableByteChannel channel) throws IOException {
+        CoderResult coderResult;
+        do {
+            coderResult = encoder.flush(byteBuffer);
+            drain(byteBuffer, channel);
+        } while (coderResult.isOverflow());
+    }
+
+    /**
+     * Write all the bytes of a buffer to a channel and clear the buffer
+     *
+     * @param byteBuffer The buffer holding the encoded bytes
+     * @param channel    The channel to write the bytes to
+     * @throws IOException An IOException is thrown if writing failed
+     */
+    private void drain(ByteBuffer byteBuffer, WritableByteChannel channel) throws IOException {
+        byteBuffer.flip();
+        while (byteBuffer.hasRemaining())
+            channel.write(byteBuffer);
+        byteBuffer.clear();
+    }
+
+    /**
+     * Copy a range of characters from a CharSequence to a char array
+     *
+     * @param text        The source CharSequence
+     * @param start       The start index in the source
+     * @param end         The end index in the source (exclusive)
+     * @param destination The destination array
+     * @param offset      The start offset in the destination
+     */
+    private static void copyChars(CharSequence text, int start, int end, char[] destination, int offset) {
+        if (text instanceof String) {
+            ((String) text).getChars(start, end, destination, offset);
+            return;
+        }
+        for (int i = start; i < end; i++)
+            destination[offset++] = text.charAt(i);
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Models.KIOutput;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The Compressed Output compresses the output while it's written (gzip or deflate), so a large output is never
+ * written to a file uncompressed then read again to be compressed. The characters are encoded using the provided charset
+ * (Default: the platform's charset) and every line is followed by the line separator (Default: the platform's line separator).
+ * <p>
+ * The output is compressed on the rendering thread, large outputs could be compressed on several threads
+ * by a ParallelGzipOutput instead
+ */
+public class CompressedOutput extends AbstractEncodingOutput {
+
+    static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    private final OutputStream outputStream;
+    private final Deflater deflater;
+    private final DeflaterOutputStream compressedStream;
+
+    /**
+     * A gzip stream compressing using the provided level
+     */
+    private static final class LevelGzipOutputStream extends GZIPOutputStream {
+
+        private LevelGzipOutputStream(OutputStream outputStream, int level) throws IOException {
+            super(outputStream, STREAM_BUFFER_SIZE);
+            def.setLevel(level);
+        }
+
+        private Deflater getDeflater() {
+            return def;
+        }
+    }
+
+    /**
+     * Construct a compressed output writing to a file, using the default compression level
+     *
+     * @param outputFile The file the compressed output is written to
+     * @param format     The compression format
+     * @throws IOException An exception is thrown if the file could not be created
+     */
+    public CompressedOutput(File outputFile, KICompressionFormat format) throws IOException {
+        this(new FileOutputStream(outputFile), format, Deflater.DEFAULT_COMPRESSION, Charset.defaultCharset());
+    }
+
+    /**
+     * Construct a compressed output writing to a stream, the stream is closed when the output ends
+     *
+     * @param outputStream The stream the compressed output is written to
+     * @param format       The compression format
+     * @param level        The compression level, from Deflater.BEST_SPEED to Deflater.BEST_COMPRESSION
+     *                     (or Deflater.DEFAULT_COMPRESSION)
+     * @param charset      The charset used to encode the output
+     * @throws IOException An exception is thrown if the gzip header could not be written
+     */
+    public CompressedOutput(OutputStream outputStream, KICompressionFormat format, int level, Charset charset) throws IOException {
+        super(charset, System.lineSeparator());
+        this.outputStream = outputStream;
+        if (format == KICompressionFormat.GZIP) {
+            LevelGzipOutputStream gzipStream = new LevelGzipOutputStream(outputStream, level);
+            this.deflater = gzipStream.getDeflater();
+            this.compressedStream = gzipStream;
+        } else {
+            this.deflater = new Deflater(level);
+            this.compressedStream = new DeflaterOutputStream(outputStream, deflater, STREAM_BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    super.close();
+                    def.end();
+                }
+            };
+        }
+    }
+
+    @Override
+    protected void consumeBytes(ByteBuffer bytes) {
+        try {
+            compressedStream.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+            bytes.position(bytes.limit());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Compress the remaining characters, write the format's trailer and close the stream
+     */
+    @Override
+    public void handleOutputEnd() {
+        try {
+            finishEncoding();
+        } finally {
+            try {
+                compressedStream.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Release the compressor and close the stream, without writing the format's trailer
+     */
+    @Override
+    public void abortOutput() {
+        deflater.end();
+        try {
+            outputStream.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
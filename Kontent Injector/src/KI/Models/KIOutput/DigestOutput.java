@@ -0,0 +1,136 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Models.KIOutput;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The Digest Output computes a digest (e.g. SHA-256) of the output while it's written, without keeping the output.
+ * By default the characters and lines are digested like the File Output writes them (platform's default charset
+ * and line separator), so the digest matches the digest of the same output written to a file
+ */
+public class DigestOutput extends AbstractEncodingOutput {
+
+    public static final String DEFAULT_ALGORITHM = "SHA-256";
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final MessageDigest messageDigest;
+    private byte[] digest;
+
+    /**
+     * Construct a digest output using SHA-256, the platform's default charset and line separator
+     */
+    public DigestOutput() {
+        this(createDefaultDigest(), Charset.defaultCharset(), System.lineSeparator());
+    }
+
+    /**
+     * Construct a digest output using the platform's line separator
+     *
+     * @param algorithm The digest algorithm's name
+     * @param charset   The charset used to encode the output
+     * @throws NoSuchAlgorithmException An exception is thrown if the algorithm is not available
+     */
+    public DigestOutput(String algorithm, Charset charset) throws NoSuchAlgorithmException {
+        this(algorithm, charset, System.lineSeparator());
+    }
+
+    /**
+     * Construct a digest output
+     *
+     * @param algorithm     The digest algorithm's name
+     * @param charset       The charset used to encode the output
+     * @param lineSeparator The separator digested after every line
+     * @throws NoSuchAlgorithmException An exception is thrown if the algorithm is not available
+     */
+    public DigestOutput(String algorithm, Charset charset, String lineSeparator) throws NoSuchAlgorithmException {
+        this(MessageDigest.getInstance(algorithm), charset, lineSeparator);
+    }
+
+    private DigestOutput(MessageDigest messageDigest, Charset charset, String lineSeparator) {
+        super(charset, lineSeparator);
+        this.messageDigest = messageDigest;
+    }
+
+    @Override
+    protected void consumeBytes(ByteBuffer bytes) {
+        messageDigest.update(bytes);
+    }
+
+    @Override
+    public void handleOutputEnd() {
+        finishEncoding();
+        digest = messageDigest.digest();
+    }
+
+    /**
+     * Get the output's digest, available once the output ended
+     *
+     * @return The digest's bytes
+     * @throws IllegalStateException An exception is thrown if the output didn't end yet
+     */
+    public byte[] getDigest() {
+        if (digest == null)
+            throw new IllegalStateException();
+        return digest.clone();
+    }
+
+    /**
+     * Get the output's digest as a lower case hexadecimal string, available once the output ended
+     *
+     * @return The digest's hexadecimal string
+     * @throws IllegalStateException An exception is thrown if the output didn't end yet
+     */
+    public String getHexDigest() {
+        return toHex(getDigest());
+    }
+
+    /**
+     * Convert bytes to a lower case hexadecimal string
+     *
+     * @param bytes The bytes
+     * @return The hexadecimal string
+     */
+    static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    static MessageDigest createDefaultDigest() {
+        try {
+            return MessageDigest.getInstance(DEFAULT_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -30,6 +30,7 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.CharBuffer;
 import java.text.MessageFormat;
 
 /**
@@ -38,11 +39,14 @@ import java.text.MessageFormat;
  * <p>
  * Created by khaled.hamdy on 3/9/17.
  */
-public class FileOutput implements IKIOutput {
+public class FileOutput implements IKIChunkOutput {
 
     public static final String CANNOT_CREATE_OUTPUT_FILE_ERROR_MESSAGE = "Cannot create output file \"{0}\"";
 
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
     private final PrintWriter fileWriter;
+    private final LineBreakTranslator lineBreakTranslator;
 
     /**
      * The File Output class allows the user to send a File for the KI
@@ -101,6 +105,9 @@ public class FileOutput implements IKIOutput {
             createNewOutputFile(outputFile);
         }
         fileWriter = new PrintWriter(new FileWriter(outputFile));
+        lineBreakTranslator = LineBreakTranslator.isTranslationNeeded(LINE_SEPARATOR)
+                ? new LineBreakTranslator(LINE_SEPARATOR, fileWriter::append)
+                : null;
     }
 
     /**
@@ -125,12 +132,43 @@ public class FileOutput implements IKIOutput {
 
     @Override
     public void writeLine(String outputLine) {
-        fileWriter.println(outputLine);
+        writeChunk(outputLine);
+        if (lineBreakTranslator != null)
+            lineBreakTranslator.writeLineSeparator();
+        else
+            fileWriter.write(LINE_SEPARATOR);
         fileWriter.flush();
     }
 
+    /**
+     * Write a chunk, the line feeds inside the chunk are written as the line separator used after the lines
+     */
+    @Override
+    public void writeChunk(char[] chunk, int offset, int length) {
+        if (lineBreakTranslator != null)
+            lineBreakTranslator.writeChunk(CharBuffer.wrap(chunk), offset, offset + length);
+        else
+            fileWriter.write(chunk, offset, length);
+    }
+
+    @Override
+    public void writeChunk(CharSequence chunk) {
+        if (lineBreakTranslator != null)
+            lineBreakTranslator.writeChunk(chunk, 0, chunk.length());
+        else
+            fileWriter.append(chunk);
+    }
+
     @Override
     public void handleOutputEnd() {
         fileWriter.close();
     }
+
+    /**
+     * Close the output file, the lines written before the failure are kept
+     */
+    @Override
+    public void abortOutput() {
+        fileWriter.close();
+    }
 }
@@ -0,0 +1,61 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Models.KIOutput;
+
+/**
+ * IKIChunkOutput is an IKIOutput that could be written to in chunks of characters instead of lines,
+ * it's used when a template is processed as a stream of characters so the output is never
+ * gathered into whole lines
+ */
+public interface IKIChunkOutput extends IKIOutput {
+    /**
+     * Write a chunk of characters after injection, line breaks are part of the chunk
+     *
+     * @param chunk  The buffer holding the characters
+     * @param offset The index of the first character to be written
+     * @param length The number of characters to be written
+     */
+    void writeChunk(char[] chunk, int offset, int length);
+
+    /**
+     * Write a string after injection, line breaks are part of the string
+     *
+     * @param chunk The string to be written
+     */
+    default void writeChunk(CharSequence chunk) {
+        String chunkString = chunk.toString();
+        writeChunk(chunkString.toCharArray(), 0, chunkString.length());
+    }
+
+    /**
+     * Get an output as an IKIChunkOutput, outputs that only accept lines are wrapped by a LineSplittingOutput
+     *
+     * @param outputMethod The output
+     * @return The output if it's an IKIChunkOutput, or a LineSplittingOutput writing to it
+     */
+    static IKIChunkOutput of(IKIOutput outputMethod) {
+        return outputMethod instanceof IKIChunkOutput ? (IKIChunkOutput) outputMethod : new LineSplittingOutput(outputMethod);
+    }
+}
@@ -43,4 +43,25 @@ public interface IKIOutput {
      * to close the stream in the handleOutputEnd method.
      */
     void handleOutputEnd();
+
+    /**
+     * The abortOutput method is ONLY called when an injection fails, instead of handleOutputEnd.
+     * If the writing method uses a stream or a thread, it should be released here without completing the output.
+     */
+    default void abortOutput() {
+    }
+
+    /**
+     * Abort an output after a failed injection, a failure while aborting is added as suppressed to the injection's failure
+     *
+     * @param outputMethod     The output to be aborted
+     * @param injectionFailure The failure of the injection
+     */
+    static void abort(IKIOutput outputMethod, Throwable injectionFailure) {
+        try {
+            outputMethod.abortOutput();
+        } catch (RuntimeException e) {
+            injectionFailure.addSuppressed(e);
+        }
+    }
 }
@@ -0,0 +1,144 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Models.KIOutput;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The hash manifest is a sidecar file holding the digest of every generated file, so a regenerated file
+ * could be compared with its previous content without reading it.
+ * Every line holds a SHA-256 digest and the file's path relative to the manifest's directory,
+ * in the format of "sha256sum" (e.g. "sha256sum -c" could verify the generated files).
+ * <p>
+ * The manifest could be shared by outputs writing in parallel, and it's only written when saved
+ */
+public class KIHashManifest {
+
+    private static final String DIGEST_SEPARATOR = "  ";
+
+    private final Path manifestPath;
+    private final Path baseDirectory;
+    private final Map<String, String> digests = new ConcurrentHashMap<>();
+
+    /**
+     * Construct a hash manifest, loading the manifest file if found
+     *
+     * @param manifestPath The manifest file's path
+     * @throws IOException An exception is thrown if the manifest file couldn't be read
+     */
+    public KIHashManifest(Path manifestPath) throws IOException {
+        this.manifestPath = manifestPath.toAbsolutePath().normalize();
+        this.baseDirectory = this.manifestPath.getParent();
+        if (Files.exists(this.manifestPath))
+            load();
+    }
+
+    /**
+     * Get the last recorded digest of a file
+     *
+     * @param filePath The file's path
+     * @return The file's lower case hexadecimal digest, or null if the file is not recorded
+     */
+    public String getDigest(Path filePath) {
+        return digests.get(getKey(filePath));
+    }
+
+    /**
+     * Record the digest of a file
+     *
+     * @param filePath  The file's path
+     * @param hexDigest The file's lower case hexadecimal digest
+     */
+    public void putDigest(Path filePath, String hexDigest) {
+        digests.put(getKey(filePath), hexDigest);
+    }
+
+    /**
+     * Get the number of recorded files
+     *
+     * @return The number of recorded files
+     */
+    public int size() {
+        return digests.size();
+    }
+
+    /**
+     * Write the manifest file, sorted by path. The manifest is replaced atomically,
+     * so an interrupted save keeps the previous manifest
+     *
+     * @throws IOException An exception is thrown if the manifest file couldn't be written
+     */
+    public void save() throws IOException {
+        Path temporaryPath = SkipUnchangedFileOutput.createTemporaryPath(manifestPath);
+        try (BufferedWriter writer = Files.newBufferedWriter(temporaryPath, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, String> digestEntry : new TreeMap<>(digests).entrySet()) {
+                writer.write(digestEntry.getValue());
+                writer.write(DIGEST_SEPARATOR);
+                writer.write(digestEntry.getKey());
+                writer.write('\n');
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temporaryPath);
+            throw e;
+        }
+        SkipUnchangedFileOutput.replaceFile(temporaryPath, manifestPath);
+    }
+
+    /**
+     * Read the digests of the manifest file
+     *
+     * @throws IOException An exception is thrown if the manifest file couldn't be read
+     */
+    private void load() throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(manifestPath, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separatorIndex = line.indexOf(DIGEST_SEPARATOR);
+                if (separatorIndex > 0)
+                    digests.put(line.substring(separatorIndex + DIGEST_SEPARATOR.length()), line.substring(0, separatorIndex));
+            }
+        }
+    }
+
+    /**
+     * Get the key of a file, its path relative to the manifest's directory using forward slashes
+     *
+     * @param filePath The file's path
+     * @return The file's key
+     */
+    private String getKey(Path filePath) {
+        Path absolutePath = filePath.toAbsolutePath().normalize();
+        Path keyPath = absolutePath.startsWith(baseDirectory) ? baseDirectory.relativize(absolutePath) : absolutePath;
+        return keyPath.toString().replace('\\', '/');
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Models.KIOutput;
+
+/**
+ * The line break translator writes the line feeds found in the chunks of an output as the output's line separator,
+ * so the lines written by the injectors and the line breaks inside the chunks use the same separator.
+ * A line feed preceded by a carriage return is already part of a separator and is written as is
+ */
+final class LineBreakTranslator {
+
+    /**
+     * Writes a run of characters to the translated output
+     */
+    interface IRunWriter {
+        /**
+         * Write a run of characters
+         *
+         * @param run   The characters holding the run
+         * @param start The index of the first character of the run
+         * @param end   The index after the last character of the run
+         */
+        void writeRun(CharSequence run, int start, int end);
+    }
+
+    private final String lineSeparator;
+    private final IRunWriter runWriter;
+    private char lastWrittenChar;
+
+    /**
+     * Construct a line break translator
+     *
+     * @param lineSeparator The separator written instead of every line feed
+     * @param runWriter     The writer of the translated characters
+     */
+    LineBreakTranslator(String lineSeparator, IRunWriter runWriter) {
+        this.lineSeparator = lineSeparator;
+        this.runWriter = runWriter;
+    }
+
+    /**
+     * Check if the line feeds need to be translated, the chunks could be written as is otherwise
+     *
+     * @param lineSeparator The line separator of the output
+     * @return true if the line separator is not a line feed
+     */
+    static boolean isTranslationNeeded(String lineSeparator) {
+        return !"\n".equals(lineSeparator);
+    }
+
+    /**
+     * Write a chunk with its line feeds replaced by the line separator
+     *
+     * @param chunk The chunk to be written
+     * @param start The index of the first character to be written
+     * @param end   The index after the last character to be written
+     */
+    void writeChunk(CharSequence chunk, int start, int end) {
+        int runStart = start;
+        for (int i = start; i < end; i++) {
+            char character = chunk.charAt(i);
+            if (character == '\n' && lastWrittenChar != '\r') {
+                if (runStart < i)
+                    runWriter.writeRun(chunk, runStart, i);
+                runWriter.writeRun(lineSeparator, 0, lineSeparator.length());
+                runStart = i + 1;
+            }
+            lastWrittenChar = character;
+        }
+        if (runStart < end)
+            runWriter.writeRun(chunk, runStart, end);
+    }
+
+    /**
+     * Write the line separator after a line
+     */
+    void writeLineSeparator() {
+        runWriter.writeRun(lineSeparator, 0, lineSeparator.length());
+        if (!lineSeparator.isEmpty())
+            lastWrittenChar = lineSeparator.charAt(lineSeparator.length() - 1);
+    }
+}
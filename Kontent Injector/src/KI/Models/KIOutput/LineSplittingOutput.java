@@ -0,0 +1,108 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Models.KIOutput;
+
+/**
+ * The Line Splitting Output allows an IKIOutput that only accepts lines to be used when a template
+ * is processed as a stream of characters, the written chunks are gathered and split into lines,
+ * so the memory used is bounded by the longest line of the output
+ */
+public class LineSplittingOutput implements IKIChunkOutput {
+
+    private final IKIOutput outputMethod;
+    private final StringBuilder currentLine = new StringBuilder();
+
+    /**
+     * Construct a line splitting output
+     *
+     * @param outputMethod The output to write the split lines to
+     */
+    public LineSplittingOutput(IKIOutput outputMethod) {
+        this.outputMethod = outputMethod;
+    }
+
+    @Override
+    public void writeChunk(char[] chunk, int offset, int length) {
+        int lineStart = offset;
+        int chunkEnd = offset + length;
+
+        for (int i = offset; i < chunkEnd; i++) {
+            if (chunk[i] != '\n')
+                continue;
+            currentLine.append(chunk, lineStart, i - lineStart);
+            writeCurrentLine();
+            lineStart = i + 1;
+        }
+        currentLine.append(chunk, lineStart, chunkEnd - lineStart);
+    }
+
+    @Override
+    public void writeChunk(CharSequence chunk) {
+        int lineStart = 0;
+
+        for (int i = 0; i < chunk.length(); i++) {
+            if (chunk.charAt(i) != '\n')
+                continue;
+            currentLine.append(chunk, lineStart, i);
+            writeCurrentLine();
+            lineStart = i + 1;
+        }
+        currentLine.append(chunk, lineStart, chunk.length());
+    }
+
+    @Override
+    public void writeLine(String outputLine) {
+        if (currentLine.length() == 0) {
+            outputMethod.writeLine(outputLine);
+            return;
+        }
+        currentLine.append(outputLine);
+        writeCurrentLine();
+    }
+
+    @Override
+    public void handleOutputEnd() {
+        if (currentLine.length() > 0)
+            writeCurrentLine();
+        outputMethod.handleOutputEnd();
+    }
+
+    @Override
+    public void abortOutput() {
+        currentLine.setLength(0);
+        outputMethod.abortOutput();
+    }
+
+    /**
+     * Write the gathered line to the wrapped output, stripping a trailing carriage return
+     */
+    private void writeCurrentLine() {
+        int lineLength = currentLine.length();
+        if (lineLength > 0 && currentLine.charAt(lineLength - 1) == '\r')
+            lineLength--;
+        outputMethod.writeLine(currentLine.substring(0, lineLength));
+        currentLine.setLength(0);
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Models.KIOutput;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * The Parallel Gzip Output compresses large outputs on several threads while they're written. The encoded output is split
+ * into blocks that are compressed independently on an executor, each block becoming a gzip member, and the members
+ * are written in order. A gzip stream of several members is standard (RFC 1952) and is read by gzip and GZIPInputStream
+ * as a single output.
+ * <p>
+ * The number of blocks being compressed is bounded, so a render faster than the compression waits for the oldest block
+ * instead of buffering the whole output. The characters are encoded using the provided charset (Default: the platform's charset)
+ * and every line is followed by the line separator (Default: the platform's line separator)
+ */
+public class ParallelGzipOutput extends AbstractEncodingOutput {
+
+    public static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int GZIP_UNKNOWN_OS = 0xff;
+    private static final int GZIP_TRAILER_SIZE = 8;
+
+    private final OutputStream outputStream;
+    private final OutputStream bufferedStream;
+    private final ExecutorService executor;
+    private final int level;
+    private final int blockSize;
+    private final int maxPendingBlocks;
+    private final Deque<Future<byte[]>> pendingBlocks = new ArrayDeque<>();
+    private byte[] block;
+    private int blockLength = 0;
+    private boolean hasWrittenBlock = false;
+
+    /**
+     * Construct a parallel gzip output writing to a file, using the default compression level and block size
+     *
+     * @param outputFile The file the compressed output is written to
+     * @param executor   The executor the blocks are compressed on
+     * @throws IOException An exception is thrown if the file could not be created
+     */
+    public ParallelGzipOutput(File outputFile, ExecutorService executor) throws IOException {
+        this(new FileOutputStream(outputFile), executor, Deflater.DEFAULT_COMPRESSION, DEFAULT_BLOCK_SIZE, Charset.defaultCharset());
+    }
+
+    /**
+     * Construct a parallel gzip output writing to a stream, the stream is closed when the output ends
+     *
+     * @param outputStream The stream the compressed output is written to
+     * @param executor     The executor the blocks are compressed on
+     * @param level        The compression level, from Deflater.BEST_SPEED to Deflater.BEST_COMPRESSION
+     *                     (or Deflater.DEFAULT_COMPRESSION)
+     * @param blockSize    The number of bytes compressed into every member, smaller blocks compress slightly worse
+     * @param charset      The charset used to encode the output
+     */
+    public ParallelGzipOutput(OutputStream outputStream, ExecutorService executor, int level, int blockSize, Charset charset) {
+        super(charset, System.lineSeparator());
+        this.outputStream = outputStream;
+        this.bufferedStream = new BufferedOutputStream(outputStream, CompressedOutput.STREAM_BUFFER_SIZE);
+        this.executor = executor;
+        this.level = level;
+        this.blockSize = blockSize;
+        this.maxPendingBlocks = Runtime.getRuntime().availableProcessors() * 2;
+        this.block = new byte[blockSize];
+    }
+
+    @Override
+    protected void consumeBytes(ByteBuffer bytes) {
+        while (bytes.hasRemaining()) {
+            int length = Math.min(bytes.remaining(), blockSize - blockLength);
+            bytes.get(block, blockLength, length);
+            blockLength += length;
+            if (blockLength == blockSize)
+                submitBlock();
+        }
+    }
+
+    /**
+     * Compress the last block, wait for all the blocks to be written and close the stream.
+     * An empty output is written as a single empty member
+     */
+    @Override
+    public void handleOutputEnd() {
+        try {
+            finishEncoding();
+            if (blockLength > 0 || !hasWrittenBlock)
+                submitBlock();
+            while (!pendingBlocks.isEmpty())
+                writeMember(pendingBlocks.poll());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            cancelPendingBlocks();
+            closeStream(bufferedStream);
+        }
+    }
+
+    /**
+     * Cancel the blocks being compressed and close the stream, without writing the members that weren't written yet
+     */
+    @Override
+    public void abortOutput() {
+        try {
+            cancelPendingBlocks();
+        } finally {
+            closeStream(outputStream);
+        }
+    }
+
+    private void cancelPendingBlocks() {
+        Future<byte[]> pendingBlock;
+        while ((pendingBlock = pendingBlocks.poll()) != null)
+            pendingBlock.cancel(true);
+    }
+
+    private static void closeStream(OutputStream stream) {
+        try {
+            stream.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Submit the current block to be compressed, then write the compressed members while there are too many
+     * blocks being compressed
+     */
+    private void submitBlock() {
+        byte[] submittedBlock = block;
+        int submittedLength = blockLength;
+        pendingBlocks.add(executor.submit(() -> compressMember(submittedBlock, submittedLength, level)));
+        hasWrittenBlock = true;
+        block = new byte[blockSize];
+        blockLength = 0;
+
+        try {
+            while (pendingBlocks.size() > maxPendingBlocks)
+                writeMember(pendingBlocks.poll());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Wait for a block to be compressed and write its member
+     *
+     * @param pendingBlock The block's compression
+     * @throws IOException An exception is thrown if the member could not be written
+     */
+    private void writeMember(Future<byte[]> pendingBlock) throws IOException {
+        try {
+            bufferedStream.write(pendingBlock.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Compress a block into a complete gzip member: the header, the deflated bytes, the CRC-32 and the size
+     *
+     * @param data   The block's bytes
+     * @param length The number of bytes of the block
+     * @param level  The compression level
+     * @return The gzip member
+     */
+    static byte[] compressMember(byte[] data, int length, int level) {
+        ByteArrayOutputStream member = new ByteArrayOutputStream(length / 2 + 64);
+        member.write(GZIP_MAGIC & 0xff);
+        member.write(GZIP_MAGIC >> 8);
+        member.write(Deflater.DEFLATED);
+        for (int i = 0; i < 6; i++)
+            member.write(0);
+        member.write(GZIP_UNKNOWN_OS);
+
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(data, 0, length);
+            deflater.finish();
+            byte[] buffer = new byte[Math.max(length / 2, 512)];
+            while (!deflater.finished()) {
+                int compressedLength = deflater.deflate(buffer);
+                member.write(buffer, 0, compressedLength);
+            }
+        } finally {
+            deflater.end();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+        byte[] trailer = new byte[GZIP_TRAILER_SIZE];
+        writeIntLE(trailer, 0, (int) crc.getValue());
+        writeIntLE(trailer, 4, length);
+        member.write(trailer, 0, trailer.length);
+        return member.toByteArray();
+    }
+
+    private static void writeIntLE(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) value;
+        buffer[offset + 1] = (byte) (value >> 8);
+        buffer[offset + 2] = (byte) (value >> 16);
+        buffer[offset + 3] = (byte) (value >> 24);
+    }
+}
@@ -0,0 +1,367 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Models.KIOutput;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The Skip Unchanged File Output writes the output to a file only if the output differs from the file's content,
+ * so regenerating a file with the same content doesn't modify it (and its modification time).
+ * <p>
+ * The output is compared with the existing file while it's written, and nothing is written until the first difference.
+ * Then the output is written to a temporary file next to the output file, which replaces the output file atomically
+ * once the output ends. If a hash manifest is provided, the output's digest is compared with the file's recorded digest
+ * instead of reading the file, and the output is kept in memory until it ends. An output larger than DEFAULT_MEMORY_THRESHOLD
+ * bytes is compared with the existing file from then on, so large unchanged files are not written either.
+ * <p>
+ * If the output is aborted, the temporary file is deleted and the output file is kept unchanged.
+ * <p>
+ * The characters and lines are written like the File Output (platform's default charset and line separator),
+ * so switching from a File Output keeps the existing files unchanged
+ */
+public class SkipUnchangedFileOutput extends AbstractEncodingOutput {
+
+    public static final int DEFAULT_MEMORY_THRESHOLD = 64 * 1024;
+
+    private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+
+    private final Path outputPath;
+    private final KIHashManifest hashManifest;
+    private final MessageDigest messageDigest;
+    private InputStream existingFileInput;
+    private byte[] compareBuffer = new byte[0];
+    private long matchedBytesCount = 0;
+    private ByteArrayOutputStream pendingBytes;
+    private Path temporaryPath;
+    private OutputStream temporaryOutput;
+    private boolean isFileReplaced = false;
+
+    /**
+     * Construct a skip unchanged file output, comparing the output with the existing file
+     *
+     * @param filePath Output file path
+     * @throws IOException An IOException is thrown if the existing file couldn't be opened
+     */
+    public SkipUnchangedFileOutput(String filePath) throws IOException {
+        this(new File(filePath));
+    }
+
+    /**
+     * Construct a skip unchanged file output, comparing the output with the existing file
+     *
+     * @param outputFile Output file
+     * @throws IOException An IOException is thrown if the existing file couldn't be opened
+     */
+    public SkipUnchangedFileOutput(File outputFile) throws IOException {
+        this(outputFile, null);
+    }
+
+    /**
+     * Construct a skip unchanged file output
+     *
+     * @param outputFile   Output file
+     * @param hashManifest The hash manifest holding the file's previous digest, the existing file is compared if null
+     * @throws IOException An IOException is thrown if the existing file couldn't be opened
+     */
+    public SkipUnchangedFileOutput(File outputFile, KIHashManifest hashManifest) throws IOException {
+        this(outputFile, hashManifest, Charset.defaultCharset());
+    }
+
+    /**
+     * Construct a skip unchanged file output
+     *
+     * @param outputFile   Output file
+     * @param hashManifest The hash manifest holding the file's previous digest, the existing file is compared if null
+     * @param charset      The charset used to encode the output
+     * @throws IOException An IOException is thrown if the existing file couldn't be opened
+     */
+    public SkipUnchangedFileOutput(File outputFile, KIHashManifest hashManifest, Charset charset) throws IOException {
+        super(charset, System.lineSeparator());
+        this.outputPath = outputFile.toPath().toAbsolutePath();
+        this.hashManifest = hashManifest;
+        if (hashManifest != null) {
+            messageDigest = DigestOutput.createDefaultDigest();
+            pendingBytes = new ByteArrayOutputStream();
+        } else {
+            messageDigest = null;
+            if (Files.isRegularFile(outputPath))
+                existingFileInput = Files.newInputStream(outputPath);
+        }
+    }
+
+    /**
+     * Check whether the output file was replaced (or created), available once the output ended
+     *
+     * @return True if the output differs from the file's previous content, false if the file was kept unchanged
+     */
+    public boolean isFileReplaced() {
+        return isFileReplaced;
+    }
+
+    @Override
+    protected void consumeBytes(ByteBuffer bytes) {
+        try {
+            if (hashManifest != null)
+                bufferBytes(bytes);
+            else
+                compareBytes(bytes);
+        } catch (IOException e) {
+            discard();
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void handleOutputEnd() {
+        finishEncoding();
+        try {
+            String hexDigest = null;
+            if (hashManifest != null) {
+                hexDigest = DigestOutput.toHex(messageDigest.digest());
+                if (hexDigest.equals(hashManifest.getDigest(outputPath)) && Files.isRegularFile(outputPath)) {
+                    discard();
+                    return;
+                }
+                if (pendingBytes != null)
+                    spillPendingBytes();
+            }
+            if (temporaryOutput == null && (existingFileInput == null || existingFileInput.read() != -1))
+                divergeFromExistingFile();
+            closeExistingFile();
+            if (temporaryOutput != null)
+                replaceOutputFile();
+            if (hashManifest != null)
+                hashManifest.putDigest(outputPath, hexDigest);
+        } catch (IOException e) {
+            discard();
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Discard the output keeping the output file unchanged
+     */
+    @Override
+    public void abortOutput() {
+        discard();
+    }
+
+    /**
+     * Discard the output keeping the output file unchanged, used if the output couldn't be completed
+     */
+    public void discard() {
+        try {
+            closeExistingFile();
+            if (temporaryOutput != null)
+                temporaryOutput.close();
+            if (temporaryPath != null)
+                Files.deleteIfExists(temporaryPath);
+        } catch (IOException ignored) {
+            // The temporary file is left behind, the output file is unchanged
+        } finally {
+            temporaryOutput = null;
+            temporaryPath = null;
+            pendingBytes = null;
+        }
+    }
+
+    /**
+     * Compare the bytes with the existing file's next bytes, and write them to the temporary file once they differ
+     *
+     * @param bytes The encoded bytes
+     * @throws IOException An exception is thrown if the existing file couldn't be read or the temporary file couldn't be written
+     */
+    private void compareBytes(ByteBuffer bytes) throws IOException {
+        int bytesCount = bytes.remaining();
+        if (temporaryOutput == null && existingFileInput != null && matchExistingFile(bytes.array(), bytes.arrayOffset() + bytes.position(), bytesCount)) {
+            matchedBytesCount += bytesCount;
+            bytes.position(bytes.limit());
+            return;
+        }
+        if (temporaryOutput == null)
+            divergeFromExistingFile();
+        temporaryOutput.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytesCount);
+        bytes.position(bytes.limit());
+    }
+
+    /**
+     * Add the bytes to the digest and keep them in memory until the memory threshold,
+     * then compare them with the existing file like the output without a hash manifest
+     *
+     * @param bytes The encoded bytes
+     * @throws IOException An exception is thrown if the existing file couldn't be read or the temporary file couldn't be written
+     */
+    private void bufferBytes(ByteBuffer bytes) throws IOException {
+        messageDigest.update(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+        if (pendingBytes == null) {
+            compareBytes(bytes);
+            return;
+        }
+        pendingBytes.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+        bytes.position(bytes.limit());
+        if (pendingBytes.size() > DEFAULT_MEMORY_THRESHOLD)
+            comparePendingBytes();
+    }
+
+    /**
+     * Compare the bytes kept in memory with the existing file, the next bytes are compared as they're written
+     *
+     * @throws IOException An exception is thrown if the existing file couldn't be read or the temporary file couldn't be written
+     */
+    private void comparePendingBytes() throws IOException {
+        if (Files.isRegularFile(outputPath))
+            existingFileInput = Files.newInputStream(outputPath);
+        ByteBuffer bytes = ByteBuffer.wrap(pendingBytes.toByteArray());
+        pendingBytes = null;
+        compareBytes(bytes);
+    }
+
+    /**
+     * Read the existing file's next bytes and compare them with the output's bytes
+     *
+     * @param bytes  The output's bytes
+     * @param offset The offset of the compared bytes
+     * @param length The number of compared bytes
+     * @return True if the existing file's next bytes are the same
+     * @throws IOException An exception is thrown if the existing file couldn't be read
+     */
+    private boolean matchExistingFile(byte[] bytes, int offset, int length) throws IOException {
+        if (compareBuffer.length < length)
+            compareBuffer = new byte[length];
+        int readBytesCount = 0;
+        while (readBytesCount < length) {
+            int count = existingFileInput.read(compareBuffer, readBytesCount, length - readBytesCount);
+            if (count < 0)
+                return false;
+            readBytesCount += count;
+        }
+        for (int i = 0; i < length; i++) {
+            if (compareBuffer[i] != bytes[offset + i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Start writing the temporary file, copying the existing file's bytes that matched the output
+     *
+     * @throws IOException An exception is thrown if the temporary file couldn't be created
+     */
+    private void divergeFromExistingFile() throws IOException {
+        closeExistingFile();
+        openTemporaryFile();
+        if (matchedBytesCount == 0)
+            return;
+        try (InputStream existingFilePrefix = Files.newInputStream(outputPath)) {
+            byte[] copyBuffer = new byte[(int) Math.min(matchedBytesCount, DEFAULT_MEMORY_THRESHOLD)];
+            long remainingBytesCount = matchedBytesCount;
+            while (remainingBytesCount > 0) {
+                int count = existingFilePrefix.read(copyBuffer, 0, (int) Math.min(copyBuffer.length, remainingBytesCount));
+                if (count < 0)
+                    throw new IOException(outputPath + " was modified while being compared");
+                temporaryOutput.write(copyBuffer, 0, count);
+                remainingBytesCount -= count;
+            }
+        }
+    }
+
+    /**
+     * Write the bytes kept in memory to the temporary file
+     *
+     * @throws IOException An exception is thrown if the temporary file couldn't be created
+     */
+    private void spillPendingBytes() throws IOException {
+        openTemporaryFile();
+        pendingBytes.writeTo(temporaryOutput);
+        pendingBytes = null;
+    }
+
+    private void openTemporaryFile() throws IOException {
+        Path parentDirectory = outputPath.getParent();
+        if (parentDirectory != null)
+            Files.createDirectories(parentDirectory);
+        temporaryPath = createTemporaryPath(outputPath);
+        temporaryOutput = Files.newOutputStream(temporaryPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    private void closeExistingFile() throws IOException {
+        if (existingFileInput != null) {
+            existingFileInput.close();
+            existingFileInput = null;
+        }
+    }
+
+    /**
+     * Close the temporary file and move it over the output file
+     *
+     * @throws IOException An exception is thrown if the temporary file couldn't be moved
+     */
+    private void replaceOutputFile() throws IOException {
+        temporaryOutput.close();
+        temporaryOutput = null;
+        replaceFile(temporaryPath, outputPath);
+        temporaryPath = null;
+        isFileReplaced = true;
+    }
+
+    /**
+     * Create the path of a temporary file next to a file, so it could be moved over the file atomically
+     *
+     * @param filePath The file's path
+     * @return The temporary file's path, the file is not created
+     */
+    static Path createTemporaryPath(Path filePath) {
+        return filePath.resolveSibling("." + filePath.getFileName() + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + TEMPORARY_FILE_SUFFIX);
+    }
+
+    /**
+     * Move a file over another file, atomically if the file system supports it
+     *
+     * @param sourcePath The moved file's path
+     * @param targetPath The replaced file's path
+     * @throws IOException An exception is thrown if the file couldn't be moved
+     */
+    static void replaceFile(Path sourcePath, Path targetPath) throws IOException {
+        try {
+            Files.move(sourcePath, targetPath, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(sourcePath, targetPath, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Models.KIOutput;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * The Stream Output writes the output to a byte stream (e.g. a socket or an HTTP response), encoding the characters
+ * using the provided charset while they're written. The stream is closed when the output ends, or when it's aborted
+ * in which case the bytes that are still buffered are dropped
+ */
+public class StreamOutput extends AbstractEncodingOutput {
+
+    private final OutputStream outputStream;
+    private final OutputStream bufferedStream;
+
+    /**
+     * Construct a stream output
+     *
+     * @param outputStream  The stream the output is written to
+     * @param charset       The charset used to encode the output
+     * @param lineSeparator The separator written after every line
+     */
+    public StreamOutput(OutputStream outputStream, Charset charset, String lineSeparator) {
+        super(charset, lineSeparator);
+        this.outputStream = outputStream;
+        this.bufferedStream = new BufferedOutputStream(outputStream, CompressedOutput.STREAM_BUFFER_SIZE);
+    }
+
+    @Override
+    protected void consumeBytes(ByteBuffer bytes) {
+        try {
+            bufferedStream.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+            bytes.position(bytes.limit());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Write the remaining characters and close the stream
+     */
+    @Override
+    public void handleOutputEnd() {
+        try {
+            finishEncoding();
+        } finally {
+            closeStream(bufferedStream);
+        }
+    }
+
+    /**
+     * Close the stream without writing the buffered bytes
+     */
+    @Override
+    public void abortOutput() {
+        closeStream(outputStream);
+    }
+
+    private static void closeStream(OutputStream stream) {
+        try {
+            stream.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -29,7 +29,7 @@ package KI.Models.KIOutput;
  * object to be used by the KI to write the output to after processing
  * Created by khaled.hamdy on 3/9/17.
  */
-public class StringBuilderOutput implements IKIOutput {
+public class StringBuilderOutput implements IKIChunkOutput {
 
     private final StringBuilder outputStringBuilder;
 
@@ -48,6 +48,16 @@ public class StringBuilderOutput implements IKIOutput {
         outputStringBuilder.append(outputLine + "\n");
     }
 
+    @Override
+    public void writeChunk(char[] chunk, int offset, int length) {
+        outputStringBuilder.append(chunk, offset, length);
+    }
+
+    @Override
+    public void writeChunk(CharSequence chunk) {
+        outputStringBuilder.append(chunk);
+    }
+
     @Override
     public void handleOutputEnd() {
     }
@@ -0,0 +1,96 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Models.KIOutput;
+
+/**
+ * The Tee Output forwards everything written to it to several outputs, so a template is rendered once
+ * no matter how many outputs it's written to. Outputs that only accept lines receive whole lines
+ */
+public class TeeOutput implements IKIChunkOutput {
+
+    private final IKIChunkOutput[] outputMethods;
+
+    /**
+     * Construct a tee output
+     *
+     * @param outputMethods The outputs to forward the output to, in the order they're written to
+     */
+    public TeeOutput(IKIOutput... outputMethods) {
+        this.outputMethods = new IKIChunkOutput[outputMethods.length];
+        for (int i = 0; i < outputMethods.length; i++)
+            this.outputMethods[i] = IKIChunkOutput.of(outputMethods[i]);
+    }
+
+    @Override
+    public void writeLine(String outputLine) {
+        for (IKIChunkOutput outputMethod : outputMethods)
+            outputMethod.writeLine(outputLine);
+    }
+
+    @Override
+    public void writeChunk(char[] chunk, int offset, int length) {
+        for (IKIChunkOutput outputMethod : outputMethods)
+            outputMethod.writeChunk(chunk, offset, length);
+    }
+
+    @Override
+    public void writeChunk(CharSequence chunk) {
+        for (IKIChunkOutput outputMethod : outputMethods)
+            outputMethod.writeChunk(chunk);
+    }
+
+    @Override
+    public void handleOutputEnd() {
+        RuntimeException failure = null;
+        for (IKIChunkOutput outputMethod : outputMethods) {
+            try {
+                outputMethod.handleOutputEnd();
+            } catch (RuntimeException e) {
+                if (failure == null)
+                    failure = e;
+            }
+        }
+        if (failure != null)
+            throw failure;
+    }
+
+    /**
+     * Abort all the outputs, even if aborting one of them fails
+     */
+    @Override
+    public void abortOutput() {
+        RuntimeException failure = null;
+        for (IKIChunkOutput outputMethod : outputMethods) {
+            try {
+                outputMethod.abortOutput();
+            } catch (RuntimeException e) {
+                if (failure == null)
+                    failure = e;
+            }
+        }
+        if (failure != null)
+            throw failure;
+    }
+}
@@ -25,14 +25,20 @@
 package KI.Models;
 
 import KI.Core.InputValidator;
+import KI.Core.Template.IKITemplateLoader;
+import KI.Core.Template.KIPartialsCache;
 import KI.Exceptions.InvalidInputException;
 import KI.Exceptions.InvalidityType;
+import KI.Models.KIFormat.IKIValueFormatter;
+import KI.Models.KIFormat.KIEscapeMode;
+import KI.Models.KIFormat.KIFormatterRegistry;
 
 import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * KI Configuration model is the model that holds the data needed to parse a template
@@ -49,14 +55,29 @@ import java.util.Set;
  * Injection Token: $%$
  * Loop Start Word: LOOP
  * Loop End Word: ENDLOOP
+ * Include Word: INCLUDE
+ * Loop Memory Budget: 4M characters
+ * Parallel Loops: disabled
+ * <p>
+ * Injected values are written using the formatters of the configuration's formatter registry
+ * (or their toString if they don't have one)
+ * <p>
+ * Compiled templates could include partials (e.g. $%$INCLUDE:header.kit$%$) provided by the configuration's template loader
  * <p>
  * Created by Khaled.Hamdy on 2/14/17.
  */
 public class KITemplateConfiguration {
+    public static final int DEFAULT_LOOP_MEMORY_BUDGET = 4 * 1024 * 1024;
+
     private final Map<Class<?>, KIClassConfiguration> classesConfigurations = new HashMap<>();
     private String injectionToken = "$%$";
     private String loopStartWord = "LOOP";
     private String loopEndWord = "ENDLOOP";
+    private String includeWord = "INCLUDE";
+    private int loopMemoryBudget = DEFAULT_LOOP_MEMORY_BUDGET;
+    private volatile ForkJoinPool loopPool;
+    private final KIFormatterRegistry formatterRegistry = new KIFormatterRegistry();
+    private volatile KIPartialsCache partialsCache;
 
     /**
      * Gets the injection token used in a template
@@ -142,6 +163,178 @@ public class KITemplateConfiguration {
         return injectionToken + getLoopEndWord() + injectionToken;
     }
 
+    /**
+     * Get the include word used in a template to include a partial
+     *
+     * @return A string holding the include word (Default: INCLUDE)
+     */
+    public String getIncludeWord() {
+        return includeWord;
+    }
+
+    /**
+     * Set the include word to be used in a template
+     *
+     * @param includeWord The string to be used as an include word
+     * @throws InvalidInputException An Invalid input exception is thrown if the string is conflicting with
+     *                               other injection keywords
+     */
+    public void setIncludeWord(String includeWord) throws InvalidInputException {
+        InputValidator.validate(includeWord);
+        if (includeWord.equals(loopStartWord) || includeWord.equals(loopEndWord) || includeWord.equals(injectionToken))
+            throw new InvalidInputException(InvalidityType.DUPLICATE_INJECTION_KEYWORD);
+        this.includeWord = includeWord;
+    }
+
+    /**
+     * Get the start of an include directive, the include word preceded by the injection token and followed by a colon.
+     * The directive ends with the partial's name and the injection token
+     *
+     * @return The include directive's prefix
+     */
+    public String getIncludePrefix() {
+        return injectionToken + getIncludeWord() + ":";
+    }
+
+    /**
+     * Set the loader providing the partials included by templates. The partials are parsed once and cached
+     * until another loader is set
+     *
+     * @param templateLoader The template loader, or null to disable includes
+     */
+    public void setTemplateLoader(IKITemplateLoader templateLoader) {
+        this.partialsCache = templateLoader == null ? null : new KIPartialsCache(templateLoader);
+    }
+
+    /**
+     * Get the cache holding the parsed partials
+     *
+     * @return The partials cache, or null if no template loader is set
+     */
+    public KIPartialsCache getPartialsCache() {
+        return partialsCache;
+    }
+
+    /**
+     * Gets the number of characters a loop could keep in memory, while buffering the loop's block or its expansion.
+     * Larger loop blocks are spilled to a temporary file, and larger expansions are written to the output while expanding
+     *
+     * @return The loop memory budget in characters (Default: DEFAULT_LOOP_MEMORY_BUDGET)
+     */
+    public int getLoopMemoryBudget() {
+        return loopMemoryBudget;
+    }
+
+    /**
+     * Sets the number of characters a loop could keep in memory
+     *
+     * @param loopMemoryBudget The loop memory budget in characters
+     * @throws InvalidInputException An exception is thrown if the budget is not a positive number
+     */
+    public void setLoopMemoryBudget(int loopMemoryBudget) throws InvalidInputException {
+        if (loopMemoryBudget <= 0)
+            throw new InvalidInputException(InvalidityType.NON_POSITIVE_MEMORY_BUDGET);
+        this.loopMemoryBudget = loopMemoryBudget;
+    }
+
+    /**
+     * Gets the pool loops are expanded on in parallel
+     *
+     * @return The loop pool, or null if loops are expanded on the rendering thread (Default: null)
+     */
+    public ForkJoinPool getLoopPool() {
+        return loopPool;
+    }
+
+    /**
+     * Sets the pool loops are expanded on in parallel. A loop is split into chunks of iterations rendered on the pool
+     * once its measured cost makes it worth it, so small loops are still expanded on the rendering thread.
+     * The injected sequences and formatters of parallel loops should be safe to read from several threads.
+     * Compiled templates use the pool set when they're compiled
+     *
+     * @param loopPool The loop pool (e.g. ForkJoinPool.commonPool()), or null to disable parallel loops
+     */
+    public void setLoopPool(ForkJoinPool loopPool) {
+        this.loopPool = loopPool;
+    }
+
+    /**
+     * Add a formatter used to write the injected values of a type (and its subtypes)
+     *
+     * @param valueType The type of the formatted values
+     * @param formatter The formatter, that should be thread-safe
+     * @param <T>       The type of the formatted values
+     * @throws InvalidInputException An invalid input exception is thrown if any of the input parameters is null
+     */
+    public <T> void addFormatter(Class<T> valueType, IKIValueFormatter<? super T> formatter) throws InvalidInputException {
+        InputValidator.validate(valueType);
+        InputValidator.validate(formatter);
+        formatterRegistry.addFormatter(valueType, formatter);
+    }
+
+    /**
+     * Add a formatter used to write the injected values of a reference (e.g. $%$Invoice.getTotal$%$),
+     * taking precedence over the value type's formatter. Compiled templates resolve the references' formatters
+     * when they're compiled
+     *
+     * @param classAlias  The class alias (or name) used in templates
+     * @param methodAlias The method alias (or name) used in templates
+     * @param formatter   The formatter, that should be thread-safe
+     * @throws InvalidInputException An invalid input exception is thrown if any of the input parameters is null or empty
+     */
+    public void addFormatter(String classAlias, String methodAlias, IKIValueFormatter<?> formatter) throws InvalidInputException {
+        InputValidator.validate(classAlias);
+        InputValidator.validate(methodAlias);
+        InputValidator.validate(formatter);
+        formatterRegistry.addFormatter(classAlias, methodAlias, formatter);
+    }
+
+    /**
+     * Set the escape mode of the injected values (e.g. HTML for HTML templates). Literal template text is never escaped,
+     * and numbers without a formatter are written as is
+     *
+     * @param escapeMode The escape mode (Default: NONE)
+     * @throws InvalidInputException An invalid input exception is thrown if the escape mode is null
+     */
+    public void setEscapeMode(KIEscapeMode escapeMode) throws InvalidInputException {
+        InputValidator.validate(escapeMode);
+        formatterRegistry.setEscapeMode(escapeMode);
+    }
+
+    /**
+     * Get the escape mode of the injected values
+     *
+     * @return The escape mode
+     */
+    public KIEscapeMode getEscapeMode() {
+        return formatterRegistry.getEscapeMode();
+    }
+
+    /**
+     * Set the escape mode of the injected values of a reference, taking precedence over the template's escape mode
+     * (e.g. NONE for a reference returning trusted markup)
+     *
+     * @param classAlias  The class alias (or name) used in templates
+     * @param methodAlias The method alias (or name) used in templates
+     * @param escapeMode  The reference's escape mode
+     * @throws InvalidInputException An invalid input exception is thrown if any of the input parameters is null or empty
+     */
+    public void setEscapeMode(String classAlias, String methodAlias, KIEscapeMode escapeMode) throws InvalidInputException {
+        InputValidator.validate(classAlias);
+        InputValidator.validate(methodAlias);
+        InputValidator.validate(escapeMode);
+        formatterRegistry.setEscapeMode(classAlias, methodAlias, escapeMode);
+    }
+
+    /**
+     * Get the formatter registry holding the formatters and escape modes of the injected values
+     *
+     * @return The formatter registry
+     */
+    public KIFormatterRegistry getFormatterRegistry() {
+        return formatterRegistry;
+    }
+
     /**
      * Add an alias to be used in templates instead of a class' name
      *
@@ -0,0 +1,386 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Service;
+
+import KI.Core.Compiler.IKITemplateRenderer;
+import KI.Models.KIOutput.CompressedOutput;
+import KI.Models.KIOutput.IKIOutput;
+import KI.Models.KIOutput.KICompressionFormat;
+import KI.Models.KIOutput.StreamOutput;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+
+/**
+ * The render service exposes compiled templates over a local HTTP endpoint, so other processes could render them
+ * without starting their own injector. A template registered with a name is rendered by GET or POST /render/{name},
+ * its content objects being resolved from the request by the template's content resolver, and the output is rendered
+ * directly into the response's body (gzip compressed if the client accepts it). As the response's headers are sent
+ * before rendering, a render that fails afterwards closes the connection without ending the response, so the client
+ * sees a broken response rather than a truncated one.
+ * GET /stats returns the service's throughput and latency stats as a JSON object.
+ * <p>
+ * Every request is handled on its own virtual thread if the runtime supports them (Java 21 or later),
+ * on a cached thread pool otherwise
+ */
+public class KIRenderService {
+
+    public static final String RENDER_PATH = "/render/";
+    public static final String STATS_PATH = "/stats";
+
+    private static final String REQUEST_THREAD_NAME = "kontent-injector-render-service";
+    private static final int LATENCY_BUCKETS_COUNT = 64;
+    private static final int STATUS_OK = 200;
+    private static final int STATUS_BAD_REQUEST = 400;
+    private static final int STATUS_NOT_FOUND = 404;
+    private static final int STATUS_SERVER_ERROR = 500;
+    private static final int CHUNKED_RESPONSE_LENGTH = 0;
+    private static final String RENDER_ABORTED_MESSAGE = "The render failed after the response was started";
+
+    /**
+     * A template registered in the service
+     */
+    private static final class RegisteredTemplate {
+        private final IKITemplateRenderer template;
+        private final String contentType;
+        private final IKIContentResolver contentResolver;
+
+        private RegisteredTemplate(IKITemplateRenderer template, String contentType, IKIContentResolver contentResolver) {
+            this.template = template;
+            this.contentType = contentType;
+            this.contentResolver = contentResolver;
+        }
+    }
+
+    /**
+     * The response's body as written by the output, closing the output doesn't close the body,
+     * which is closed by the service only if the render succeeded
+     */
+    private static final class ResponseBodyStream extends FilterOutputStream {
+
+        private ResponseBodyStream(OutputStream responseBody) {
+            super(responseBody);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            out.write(bytes, offset, length);
+        }
+
+        @Override
+        public void close() {
+            // The response's body is closed by the service
+        }
+    }
+
+    private final HttpServer httpServer;
+    private final ExecutorService requestsExecutor;
+    private final boolean ownsExecutor;
+    private final Map<String, RegisteredTemplate> templates = new ConcurrentHashMap<>();
+    private final LongAdder renderedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder notFoundCount = new LongAdder();
+    private final LongAdder totalLatencyNanos = new LongAdder();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+    private final AtomicLongArray latencyBuckets = new AtomicLongArray(LATENCY_BUCKETS_COUNT);
+    private volatile long startNanos;
+
+    /**
+     * Construct a render service handling every request on its own virtual thread (or on a cached thread pool)
+     *
+     * @param address The address the service listens to (e.g. new InetSocketAddress("localhost", 0) for any free port)
+     * @throws IOException An exception is thrown if the address could not be bound
+     */
+    public KIRenderService(InetSocketAddress address) throws IOException {
+        this(address, createRequestsExecutor(), true);
+    }
+
+    /**
+     * Construct a render service handling the requests on an executor, that is not shut down when the service stops
+     *
+     * @param address          The address the service listens to
+     * @param requestsExecutor The executor the requests are handled on
+     * @throws IOException An exception is thrown if the address could not be bound
+     */
+    public KIRenderService(InetSocketAddress address, ExecutorService requestsExecutor) throws IOException {
+        this(address, requestsExecutor, false);
+    }
+
+    private KIRenderService(InetSocketAddress address, ExecutorService requestsExecutor, boolean ownsExecutor) throws IOException {
+        this.httpServer = HttpServer.create(address, 0);
+        this.requestsExecutor = requestsExecutor;
+        this.ownsExecutor = ownsExecutor;
+        httpServer.setExecutor(requestsExecutor);
+        httpServer.createContext(RENDER_PATH, this::handleRender);
+        httpServer.createContext(STATS_PATH, this::handleStats);
+    }
+
+    /**
+     * Register a template, rendered by /render/{templateName}. A template registered with the same name is replaced
+     *
+     * @param templateName    The template's name
+     * @param template        The compiled template, rendered concurrently by several requests
+     * @param contentType     The media type of the template's output (e.g. text/html), encoded in UTF-8
+     * @param contentResolver The resolver providing the content objects of every request
+     */
+    public void registerTemplate(String templateName, IKITemplateRenderer template, String contentType, IKIContentResolver contentResolver) {
+        templates.put(templateName, new RegisteredTemplate(template, contentType, contentResolver));
+    }
+
+    /**
+     * Unregister a template, the requests already being rendered are not affected
+     *
+     * @param templateName The template's name
+     */
+    public void unregisterTemplate(String templateName) {
+        templates.remove(templateName);
+    }
+
+    /**
+     * Start handling requests
+     */
+    public void start() {
+        startNanos = System.nanoTime();
+        httpServer.start();
+    }
+
+    /**
+     * Stop handling requests, waiting for the requests being handled to finish
+     *
+     * @param delaySeconds The maximum time to wait for the requests being handled
+     */
+    public void stop(int delaySeconds) {
+        httpServer.stop(delaySeconds);
+        if (ownsExecutor)
+            requestsExecutor.shutdown();
+    }
+
+    /**
+     * Get the port the service listens to, useful if it was started on any free port
+     *
+     * @return The port
+     */
+    public int getPort() {
+        return httpServer.getAddress().getPort();
+    }
+
+    /**
+     * Get a snapshot of the service's stats
+     *
+     * @return The stats since the service started
+     */
+    public KIRenderServiceStats getStats() {
+        long[] buckets = new long[LATENCY_BUCKETS_COUNT];
+        for (int i = 0; i < buckets.length; i++)
+            buckets[i] = latencyBuckets.get(i);
+        return new KIRenderServiceStats(renderedCount.sum(), failedCount.sum(), notFoundCount.sum(), totalLatencyNanos.sum(),
+                maxLatencyNanos.get(), startNanos == 0 ? 0 : System.nanoTime() - startNanos, buckets);
+    }
+
+    /**
+     * Get the query parameters of a request, a helper for content resolvers
+     *
+     * @param exchange The HTTP exchange
+     * @return The decoded query parameters mapped to their values (the last value if a parameter is repeated)
+     */
+    public static Map<String, String> getQueryParameters(HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null || query.isEmpty())
+            return parameters;
+
+        for (String parameter : query.split("&")) {
+            int equals = parameter.indexOf('=');
+            String name = equals == -1 ? parameter : parameter.substring(0, equals);
+            String value = equals == -1 ? "" : parameter.substring(equals + 1);
+            parameters.put(decode(name), decode(value));
+        }
+        return parameters;
+    }
+
+    /**
+     * Render a registered template into the response's body. If the render fails after the headers were sent,
+     * the output is aborted and the exchange is left open, so the server closes the connection
+     *
+     * @param exchange The HTTP exchange
+     * @throws IOException An exception is thrown if the response could not be written, or if the render failed
+     *                     after the headers were sent
+     */
+    private void handleRender(HttpExchange exchange) throws IOException {
+        long requestStart = System.nanoTime();
+        LongAdder outcome = failedCount;
+        IKIOutput responseOutput = null;
+        boolean isAborted = false;
+        try {
+            RegisteredTemplate registeredTemplate = templates.get(exchange.getRequestURI().getPath().substring(RENDER_PATH.length()));
+            if (registeredTemplate == null) {
+                outcome = notFoundCount;
+                sendStatus(exchange, STATUS_NOT_FOUND, "Unknown template");
+                return;
+            }
+
+            Object[] contentObjects;
+            try {
+                contentObjects = registeredTemplate.contentResolver.resolveContent(exchange);
+            } catch (IllegalArgumentException e) {
+                sendStatus(exchange, STATUS_BAD_REQUEST, e.getMessage());
+                return;
+            }
+
+            responseOutput = createResponseOutput(exchange, registeredTemplate.contentType);
+            registeredTemplate.template.render(responseOutput, contentObjects);
+            outcome = renderedCount;
+        } catch (Exception e) {
+            if (exchange.getResponseCode() == -1) {
+                sendStatus(exchange, STATUS_SERVER_ERROR, e.toString());
+                return;
+            }
+            isAborted = true;
+            if (responseOutput != null)
+                IKIOutput.abort(responseOutput, e);
+            throw new IOException(RENDER_ABORTED_MESSAGE, e);
+        } finally {
+            if (!isAborted)
+                exchange.close();
+            recordRequest(outcome, System.nanoTime() - requestStart);
+        }
+    }
+
+    /**
+     * Write the service's stats as a JSON object
+     *
+     * @param exchange The HTTP exchange
+     * @throws IOException An exception is thrown if the response could not be written
+     */
+    private void handleStats(HttpExchange exchange) throws IOException {
+        try {
+            byte[] statsJson = getStats().toJson().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+            exchange.sendResponseHeaders(STATUS_OK, statsJson.length);
+            try (OutputStream responseBody = exchange.getResponseBody()) {
+                responseBody.write(statsJson);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Send the response's headers and create the output writing to the response's body
+     *
+     * @param exchange    The HTTP exchange
+     * @param contentType The media type of the output
+     * @return The output, gzip compressed if the client accepts it
+     * @throws IOException An exception is thrown if the headers could not be sent
+     */
+    private IKIOutput createResponseOutput(HttpExchange exchange, String contentType) throws IOException {
+        String acceptedEncodings = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        boolean isCompressed = acceptedEncodings != null && acceptedEncodings.contains("gzip");
+
+        exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=UTF-8");
+        if (isCompressed)
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        exchange.sendResponseHeaders(STATUS_OK, CHUNKED_RESPONSE_LENGTH);
+
+        OutputStream responseBody = new ResponseBodyStream(exchange.getResponseBody());
+        if (isCompressed)
+            return new CompressedOutput(responseBody, KICompressionFormat.GZIP, Deflater.BEST_SPEED, StandardCharsets.UTF_8);
+        return new StreamOutput(responseBody, StandardCharsets.UTF_8, "\n");
+    }
+
+    /**
+     * Send a response holding a short plain text message
+     *
+     * @param exchange The HTTP exchange
+     * @param status   The response's status
+     * @param message  The message
+     * @throws IOException An exception is thrown if the response could not be written
+     */
+    private void sendStatus(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] messageBytes = String.valueOf(message).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+        exchange.sendResponseHeaders(status, messageBytes.length);
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            responseBody.write(messageBytes);
+        }
+    }
+
+    /**
+     * Record a handled request in the stats
+     *
+     * @param outcome      The counter of the request's outcome
+     * @param latencyNanos The request's latency
+     */
+    private void recordRequest(LongAdder outcome, long latencyNanos) {
+        outcome.increment();
+        totalLatencyNanos.add(latencyNanos);
+        maxLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+        latencyBuckets.incrementAndGet(Math.min(KIRenderServiceStats.getLatencyBucket(latencyNanos), LATENCY_BUCKETS_COUNT - 1));
+    }
+
+    private static String decode(String text) {
+        try {
+            return URLDecoder.decode(text, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Create the executor handling every request on its own virtual thread, through reflection so the service runs
+     * on older runtimes too, falling back to a cached pool of daemon threads
+     *
+     * @return The requests executor
+     */
+    private static ExecutorService createRequestsExecutor() {
+        try {
+            Method virtualThreadsExecutor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtualThreadsExecutor.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread requestThread = new Thread(runnable, REQUEST_THREAD_NAME);
+                requestThread.setDaemon(true);
+                return requestThread;
+            });
+        }
+    }
+}
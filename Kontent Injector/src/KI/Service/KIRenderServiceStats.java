@@ -0,0 +1,173 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017. Khaled Hamdy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package KI.Service;
+
+import java.util.Locale;
+
+/**
+ * The render service stats are a snapshot of the service's requests since it started: the number of rendered, failed
+ * and unknown templates requests, the throughput and the latencies. Latencies are measured from the moment a request
+ * is handled until its response is written, and their percentiles are approximated by power of two buckets of microseconds
+ */
+public class KIRenderServiceStats {
+
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+    private static final double NANOS_PER_MILLISECOND = 1_000_000.0;
+    private static final double MICROS_PER_MILLISECOND = 1_000.0;
+
+    private final long renderedCount;
+    private final long failedCount;
+    private final long notFoundCount;
+    private final long totalLatencyNanos;
+    private final long maxLatencyNanos;
+    private final long elapsedNanos;
+    private final long[] latencyBuckets;
+
+    KIRenderServiceStats(long renderedCount, long failedCount, long notFoundCount, long totalLatencyNanos,
+                         long maxLatencyNanos, long elapsedNanos, long[] latencyBuckets) {
+        this.renderedCount = renderedCount;
+        this.failedCount = failedCount;
+        this.notFoundCount = notFoundCount;
+        this.totalLatencyNanos = totalLatencyNanos;
+        this.maxLatencyNanos = maxLatencyNanos;
+        this.elapsedNanos = elapsedNanos;
+        this.latencyBuckets = latencyBuckets;
+    }
+
+    /**
+     * Get the bucket of a latency
+     *
+     * @param latencyNanos The latency in nanoseconds
+     * @return The index of the bucket holding the latency, the bucket i holding the latencies below 2^i microseconds
+     */
+    static int getLatencyBucket(long latencyNanos) {
+        return 64 - Long.numberOfLeadingZeros(latencyNanos / 1000);
+    }
+
+    /**
+     * Get the number of templates rendered successfully
+     *
+     * @return The number of rendered templates
+     */
+    public long getRenderedCount() {
+        return renderedCount;
+    }
+
+    /**
+     * Get the number of requests that failed (invalid requests, or failures while rendering)
+     *
+     * @return The number of failed requests
+     */
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    /**
+     * Get the number of requests for templates that are not registered
+     *
+     * @return The number of unknown templates requests
+     */
+    public long getNotFoundCount() {
+        return notFoundCount;
+    }
+
+    /**
+     * Get the time elapsed since the service started
+     *
+     * @return The elapsed time in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Get the number of rendered templates per second since the service started
+     *
+     * @return The throughput in renders per second
+     */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : renderedCount * NANOS_PER_SECOND / elapsedNanos;
+    }
+
+    /**
+     * Get the mean latency of the handled requests
+     *
+     * @return The mean latency in milliseconds
+     */
+    public double getMeanLatencyMillis() {
+        long requestsCount = renderedCount + failedCount + notFoundCount;
+        return requestsCount == 0 ? 0 : totalLatencyNanos / NANOS_PER_MILLISECOND / requestsCount;
+    }
+
+    /**
+     * Get the maximum latency of the handled requests
+     *
+     * @return The maximum latency in milliseconds
+     */
+    public double getMaxLatencyMillis() {
+        return maxLatencyNanos / NANOS_PER_MILLISECOND;
+    }
+
+    /**
+     * Get an approximation of a latency percentile, the upper bound of the bucket holding the percentile
+     *
+     * @param percentile The percentile, between 0 and 100 (e.g. 99)
+     * @return The latency in milliseconds, at most twice the actual percentile
+     */
+    public double getLatencyPercentileMillis(double percentile) {
+        long requestsCount = 0;
+        for (long bucketCount : latencyBuckets)
+            requestsCount += bucketCount;
+        if (requestsCount == 0)
+            return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(requestsCount * percentile / 100));
+        for (int i = 0; i < latencyBuckets.length; i++) {
+            rank -= latencyBuckets[i];
+            if (rank <= 0)
+                return Math.min((1L << i) / MICROS_PER_MILLISECOND, getMaxLatencyMillis());
+        }
+        return getMaxLatencyMillis();
+    }
+
+    /**
+     * Get the stats as a JSON object, as returned by the service's stats endpoint
+     *
+     * @return The JSON object
+     */
+    public String toJson() {
+        return String.format(Locale.ROOT, "{\"rendered\":%d,\"failed\":%d,\"notFound\":%d,\"elapsedSeconds\":%.3f,\"throughput\":%.1f,"
+                        + "\"meanLatencyMillis\":%.3f,\"p50LatencyMillis\":%.3f,\"p99LatencyMillis\":%.3f,\"maxLatencyMillis\":%.3f}",
+                renderedCount, failedCount, notFoundCount, elapsedNanos / NANOS_PER_SECOND, getThroughput(),
+                getMeanLatencyMillis(), getLatencyPercentileMillis(50), getLatencyPercentileMillis(99), getMaxLatencyMillis());
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "Rendered %d templates (%d failed, %d not found) in %.3f s, %.1f renders/s, latency mean %.3f ms, p99 %.3f ms, max %.3f ms",
+                renderedCount, failedCount, notFoundCount, elapsedNanos / NANOS_PER_SECOND, getThroughput(),
+                getMeanLatencyMillis(), getLatencyPercentileMillis(99), getMaxLatencyMillis());
+    }
+}